@@ -0,0 +1,257 @@
+package org.jlab.analysis.eventmerger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.jlab.io.base.DataEvent;
+import org.jlab.io.hipo.HipoDataSource;
+
+/**
+ * Thread-safe source of background events for merging, shared by all threads.
+ *
+ * Two sampling modes are supported:
+ * <ul>
+ * <li>SEQUENTIAL: dedicated reader threads read the files in order and
+ * prefetch events into a bounded blocking queue, from which callers take
+ * them, waiting while it is empty.  Files are distributed round-robin among the readers and, if
+ * reuse is enabled, reread once all are used.  With one reader, events are
+ * delivered in the same order as reading the files directly.</li>
+ * <li>RANDOM: events are picked by random access from all files, using a
+ * generator seeded from the seed and a key supplied by the caller, typically
+ * derived from the signal event's run and event numbers.  The same signal
+ * event then always gets the same background events, independent of the
+ * number of threads or the order events are processed in.</li>
+ * </ul>
+ */
+public class BackgroundEventSupplier {
+
+    static final Logger LOGGER = Logger.getLogger(BackgroundEventSupplier.class.getName());
+
+    public static final int DEFAULT_CAPACITY = 256;
+
+    public enum Mode { SEQUENTIAL, RANDOM }
+
+    /**
+     * time waited for a prefetched event before checking whether the readers
+     * are done or the supplier was closed
+     */
+    private static final long POLL_MILLIS = 100;
+
+    private final List<String> fileNames;
+    private final boolean reuse;
+    private final Mode mode;
+    private final long seed;
+
+    // sequential mode
+    private final int nReaders;
+    private final BlockingQueue<DataEvent> buffer;
+    private final AtomicInteger activeReaders = new AtomicInteger();
+    private final List<Thread> readers = new ArrayList<>();
+    private volatile boolean started = false;
+    private volatile boolean closed = false;
+
+    // random mode
+    private int[] firstEvent;
+    private int nEvents;
+    private List<ConcurrentLinkedDeque<HipoDataSource>> sources;
+    private final AtomicLong counter = new AtomicLong();
+
+    /**
+     * @param fileNames background files
+     * @param reuse whether to reread the files once all are used (SEQUENTIAL only)
+     * @param mode sampling mode
+     * @param nReaders number of reader threads (SEQUENTIAL only)
+     * @param capacity maximum number of prefetched events (SEQUENTIAL only)
+     * @param seed random seed (RANDOM only)
+     */
+    public BackgroundEventSupplier(List<String> fileNames, boolean reuse, Mode mode,
+            int nReaders, int capacity, long seed) {
+        this.fileNames = new ArrayList<>(fileNames);
+        this.reuse = reuse;
+        this.mode = mode;
+        this.nReaders = Math.max(1, Math.min(nReaders, fileNames.size()));
+        this.buffer = new LinkedBlockingQueue<>(Math.max(1, capacity));
+        this.seed = seed;
+    }
+
+    public BackgroundEventSupplier(List<String> fileNames, boolean reuse) {
+        this(fileNames, reuse, Mode.SEQUENTIAL, 1, DEFAULT_CAPACITY, 0);
+    }
+
+    public Mode getMode() {
+        return this.mode;
+    }
+
+    /**
+     * @param name sampling mode name, case insensitive
+     * @return the sampling mode, or SEQUENTIAL if the name is not valid
+     */
+    public static Mode getMode(String name) {
+        if (name != null) {
+            for (Mode m : Mode.values()) {
+                if (m.name().equalsIgnoreCase(name.trim())) return m;
+            }
+        }
+        LOGGER.log(Level.WARNING, "Invalid background sampling mode \"{0}\", using {1}",
+                new Object[]{name, Mode.SEQUENTIAL});
+        return Mode.SEQUENTIAL;
+    }
+
+    /**
+     * Get background events.  In RANDOM mode, an internal counter is used as
+     * the key, so the events are reproducible only if called from one thread.
+     * @param n number of events
+     * @return the events, or null if there are not enough left
+     */
+    public List<DataEvent> get(int n) {
+        return this.get(n, this.counter.getAndIncrement());
+    }
+
+    /**
+     * Get background events.
+     * @param n number of events
+     * @param key in RANDOM mode, determines which events are returned
+     * @return the events, or null if there are not enough left
+     */
+    public List<DataEvent> get(int n, long key) {
+        return this.mode == Mode.RANDOM ? this.sample(n, key) : this.take(n);
+    }
+
+    /**
+     * Stop the reader threads and discard any prefetched events.
+     */
+    public synchronized void close() {
+        this.closed = true;
+        for (Thread t : this.readers) t.interrupt();
+        this.buffer.clear();
+    }
+
+    private synchronized void start() {
+        if (this.started) return;
+        if (this.mode == Mode.RANDOM) {
+            this.openAll();
+        }
+        else {
+            this.activeReaders.set(this.nReaders);
+            for (int i = 0; i < this.nReaders; i++) {
+                List<String> files = new ArrayList<>();
+                for (int j = i; j < this.fileNames.size(); j += this.nReaders) {
+                    files.add(this.fileNames.get(j));
+                }
+                Thread t = new Thread(() -> this.read(files), "BackgroundEventSupplier-" + i);
+                t.setDaemon(true);
+                this.readers.add(t);
+                t.start();
+            }
+        }
+        this.started = true;
+    }
+
+    /**
+     * Reader thread loop, prefetching events from the files in order until
+     * they are used up or the supplier is closed.
+     */
+    private void read(List<String> files) {
+        try {
+            do {
+                for (String file : files) {
+                    HipoDataSource reader = new HipoDataSource();
+                    reader.setReuseEvents(false);
+                    reader.open(file);
+                    while (reader.hasEvent() && !this.closed) {
+                        this.buffer.put(reader.getNextEvent());
+                    }
+                }
+                if (this.reuse && !this.closed) {
+                    LOGGER.info("Reopening previously used background file");
+                }
+            } while (this.reuse && !this.closed);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Error reading background events", e);
+        } finally {
+            this.activeReaders.decrementAndGet();
+        }
+    }
+
+    private List<DataEvent> take(int n) {
+        if (!this.started) this.start();
+        List<DataEvent> events = new ArrayList<>(n);
+        try {
+            while (events.size() < n) {
+                DataEvent event = this.buffer.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (event != null) {
+                    events.add(event);
+                }
+                else if (this.closed) {
+                    return null;
+                }
+                else if (this.activeReaders.get() == 0 && this.buffer.isEmpty()) {
+                    LOGGER.info("Ran out of background events");
+                    return null;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        return events;
+    }
+
+    private void openAll() {
+        this.firstEvent = new int[this.fileNames.size()+1];
+        this.sources = new ArrayList<>();
+        for (int i = 0; i < this.fileNames.size(); i++) {
+            HipoDataSource source = new HipoDataSource();
+            source.setReuseEvents(false);
+            source.open(this.fileNames.get(i));
+            this.firstEvent[i+1] = this.firstEvent[i] + source.getSize();
+            this.sources.add(new ConcurrentLinkedDeque<>());
+            this.sources.get(i).offer(source);
+        }
+        this.nEvents = this.firstEvent[this.fileNames.size()];
+        LOGGER.log(Level.INFO, "Sampling randomly from {0} background events", this.nEvents);
+    }
+
+    private List<DataEvent> sample(int n, long key) {
+        if (!this.started) this.start();
+        if (this.nEvents == 0) return null;
+        SplittableRandom random = new SplittableRandom(this.seed ^ (key * 0x9E3779B97F4A7C15L));
+        List<DataEvent> events = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            int index = random.nextInt(this.nEvents);
+            int file = 0;
+            while (index >= this.firstEvent[file+1]) file++;
+            events.add(this.gotoEvent(file, index - this.firstEvent[file]));
+        }
+        return events;
+    }
+
+    /**
+     * Read one event by random access, with a reader borrowed from the pool
+     * for that file so concurrent callers do not share one.
+     */
+    private DataEvent gotoEvent(int file, int index) {
+        ConcurrentLinkedDeque<HipoDataSource> pool = this.sources.get(file);
+        HipoDataSource source = pool.pollFirst();
+        if (source == null) {
+            source = new HipoDataSource();
+            source.setReuseEvents(false);
+            source.open(this.fileNames.get(file));
+        }
+        try {
+            return source.gotoEvent(index);
+        } finally {
+            pool.offerFirst(source);
+        }
+    }
+}
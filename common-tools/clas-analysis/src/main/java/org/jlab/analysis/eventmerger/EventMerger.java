@@ -25,6 +25,7 @@ import org.jlab.utils.options.OptionParser;
  * Options :
  *      -d : list of detectors, for example "DC,FTOF,HTCC" (default = DC,FTOF)
  *      -n : maximum number of events to process (default = -1)
+ *      -m : background sampling mode, SEQUENTIAL or RANDOM (default = SEQUENTIAL)
  * 
  * @author ziegler
  * @author devita
@@ -41,11 +42,8 @@ public class EventMerger {
     private Map<DetectorType,List<Integer>> detectors;
     private OrderType[] orders;
     
-    private List<String> bgFileNames;
-    private boolean reuseBgEvents = false;
     private int bgScale = 1;
-    private int bgFileIndex = 0;
-    private HipoDataSource bgReader;
+    private BackgroundEventSupplier bgSupplier;
     
     public EventMerger() {
         detectors = this.getDetectors(DetectorType.DC.getName(), DetectorType.FTOF.getName());
@@ -114,7 +112,24 @@ public class EventMerger {
     }
     
     public boolean setBgFiles(List<String> filenames, int scale, boolean reuse) {
-        bgFileNames = new ArrayList<>();
+        return this.setBgFiles(filenames, scale, reuse, BackgroundEventSupplier.Mode.SEQUENTIAL, 1, 0);
+    }
+
+    /**
+     * Set the background files and how events are read from them, see
+     * {@link BackgroundEventSupplier}.
+     * 
+     * @param filenames background files
+     * @param scale number of background event pairs merged with each event
+     * @param reuse whether to reread the files once all events are used
+     * @param mode SEQUENTIAL or RANDOM sampling
+     * @param readers number of prefetching reader threads (SEQUENTIAL only)
+     * @param seed random seed (RANDOM only)
+     * @return false if any file is invalid
+     */
+    public boolean setBgFiles(List<String> filenames, int scale, boolean reuse,
+            BackgroundEventSupplier.Mode mode, int readers, long seed) {
+        List<String> bgFileNames = new ArrayList<>();
         for (String filename : filenames) {
             File f = new File(filename);
             if (!f.exists() || !f.isFile() || !f.canRead()) {
@@ -125,37 +140,39 @@ public class EventMerger {
             bgFileNames.add(filename);
         }        
         if(scale>0) bgScale = scale;
-        reuseBgEvents = reuse;
+        if(bgSupplier!=null) bgSupplier.close();
+        bgSupplier = new BackgroundEventSupplier(bgFileNames, reuse, mode, readers,
+                Math.max(BackgroundEventSupplier.DEFAULT_CAPACITY, 4*bgScale*readers), seed);
         return true;
     } 
-    
-    private boolean openNextFile() {
-        if(bgFileIndex == bgFileNames.size()) {
-            if (reuseBgEvents) {
-                Logger.getLogger(EventMerger.class.getName()).info("Reopening previously used background file");
-                bgFileIndex = 0;
-            }
-            else {
-                Logger.getLogger(EventMerger.class.getName()).info("Ran out of background events");
-                return false;
-            }
-        }
-        bgReader = new HipoDataSource();
-        bgReader.open(bgFileNames.get(bgFileIndex));
-        bgFileIndex++;
-        return true;
+
+    /**
+     * Get background events.  Safe to call from any number of threads.
+     * 
+     * @param n number of events
+     * @return the events, or null if there are not enough left
+     */
+    public List<DataEvent> getBackgroundEvents(int n) {
+        return bgSupplier.get(n);
     }
 
-    synchronized public List<DataEvent> getBackgroundEvents(int n) {
-        List<DataEvent> events = new ArrayList<>();
-        for(int i=0; i<n; i++) {
-            if (bgReader==null || !bgReader.hasEvent()) {
-                if(!openNextFile())
-                    return null;
-            }
-            events.add(bgReader.getNextEvent());
-        }
-        return events;
+    /**
+     * Get background events for a given signal event.  In RANDOM mode, the
+     * same key always gives the same background events.
+     * 
+     * @param n number of events
+     * @param key for example from the signal event's run and event numbers
+     * @return the events, or null if there are not enough left
+     */
+    public List<DataEvent> getBackgroundEvents(int n, long key) {
+        return bgSupplier.get(n, key);
+    }
+
+    /**
+     * Stop reading background events.
+     */
+    public void close() {
+        if(bgSupplier!=null) bgSupplier.close();
     }
     
     private void printConfiguration() {
@@ -249,7 +266,11 @@ public class EventMerger {
     
     private boolean mergeEvents(DataEvent event, int scale) {
            
-        List<DataEvent> eventsBg = this.getBackgroundEvents(2*scale);
+        List<DataEvent> eventsBg;
+        if(bgSupplier.getMode()==BackgroundEventSupplier.Mode.RANDOM)
+            eventsBg = this.getBackgroundEvents(2*scale, getEventKey(event));
+        else
+            eventsBg = this.getBackgroundEvents(2*scale);
                 
         if(eventsBg==null) return false;
                 
@@ -257,6 +278,16 @@ public class EventMerger {
         return true;
     }
 
+    /**
+     * @param event signal event
+     * @return a key combining run and event number, 0 if no RUN::config bank
+     */
+    private static long getEventKey(DataEvent event) {
+        if(!event.hasBank("RUN::config")) return 0;
+        DataBank config = event.getBank("RUN::config");
+        return ((long) config.getInt("run", 0) << 32) | (config.getInt("event", 0) & 0xFFFFFFFFL);
+    }
+
     public static void main(String[] args)  {
 
         DefaultLogger.debug();
@@ -272,6 +303,9 @@ public class EventMerger {
         parser.addOption("-l"    ,"1", "preserve initial hit order (for compatibility with truth matching, 0-false, 1-true");
         parser.addOption("-t"    ,"NOMINAL,BGADDED_NOMINAL,BGREMOVED,BGREMOVED_BG", "list of hit OrderTypes to be saved");
         parser.addOption("-x"    ,"1", "background scale factor");
+        parser.addOption("-m"    ,"SEQUENTIAL", "background sampling mode, SEQUENTIAL or RANDOM (reproducible per signal event)");
+        parser.addOption("-p"    ,"1", "number of background reader threads (SEQUENTIAL mode)");
+        parser.addOption("-e"    ,"0", "random seed (RANDOM mode)");
         parser.parse(args);
         
         if(parser.hasOption("-i") && parser.hasOption("-o")){
@@ -287,10 +321,14 @@ public class EventMerger {
             int     bgScale     = parser.getOption("-x").intValue();
             boolean reuseBG     = (parser.getOption("-r").intValue()==1);
             boolean hitOrder    = (parser.getOption("-l").intValue()==1);
+            String  mode        = parser.getOption("-m").stringValue();
+            int     readers     = parser.getOption("-p").intValue();
+            long    seed        = parser.getOption("-e").intValue();
             
             
             EventMerger merger = new EventMerger(detectors.split(","),ordertypes.split(","),doubleHits,hitOrder);
-            if(!merger.setBgFiles(bgFiles, bgScale, reuseBG))
+            if(!merger.setBgFiles(bgFiles, bgScale, reuseBG,
+                    BackgroundEventSupplier.getMode(mode), readers, seed))
                 System.exit(1);
                 
             int counter = 0;
@@ -324,6 +362,7 @@ public class EventMerger {
             }
             progress.showStatus();
             writer.close();
+            merger.close();
         }
 
     }
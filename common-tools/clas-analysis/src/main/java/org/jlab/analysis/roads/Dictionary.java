@@ -1,40 +1,266 @@
 package org.jlab.analysis.roads;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 import org.jlab.clas.physics.Particle;
+import org.jlab.logging.DefaultLogger;
 import org.jlab.utils.benchmark.ProgressPrintout;
+import org.jlab.utils.options.OptionParser;
 
 /**
- *
+ * Road dictionary, stored compactly: the detector components of each road 
+ * and its particle kinematics are kept in primitive arrays, one entry per 
+ * road in insertion order, and roads are looked up by their key in a
+ * {@link RoadKeys} table.
+ * 
+ * The key depends on the test mode and binning set with 
+ * {@link #setKeyDefinition}, by default all detectors without binning.
+ * 
+ * Dictionaries can be read from and written to the text format, one road 
+ * per line, or a binary format with one column per quantity, see 
+ * {@link #writeBinaryDictionary}.  The format is detected when reading.
+ * Roads can also be streamed from and to files without holding them in
+ * memory, see {@link #openReader} and {@link #openWriter}.
+ * 
  * @author devita, ziegler
  */
-public class Dictionary extends HashMap<ArrayList<Byte>, Particle> {
-                
+public class Dictionary {
+    
+    /** binary dictionary magic word, "ROAD" */
+    public static final int MAGIC = 0x524f4144;
+    public static final int VERSION = 1;
+    /** default extension for binary dictionaries */
+    public static final String BINARY_EXTENSION = ".bin";
+    
+    /** maximum number of roads, limited by the size of the components array */
+    public static final int MAXROADS = (Integer.MAX_VALUE-8)/Road.NCOMPONENTS;
+    
+    private static final int NFLOATS = 7; // p, theta, phi, vz, ECALe1,4,7
+    private static final int EMPTY = RoadKeys.EMPTY;
+        
+    private TestMode mode = TestMode.DCFTOFPCALUVWHTCC;
+    private int wireBinning = 1;
+    private int stripBinning = 1;
+    private int sectorDependence = 1;
+
+    private int size = 0;
+    private byte[]    components = new byte[0];
+    private byte[]    charges    = new byte[0];
+    private float[][] floats     = new float[NFLOATS][0];
+    private final RoadKeys index = new RoadKeys();
+    private final float[]  values = new float[NFLOATS];
+
     public Dictionary() {
+        this.grow(1024);
+    }
+    
+    /**
+     * Set how road keys are built, removing any roads already in the dictionary
+     * @param mode test mode
+     * @param wireBinning DC wire bin size
+     * @param stripBinning PCAL strip and FTOF paddle bin size
+     * @param sectorDependence sector-dependent roads, 0=false, 1=true
+     */
+    public void setKeyDefinition(TestMode mode, int wireBinning, int stripBinning, int sectorDependence) {
+        this.mode = mode;
+        this.wireBinning = wireBinning;
+        this.stripBinning = stripBinning;
+        this.sectorDependence = sectorDependence;
+        this.clear();
+    }
+
+    public void clear() {
+        this.size = 0;
+        this.index.clear();
     }
     
+    public int size() {
+        return this.size;
+    }
+    
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+    
+    private void grow(int capacity) {
+        this.components = Arrays.copyOf(this.components, capacity*Road.NCOMPONENTS);
+        this.charges    = Arrays.copyOf(this.charges, capacity);
+        for(int i=0; i<NFLOATS; i++) this.floats[i] = Arrays.copyOf(this.floats[i], capacity);
+    }
+
+    private int find(ArrayList<Byte> key) {
+        if(key.size() != Road.KEYSIZE) return EMPTY;
+        long k0 = 0;
+        long k1 = 0;
+        for(int i=0; i<8; i++) k0 = (k0 << 8) | (key.get(i) & 0xFF);
+        for(int i=8; i<Road.KEYSIZE; i++) k1 = (k1 << 8) | (key.get(i) & 0xFF);
+        return this.index.find(k0, k1);
+    }
+    
+    public boolean containsKey(ArrayList<Byte> key) {
+        return this.find(key) != EMPTY;
+    }
+    
+    public boolean containsKey(Road road) {
+        return this.index.find(this.getKey(road)) != EMPTY;
+    }
+    
+    private byte[] getKey(Road road) {
+        byte[] key = new byte[Road.KEYSIZE];
+        road.setBinning(this.wireBinning, this.stripBinning, this.sectorDependence);
+        road.getKey(this.mode, key);
+        return key;
+    }
+    
+    /**
+     * @param key road key
+     * @return the particle of the road with this key, or null if not found 
+     */
+    public Particle get(ArrayList<Byte> key) {
+        int row = this.find(key);
+        return row == EMPTY ? null : this.getParticle(row);
+    }
+
+    /**
+     * @param key road key
+     * @return the road with this key, built from the key as in previous 
+     * versions, i.e. with only the detector components in the key, or null
+     * if not found
+     */
     public Road getRoad(ArrayList<Byte> key) {
-        if(this.containsKey(key))
-            return new Road(key, this.get(key));
-        else
-            return null;
+        int row = this.find(key);
+        return row == EMPTY ? null : new Road(key, this.getParticle(row));
     }
-        
+    
+    /**
+     * @param row road number, in insertion order
+     * @return the key of the road
+     */
+    public ArrayList<Byte> getKey(int row) {
+        byte[] key = new byte[Road.KEYSIZE];
+        this.index.get(row, key);
+        ArrayList<Byte> list = new ArrayList<>(Road.KEYSIZE);
+        for(byte b : key) list.add(b);
+        return list;
+    }
+    
+    /**
+     * @param row road number, in insertion order
+     * @return the full road, with all detector components
+     */
+    public Road getRoad(int row) {
+        Road r = new Road(this.components, row*Road.NCOMPONENTS, this.getParticle(row));
+        r.setBinning(this.wireBinning, this.stripBinning, this.sectorDependence);
+        return r;
+    }
+    
+    /**
+     * @param row road number, in insertion order
+     * @return the road particle
+     */
+    public Particle getParticle(int row) {
+        float[] v = new float[NFLOATS];
+        for(int i=0; i<NFLOATS; i++) v[i] = this.floats[i][row];
+        return getParticle(this.charges[row], v);
+    }
+    
+    /**
+     * @param charge particle charge
+     * @param values see {@link #getValues}
+     * @return the road particle
+     */
+    private static Particle getParticle(int charge, float[] values) {
+        double p     = values[0];
+        double theta = Math.toRadians(values[1]);
+        double phi   = Math.toRadians(values[2]);
+        Particle particle = new Particle(211*charge, 
+                                         p*Math.sin(theta)*Math.cos(phi), 
+                                         p*Math.sin(theta)*Math.sin(phi), 
+                                         p*Math.cos(theta), 
+                                         0, 0, values[3]);
+        for(int i=0; i<3; i++) particle.setProperty("ECALe"+(i*3+1), values[4+i]);
+        return particle;
+    }
+    
+    /**
+     * Add a road if there is no road with the same key
+     * @param road
+     * @return true if the road was added
+     */
+    public boolean add(Road road) {
+        return this.put(road, false);
+    }
+    
+    /**
+     * Add a road, replacing any road with the same key
+     * @param road
+     */
+    public void put(Road road) {
+        this.put(road, true);
+    }
+    
+    private boolean put(Road road, boolean replace) {
+        byte[] key = this.getKey(road);
+        long k0 = RoadKeys.pack(key, 0, 8);
+        long k1 = RoadKeys.pack(key, 8, Road.KEYSIZE);
+        int row = this.index.find(k0, k1);
+        if(row != EMPTY) {
+            if(replace) this.set(row, road);
+            return false;
+        }
+        if(this.size == this.charges.length) {
+            if(this.size == MAXROADS) throw new IllegalStateException("maximum number of roads reached: " + MAXROADS);
+            this.grow((int) Math.min(2L*this.size, MAXROADS));
+        }
+        row = this.index.add(k0, k1);
+        this.size++;
+        this.set(row, road);
+        return true;
+    }
+    
+    private void set(int row, Road road) {
+        Particle particle = road.getParticle();
+        road.getComponents(this.components, row*Road.NCOMPONENTS);
+        this.charges[row] = (byte) particle.charge();
+        getValues(particle, this.values);
+        for(int i=0; i<NFLOATS; i++) this.floats[i][row] = this.values[i];
+    }
+
+    /**
+     * @param particle road particle
+     * @param values destination for p, theta and phi in degrees, vz and the
+     * ECAL energies for layers 1, 4 and 7
+     */
+    private static void getValues(Particle particle, float[] values) {
+        values[0] = (float) particle.p();
+        values[1] = (float) Math.toDegrees(particle.theta());
+        values[2] = (float) Math.toDegrees(particle.phi());
+        values[3] = (float) particle.vz();
+        for(int i=0; i<3; i++) values[4+i] = (float) particle.getProperty("ECALe"+(i*3+1));
+    }
+    
     public void printDictionary() {
-        for(Map.Entry<ArrayList<Byte>, Particle> entry : this.entrySet()) {
-            ArrayList<Byte> road = entry.getKey();
-            Particle particle = entry.getValue();
-            Road r = new Road(road,particle);
-            System.out.println(r.toString());
+        for(int row=0; row<this.size; row++) {
+            System.out.println(this.getRoad(row).toString());
         }
     }
 
@@ -43,6 +269,16 @@ public class Dictionary extends HashMap<ArrayList<Byte>, Particle> {
     }
         
     public void readDictionary(String fileName, TestMode mode, int wireBinning, int stripBinning, int sectorDependence, int maxRoads) {
+        this.setKeyDefinition(mode, wireBinning, stripBinning, sectorDependence);
+        this.addDictionary(fileName, maxRoads);
+    }
+    
+    /**
+     * Add the roads from a text or binary dictionary file, skipping duplicates
+     * @param fileName
+     * @param maxRoads maximum number of roads to read, -1 for no limit
+     */
+    public void addDictionary(String fileName, int maxRoads) {
         
         System.out.println("\nReading dictionary from file " + fileName);
         System.out.println("\nMaximum number of roads set to: " + maxRoads);
@@ -51,33 +287,26 @@ public class Dictionary extends HashMap<ArrayList<Byte>, Particle> {
         
         if(maxRoads<0) maxRoads = Integer.MAX_VALUE;
         
-        File fileDict = new File(fileName);
-        
         try {
-            BufferedReader txtreader = new BufferedReader(new FileReader(fileDict));
+            RoadReader reader = openReader(fileName);
             
             ProgressPrintout progress = new ProgressPrintout();
             
-            String line = null;
-            while ((line = txtreader.readLine()) != null && maxRoads>nFull) {
+            Road road = null;
+            while (maxRoads>nFull && (road = reader.next()) != null) {
                 
-                Road road = new Road(line);
-                road.setBinning(wireBinning, stripBinning, sectorDependence);
                 nFull++;
-                if(this.containsKey(road.getKey(mode))) {
+                if(!this.add(road)) {
                     nDupli++;
                     if(nDupli<10) System.out.println("WARNING: found duplicate road");
                     else if(nDupli==10) System.out.println("WARNING: reached maximum number of warnings, switching to silent mode");
                 }
-                else {
-                    this.put(road.getKey(mode), road.getParticle());
-                }
                 progress.setAsInteger("roads",      nFull);
                 progress.setAsInteger("duplicates", nDupli);
                 progress.setAsInteger("good",       this.size());
                 progress.updateStatus();
             }
-            txtreader.close();
+            reader.close();
             progress.showStatus();
         } 
         catch (FileNotFoundException e) {
@@ -88,15 +317,26 @@ public class Dictionary extends HashMap<ArrayList<Byte>, Particle> {
         } 
     }
 
+    /**
+     * Write the dictionary, in binary format if the file name ends with 
+     * {@link #BINARY_EXTENSION}, else as text
+     * @param filename 
+     */
     public void writeDictionary(String filename) {
+        if(filename.endsWith(BINARY_EXTENSION))
+            this.writeBinaryDictionary(filename);
+        else
+            this.writeTextDictionary(filename);
+    }
+    
+    public void writeTextDictionary(String filename) {
         
         try {
             FileWriter writer = new FileWriter(filename, false);
             BufferedWriter bufferedWriter = new BufferedWriter(writer);
  
-            for(Map.Entry<ArrayList<Byte>,Particle> entry : this.entrySet()) {
-                Road road = new Road(entry.getKey(), entry.getValue());
-                bufferedWriter.write(road.toString());
+            for(int row=0; row<this.size; row++) {
+                bufferedWriter.write(this.getRoad(row).toString());
                 bufferedWriter.newLine();
             }
             bufferedWriter.close();
@@ -105,6 +345,280 @@ public class Dictionary extends HashMap<ArrayList<Byte>, Particle> {
         }
     }
     
+    /**
+     * Write the dictionary in binary format, big-endian: magic word, version,
+     * number of roads N, then the N*43 road components, the N charges and
+     * the N momenta, theta and phi in degrees, vz, and ECAL energies for
+     * layers 1, 4 and 7 as floats.
+     * @param filename 
+     */
+    public void writeBinaryDictionary(String filename) {
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.CREATE, 
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(12);
+            header.putInt(MAGIC).putInt(VERSION).putInt(this.size).flip();
+            write(channel, header);
+            write(channel, ByteBuffer.wrap(this.components, 0, this.size*Road.NCOMPONENTS));
+            write(channel, ByteBuffer.wrap(this.charges, 0, this.size));
+            ByteBuffer column = ByteBuffer.allocate(4*this.size);
+            for(int i=0; i<NFLOATS; i++) {
+                column.clear();
+                column.asFloatBuffer().put(this.floats[i], 0, this.size);
+                write(channel, column);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+    
+    private static void write(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while(buffer.hasRemaining()) channel.write(buffer);
+    }
+    
+
+    /**
+     * @param fileName
+     * @return true if the file is a binary dictionary
+     */
+    public static boolean isBinary(String fileName) {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(fileName))) {
+            return in.readInt() == MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+    
+    /**
+     * @param fileName text or binary dictionary file
+     * @return a reader returning the roads in the file one by one
+     * @throws IOException
+     */
+    static RoadReader openReader(String fileName) throws IOException {
+        return isBinary(fileName) ? new BinaryRoadReader(fileName) : new TextRoadReader(fileName);
+    }
+
+    /**
+     * @param fileName dictionary file, binary if the name ends with
+     * {@link #BINARY_EXTENSION}, else text
+     * @return a writer appending roads to the file one by one, without
+     * keeping them in memory
+     * @throws IOException
+     */
+    static RoadWriter openWriter(String fileName) throws IOException {
+        return fileName.endsWith(BINARY_EXTENSION) ? new BinaryRoadWriter(fileName) : new TextRoadWriter(fileName);
+    }
+
+    /**
+     * Sequential reader of roads from a dictionary file
+     */
+    static interface RoadReader extends Closeable {
+        
+        /**
+         * @return the next road, or null if there are no more
+         */
+        Road next() throws IOException;
+    }
+
+    /**
+     * Sequential writer of roads to a dictionary file
+     */
+    static interface RoadWriter extends Closeable {
+
+        void write(Road road) throws IOException;
+    }
+
+    private static class TextRoadWriter implements RoadWriter {
+
+        private final BufferedWriter writer;
+
+        TextRoadWriter(String fileName) throws IOException {
+            this.writer = new BufferedWriter(new FileWriter(fileName, false));
+        }
+
+        @Override
+        public void write(Road road) throws IOException {
+            this.writer.write(road.toString());
+            this.writer.newLine();
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.writer.close();
+        }
+    }
+
+    /**
+     * Writes each column to its own temporary file, next to the output, and
+     * concatenates them after the header on close, so that the memory used
+     * does not depend on the number of roads
+     */
+    private static class BinaryRoadWriter implements RoadWriter {
+
+        private final String fileName;
+        private final File[] columns = new File[NFLOATS+2];
+        private final DataOutputStream[] streams = new DataOutputStream[NFLOATS+2];
+        private final byte[] components = new byte[Road.NCOMPONENTS];
+        private final float[] values = new float[NFLOATS];
+        private int n = 0;
+
+        BinaryRoadWriter(String fileName) throws IOException {
+            this.fileName = fileName;
+            File directory = new File(fileName).getAbsoluteFile().getParentFile();
+            try {
+                for(int i=0; i<this.columns.length; i++) {
+                    this.columns[i] = File.createTempFile("dictionary", ".column", directory);
+                    this.streams[i] = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(this.columns[i])));
+                }
+            }
+            catch(IOException e) {
+                this.delete();
+                throw e;
+            }
+        }
+
+        @Override
+        public void write(Road road) throws IOException {
+            if(this.n == MAXROADS) throw new IllegalStateException("maximum number of roads reached: " + MAXROADS);
+            Particle particle = road.getParticle();
+            road.getComponents(this.components, 0);
+            this.streams[0].write(this.components);
+            this.streams[1].writeByte((byte) particle.charge());
+            getValues(particle, this.values);
+            for(int i=0; i<NFLOATS; i++) this.streams[2+i].writeFloat(this.values[i]);
+            this.n++;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                for(DataOutputStream stream : this.streams) stream.close();
+                try (FileChannel channel = FileChannel.open(Paths.get(this.fileName), StandardOpenOption.CREATE, 
+                        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                    ByteBuffer header = ByteBuffer.allocate(12);
+                    header.putInt(MAGIC).putInt(VERSION).putInt(this.n).flip();
+                    Dictionary.write(channel, header);
+                    for(File column : this.columns) {
+                        try (FileChannel in = FileChannel.open(column.toPath(), StandardOpenOption.READ)) {
+                            long position = 0;
+                            long size = in.size();
+                            while(position < size) position += in.transferTo(position, size-position, channel);
+                        }
+                    }
+                }
+            }
+            finally {
+                this.delete();
+            }
+        }
+
+        private void delete() {
+            for(int i=0; i<this.columns.length; i++) {
+                try {
+                    if(this.streams[i] != null) this.streams[i].close();
+                }
+                catch(IOException e) {
+                }
+                if(this.columns[i] != null) this.columns[i].delete();
+            }
+        }
+    }
+    
+    private static class TextRoadReader implements RoadReader {
+        
+        private final BufferedReader reader;
+        
+        TextRoadReader(String fileName) throws FileNotFoundException {
+            this.reader = new BufferedReader(new FileReader(new File(fileName)));
+        }
+
+        @Override
+        public Road next() throws IOException {
+            String line = this.reader.readLine();
+            return line == null ? null : new Road(line);
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.reader.close();
+        }
+    }
+    
+    /**
+     * Reads the columns of a binary file in parallel, each through its own
+     * buffered stream positioned at the column start, so roads are returned
+     * one by one without loading the file in memory
+     */
+    private static class BinaryRoadReader implements RoadReader {
+        
+        private static final int BUFFERSIZE = 1<<16;
+
+        private final int n;
+        private final DataInputStream[] columns = new DataInputStream[NFLOATS+2];
+        private final byte[] components = new byte[Road.NCOMPONENTS];
+        private final float[] values = new float[NFLOATS];
+        private int next = 0;
+        
+        BinaryRoadReader(String fileName) throws IOException {
+            try (DataInputStream in = new DataInputStream(new FileInputStream(fileName))) {
+                if(in.readInt() != MAGIC) throw new IOException("not a binary dictionary: " + fileName);
+                int version = in.readInt();
+                if(version != VERSION) throw new IOException("unsupported binary dictionary version " + version);
+                this.n = in.readInt();
+            }
+            long length = new File(fileName).length();
+            long expected = 12 + (long) this.n*(Road.NCOMPONENTS + 1 + 4*NFLOATS);
+            if(this.n < 0 || length < expected) throw new EOFException("truncated binary dictionary: " + fileName);
+            long offset = 12;
+            try {
+                for(int i=0; i<this.columns.length; i++) {
+                    FileInputStream column = new FileInputStream(fileName);
+                    this.columns[i] = new DataInputStream(new BufferedInputStream(column, BUFFERSIZE));
+                    column.getChannel().position(offset);
+                    offset += (long) this.n * (i==0 ? Road.NCOMPONENTS : i==1 ? 1 : 4);
+                }
+            }
+            catch(IOException e) {
+                this.close();
+                throw e;
+            }
+        }
+
+        @Override
+        public Road next() throws IOException {
+            if(this.next >= this.n) return null;
+            this.columns[0].readFully(this.components);
+            byte charge = this.columns[1].readByte();
+            for(int i=0; i<NFLOATS; i++) this.values[i] = this.columns[2+i].readFloat();
+            Road road = new Road(this.components, 0, getParticle(charge, this.values));
+            this.next++;
+            return road;
+        }
+
+        @Override
+        public void close() throws IOException {
+            for(DataInputStream column : this.columns) {
+                if(column != null) column.close();
+            }
+        }
+    }
+    
+    /**
+     * Convert dictionaries between text and binary formats
+     * @param args 
+     */
+    public static void main(String[] args) {
+        
+        DefaultLogger.debug();
+
+        OptionParser parser = new OptionParser("dict-converter");
+        parser.addRequired("-i", "input dictionary file, text or binary");
+        parser.addRequired("-o", "output dictionary file, binary if the name ends with " + BINARY_EXTENSION + ", else text");
+        parser.parse(args);
+        
+        Dictionary dictionary = new Dictionary();
+        dictionary.addDictionary(parser.getOption("-i").stringValue(), -1);
+        dictionary.writeDictionary(parser.getOption("-o").stringValue());
+    }
     
     public static enum TestMode {
             
@@ -1,10 +1,8 @@
 package org.jlab.analysis.roads;
 
-import java.io.BufferedWriter;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.List;
+import org.jlab.analysis.roads.Dictionary.TestMode;
 import org.jlab.io.base.DataEvent;
 import org.jlab.io.hipo.HipoDataSource;
 import org.jlab.logging.DefaultLogger;
@@ -14,13 +12,13 @@ import org.jlab.utils.options.OptionParser;
 
 public class DictionaryCreator {
 
-    private Dictionary   dictionary = new Dictionary();
+    private RoadKeys     keys = new RoadKeys();
     
     
     /**
-     * create dictionary from event file
+     * create dictionary from event file, writing each new road as it is found
      * @param inputFileName: input hipo file name
-     * @param dictName: output dictionary file name
+     * @param dictName: output dictionary file name, binary if ending with {@link Dictionary#BINARY_EXTENSION}
      * @param maxEvents: maximum number of events to process
      * @param pidSelect: PID for track selection
      * @param chargeSelect: charge for track selection
@@ -39,9 +37,8 @@ public class DictionaryCreator {
         
         ProgressPrintout progress = new ProgressPrintout();
         
-        try {
-            FileWriter writer = new FileWriter(dictName, false);
-            BufferedWriter bufferedWriter = new BufferedWriter(writer);
+        byte[] key = new byte[Road.KEYSIZE];
+        try (Dictionary.RoadWriter writer = Dictionary.openWriter(dictName)) {
  
             int nEvents = -1;
             while(reader.hasEvent() == true && nEvents<maxEvents) {
@@ -51,16 +48,14 @@ public class DictionaryCreator {
 
                 ArrayList<Road> roads = Road.getRoads(event, chargeSelect, pidSelect, thrs, vzmin, vzmax);
                 for(Road road : roads) {
-                    if(!dictionary.containsKey(road.getKey()))  {
-                        dictionary.put(road.getKey(), road.getParticle());
-                        bufferedWriter.write(road.toString());
-                        bufferedWriter.newLine();            
+                    road.getKey(TestMode.DCFTOFPCALUVWHTCC, key);
+                    if(keys.add(key))  {
+                        writer.write(road);
                     }
                 }
-                progress.setAsInteger("roads", dictionary.size());
+                progress.setAsInteger("roads", keys.size());
                 progress.updateStatus();
             }
-            bufferedWriter.close();
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -74,7 +69,7 @@ public class DictionaryCreator {
 
         OptionParser parser = new OptionParser("dict-maker");
         parser.setRequiresInputList(false);
-        parser.addRequired("-o"      , "dictionary file name");
+        parser.addRequired("-o"      , "dictionary file name, binary if ending with " + Dictionary.BINARY_EXTENSION);
         parser.addRequired("-i"      , "event file");
         parser.addOption("-pid"      , "0", "select particle PID for new dictionary, 0: no selection,");
         parser.addOption("-charge"   , "0", "select particle charge for new dictionary, 0: no selection");
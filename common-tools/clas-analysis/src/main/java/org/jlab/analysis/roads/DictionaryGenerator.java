@@ -4,9 +4,15 @@ import eu.mihosoft.vrl.v3d.Vector3d;
 import java.io.BufferedWriter;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
-import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import org.apache.commons.math3.util.FastMath;
+import org.jlab.analysis.roads.Dictionary.TestMode;
 import org.jlab.clas.physics.Particle;
 import org.jlab.clas.swimtools.MagFieldsEngine;
 import org.jlab.clas.swimtools.Swim;
@@ -20,6 +26,7 @@ import org.jlab.detector.hits.FTOFDetHit;
 import org.jlab.geom.DetectorHit;
 import org.jlab.geom.base.ConstantProvider;
 import org.jlab.geom.base.Detector;
+import org.jlab.geom.detector.ec.ECFactory;
 import org.jlab.geom.prim.Line3D;
 import org.jlab.geom.prim.Path3D;
 import org.jlab.geom.prim.Point3D;
@@ -43,11 +50,15 @@ import org.jlab.utils.options.OptionParser;
  */
 public class DictionaryGenerator {
     
-    private DCGeant4Factory   dcDetector   = null;
-    private FTOFGeant4Factory ftofDetector = null;
-    private Detector          ecalDetector = null;
+    private ConstantProvider  providerDC   = null;
+    private ConstantProvider  providerFTOF = null;
+    private ConstantProvider  providerECAL = null;
     private MagFieldsEngine   magfield     = null;
-    private Random rand = null;
+    
+    /**
+     * number of tracks generated per task
+     */
+    public static final int CHUNKSIZE = 10000;
     
     private String  variation = "default";
     private int     run = 11;
@@ -85,6 +96,19 @@ public class DictionaryGenerator {
     }
     
     public void generate(int n) {
+        this.generate(n, 1);
+    }
+    
+    /**
+     * Generate roads on a fork-join pool: tracks are generated in fixed-size
+     * chunks, each with its own random stream derived from the seed and the
+     * chunk index, and merged into the output in chunk order.  The output
+     * therefore depends only on the seed and not on the number of threads.
+     * Each thread uses its own swimmer and its own {@link Geometry}.
+     * @param n number of tracks
+     * @param threads number of threads
+     */
+    public void generate(int n, int threads) {
         String filename = "Dictionary" 
                + "_seed:"  + randomSeed
                + "_n:"     + n
@@ -99,63 +123,109 @@ public class DictionaryGenerator {
                + "_r:"     + vr
                + "_dup:"   + duplicates
                + ".txt";
+        this.generate(n, threads, filename);
+    }
+
+    /**
+     * @param n number of tracks
+     * @param threads number of threads
+     * @param filename output dictionary file
+     */
+    void generate(int n, int threads, String filename) {
     
-        Swim swim = new Swim();
-        Dictionary dictionary = new Dictionary();
+        RoadKeys keys = new RoadKeys();
+        byte[] key = new byte[Road.KEYSIZE];
         
-        try {
-            FileWriter writer = new FileWriter(filename, false);
-            BufferedWriter bufferedWriter = new BufferedWriter(writer);
+        ThreadLocal<Swim> swims = ThreadLocal.withInitial(Swim::new);
+        ThreadLocal<Geometry> geometries = ThreadLocal.withInitial(() -> new Geometry(providerDC, providerFTOF, providerECAL));
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, threads));
+        Deque<ForkJoinTask<List<Road>>> tasks = new ArrayDeque<>();
+        int nChunks = (n + CHUNKSIZE - 1) / CHUNKSIZE;
+        int window  = 2 * pool.getParallelism();
+        
+        try (BufferedWriter bufferedWriter = new BufferedWriter(new FileWriter(filename, false))) {
  
-            double invP     =1;
-            double phiDeg   =1;
-            double thetaDeg =1;
-            double vxCm     =0;
-            double vyCm     =0;
-            double vzCm     =0;
-
             ProgressPrintout progress = new ProgressPrintout();
 
-            for (int i = 0; i < n; i++) {
+            int next = 0;
+            int done = 0;
+            while (next < nChunks || !tasks.isEmpty()) {
                 
-                // generate kinematics
-                invP     = this.randomDouble(1./pMax, 1./pMin);
-                phiDeg   = this.randomDouble(phiMin, phiMax);
-                thetaDeg = this.randomDouble(thMin, thMax);
-                vzCm     = this.randomDouble(vzMin, vzMax);
-                if(vr>0) {
-                    double r   = vr*Math.sqrt(this.randomDouble(0, 1));
-                    double phi = this.randomDouble(-Math.PI, Math.PI);
-                    vxCm = r*Math.cos(phi);
-                    vyCm = r*Math.sin(phi);
+                // keep a bounded number of chunks in flight
+                while (next < nChunks && tasks.size() < window) {
+                    final int chunk = next++;
+                    final int size  = Math.min(CHUNKSIZE, n - chunk*CHUNKSIZE);
+                    tasks.add(pool.submit(() -> this.generate(chunk, size, swims.get(), geometries.get())));
                 }
-                double p = 1. / invP;
-
-                Road road = this.getRoad(charge, p, thetaDeg, phiDeg, vxCm, vyCm, vzCm, swim);
-
-                if(road != null) {
-                    if(dictionary.containsKey(road.getKey()) && duplicates)  {
-                        dictionary.replace(road.getKey(), road.getParticle());
-                           // System.out.println(" Number of duplicate roads "+nRoad+" p "+p+" theta "+thetaDeg+" phi "+phiDeg+" vz "+vzCm);
-                    }
-                    else {
-                        dictionary.put(road.getKey(), road.getParticle());
-
+                
+                // merge in chunk order, for reproducible output
+                List<Road> roads = tasks.poll().join();
+                for (Road road : roads) {
+                    road.getKey(TestMode.DCFTOFPCALUVWHTCC, key);
+                    if(keys.add(key) || !duplicates) {
                         bufferedWriter.write(road.toString());
                         bufferedWriter.newLine();
                     }
                 }
-                progress.setAsInteger("roads", dictionary.size());
-                progress.updateStatus();
+                progress.setAsInteger("roads", keys.size());
+                for (int i = 0; i < Math.min(CHUNKSIZE, n - done*CHUNKSIZE); i++) progress.updateStatus();
+                done++;
             }
             progress.showStatus();
-            bufferedWriter.close();
         } catch (IOException e) {
             e.printStackTrace();
+        } finally {
+            pool.shutdownNow();
         }
     }
 
-    private Road getRoad(int charge, double p, double theta, double phi, double vx, double vy, double vz, Swim swim) {
+    /**
+     * Generate one chunk of tracks, removing duplicates within the chunk if
+     * requested so only new candidates are passed on to the global dictionary.
+     * @param chunk chunk index, determining the random stream
+     * @param n number of tracks
+     * @param swim swimmer owned by the calling thread
+     * @param geometry geometry owned by the calling thread
+     * @return the valid roads, in generation order
+     */
+    private List<Road> generate(int chunk, int n, Swim swim, Geometry geometry) {
+        
+        SplittableRandom rand = new SplittableRandom(randomSeed ^ (chunk * 0x9E3779B97F4A7C15L));
+        RoadKeys found = duplicates ? new RoadKeys() : null;
+        byte[] key = new byte[Road.KEYSIZE];
+        List<Road> roads = new ArrayList<>();
+        
+        double vxCm = 0;
+        double vyCm = 0;
+
+        for (int i = 0; i < n; i++) {
+
+            // generate kinematics
+            double invP     = this.randomDouble(rand, 1./pMax, 1./pMin);
+            double phiDeg   = this.randomDouble(rand, phiMin, phiMax);
+            double thetaDeg = this.randomDouble(rand, thMin, thMax);
+            double vzCm     = this.randomDouble(rand, vzMin, vzMax);
+            if(vr>0) {
+                double r   = vr*Math.sqrt(this.randomDouble(rand, 0, 1));
+                double phi = this.randomDouble(rand, -Math.PI, Math.PI);
+                vxCm = r*Math.cos(phi);
+                vyCm = r*Math.sin(phi);
+            }
+            double p = 1. / invP;
+
+            Road road = this.getRoad(charge, p, thetaDeg, phiDeg, vxCm, vyCm, vzCm, swim, geometry);
+
+            if(road == null) continue;
+            if(found != null) {
+                road.getKey(TestMode.DCFTOFPCALUVWHTCC, key);
+                if(!found.add(key)) continue;
+            }
+            roads.add(road);
+        }
+        return roads;
+    }
+
+    private Road getRoad(int charge, double p, double theta, double phi, double vx, double vy, double vz, Swim swim, Geometry geometry) {
         
         Road road = new Road();
                         
@@ -176,21 +246,32 @@ public class DictionaryGenerator {
         Point3D rotatedP = this.rotateToTiltedCoordSys(sector, new Point3D(swimVal[3], swimVal[4], swimVal[5]));
         Point3D rotatedX = this.rotateToTiltedCoordSys(sector, new Point3D(swimVal[0], swimVal[1], swimVal[2]));
 
+        // swim from the same start to the 36 DC layers, FTOF and ECAL at once
+        double[] zPlanes = new double[36+2];
+        for (int isl = 0; isl < 6; isl++) {
+            for (int il = 0; il < 6; il++) {
+                zPlanes[isl*6+il] = geometry.dcDetector.getWireMidpoint(sector-1, isl, il, 0).z;
+            }
+        }
+        zPlanes[36] = 668.1;
+        zPlanes[37] = 800.0;
+        swim.SetSwimParameters(rotatedX.x(), rotatedX.y(), rotatedX.z(), rotatedP.x(), rotatedP.y(), rotatedP.z(), charge);
+        double[][] trks = swim.SwimToPlanesTiltSecSys(sector, zPlanes);
+
         for (int isl = 0; isl < 6; isl++) {
             for (int il = 0; il < 6; il++) {
-                swim.SetSwimParameters(rotatedX.x(), rotatedX.y(), rotatedX.z(), rotatedP.x(), rotatedP.y(), rotatedP.z(), charge);
-                int wire = this.swimtoLayer(sector, il, isl, swim); 
+                int wire = this.swimtoLayer(sector, il, isl, trks[isl*6+il], geometry.dcDetector); 
                 road.setWire(isl*6+il+1, (byte) wire);
             }
         }
 
-        double[] trkTOF  = swim.SwimToPlaneTiltSecSys(sector, 668.1);
-        double[] trkECAL = swim.SwimToPlaneTiltSecSys(sector, 800.0);
+        double[] trkTOF  = trks[36];
+        double[] trkECAL = trks[37];
         Vector3d ftof  = rotateToSectorCoordSys(trkTOF[0],trkTOF[1],trkTOF[2]);
         Vector3d ecal  = rotateToSectorCoordSys(trkECAL[0], trkECAL[1], trkECAL[2]);
 
         Line3d trkLine = new Line3d(ftof,ecal);
-        List<DetHit> ftofHits  = ftofDetector.getIntersections(trkLine);
+        List<DetHit> ftofHits  = geometry.ftofDetector.getIntersections(trkLine);
         if (ftofHits != null && !ftofHits.isEmpty()) {
             for (DetHit hit : ftofHits) {
                 FTOFDetHit fhit = new FTOFDetHit(hit);
@@ -199,7 +280,7 @@ public class DictionaryGenerator {
         }
 
         Path3D path = new Path3D(new Point3D(ftof.x, ftof.y, ftof.z), new Point3D(ecal.x,ecal.y,ecal.z));
-        List<DetectorHit> ecalHits = ecalDetector.getHits(path);
+        List<DetectorHit> ecalHits = geometry.ecalDetector.getHits(path);
 
         int pcalU=0; int pcalV=0; int pcalW=0;
         if (ecalHits != null && !ecalHits.isEmpty()) {
@@ -224,13 +305,11 @@ public class DictionaryGenerator {
     private void init(String variation, double torusScale, double solenoidScale, long seed, int duplicates){
         
         this.variation = variation;
-        ConstantProvider providerDC = GeometryFactory.getConstants(DetectorType.DC, run, variation);
-        dcDetector = new DCGeant4Factory(providerDC, true, true);
+        providerDC = GeometryFactory.getConstants(DetectorType.DC, run, variation);
         ConstantProvider providerMAGNETS = GeometryFactory.getConstants(DetectorType.MAGNETS, run, variation);
         solShift = providerMAGNETS.getDouble("/geometry/shifts/solenoid/z",0);
-        ConstantProvider providerFTOF = GeometryFactory.getConstants(DetectorType.FTOF, run, variation);
-        ftofDetector = new FTOFGeant4Factory(providerFTOF);        
-        ecalDetector =  GeometryFactory.getDetector(DetectorType.ECAL, run, variation);
+        providerFTOF = GeometryFactory.getConstants(DetectorType.FTOF, run, variation);
+        providerECAL = GeometryFactory.getConstants(DetectorType.ECAL, run, variation);
 
         torus    = torusScale;
         solenoid = solenoidScale;
@@ -239,8 +318,6 @@ public class DictionaryGenerator {
         Swimmer.setMagneticFieldsScales(solenoid, torus, solShift);
 
         randomSeed = seed;
-        rand = new Random();
-        rand.setSeed(seed);
         
         if(duplicates>0) this.duplicates = true;
     }
@@ -260,7 +337,7 @@ public class DictionaryGenerator {
         +"\n Duplicates:\t"    + duplicates);
     }
     
-    private double randomDouble(double min, double max) {
+    private double randomDouble(SplittableRandom rand, double min, double max) {
         if (min >= max) {
             throw new IllegalArgumentException("max must be greater than min");
         }
@@ -305,10 +382,8 @@ public class DictionaryGenerator {
         return sector;
     }    
     
-    private int swimtoLayer(int sector, int l, int sl, Swim sw) {
+    private int swimtoLayer(int sector, int l, int sl, double[] traj, DCGeant4Factory dcDetector) {
         int wire = 0;
-        
-        double[] traj = sw.SwimToPlaneTiltSecSys(sector, dcDetector.getWireMidpoint(sector-1, sl, l, 0).z); 
        
         double wMax = Math.abs(dcDetector.getWireMidpoint(sector-1, sl, 0, 0).x
                              - dcDetector.getWireMidpoint(sector-1, sl, 0, 1).x) / 2.;
@@ -336,6 +411,23 @@ public class DictionaryGenerator {
         return wire;
     }
 
+    /**
+     * Detector geometries used to find the road components.  The geometry
+     * factories are not written to be shared between threads, so each
+     * worker builds its own copy from the read-only constant providers.
+     */
+    private static class Geometry {
+        
+        private final DCGeant4Factory   dcDetector;
+        private final FTOFGeant4Factory ftofDetector;
+        private final Detector          ecalDetector;
+        
+        Geometry(ConstantProvider providerDC, ConstantProvider providerFTOF, ConstantProvider providerECAL) {
+            this.dcDetector   = new DCGeant4Factory(providerDC, true, true);
+            this.ftofDetector = new FTOFGeant4Factory(providerFTOF);
+            this.ecalDetector = new ECFactory().createDetectorCLAS(providerECAL);
+        }
+    }
     
     public static void main(String[] args) {
 
@@ -359,6 +451,7 @@ public class DictionaryGenerator {
         parser.addOption("-vzmax",      "5.0",     "maximum vertex z coordinate in cm");
         parser.addOption("-vr",         "0.0",     "raster radius in cm");
         parser.addOption("-duplicates", "0",       "remove duplicates (1=on, 0=off)");
+        parser.addOption("-threads",    "1",       "number of threads");
         parser.parse(args);
         
         
@@ -378,12 +471,13 @@ public class DictionaryGenerator {
         int    duplicates = parser.getOption("-duplicates").intValue();
         String var = parser.getOption("-variation").stringValue();
         int    n = parser.getOption("-n").intValue();
+        int    threads = parser.getOption("-threads").intValue();
         
         DictionaryGenerator maker = new DictionaryGenerator(var,torus,solenoid,seed, duplicates);
         
         maker.configure(charge, pMin, pMax, thMin, thMax, phiMin, phiMax, vzMin, vzMax, vr);
             
-        maker.generate(n);
+        maker.generate(n, threads);
     }
     
     
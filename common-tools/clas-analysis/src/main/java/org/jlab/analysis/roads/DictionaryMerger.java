@@ -1,12 +1,8 @@
 package org.jlab.analysis.roads;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.util.List;
+import org.jlab.analysis.roads.Dictionary.TestMode;
 import org.jlab.logging.DefaultLogger;
 import org.jlab.utils.benchmark.ProgressPrintout;
 import org.jlab.utils.options.OptionParser;
@@ -17,14 +13,14 @@ import org.jlab.utils.options.OptionParser;
  */
 public class DictionaryMerger {
 
-    private Dictionary dictionary = null;            
+    private RoadKeys keys = null;            
     
     public DictionaryMerger(){
 
     }
 
     public boolean init() {
-        this.dictionary = new Dictionary();
+        this.keys = new RoadKeys();
         return true;
     }
     
@@ -34,7 +30,7 @@ public class DictionaryMerger {
         DefaultLogger.debug();
 
         OptionParser parser = new OptionParser("dict-merger");
-        parser.addOption("-o","output.txt", "output dictionary file");
+        parser.addOption("-o","output.txt", "output dictionary file, binary if ending with " + Dictionary.BINARY_EXTENSION);
         parser.parse(args);
         
         List<String> inputList = parser.getInputList();
@@ -55,41 +51,34 @@ public class DictionaryMerger {
             ProgressPrintout progress = new ProgressPrintout();
             int nDupli = 0;
             int nRoads = 0;
-            try {
-                FileWriter writer = new FileWriter(outputFile, false);
-                BufferedWriter bufferedWriter = new BufferedWriter(writer);
+            byte[] key = new byte[Road.KEYSIZE];
+            try (Dictionary.RoadWriter writer = Dictionary.openWriter(outputFile)) {
                 
                 for(String inputFile : inputList) {
         
-                    BufferedReader txtreader = new BufferedReader(new FileReader(inputFile));
+                    try (Dictionary.RoadReader reader = Dictionary.openReader(inputFile)) {
 
-                    String line = null;
-                    while ((line = txtreader.readLine()) != null) {
-                        nRoads++;
-                        Road road = new Road(line);
-                        
-                        if(merger.dictionary.containsKey(road.getKey())) {
-                            nDupli++;
-                            if(nDupli<10) System.out.println("WARNING: found duplicate road");
-                            else if(nDupli==10) System.out.println("WARNING: reached maximum number of warnings, switching to silent mode");
-                        }
-                        else {
-                            merger.dictionary.put(road.getKey(), road.getParticle());
-                            bufferedWriter.write(road.toString());
-                            bufferedWriter.newLine();
+                        Road road = null;
+                        while ((road = reader.next()) != null) {
+                            nRoads++;
+                            road.getKey(TestMode.DCFTOFPCALUVWHTCC, key);
+
+                            if(!merger.keys.add(key)) {
+                                nDupli++;
+                                if(nDupli<10) System.out.println("WARNING: found duplicate road");
+                                else if(nDupli==10) System.out.println("WARNING: reached maximum number of warnings, switching to silent mode");
+                            }
+                            else {
+                                writer.write(road);
+                            }
+                            progress.setAsInteger("duplicates", nDupli);
+                            progress.setAsInteger("good", merger.keys.size());
+                            progress.setAsInteger("roads", nRoads);
+                            progress.updateStatus();
                         }
-                        progress.setAsInteger("duplicates", nDupli);
-                        progress.setAsInteger("good", merger.dictionary.size());
-                        progress.setAsInteger("roads", nRoads);
-                        progress.updateStatus();
                     }
-                    txtreader.close();
                 }
                 progress.showStatus();
-                bufferedWriter.close();
-            } 
-            catch (FileNotFoundException e) {
-                e.printStackTrace();
             } 
             catch (IOException e) {
                 e.printStackTrace();
@@ -230,8 +230,8 @@ public class DictionaryValidator {
     }
     
     public void plotRoads() {
-        for(ArrayList<Byte> key : this.dictionary.keySet()) {
-            Road road = this.dictionary.getRoad(key);
+        for(int row=0; row<this.dictionary.size(); row++) {
+            Road road = this.dictionary.getRoad(this.dictionary.getKey(row));
             int icharge = 0;
             if(road.getParticle().charge()>0) icharge = 1;
             this.fillHistos("Dictionary", charges[icharge], road);
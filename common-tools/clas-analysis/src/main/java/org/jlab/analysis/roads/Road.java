@@ -16,6 +16,11 @@ import org.jlab.io.base.DataEvent;
 public class Road {
     
     public final int length = 51;
+    
+    /** number of detector components stored per road, see {@link #getComponents} */
+    public static final int NCOMPONENTS = 43;
+    /** number of bytes in a road key */
+    public static final int KEYSIZE = 13;
     private byte     sector = 0;
     private final byte[]   dcWires     = new byte[36];
     private final byte[]   ftofPaddles = new byte[3];
@@ -69,6 +74,18 @@ public class Road {
         if(!this.isValid()) this.init();
     }
 
+    /**
+     * Create a road from its detector components, as stored in binary
+     * dictionaries.
+     * @param components array of components
+     * @param offset offset of this road's first component
+     * @param particle road particle
+     */
+    public Road(byte[] components, int offset, Particle particle) {
+        this.particle = particle;
+        this.setComponents(components, offset);
+    }
+
     public final void init() {
         this.particle = new Particle();
         for(int i=0; i<36; i++) this.dcWires[i] = 0;
@@ -617,35 +634,87 @@ public class Road {
     }
     
     public ArrayList<Byte> getKey(TestMode mode) {
-        ArrayList<Byte> road = new ArrayList<>();
-        for(int i=0; i<13; i++) {
-            road.add((byte) 0);
+        byte[] key = new byte[KEYSIZE];
+        this.getKey(mode, key);
+        ArrayList<Byte> road = new ArrayList<>(KEYSIZE);
+        for(int i=0; i<KEYSIZE; i++) {
+            road.add(key[i]);
+        }
+        return road;
+    }
+    
+    /**
+     * Fill the road key without allocating
+     * @param mode test mode
+     * @param road array of length KEYSIZE to fill
+     */
+    public void getKey(TestMode mode, byte[] road) {
+        for(int i=0; i<KEYSIZE; i++) {
+            road[i] = 0;
         }
 
         for(int isl=0; isl<6; isl++) {
             for(int il=0; il<6; il++) {
                 int layer = isl*6+il+1;
                 if(this.dcWires[layer-1] != 0) {
-                    road.set(isl, this.getWire(layer));
+                    road[isl] = this.getWire(layer);
                     break;
                 }
             }
         }
 
         if(mode.contains(TestMode.DCPCALU)) {
-            road.set(8, this.getStrip(1));
+            road[8] = this.getStrip(1);
             if(mode.contains(TestMode.DCFTOFPCALU)) {
-                road.set(6, this.getPaddle(2));
+                road[6] = this.getPaddle(2);
                 if(mode.contains(TestMode.DCFTOFPCALUVW)) {
-                    road.set(9,  this.getStrip(2));
-                    road.set(10, this.getStrip(3));
+                    road[9]  = this.getStrip(2);
+                    road[10] = this.getStrip(3);
                     if(mode.contains(TestMode.DCFTOFPCALUVWHTCC))
-                        road.set(11, this.htccMask);
+                        road[11] = this.htccMask;
                 }
             }
         }
-        road.set(12, this.getSector());
-        return road;
+        road[12] = this.getSector();
+    }
+    
+    /**
+     * Copy the unbinned detector components, in the order they appear in 
+     * text dictionaries: 36 DC wires, FTOF 1B and 2 paddles, PCAL U, V, W 
+     * strips, HTCC mask, sector
+     * @param components destination array
+     * @param offset offset of the first component
+     */
+    public void getComponents(byte[] components, int offset) {
+        System.arraycopy(this.dcWires, 0, components, offset, 36);
+        components[offset+36] = this.ftofPaddles[1];
+        components[offset+37] = this.ftofPaddles[2];
+        System.arraycopy(this.ecalStrips, 0, components, offset+38, 3);
+        components[offset+41] = this.htccMask;
+        components[offset+42] = this.sector;
+    }
+    
+    /**
+     * Set the detector components, see {@link #getComponents}.  As for roads
+     * read from text, the road is reset if the components do not make a
+     * valid road, see {@link #isValid()}.
+     * @param components source array
+     * @param offset offset of the first component
+     * @return true if the road is valid
+     */
+    public final boolean setComponents(byte[] components, int offset) {
+        System.arraycopy(components, offset, this.dcWires, 0, 36);
+        this.ftofPaddles[0] = 0;
+        this.ftofPaddles[1] = components[offset+36];
+        this.ftofPaddles[2] = components[offset+37];
+        System.arraycopy(components, offset+38, this.ecalStrips, 0, 3);
+        this.htccMask = components[offset+41];
+        this.sector   = components[offset+42];
+        if(!this.isValid()) {
+            this.init();
+            return false;
+        }
+        return true;
     }
     
     public List<ArrayList<Byte>> getKeys(TestMode mode, int width) {
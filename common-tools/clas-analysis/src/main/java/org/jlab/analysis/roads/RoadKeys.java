@@ -0,0 +1,126 @@
+package org.jlab.analysis.roads;
+
+import java.util.Arrays;
+
+/**
+ * Set of road keys, numbered in insertion order.  Each key is packed into
+ * two longs and looked up in an open-addressing hash table, so the set
+ * takes about 32 bytes per road.  It is used by {@link Dictionary} as its
+ * index, and on its own to remove duplicates when roads are streamed to a
+ * file without keeping them in memory.
+ */
+public class RoadKeys {
+
+    static final int EMPTY = -1;
+
+    private long[] keys  = new long[0];
+    private int[]  slots = new int[0];
+    private int    slotMask = 0;
+    private int    size = 0;
+
+    public RoadKeys() {
+        this(1024);
+    }
+
+    /**
+     * @param capacity initial number of keys
+     */
+    public RoadKeys(int capacity) {
+        this.grow(Math.max(1, capacity));
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public void clear() {
+        this.size = 0;
+        Arrays.fill(this.slots, EMPTY);
+    }
+
+    private void grow(int capacity) {
+        this.keys = Arrays.copyOf(this.keys, 2*capacity);
+        this.slots = new int[Integer.highestOneBit(2*capacity-1)<<1];
+        this.slotMask = this.slots.length-1;
+        Arrays.fill(this.slots, EMPTY);
+        for(int row=0; row<this.size; row++) {
+            int slot = this.slot(this.keys[2*row], this.keys[2*row+1]);
+            while(this.slots[slot] != EMPTY) slot = (slot+1) & this.slotMask;
+            this.slots[slot] = row;
+        }
+    }
+
+    private int slot(long k0, long k1) {
+        long h = (k0 ^ (k1 * 0x9E3779B97F4A7C15L)) * 0xC2B2AE3D27D4EB4FL;
+        return (int) (h ^ (h >>> 32)) & this.slotMask;
+    }
+
+    /**
+     * @param key road key, see {@link Road#getKey(Dictionary.TestMode, byte[])}
+     * @param from first byte
+     * @param to last byte, excluded
+     * @return the bytes packed into a long, first byte most significant
+     */
+    static long pack(byte[] key, int from, int to) {
+        long word = 0;
+        for(int i=from; i<to; i++) word = (word << 8) | (key[i] & 0xFF);
+        return word;
+    }
+
+    /**
+     * @param k0 first 8 bytes of the key, see {@link #pack}
+     * @param k1 remaining bytes of the key
+     * @return the key number, or -1 if not found
+     */
+    public int find(long k0, long k1) {
+        int slot = this.slot(k0, k1);
+        while(true) {
+            int row = this.slots[slot];
+            if(row == EMPTY || (this.keys[2*row] == k0 && this.keys[2*row+1] == k1)) return row;
+            slot = (slot+1) & this.slotMask;
+        }
+    }
+
+    /**
+     * @param key road key, {@link Road#KEYSIZE} bytes
+     * @return the key number, or -1 if not found
+     */
+    public int find(byte[] key) {
+        return this.find(pack(key, 0, 8), pack(key, 8, Road.KEYSIZE));
+    }
+
+    /**
+     * Add a key if not already present
+     * @param k0 first 8 bytes of the key, see {@link #pack}
+     * @param k1 remaining bytes of the key
+     * @return the number of the new key, or -1 if it was already present
+     */
+    public int add(long k0, long k1) {
+        if(this.find(k0, k1) != EMPTY) return EMPTY;
+        if(2*this.size == this.keys.length) this.grow(2*this.size);
+        int row = this.size++;
+        this.keys[2*row]   = k0;
+        this.keys[2*row+1] = k1;
+        int slot = this.slot(k0, k1);
+        while(this.slots[slot] != EMPTY) slot = (slot+1) & this.slotMask;
+        this.slots[slot] = row;
+        return row;
+    }
+
+    /**
+     * @param key road key, {@link Road#KEYSIZE} bytes
+     * @return true if the key was added, false if it was already present
+     */
+    public boolean add(byte[] key) {
+        return this.add(pack(key, 0, 8), pack(key, 8, Road.KEYSIZE)) != EMPTY;
+    }
+
+    /**
+     * @param row key number
+     * @param key destination for the {@link Road#KEYSIZE} key bytes
+     */
+    public void get(int row, byte[] key) {
+        for(int i=0; i<8; i++) key[i] = (byte) (this.keys[2*row] >>> (56-8*i));
+        for(int i=8; i<Road.KEYSIZE; i++) key[i] = (byte) (this.keys[2*row+1] >>> (8*(Road.KEYSIZE-1-i)));
+    }
+}
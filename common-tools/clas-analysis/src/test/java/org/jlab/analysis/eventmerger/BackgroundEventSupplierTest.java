@@ -0,0 +1,30 @@
+package org.jlab.analysis.eventmerger;
+
+import java.util.Collections;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class BackgroundEventSupplierTest {
+
+    @Test
+    public void testMode() {
+        assertEquals(BackgroundEventSupplier.Mode.RANDOM, BackgroundEventSupplier.getMode("random"));
+        assertEquals(BackgroundEventSupplier.Mode.RANDOM, BackgroundEventSupplier.getMode(" Random "));
+        assertEquals(BackgroundEventSupplier.Mode.SEQUENTIAL, BackgroundEventSupplier.getMode("SEQUENTIAL"));
+        // invalid values fall back to sequential:
+        assertEquals(BackgroundEventSupplier.Mode.SEQUENTIAL, BackgroundEventSupplier.getMode("randum"));
+        assertEquals(BackgroundEventSupplier.Mode.SEQUENTIAL, BackgroundEventSupplier.getMode(""));
+        assertEquals(BackgroundEventSupplier.Mode.SEQUENTIAL, BackgroundEventSupplier.getMode(null));
+    }
+
+    @Test(timeout = 10000)
+    public void testExhausted() {
+        // the reader finds no events, callers stop waiting once it is done:
+        BackgroundEventSupplier supplier = new BackgroundEventSupplier(Collections.<String>emptyList(), false);
+        assertNull(supplier.get(1));
+        assertNull(supplier.get(2));
+        supplier.close();
+        assertNull(supplier.get(1));
+    }
+}
@@ -0,0 +1,52 @@
+package org.jlab.analysis.roads;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+import cnuphys.magfield.MagneticFields;
+import org.jlab.utils.CLASResources;
+
+/**
+ * The roads generated for a given seed must not depend on the number of
+ * threads.
+ */
+public class DictionaryGeneratorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private List<String> generate(DictionaryGenerator generator, int n, int threads) throws IOException {
+        File file = new File(folder.getRoot(), "roads_" + threads + ".txt");
+        generator.generate(n, threads, file.getPath());
+        return Files.readAllLines(file.toPath());
+    }
+
+    @Test
+    public void testThreads() throws IOException {
+        System.setProperty("CLAS12DIR", "../../");
+        String mapDir = CLASResources.getResourcePath("etc")+"/data/magfield";
+        MagneticFields.getInstance().initializeMagneticFields(mapDir,
+                "Symm_torus_r2501_phi16_z251_24Apr2018.dat","Symm_solenoid_r601_phi1_z1201_13June2018.dat");
+
+        DictionaryGenerator generator = new DictionaryGenerator("default", -1, -1, 7, 1);
+        generator.configure(-1, 1, 10, 5, 35, -30, 30, -5, 5, 0);
+
+        // more than one chunk, the last one incomplete:
+        int n = DictionaryGenerator.CHUNKSIZE + DictionaryGenerator.CHUNKSIZE/5;
+        List<String> serial = generate(generator, n, 1);
+        assertFalse(serial.isEmpty());
+        assertEquals(serial, generate(generator, n, 3));
+
+        // without duplicates across chunks:
+        Dictionary dictionary = new Dictionary();
+        dictionary.addDictionary(new File(folder.getRoot(), "roads_1.txt").getPath(), -1);
+        assertEquals(serial.size(), dictionary.size());
+    }
+}
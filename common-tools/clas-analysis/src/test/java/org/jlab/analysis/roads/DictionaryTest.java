@@ -0,0 +1,150 @@
+package org.jlab.analysis.roads;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+import org.jlab.clas.physics.Particle;
+
+public class DictionaryTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * @return text dictionary lines for random valid roads
+     */
+    private static List<String> getLines(int n, long seed) {
+        Random rand = new Random(seed);
+        List<String> lines = new ArrayList<>();
+        for(int i=0; i<n; i++) {
+            StringBuilder line = new StringBuilder();
+            line.append(rand.nextBoolean() ? 1 : -1).append(' ');
+            line.append(String.format("%.2f %.2f %.2f ", 0.5+10*rand.nextDouble(), 5+35*rand.nextDouble(), -180+360*rand.nextDouble()));
+            for(int sl=0; sl<6; sl++) {
+                int wire = 1+rand.nextInt(100);
+                for(int l=0; l<6; l++) {
+                    int w = l==0 || sl==2 || rand.nextInt(4)>0 ? wire+rand.nextInt(3) : 0;
+                    line.append(w).append(' ');
+                }
+            }
+            line.append(1+rand.nextInt(62)).append(' ');
+            line.append(String.format("%.2f ", -10+20*rand.nextDouble()));
+            line.append(rand.nextInt(5)).append(' ');
+            for(int j=0; j<3; j++) line.append(1+rand.nextInt(68)).append(' ');
+            line.append(rand.nextInt(256)-128).append(' ');
+            line.append(1+rand.nextInt(6)).append(' ');
+            for(int j=0; j<3; j++) line.append(String.format("%.1f ", 100*rand.nextDouble()));
+            lines.add(line.toString().trim());
+        }
+        return lines;
+    }
+
+    private static void assertSameRoads(Dictionary expected, Dictionary actual) {
+        assertEquals(expected.size(), actual.size());
+        for(int row=0; row<expected.size(); row++) {
+            assertEquals(expected.getKey(row), actual.getKey(row));
+            assertEquals(expected.getRoad(row).toString(), actual.getRoad(row).toString());
+        }
+    }
+
+    private static Dictionary read(String fileName) {
+        Dictionary dictionary = new Dictionary();
+        dictionary.addDictionary(fileName, -1);
+        return dictionary;
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        List<String> lines = getLines(2000, 11);
+        lines.addAll(lines.subList(0, 100)); // duplicates
+
+        Dictionary dictionary = new Dictionary();
+        for(String line : lines) dictionary.add(new Road(line));
+        assertEquals(2000, dictionary.size());
+
+        String text   = new File(folder.getRoot(), "roads.txt").getPath();
+        String binary = new File(folder.getRoot(), "roads" + Dictionary.BINARY_EXTENSION).getPath();
+        dictionary.writeDictionary(text);
+        dictionary.writeDictionary(binary);
+        assertFalse(Dictionary.isBinary(text));
+        assertTrue(Dictionary.isBinary(binary));
+
+        // text and binary read back the same roads:
+        Dictionary fromText   = read(text);
+        Dictionary fromBinary = read(binary);
+        assertSameRoads(dictionary, fromText);
+        assertSameRoads(dictionary, fromBinary);
+
+        // converting binary to text and back is lossless:
+        String text2   = new File(folder.getRoot(), "roads2.txt").getPath();
+        String binary2 = new File(folder.getRoot(), "roads2" + Dictionary.BINARY_EXTENSION).getPath();
+        fromBinary.writeDictionary(text2);
+        read(text2).writeDictionary(binary2);
+        assertArrayEquals(Files.readAllBytes(new File(binary).toPath()), Files.readAllBytes(new File(binary2).toPath()));
+
+        // streamed files are identical to the ones written from memory:
+        String streamedText   = new File(folder.getRoot(), "streamed.txt").getPath();
+        String streamedBinary = new File(folder.getRoot(), "streamed" + Dictionary.BINARY_EXTENSION).getPath();
+        for(String fileName : Arrays.asList(streamedText, streamedBinary)) {
+            try(Dictionary.RoadWriter writer = Dictionary.openWriter(fileName)) {
+                try(Dictionary.RoadReader reader = Dictionary.openReader(binary)) {
+                    Road road;
+                    while((road = reader.next()) != null) writer.write(road);
+                }
+            }
+        }
+        assertArrayEquals(Files.readAllBytes(new File(text).toPath()), Files.readAllBytes(new File(streamedText).toPath()));
+        assertArrayEquals(Files.readAllBytes(new File(binary).toPath()), Files.readAllBytes(new File(streamedBinary).toPath()));
+        // no temporary column files are left behind:
+        assertEquals(6, folder.getRoot().list().length);
+    }
+
+    @Test
+    public void testRoadKeys() {
+        List<String> lines = getLines(5000, 12);
+        Dictionary dictionary = new Dictionary();
+        RoadKeys keys = new RoadKeys(1);
+        byte[] key = new byte[Road.KEYSIZE];
+        byte[] copy = new byte[Road.KEYSIZE];
+        for(String line : lines) {
+            Road road = new Road(line);
+            road.getKey(Dictionary.TestMode.DCFTOFPCALUVWHTCC, key);
+            assertEquals(dictionary.add(road), keys.add(key));
+            assertFalse(keys.add(key));
+            keys.get(keys.find(key), copy);
+            assertArrayEquals(key, copy);
+        }
+        assertEquals(dictionary.size(), keys.size());
+        keys.clear();
+        assertEquals(0, keys.size());
+        assertEquals(-1, keys.find(key));
+    }
+
+    @Test
+    public void testInvalidComponents() {
+        Road road = new Road(getLines(1, 13).get(0));
+        assertTrue(road.isValid());
+        byte[] components = new byte[Road.NCOMPONENTS];
+        road.getComponents(components, 0);
+        assertTrue(new Road(components, 0, road.getParticle()).isValid());
+
+        // remove superlayer 3, as when reading a corrupted binary dictionary:
+        Arrays.fill(components, 12, 18, (byte) 0);
+        Road invalid = new Road(components, 0, road.getParticle());
+        assertFalse(invalid.isValid());
+        byte[] reset = new byte[Road.NCOMPONENTS];
+        invalid.getComponents(reset, 0);
+        for(int i=0; i<36; i++) assertEquals(0, reset[i]);
+        assertFalse(invalid.setComponents(components, 0));
+    }
+}
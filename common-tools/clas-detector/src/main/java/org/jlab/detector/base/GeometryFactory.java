@@ -39,7 +39,19 @@ public class GeometryFactory {
      * @return 
      */
     public static ConstantProvider getConstants(DetectorType type, int run, String variation){
-        DatabaseConstantProvider  provider = new DatabaseConstantProvider(run,variation);
+        return GeometryFactory.getConstants(type, run, variation, "");
+    }
+
+    /**
+     * Load constants for given detector, with RUN, VARIATION and TIMESTAMP specified
+     * @param type detector type
+     * @param run run number
+     * @param variation ccdb variation
+     * @param timestamp ccdb timestamp (MM/DD/YYYY-HH:MM:SS), or empty for the latest constants
+     * @return 
+     */
+    public static ConstantProvider getConstants(DetectorType type, int run, String variation, String timestamp){
+        DatabaseConstantProvider  provider = new DatabaseConstantProvider(run,variation,timestamp);
         if(type==DetectorType.DC){
             provider.loadTable("/geometry/dc/dc");
             provider.loadTable("/geometry/dc/region");
@@ -149,7 +161,19 @@ public class GeometryFactory {
      * @return 
      */
     public static Detector getDetector(DetectorType type, int run, String variation){
-        ConstantProvider  provider = GeometryFactory.getConstants(type, run, variation);
+        return GeometryFactory.getDetector(type, run, variation, "");
+    }
+
+    /**
+     * Load a detector in CLAS coordinate system, for given RUN, VARIATION and TIMESTAMP
+     * @param type detector type
+     * @param run run number
+     * @param variation ccdb variation
+     * @param timestamp ccdb timestamp (MM/DD/YYYY-HH:MM:SS), or empty for the latest constants
+     * @return 
+     */
+    public static Detector getDetector(DetectorType type, int run, String variation, String timestamp){
+        ConstantProvider  provider = GeometryFactory.getConstants(type, run, variation, timestamp);
         if(type==DetectorType.DC){
             DCFactory factory = new DCFactory();
             Detector dc = factory.createDetectorCLAS(provider);
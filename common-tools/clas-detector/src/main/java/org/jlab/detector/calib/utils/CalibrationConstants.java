@@ -9,6 +9,7 @@ import javax.swing.JTable;
 import javax.swing.table.DefaultTableCellRenderer;
 import org.jlab.utils.groups.IndexedList;
 import org.jlab.utils.groups.IndexedTable;
+import org.jlab.utils.groups.IndexedTableModel;
 import org.jlab.utils.system.ClasUtilsFile;
 
 /**
@@ -18,6 +19,7 @@ import org.jlab.utils.system.ClasUtilsFile;
 public class CalibrationConstants extends IndexedTable {   
     
     String constantsName = "default";
+    IndexedTableModel tableModel = null;
     
     public CalibrationConstants(int indexCount) {
         super(indexCount);
@@ -58,6 +60,21 @@ public class CalibrationConstants extends IndexedTable {
     }
     
     public String getName(){ return this.constantsName;}
+
+    /**
+     * @return Swing model for displaying these constants in a JTable
+     */
+    public IndexedTableModel getTableModel(){
+        if(this.tableModel==null) this.tableModel = new IndexedTableModel(this);
+        return this.tableModel;
+    }
+
+    /**
+     * Notify the table model's listeners that the constants have changed.
+     */
+    public void fireTableDataChanged(){
+        if(this.tableModel!=null) this.tableModel.fireTableDataChanged();
+    }
     
     public void save(String file){        
         List<String>  linesFile = new ArrayList<>();        
@@ -57,7 +57,7 @@ public class CalibrationConstantsView extends JPanel implements ActionListener {
     
     
     public void addConstants(CalibrationConstants calib, CalibrationConstantsListener listener){
-        JTable dataTable = new JTable(calib);
+        JTable dataTable = new JTable(calib.getTableModel());
         dataTable.setDefaultRenderer(Object.class, new CalibrationConstants.CalibrationConstantsRenderer(calib));
         dataTable.addMouseListener(new MouseAdapter() {
             public void mouseClicked(MouseEvent e) {
@@ -74,7 +74,7 @@ public class CalibrationConstantsView extends JPanel implements ActionListener {
     }
     
     public void addConstants(CalibrationConstants calib){
-        JTable dataTable = new JTable(calib);         
+        JTable dataTable = new JTable(calib.getTableModel());         
         dataTable.setDefaultRenderer(Object.class, new CalibrationConstants.CalibrationConstantsRenderer(calib));
         JScrollPane   scrollPane = new JScrollPane(dataTable);        
         calibrationMap.put(calib.getName(), calib);        
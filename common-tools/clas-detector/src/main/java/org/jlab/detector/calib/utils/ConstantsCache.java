@@ -0,0 +1,342 @@
+package org.jlab.detector.calib.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.jlab.utils.groups.IndexedTable;
+
+/**
+ * Process-wide cache of CCDB tables, shared by all ConstantsManagers.
+ *
+ * Tables are grouped by (run, variation, timestamp), and within a group keyed
+ * by table name and number of indices, so the same table is read from the
+ * database only once no matter how many engines require it.  Lookups do not
+ * lock.  Each table is read by the first thread needing it, while threads
+ * needing a table already being read go on with their other tables and then
+ * wait for it, so the engine asking for a run is not held up by the tables
+ * prefetched for the others.  The least recently used groups are evicted once
+ * more than {@link #getMaxRuns()} are cached.  Tables are read from the
+ * {@link ConstantsSnapshot#getDefault() default snapshot} if it contains them.
+ */
+public class ConstantsCache {
+
+    private static final Logger LOGGER = Logger.getLogger(ConstantsCache.class.getName());
+
+    public static final int DEFAULT_MAX_RUNS = 8;
+
+    private static final ConstantsCache INSTANCE = new ConstantsCache(
+            Integer.getInteger("clas12.constants.cache.runs", DEFAULT_MAX_RUNS));
+
+    private final Map<RunKey,RunTables> runs = new ConcurrentHashMap<>();
+    private final AtomicLong clock = new AtomicLong();
+    private volatile int maxRuns;
+
+    private final ExecutorService prefetcher = Executors.newSingleThreadExecutor((Runnable r) -> {
+        Thread t = new Thread(r, "ConstantsCache-prefetch");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public ConstantsCache(int maxRuns) {
+        this.maxRuns = maxRuns;
+    }
+
+    /**
+     * @return the cache shared by all ConstantsManagers in this process
+     */
+    public static ConstantsCache getInstance() {
+        return INSTANCE;
+    }
+
+    public int getMaxRuns() {
+        return this.maxRuns;
+    }
+
+    /**
+     * @param maxRuns maximum number of (run, variation, timestamp) groups to keep
+     */
+    public void setMaxRuns(int maxRuns) {
+        this.maxRuns = maxRuns;
+        this.evict(null);
+    }
+
+    /**
+     * @return number of (run, variation, timestamp) groups currently cached
+     */
+    public int size() {
+        return this.runs.size();
+    }
+
+    public static String getTableId(String table, int indices) {
+        return table + "#" + indices;
+    }
+
+    /**
+     * Get all tables for one (run, variation, timestamp), without loading any.
+     * @param run
+     * @param variation
+     * @param timestamp
+     * @return the cached group, or null if it is not cached
+     */
+    public RunTables getRun(int run, String variation, String timestamp) {
+        RunTables tables = this.runs.get(new RunKey(run, variation, timestamp));
+        if (tables != null) tables.touch(this.clock.incrementAndGet());
+        return tables;
+    }
+
+    /**
+     * Get the tables for one (run, variation, timestamp), reading from the
+     * database any that are not already cached.
+     * @param run
+     * @param variation
+     * @param timestamp
+     * @param tables table names
+     * @param indices number of indices for each table
+     * @return the group containing the requested tables, if they could be read
+     */
+    public RunTables load(int run, String variation, String timestamp,
+            List<String> tables, List<Integer> indices) {
+        RunKey key = new RunKey(run, variation, timestamp);
+        RunTables entry = this.runs.computeIfAbsent(key, (RunKey k) -> new RunTables(this, k));
+        entry.touch(this.clock.incrementAndGet());
+        entry.load(tables, indices);
+        this.evict(entry);
+        return entry;
+    }
+
+    /**
+     * Start loading tables in the background, if they are not already cached.
+     * @param run
+     * @param variation
+     * @param timestamp
+     * @param tables table names
+     * @param indices number of indices for each table
+     */
+    public void prefetch(final int run, final String variation, final String timestamp,
+            final List<String> tables, final List<Integer> indices) {
+        RunTables entry = this.runs.get(new RunKey(run, variation, timestamp));
+        if (entry != null && entry.hasAll(tables, indices)) return;
+        final List<String> t = new ArrayList<>(tables);
+        final List<Integer> i = new ArrayList<>(indices);
+        this.prefetcher.submit(() -> {
+            try {
+                this.load(run, variation, timestamp, t, i);
+            } catch (Exception e) {
+                LOGGER.log(Level.WARNING, "[ConstantsCache] prefetch failed for run " + run, e);
+            }
+        });
+    }
+
+    public void clear() {
+        for (RunTables entry : this.runs.values()) entry.evicted = true;
+        this.runs.clear();
+    }
+
+    /**
+     * @param key the group to read tables for
+     * @return a reader for the tables of one group, to be closed once done
+     */
+    TableReader newReader(RunKey key) {
+        return new TableReader(key);
+    }
+
+    /**
+     * Reads the tables of one group, from the default snapshot if it contains
+     * them, or else from the database, connecting only when first needed.
+     */
+    static class TableReader implements AutoCloseable {
+
+        private final RunKey key;
+        private final ConstantsSnapshot snapshot;
+        private DatabaseConstantProvider provider = null;
+
+        TableReader(RunKey key) {
+            this.key = key;
+            ConstantsSnapshot s = ConstantsSnapshot.getDefault();
+            this.snapshot = s != null && s.matches(key.variation, key.timestamp) ? s : null;
+        }
+
+        IndexedTable read(String name, int indices) {
+            if (this.snapshot != null && this.snapshot.hasTable(key.run, name, indices)) {
+                return this.snapshot.readTable(key.run, name, indices);
+            }
+            if (this.provider == null) {
+                this.provider = new DatabaseConstantProvider(key.run, key.variation, key.timestamp);
+            }
+            IndexedTable table = this.provider.readTable(name, indices);
+            LOGGER.log(Level.INFO, String.format("***** >>> adding : %s / indices = %d", name, indices));
+            return table;
+        }
+
+        @Override
+        public void close() {
+            if (this.provider != null) this.provider.disconnect();
+        }
+    }
+
+    /**
+     * Drop least recently used groups until within the limit.
+     * @param keep a group not to be evicted
+     */
+    private void evict(RunTables keep) {
+        while (this.runs.size() > this.maxRuns) {
+            RunTables oldest = null;
+            for (RunTables entry : this.runs.values()) {
+                if (entry == keep) continue;
+                if (oldest == null || entry.lastAccess < oldest.lastAccess) oldest = entry;
+            }
+            if (oldest == null) break;
+            if (this.runs.remove(oldest.key, oldest)) {
+                oldest.evicted = true;
+                LOGGER.log(Level.INFO, "[ConstantsCache] ---> evicting run = " + oldest.key.run);
+            }
+        }
+    }
+
+    /**
+     * Cache key for one run, variation and timestamp.
+     */
+    public static final class RunKey {
+
+        final int run;
+        final String variation;
+        final String timestamp;
+
+        public RunKey(int run, String variation, String timestamp) {
+            this.run = run;
+            this.variation = variation == null ? "" : variation;
+            this.timestamp = timestamp == null ? "" : timestamp;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof RunKey)) return false;
+            RunKey k = (RunKey) o;
+            return run == k.run && variation.equals(k.variation) && timestamp.equals(k.timestamp);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(run, variation, timestamp);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("run=%d variation=%s timestamp=%s", run, variation, timestamp);
+        }
+    }
+
+    /**
+     * All cached tables for one run, variation and timestamp.
+     */
+    public static final class RunTables {
+
+        private final ConstantsCache cache;
+        private final RunKey key;
+        private final Map<String,IndexedTable> tables = new ConcurrentHashMap<>();
+        private volatile long lastAccess;
+        private final Set<String> failed = ConcurrentHashMap.newKeySet();
+        // completed once the table is read, successfully or not
+        private final Map<String,CompletableFuture<Void>> loading = new ConcurrentHashMap<>();
+        private volatile boolean evicted = false;
+
+        RunTables(ConstantsCache cache, RunKey key) {
+            this.cache = cache;
+            this.key = key;
+        }
+
+        void touch(long time) {
+            this.lastAccess = time;
+        }
+
+        public int getRun() {
+            return this.key.run;
+        }
+
+        public String getVariation() {
+            return this.key.variation;
+        }
+
+        public String getTimeStamp() {
+            return this.key.timestamp;
+        }
+
+        /**
+         * @return whether this group has been removed from the cache
+         */
+        public boolean isEvicted() {
+            return this.evicted;
+        }
+
+        /**
+         * @param tableId see {@link ConstantsCache#getTableId}
+         * @return whether the table failed to be read from the database
+         */
+        public boolean hasError(String tableId) {
+            return this.failed.contains(tableId);
+        }
+
+        /**
+         * @param tableId see {@link ConstantsCache#getTableId}
+         * @return the table, or null if it is not loaded
+         */
+        public IndexedTable getTable(String tableId) {
+            return this.tables.get(tableId);
+        }
+
+        /**
+         * @return whether all tables have been read, successfully or not
+         */
+        boolean hasAll(List<String> names, List<Integer> indices) {
+            for (int i = 0; i < names.size(); i++) {
+                String id = getTableId(names.get(i), indices.get(i));
+                if (!this.tables.containsKey(id) && !this.failed.contains(id)) return false;
+            }
+            return true;
+        }
+
+        /**
+         * Read the tables not already read or being read by another thread,
+         * then wait for those being read by others.
+         */
+        private void load(List<String> names, List<Integer> indices) {
+            if (this.hasAll(names, indices)) return;
+            LOGGER.log(Level.INFO, "[ConstantsCache] --->  loading tables for " + this.key);
+            List<CompletableFuture<Void>> others = new ArrayList<>();
+            try (TableReader reader = this.cache.newReader(this.key)) {
+                for (int i = 0; i < names.size(); i++) {
+                    String id = getTableId(names.get(i), indices.get(i));
+                    if (this.tables.containsKey(id) || this.failed.contains(id)) continue;
+                    CompletableFuture<Void> claim = new CompletableFuture<>();
+                    CompletableFuture<Void> other = this.loading.putIfAbsent(id, claim);
+                    if (other != null) {
+                        others.add(other);
+                        continue;
+                    }
+                    try {
+                        this.tables.put(id, reader.read(names.get(i), indices.get(i)));
+                    } catch (Exception e) {
+                        LOGGER.log(Level.SEVERE, e.getMessage());
+                        LOGGER.log(Level.SEVERE, "[ConstantsCache] ---> error reading table : " + names.get(i));
+                        // This happens if missing table or variation, no point in trying again.
+                        this.failed.add(id);
+                    } finally {
+                        claim.complete(null);
+                    }
+                }
+            }
+            for (CompletableFuture<Void> other : others) other.join();
+        }
+    }
+}
@@ -1,19 +1,28 @@
 package org.jlab.detector.calib.utils;
 
+import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.jlab.utils.groups.IndexedTable;
 
 /**
+ * Provides CCDB tables and RCDB values by run number for a set of tables
+ * registered with the init methods.  Tables are stored in the process-wide
+ * {@link ConstantsCache}, so managers requiring the same table share a single
+ * copy, and lookups for an already-loaded run do not lock.
  *
  * @author gavalian
  */
@@ -21,14 +30,21 @@ public class ConstantsManager {
 
     private static Logger LOGGER = Logger.getLogger(ConstantsManager.class.getName());
 
-    private DatabaseConstantsDescriptor defaultDescriptor = new DatabaseConstantsDescriptor();
-    private volatile Map<Integer, DatabaseConstantsDescriptor> runConstants = new LinkedHashMap<Integer, DatabaseConstantsDescriptor>();
-    private volatile Map<Integer, Integer> runConstantRequestHistory = new LinkedHashMap<Integer, Integer>();
-    private static volatile Map<Integer, RCDBConstants> rcdbConstants = new LinkedHashMap<Integer, RCDBConstants>();
+    private static final Set<ConstantsManager> MANAGERS = Collections.newSetFromMap(new WeakHashMap<>());
+    private static final AtomicInteger lastPrefetchRun = new AtomicInteger(-1);
+    private static final Map<Integer, RCDBConstants> rcdbConstants = new ConcurrentHashMap<>();
 
-    private String databaseVariation = "default";
-    private String timeStamp = "";
-    private int requestStatus = 0;
+    private final ConstantsCache cache = ConstantsCache.getInstance();
+    private DatabaseConstantsDescriptor defaultDescriptor = new DatabaseConstantsDescriptor();
+    private volatile ConstantsCache.RunTables currentTables = null;
+    private volatile Map<String, String> tableIds = new HashMap<>();
+    private volatile List<String> tableNames = new ArrayList<>();
+    private volatile List<Integer> tableIndices = new ArrayList<>();
+    private final Map<Integer, Integer> runConstantRequestHistory = new LinkedHashMap<Integer, Integer>();
+
+    private volatile String databaseVariation = "default";
+    private volatile String timeStamp = "";
+    private volatile int requestStatus = 0;
     private int maxRequests = 2;
 
     public ConstantsManager() {
@@ -45,18 +61,22 @@ public class ConstantsManager {
 
     public void setVariation(String variation) {
         this.databaseVariation = variation;
+        this.currentTables = null;
     }
 
     public void setTimeStamp(String timestamp) {
         this.timeStamp = timestamp;
+        this.currentTables = null;
     }
 
     public synchronized void init(String... tables) {
         this.defaultDescriptor.addTables(tables);
+        this.register();
     }
     
     public synchronized void init(List<String> tables) {
         this.defaultDescriptor.addTables(tables);
+        this.register();
     }
     
     /**
@@ -65,6 +85,7 @@ public class ConstantsManager {
      */
     public synchronized void init(Map<String,Integer>  tables){
         this.defaultDescriptor.addTables(tables);
+        this.register();
     }
     
     public int getRequestStatus(){
@@ -75,94 +96,191 @@ public class ConstantsManager {
         Set<String> keysSet = new LinkedHashSet<String>(keys);
         Set<String> tablesSet = new LinkedHashSet<String>(tables);
         this.defaultDescriptor.addTables(keysSet, tablesSet);
+        this.register();
+    }
+
+    /**
+     * Update the table lookups after tables are added, and register this
+     * manager for prefetching.
+     */
+    private void register() {
+        Map<String, String> ids = new HashMap<>();
+        List<String> names = new ArrayList<>(this.defaultDescriptor.getTableNames());
+        List<String> keys = new ArrayList<>(this.defaultDescriptor.getTableKeys());
+        List<Integer> indices = new ArrayList<>(this.defaultDescriptor.getTableIndices());
+        for (int i = 0; i < names.size() && i < keys.size(); i++) {
+            ids.put(keys.get(i), ConstantsCache.getTableId(names.get(i), indices.get(i)));
+        }
+        this.tableNames = names;
+        this.tableIndices = indices.subList(0, names.size());
+        this.tableIds = ids;
+        this.currentTables = null;
+        synchronized (MANAGERS) {
+            MANAGERS.add(this);
+        }
+    }
+
+    /**
+     * @return the tables required by all managers, e.g. for exporting a
+     * {@link ConstantsSnapshot}, as pairs of table name and number of
+     * indices, with a pair for each number of indices a table is required with
+     */
+    public static List<Map.Entry<String, Integer>> getRequiredTables() {
+        List<ConstantsManager> managers;
+        synchronized (MANAGERS) {
+            managers = new ArrayList<>(MANAGERS);
+        }
+        Map<String, Map.Entry<String, Integer>> tables = new LinkedHashMap<>();
+        for (ConstantsManager manager : managers) {
+            List<String> names = manager.tableNames;
+            List<Integer> indices = manager.tableIndices;
+            for (int i = 0; i < names.size(); i++) {
+                tables.putIfAbsent(ConstantsCache.getTableId(names.get(i), indices.get(i)),
+                        new AbstractMap.SimpleImmutableEntry<>(names.get(i), indices.get(i)));
+            }
+        }
+        return new ArrayList<>(tables.values());
+    }
+
+    /**
+     * Start loading, in the background, the tables for a run for all
+     * managers, if it differs from the last run prefetched.
+     * @param run run number
+     */
+    public static void prefetch(int run) {
+        prefetch(run, null);
+    }
+
+    /**
+     * @param run run number
+     * @param loading manager loading its own tables for the run, not to be prefetched
+     */
+    private static void prefetch(int run, ConstantsManager loading) {
+        int last = lastPrefetchRun.get();
+        if (run == last || !lastPrefetchRun.compareAndSet(last, run)) return;
+        List<ConstantsManager> managers;
+        synchronized (MANAGERS) {
+            managers = new ArrayList<>(MANAGERS);
+        }
+        for (ConstantsManager manager : managers) {
+            if (manager != loading) manager.prefetchRun(run);
+        }
+    }
 
+    /**
+     * Start loading, in the background, this manager's tables for a run.
+     * @param run run number
+     */
+    public void prefetchRun(int run) {
+        if (!this.tableNames.isEmpty()) {
+            this.cache.prefetch(run, this.databaseVariation, this.timeStamp, this.tableNames, this.tableIndices);
+        }
     }
 
     public IndexedTable getConstants(int run, String table) {
-        if (this.runConstants.containsKey(run) == false) {
-            this.loadConstantsForRun(run);
+        ConstantsCache.RunTables tables = this.currentTables;
+        if (tables == null || tables.getRun() != run || tables.isEvicted()) {
+            tables = this.loadConstantsForRun(run);
         }
-        DatabaseConstantsDescriptor descriptor = this.runConstants.get(run);
-        if (descriptor.getMap().containsKey(table) == false) {
+        String id = this.tableIds.get(table);
+        IndexedTable t = id == null ? null : tables.getTable(id);
+        if (t == null) {
             LOGGER.log(Level.SEVERE,
                     "[getConstants] error ( run = " + run + " ) " + " table not found with name : " + table);
         }
-        return descriptor.getMap().get(table);
+        return t;
     }
 
     public RCDBConstants getRcdbConstants(int run) {
-        if (this.rcdbConstants.containsKey(run) == false) {
-            this.loadConstantsForRun(run);
+        if (rcdbConstants.containsKey(run) == false) {
+            loadRcdbForRun(run);
         }
-        return this.rcdbConstants.get(run);
+        return rcdbConstants.get(run);
     }
 
     public RCDBConstants.RCDBConstant getRcdbConstant(int run, String name) {
         return getRcdbConstants(run).get(name);
     }
 
-    private synchronized void loadConstantsForRun(int run) {
+    private ConstantsCache.RunTables loadConstantsForRun(int run) {
 
-        if (this.runConstants.containsKey(run) == true)
-            return;
+        List<String> names = this.tableNames;
+        List<Integer> indices = this.tableIndices;
 
-        if (this.runConstantRequestHistory.containsKey(run) == false) {
-            runConstantRequestHistory.put(run, 1);
-        } else {
-            int requests = runConstantRequestHistory.get(run);
-            runConstantRequestHistory.put(run, requests + 1);
-            if (requests > maxRequests) {
-                requestStatus = -1;
-                LOGGER.log(Level.SEVERE,
-                        "[ConstantsManager] exceeded maximum requests " + requests + " for run " + run);
+        // already loaded, e.g. by another manager or by prefetching:
+        ConstantsCache.RunTables tables = this.cache.getRun(run, this.databaseVariation, this.timeStamp);
+        if (tables != null && tables.hasAll(names, indices)) {
+            this.currentTables = tables;
+            return tables;
+        }
+
+        // first request for this run, start loading the other managers' tables:
+        prefetch(run, this);
+
+        synchronized (this.runConstantRequestHistory) {
+            if (this.runConstantRequestHistory.containsKey(run) == false) {
+                runConstantRequestHistory.put(run, 1);
+            } else {
+                int requests = runConstantRequestHistory.get(run);
+                runConstantRequestHistory.put(run, requests + 1);
+                if (requests > maxRequests) {
+                    requestStatus = -1;
+                    LOGGER.log(Level.SEVERE,
+                            "[ConstantsManager] exceeded maximum requests " + requests + " for run " + run);
+                }
             }
         }
 
         LOGGER.log(Level.INFO, "[ConstantsManager] --->  loading table for run = " + run);
-        DatabaseConstantsDescriptor desc = defaultDescriptor.getCopy(run);
-        DatabaseConstantProvider provider = new DatabaseConstantProvider(run, this.databaseVariation, this.timeStamp);
-
-        List<String> tn = new ArrayList<String>(desc.getTableNames());
-        List<String> tk = new ArrayList<String>(desc.getTableKeys());
-
-        for (int i = 0; i < desc.getTableNames().size(); i++) {
-            String tableName = tn.get(i);
-            try {
-                IndexedTable  table = provider.readTable(tableName, desc.getTableIndices().get(i));
-                desc.getMap().put(tk.get(i), table);
-                LOGGER.log(Level.INFO, String.format("***** >>> adding : %14s / table = %s", tk.get(i), tableName));
-            } catch (Exception e) {
-                LOGGER.log(Level.SEVERE, e.getMessage());
-                LOGGER.log(Level.SEVERE, "[ConstantsManager] ---> error reading table : " + tableName);
-                // This happens if missing table or variation. No point in trying
-                // again, just set error status to trigger abort.
+        tables = this.cache.load(run, this.databaseVariation, this.timeStamp, names, indices);
+        for (int i = 0; i < names.size(); i++) {
+            // This happens if missing table or variation.  Set error status to trigger abort.
+            if (tables.hasError(ConstantsCache.getTableId(names.get(i), indices.get(i)))) {
                 requestStatus = -1;
             }
         }
-        provider.disconnect();
-        this.runConstants.put(run, desc);
+        this.currentTables = tables;
+
+        if (rcdbConstants.containsKey(run) == false) {
+            loadRcdbForRun(run);
+        }
+        return tables;
+    }
 
-        if (this.rcdbConstants.containsKey(run) == false) {
+    private static synchronized void loadRcdbForRun(int run) {
+        if (rcdbConstants.containsKey(run) == false) {
+            ConstantsSnapshot snapshot = ConstantsSnapshot.getDefault();
+            RCDBConstants constants = snapshot == null ? null : snapshot.getRcdbConstants(run);
+            if (constants != null) {
+                rcdbConstants.put(run, constants);
+                return;
+            }
             RCDBProvider rcdbpro = new RCDBProvider();
-            this.rcdbConstants.put(run, rcdbpro.getConstants(run));
+            rcdbConstants.put(run, rcdbpro.getConstants(run));
             rcdbpro.disconnect();
         }
     }
 
+    /**
+     * Forget the current run.  Its tables remain in the shared cache, use
+     * {@link ConstantsCache#clear()} to force them to be reread.
+     */
     public void reset() {
-        this.runConstants.clear();
+        this.currentTables = null;
     }
 
     @Override
     public String toString() {
         StringBuilder str = new StringBuilder();
-        for (Map.Entry<Integer, DatabaseConstantsDescriptor> entry : runConstants.entrySet()) {
+        ConstantsCache.RunTables tables = this.currentTables;
+        if (tables != null) {
             str.append("CONSTANTS SET FOR RUN = ");
-            str.append(entry.getKey());
+            str.append(tables.getRun());
             str.append("\n");
-            DatabaseConstantsDescriptor desc = entry.getValue();
-            for (Map.Entry<String, IndexedTable> tables : desc.getMap().entrySet()) {
-                str.append(String.format("TABLE : %s\n", tables.getKey()));
+            for (Map.Entry<String, String> entry : this.tableIds.entrySet()) {
+                if (tables.getTable(entry.getValue()) != null) {
+                    str.append(String.format("TABLE : %s\n", entry.getKey()));
+                }
             }
         }
         return str.toString();
@@ -301,6 +419,7 @@ public class ConstantsManager {
             IndexedTable  table1 = manager.getConstants(10, "/daq/fadc/htcc");
             IndexedTable  table2 = manager.getConstants(10, "/daq/fadc/ec");
             manager.reset();
+            ConstantsCache.getInstance().clear();
             LOGGER.log(Level.INFO,"\n\n STATUS = " + manager.getRequestStatus());
         }
 
@@ -0,0 +1,548 @@
+package org.jlab.detector.calib.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.Time;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.jlab.utils.groups.IndexedList;
+import org.jlab.utils.groups.IndexedTable;
+import org.jlab.utils.options.OptionParser;
+
+/**
+ * Binary snapshot of CCDB tables and RCDB values for a set of runs, for one
+ * variation and timestamp, so reconstruction can run without a database.
+ *
+ * The file is memory-mapped.  Only its header, with the run ranges and the
+ * location of each table, is decoded when it is opened, and tables are
+ * decoded when requested.  Tables are stored by column, as arrays of ints
+ * and doubles, and a table that is identical for consecutive runs is stored
+ * once and shared by a run range.  The layout, all big-endian, is:
+ * <pre>
+ *   header  : int MAGIC, int VERSION, string variation, string timestamp
+ *   tables  : int n, n x (string name, int indices)
+ *   ranges  : int n, n x (int first run, int last run, int[tables] blob)
+ *   rcdb    : int n, n x (int run, int blob)
+ *   blobs   : int n, n x long offset, relative to the end of the blob offsets
+ *   data    : table blobs and RCDB blobs
+ * </pre>
+ * where a string is an int length followed by UTF-8 bytes, and a blob of -1
+ * is a table that could not be read from the database for that range, and
+ * is read from the database again when requested.
+ * A table blob is int rows, int indices, int columns, the index names, the
+ * column names and types, then an int array per index and an int or double
+ * array per column.  An RCDB blob is int n, then n x (string name, byte type,
+ * value), with type D, L, S, or T for a time in milliseconds.
+ *
+ * If the system property {@code clas12.constants.snapshot} names a snapshot,
+ * {@link ConstantsCache} serves tables and {@link ConstantsManager} serves
+ * RCDB values from it for the runs and variation it contains, and falls back
+ * to the database for anything else.
+ */
+public class ConstantsSnapshot {
+
+    private static final Logger LOGGER = Logger.getLogger(ConstantsSnapshot.class.getName());
+
+    public static final int MAGIC = 0x43434442;
+    public static final int VERSION = 1;
+    public static final String PROPERTY = "clas12.constants.snapshot";
+
+    private static final byte TYPE_INT = 'I';
+    private static final byte TYPE_DOUBLE = 'D';
+    private static final byte TYPE_LONG = 'L';
+    private static final byte TYPE_STRING = 'S';
+    private static final byte TYPE_TIME = 'T';
+
+    private static volatile ConstantsSnapshot defaultSnapshot = null;
+    private static volatile boolean defaultOpened = false;
+
+    private final ByteBuffer buffer;
+    private final String variation;
+    private final String timestamp;
+    private final Map<String,Integer> tableIds = new HashMap<>();
+    private final int[] firstRuns;
+    private final int[] lastRuns;
+    private final int[][] rangeBlobs;
+    private final Map<Integer,Integer> rcdbBlobs = new HashMap<>();
+    private final long[] blobOffsets;
+
+    private ConstantsSnapshot(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        ByteBuffer b = buffer.duplicate();
+        if (b.getInt() != MAGIC) throw new IOException("not a constants snapshot");
+        int version = b.getInt();
+        if (version != VERSION) throw new IOException("unsupported snapshot version " + version);
+        this.variation = getString(b);
+        this.timestamp = getString(b);
+        int ntables = b.getInt();
+        for (int i = 0; i < ntables; i++) {
+            String name = getString(b);
+            this.tableIds.put(ConstantsCache.getTableId(name, b.getInt()), i);
+        }
+        int nranges = b.getInt();
+        this.firstRuns = new int[nranges];
+        this.lastRuns = new int[nranges];
+        this.rangeBlobs = new int[nranges][ntables];
+        for (int i = 0; i < nranges; i++) {
+            this.firstRuns[i] = b.getInt();
+            this.lastRuns[i] = b.getInt();
+            for (int j = 0; j < ntables; j++) this.rangeBlobs[i][j] = b.getInt();
+        }
+        int nrcdb = b.getInt();
+        for (int i = 0; i < nrcdb; i++) {
+            int run = b.getInt();
+            this.rcdbBlobs.put(run, b.getInt());
+        }
+        this.blobOffsets = new long[b.getInt()];
+        for (int i = 0; i < this.blobOffsets.length; i++) this.blobOffsets[i] = b.getLong();
+        for (int i = 0; i < this.blobOffsets.length; i++) this.blobOffsets[i] += b.position();
+    }
+
+    /**
+     * Memory-map a snapshot file.
+     * @param filename
+     * @return the snapshot
+     * @throws IOException if the file cannot be read or is not a snapshot
+     */
+    public static ConstantsSnapshot open(String filename) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) throw new IOException("snapshot larger than 2 GB : " + filename);
+            return new ConstantsSnapshot(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * @return the snapshot named by the system property {@value #PROPERTY},
+     * or null if it is not set or cannot be opened
+     */
+    public static ConstantsSnapshot getDefault() {
+        if (!defaultOpened) {
+            synchronized (ConstantsSnapshot.class) {
+                if (!defaultOpened) {
+                    String filename = System.getProperty(PROPERTY);
+                    if (filename != null && !filename.isEmpty()) {
+                        try {
+                            defaultSnapshot = open(filename);
+                            LOGGER.log(Level.INFO, "[ConstantsSnapshot] ---> using " + filename + " : " + defaultSnapshot);
+                        } catch (IOException e) {
+                            LOGGER.log(Level.SEVERE, "[ConstantsSnapshot] ---> error opening " + filename, e);
+                        }
+                    }
+                    defaultOpened = true;
+                }
+            }
+        }
+        return defaultSnapshot;
+    }
+
+    public String getVariation() {
+        return this.variation;
+    }
+
+    public String getTimeStamp() {
+        return this.timestamp;
+    }
+
+    /**
+     * @param variation
+     * @param timestamp
+     * @return whether this snapshot was exported for the variation and timestamp
+     */
+    public boolean matches(String variation, String timestamp) {
+        return this.variation.equals(variation == null ? "" : variation)
+                && this.timestamp.equals(timestamp == null ? "" : timestamp);
+    }
+
+    private int findRange(int run) {
+        int i = Arrays.binarySearch(this.firstRuns, run);
+        if (i < 0) i = -i - 2;
+        return i >= 0 && run <= this.lastRuns[i] ? i : -1;
+    }
+
+    /**
+     * @param run
+     * @return whether this snapshot contains tables for the run
+     */
+    public boolean hasRun(int run) {
+        return this.findRange(run) >= 0;
+    }
+
+    /**
+     * @param run
+     * @param table
+     * @param indices
+     * @return whether the table was exported for the run and could be read
+     * from the database, so the database is only queried for the others
+     */
+    public boolean hasTable(int run, String table, int indices) {
+        int range = this.findRange(run);
+        Integer id = this.tableIds.get(ConstantsCache.getTableId(table, indices));
+        return range >= 0 && id != null && this.rangeBlobs[range][id] >= 0;
+    }
+
+    /**
+     * Decode a table, as {@link DatabaseConstantProvider#readTable} would
+     * have read it.
+     * @param run
+     * @param table
+     * @param indices
+     * @return a new table
+     * @throws IllegalArgumentException if the table is not in the snapshot,
+     * or could not be read from the database when it was exported
+     */
+    public IndexedTable readTable(int run, String table, int indices) {
+        int range = this.findRange(run);
+        Integer id = this.tableIds.get(ConstantsCache.getTableId(table, indices));
+        if (range < 0 || id == null) {
+            throw new IllegalArgumentException("table " + table + " not in snapshot for run " + run);
+        }
+        int blob = this.rangeBlobs[range][id];
+        if (blob < 0) {
+            throw new IllegalArgumentException("table " + table + " not available for run " + run);
+        }
+        return decodeTable(this.blob(blob));
+    }
+
+    /**
+     * @param run
+     * @return the RCDB values for the run, or null if they are not in the snapshot
+     */
+    public RCDBConstants getRcdbConstants(int run) {
+        Integer blob = this.rcdbBlobs.get(run);
+        return blob == null ? null : decodeRcdb(this.blob(blob));
+    }
+
+    private ByteBuffer blob(int blob) {
+        ByteBuffer b = this.buffer.duplicate();
+        b.position((int) this.blobOffsets[blob]);
+        return b;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("variation=%s timestamp=%s tables=%d ranges=%d rcdb=%d blobs=%d",
+                this.variation, this.timestamp, this.tableIds.size(), this.firstRuns.length,
+                this.rcdbBlobs.size(), this.blobOffsets.length);
+    }
+
+    private static String getString(ByteBuffer b) {
+        byte[] bytes = new byte[b.getInt()];
+        b.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void putString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static byte[] encodeTable(IndexedTable table) throws IOException {
+        @SuppressWarnings("unchecked")
+        Map<Long,IndexedTable.IndexedEntry> rows = table.getList().getMap();
+        int nindex = table.getList().getIndexSize();
+        List<String> columns = table.getEntryNames();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(rows.size());
+        out.writeInt(nindex);
+        out.writeInt(columns.size());
+        for (int i = 0; i < nindex; i++) putString(out, table.getIndexName(i));
+        for (String column : columns) {
+            putString(out, column);
+            out.writeByte("D".equals(table.getEntryType(column)) ? TYPE_DOUBLE : TYPE_INT);
+        }
+        for (int i = 0; i < nindex; i++) {
+            for (long key : rows.keySet()) out.writeInt(IndexedList.IndexGenerator.getIndex(key, i));
+        }
+        for (int c = 0; c < columns.size(); c++) {
+            boolean isDouble = "D".equals(table.getEntryType(columns.get(c)));
+            for (IndexedTable.IndexedEntry row : rows.values()) {
+                if (isDouble) out.writeDouble(row.getValue(c).doubleValue());
+                else out.writeInt(row.getValue(c).intValue());
+            }
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    static IndexedTable decodeTable(ByteBuffer b) {
+        int nrows = b.getInt();
+        int nindex = b.getInt();
+        int ncolumns = b.getInt();
+        String[] indexNames = new String[nindex];
+        for (int i = 0; i < nindex; i++) indexNames[i] = getString(b);
+        String[] format = new String[ncolumns];
+        boolean[] isDouble = new boolean[ncolumns];
+        for (int c = 0; c < ncolumns; c++) {
+            String name = getString(b);
+            isDouble[c] = b.get() == TYPE_DOUBLE;
+            format[c] = name + (isDouble[c] ? "/D" : "/I");
+        }
+        IndexedTable table = new IndexedTable(nindex, format);
+        for (int i = 0; i < nindex; i++) table.setIndexName(i, indexNames[i]);
+        int[][] index = new int[nrows][nindex];
+        for (int i = 0; i < nindex; i++) {
+            for (int r = 0; r < nrows; r++) index[r][i] = b.getInt();
+        }
+        IndexedTable.IndexedEntry[] rows = new IndexedTable.IndexedEntry[nrows];
+        for (int r = 0; r < nrows; r++) {
+            table.addEntry(index[r]);
+            rows[r] = (IndexedTable.IndexedEntry) table.getList().getItem(index[r]);
+        }
+        for (int c = 0; c < ncolumns; c++) {
+            for (int r = 0; r < nrows; r++) {
+                if (isDouble[c]) rows[r].setValue(c, b.getDouble());
+                else rows[r].setValue(c, b.getInt());
+            }
+        }
+        return table;
+    }
+
+    static byte[] encodeRcdb(RCDBConstants rcdb) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        Map<String,RCDBConstants.RCDBConstant> values = new LinkedHashMap<>();
+        for (String name : new TreeSet<>(rcdb.getNames())) {
+            Object value = rcdb.get(name).getValue();
+            if (value instanceof Double || value instanceof Long || value instanceof String || value instanceof Time) {
+                values.put(name, rcdb.get(name));
+            }
+        }
+        out.writeInt(values.size());
+        for (Map.Entry<String,RCDBConstants.RCDBConstant> entry : values.entrySet()) {
+            putString(out, entry.getKey());
+            Object value = entry.getValue().getValue();
+            if (value instanceof Double) {
+                out.writeByte(TYPE_DOUBLE);
+                out.writeDouble((Double) value);
+            } else if (value instanceof Long) {
+                out.writeByte(TYPE_LONG);
+                out.writeLong((Long) value);
+            } else if (value instanceof String) {
+                out.writeByte(TYPE_STRING);
+                putString(out, (String) value);
+            } else {
+                out.writeByte(TYPE_TIME);
+                out.writeLong(((Time) value).getTime());
+            }
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    static RCDBConstants decodeRcdb(ByteBuffer b) {
+        RCDBConstants rcdb = new RCDBConstants();
+        int n = b.getInt();
+        for (int i = 0; i < n; i++) {
+            String name = getString(b);
+            switch (b.get()) {
+                case TYPE_DOUBLE:
+                    rcdb.add(name, b.getDouble());
+                    break;
+                case TYPE_LONG:
+                    rcdb.add(name, b.getLong());
+                    break;
+                case TYPE_STRING:
+                    rcdb.add(name, getString(b));
+                    break;
+                default:
+                    rcdb.add(name, new Time(b.getLong()));
+                    break;
+            }
+        }
+        return rcdb;
+    }
+
+    /**
+     * Accumulates tables and RCDB values run by run, deduplicating identical
+     * blobs and merging consecutive runs with identical tables into ranges.
+     */
+    static class Writer {
+
+        private final String variation;
+        private final String timestamp;
+        private final List<String> names = new ArrayList<>();
+        private final List<Integer> indices = new ArrayList<>();
+        private final List<byte[]> blobs = new ArrayList<>();
+        private final Map<ByteBuffer,Integer> blobIds = new HashMap<>();
+        private final List<int[]> ranges = new ArrayList<>();
+        private final Map<Integer,Integer> rcdb = new LinkedHashMap<>();
+
+        Writer(String variation, String timestamp, List<Map.Entry<String,Integer>> tables) {
+            this.variation = variation == null ? "" : variation;
+            this.timestamp = timestamp == null ? "" : timestamp;
+            for (Map.Entry<String,Integer> entry : tables) {
+                this.names.add(entry.getKey());
+                this.indices.add(entry.getValue());
+            }
+        }
+
+        private int addBlob(byte[] blob) {
+            Integer id = this.blobIds.get(ByteBuffer.wrap(blob));
+            if (id == null) {
+                id = this.blobs.size();
+                this.blobs.add(blob);
+                this.blobIds.put(ByteBuffer.wrap(blob), id);
+            }
+            return id;
+        }
+
+        /**
+         * @param run must be larger than all previous runs
+         * @param tables the tables, in the order given to the constructor,
+         * with null for tables that could not be read
+         */
+        void addRun(int run, List<IndexedTable> tables) throws IOException {
+            int[] range = new int[2 + tables.size()];
+            range[0] = run;
+            range[1] = run;
+            for (int i = 0; i < tables.size(); i++) {
+                range[2+i] = tables.get(i) == null ? -1 : this.addBlob(encodeTable(tables.get(i)));
+            }
+            int[] last = this.ranges.isEmpty() ? null : this.ranges.get(this.ranges.size()-1);
+            if (last != null && last[1] + 1 == run
+                    && Arrays.equals(last, 2, last.length, range, 2, range.length)) {
+                last[1] = run;
+            } else {
+                this.ranges.add(range);
+            }
+        }
+
+        void addRcdb(int run, RCDBConstants constants) throws IOException {
+            this.rcdb.put(run, this.addBlob(encodeRcdb(constants)));
+        }
+
+        void write(OutputStream stream) throws IOException {
+            DataOutputStream out = new DataOutputStream(stream);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            putString(out, this.variation);
+            putString(out, this.timestamp);
+            out.writeInt(this.names.size());
+            for (int i = 0; i < this.names.size(); i++) {
+                putString(out, this.names.get(i));
+                out.writeInt(this.indices.get(i));
+            }
+            out.writeInt(this.ranges.size());
+            for (int[] range : this.ranges) {
+                for (int x : range) out.writeInt(x);
+            }
+            out.writeInt(this.rcdb.size());
+            for (Map.Entry<Integer,Integer> entry : this.rcdb.entrySet()) {
+                out.writeInt(entry.getKey());
+                out.writeInt(entry.getValue());
+            }
+            out.writeInt(this.blobs.size());
+            long offset = 0;
+            for (byte[] blob : this.blobs) {
+                out.writeLong(offset);
+                offset += blob.length;
+            }
+            for (byte[] blob : this.blobs) out.write(blob);
+            out.flush();
+        }
+    }
+
+    /**
+     * Export tables and RCDB values from the databases to a snapshot.
+     * @param filename output file
+     * @param variation CCDB variation
+     * @param timestamp CCDB timestamp, or empty for none
+     * @param runs run numbers
+     * @param tables pairs of table name and number of indices, e.g. from
+     * {@link ConstantsManager#getRequiredTables()}
+     * @param rcdb whether to include RCDB values
+     * @throws IOException if the file cannot be written
+     */
+    public static void export(String filename, String variation, String timestamp,
+            List<Integer> runs, List<Map.Entry<String,Integer>> tables, boolean rcdb) throws IOException {
+        Writer writer = new Writer(variation, timestamp, tables);
+        RCDBProvider rcdbProvider = rcdb ? new RCDBProvider() : null;
+        for (int run : new TreeSet<>(runs)) {
+            LOGGER.log(Level.INFO, "[ConstantsSnapshot] ---> exporting run = " + run);
+            DatabaseConstantProvider provider = new DatabaseConstantProvider(run, variation, timestamp == null ? "" : timestamp);
+            List<IndexedTable> loaded = new ArrayList<>();
+            for (Map.Entry<String,Integer> table : tables) {
+                try {
+                    loaded.add(provider.readTable(table.getKey(), table.getValue()));
+                } catch (Exception e) {
+                    LOGGER.log(Level.SEVERE, "[ConstantsSnapshot] ---> error reading table : " + table.getKey());
+                    loaded.add(null);
+                }
+            }
+            provider.disconnect();
+            writer.addRun(run, loaded);
+            if (rcdbProvider != null) writer.addRcdb(run, rcdbProvider.getConstants(run));
+        }
+        if (rcdbProvider != null) rcdbProvider.disconnect();
+        try (OutputStream out = new FileOutputStream(filename)) {
+            writer.write(out);
+        }
+        LOGGER.log(Level.INFO, "[ConstantsSnapshot] ---> wrote " + filename + " : " + open(filename));
+    }
+
+    /**
+     * @param runs comma-separated runs and inclusive run ranges, e.g. 5038,5040-5050
+     * @return the runs
+     */
+    public static List<Integer> parseRuns(String runs) {
+        List<Integer> list = new ArrayList<>();
+        for (String token : runs.split(",")) {
+            String[] range = token.trim().split("-");
+            int first = Integer.parseInt(range[0].trim());
+            int last = range.length > 1 ? Integer.parseInt(range[1].trim()) : first;
+            for (int run = first; run <= last; run++) list.add(run);
+        }
+        return list;
+    }
+
+    public static void main(String[] args) {
+        OptionParser parser = new OptionParser("constants-snapshot");
+        parser.setDescription("Export CCDB tables and RCDB values to a snapshot, tables given as name[:indices]");
+        parser.addRequired("-o", "output snapshot file");
+        parser.addRequired("-r", "runs, e.g. 5038,5040-5050");
+        parser.addOption("-v", "default", "CCDB variation");
+        parser.addOption("-x", "", "CCDB timestamp (MM/DD/YYYY-HH:MM:SS)");
+        parser.addOption("-rcdb", "1", "include RCDB values (0/1)");
+        parser.parse(args);
+
+        List<Map.Entry<String,Integer>> tables = new ArrayList<>();
+        for (String table : parser.getInputList()) {
+            String[] tokens = table.split(":");
+            tables.add(new AbstractMap.SimpleImmutableEntry<>(tokens[0],
+                    tokens.length > 1 ? Integer.parseInt(tokens[1]) : DatabaseConstantProvider.DEFAULT_INDICES));
+        }
+        if (tables.isEmpty()) {
+            parser.printUsage();
+            System.exit(1);
+        }
+        try {
+            export(parser.getOption("-o").stringValue(),
+                    parser.getOption("-v").stringValue(),
+                    parser.getOption("-x").stringValue(),
+                    parseRuns(parser.getOption("-r").stringValue()),
+                    tables, parser.getOption("-rcdb").intValue() != 0);
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "[ConstantsSnapshot] ---> export failed", e);
+            System.exit(1);
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package org.jlab.detector.calib.utils;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Set;
 import java.sql.Time;
 
 /**
@@ -40,6 +42,10 @@ public class RCDBConstants {
         });
     }
 
+    public Set<String> getNames() {
+        return Collections.unmodifiableSet(data.keySet());
+    }
+
     public RCDBConstant get(String key) {
         if (data.containsKey(key)) return data.get(key);
         return null;
@@ -2,11 +2,17 @@ package org.jlab.detector.decode;
 
 import org.jlab.detector.scalers.DaqScalers;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
 import org.jlab.detector.base.DetectorDescriptor;
 
 import org.jlab.detector.base.DetectorType;
@@ -50,6 +56,11 @@ public class CLASDecoder4 {
     private SchemaFactory        schemaFactory    = new SchemaFactory();
     private ModeAHDC ahdcExtractor                = new ModeAHDC();
 
+    // reused for reading back banks in decode():
+    private Bank rawScaler   = null;
+    private Bank rawRunConf  = null;
+    private Bank helicityAdc = null;
+
     public CLASDecoder4(boolean development){
         codaDecoder = new CodaEventDecoder();
         detectorDecoder = new DetectorEventDecoder(development);
@@ -749,6 +760,256 @@ public class CLASDecoder4 {
     }
     
     
+    /**
+     * A decoded event, with the scaler event to be written before it, if
+     * any, and its helicity reading.
+     */
+    public static class DecodedEvent {
+        final long index;
+        final Event event;
+        final Event scalerEvent;
+        final HelicityState helicity;
+        final RuntimeException error;
+        DecodedEvent(long index, Event event, Event scalerEvent, HelicityState helicity) {
+            this.index = index;
+            this.event = event;
+            this.scalerEvent = scalerEvent;
+            this.helicity = helicity;
+            this.error = null;
+        }
+        DecodedEvent(long index, RuntimeException error) {
+            this.index = index;
+            this.event = null;
+            this.scalerEvent = null;
+            this.helicity = null;
+            this.error = error;
+        }
+        public Event getEvent() { return this.event; }
+        public Event getScalerEvent() { return this.scalerEvent; }
+        public HelicityState getHelicity() { return this.helicity; }
+    }
+
+    /**
+     * Decode one EVIO event into HIPO, including the header, trigger,
+     * helicity, epics and scaler banks.  Only depends on this decoder's
+     * state, so separate decoders can be used on separate threads.
+     * @param event EVIO event
+     * @param counter index of the event, used as the event number if nrun>0
+     * @param nrun run number for the header bank, or -1 to use the CODA run number
+     * @param torus torus scale for the header bank
+     * @param solenoid solenoid scale for the header bank
+     * @return the decoded event
+     */
+    public DecodedEvent decode(EvioDataEvent event, int counter, int nrun, float torus, float solenoid) {
+
+        if(rawScaler==null) {
+            rawScaler   = new Bank(schemaFactory.getSchema("RAW::scaler"));
+            rawRunConf  = new Bank(schemaFactory.getSchema("RUN::config"));
+            helicityAdc = new Bank(schemaFactory.getSchema("HEL::adc"));
+        }
+
+        Event  decodedEvent = this.getDataEvent(event);
+
+        Bank   header = this.createHeaderBank( nrun, counter, torus, solenoid);
+        if(header!=null) decodedEvent.write(header);
+        Bank   trigger = this.createTriggerBank();
+        if(trigger!=null) decodedEvent.write(trigger);
+        Bank onlineHelicity = this.createOnlineHelicityBank();
+        if(onlineHelicity!=null) decodedEvent.write(onlineHelicity);
+        Bank decodedHelicity = this.createHelicityDecoderBank(event);
+        if (decodedHelicity!=null) decodedEvent.write(decodedHelicity);
+
+        Bank epics = this.createEpicsBank();
+
+        decodedEvent.read(rawScaler);
+        decodedEvent.read(rawRunConf);
+        decodedEvent.read(helicityAdc);
+
+        this.extractPulses(decodedEvent);
+
+        HelicityState helicity = HelicityState.createFromFadcBank(helicityAdc, rawRunConf,
+            this.detectorDecoder.scalerManager);
+
+        Event scalerEvent = null;
+        if(rawScaler.getRows()>0 || epics!=null) {
+            scalerEvent = new Event();
+
+            if(rawScaler.getRows()>0) scalerEvent.write(rawScaler);
+            if(rawRunConf.getRows()>0) scalerEvent.write(rawRunConf);
+
+            for (Bank b : this.createReconScalerBanks(decodedEvent)) {
+                decodedEvent.write(b);
+                scalerEvent.write(b);
+            }
+
+            if (epics!=null) {
+                decodedEvent.write(epics);
+                scalerEvent.write(epics);
+            }
+        }
+
+        return new DecodedEvent(counter, decodedEvent, scalerEvent, helicity);
+    }
+
+    private static final DecodedEvent END_OF_STREAM = new DecodedEvent(-1, null, null, null);
+
+    /**
+     * Write a decoded event and collect its helicity reading.
+     */
+    private static void write(DecodedEvent decoded, HipoWriterSorted writer, TreeSet<HelicityState> helicityReadings) {
+        helicityReadings.add(decoded.helicity);
+        if(decoded.scalerEvent!=null) writer.addEvent(decoded.scalerEvent, 1);
+        writer.addEvent(decoded.event, 0);
+    }
+
+    /**
+     * Pipelined decoding:  one thread reads the EVIO files, each decoder
+     * decodes events on its own thread, and the calling thread writes the
+     * events and collects the helicity readings in their original input
+     * order, so the output file is identical to a serial run.  The number of
+     * events in flight, including those waiting to be reordered, is bounded.
+     * Since events without a HEAD bank inherit the run, event number, time
+     * and trigger words of the previous input event, the reader thread tracks
+     * these in input order and hands them to the workers with each event.
+     * As in the serial loop, an error stops the run after the events before
+     * it were written.
+     * @param decoders one decoder per worker thread, configured identically
+     * @param inputList EVIO files
+     * @param writer output
+     * @param helicityReadings collection of helicity readings
+     * @param progress
+     * @param nevents maximum number of events per file, as in the serial loop
+     * @param nrun run number for the header bank, or -1
+     * @param torus torus scale for the header bank
+     * @param solenoid solenoid scale for the header bank
+     * @throws RuntimeException if reading or decoding an event failed
+     */
+    public static void decodeParallel(List<CLASDecoder4> decoders, List<String> inputList,
+            HipoWriterSorted writer, TreeSet<HelicityState> helicityReadings, ProgressPrintout progress,
+            int nevents, int nrun, float torus, float solenoid) {
+
+        final int nthreads = decoders.size();
+        final int capacity = 4*nthreads;
+        final BlockingQueue<Object[]> todo = new ArrayBlockingQueue<>(capacity);
+        final BlockingQueue<DecodedEvent> done = new LinkedBlockingQueue<>();
+        final Semaphore inFlight = new Semaphore(capacity);
+        final Object[] endOfInput = new Object[0];
+        final AtomicReference<RuntimeException> readError = new AtomicReference<>();
+
+        Thread readerThread = new Thread(() -> {
+            int counter = 0;
+            CodaEventDecoder header = new CodaEventDecoder();
+            try {
+                for(String inputFile : inputList){
+                    EvioSource reader = new EvioSource();
+                    reader.open(inputFile);
+                    while(reader.hasEvent()==true){
+                        EvioDataEvent event = (EvioDataEvent) reader.getNextEvent();
+                        inFlight.acquire();
+                        // header state left by the previous event:
+                        CodaEventDecoder.HeaderState state = header.getHeaderState();
+                        try {
+                            header.readHeader(event);
+                        } catch (Exception e) {
+                            // as in initEvent, where the worker will report it
+                        }
+                        todo.put(new Object[]{counter, event, state});
+                        counter++;
+                        if(nevents>0){
+                            if(counter>=nevents) break;
+                        }
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                readError.set(e);
+            } finally {
+                for(int i = 0; i < nthreads; i++) {
+                    try {
+                        todo.put(endOfInput);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        }, "CLASDecoder4-reader");
+
+        Thread[] workers = new Thread[nthreads];
+        for(int i = 0; i < nthreads; i++) {
+            final CLASDecoder4 decoder = decoders.get(i);
+            workers[i] = new Thread(() -> {
+                try {
+                    while(true) {
+                        Object[] next = todo.take();
+                        if(next==endOfInput) break;
+                        int counter = (Integer) next[0];
+                        DecodedEvent decoded;
+                        try {
+                            decoder.codaDecoder.setHeaderState((CodaEventDecoder.HeaderState) next[2]);
+                            decoded = decoder.decode((EvioDataEvent) next[1], counter, nrun, torus, solenoid);
+                        } catch (RuntimeException e) {
+                            decoded = new DecodedEvent(counter, e);
+                        }
+                        done.put(decoded);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.add(END_OF_STREAM);
+                }
+            }, "CLASDecoder4-worker-"+i);
+        }
+
+        readerThread.setDaemon(true);
+        readerThread.start();
+        for(Thread worker : workers) {
+            worker.setDaemon(true);
+            worker.start();
+        }
+
+        // reorder and write on this thread:
+        Map<Long,DecodedEvent> pending = new HashMap<>();
+        long nextIndex = 0;
+        int finished = 0;
+        try {
+            while(finished<nthreads || done.isEmpty()==false) {
+                DecodedEvent next = done.take();
+                if(next==END_OF_STREAM) {
+                    finished++;
+                    continue;
+                }
+                pending.put(next.index, next);
+                while(pending.containsKey(nextIndex)) {
+                    DecodedEvent decoded = pending.remove(nextIndex);
+                    if(decoded.error!=null) {
+                        readerThread.interrupt();
+                        for(Thread worker : workers) worker.interrupt();
+                        throw new RuntimeException("error decoding event " + nextIndex, decoded.error);
+                    }
+                    write(decoded, writer, helicityReadings);
+                    inFlight.release();
+                    nextIndex++;
+                    progress.updateStatus();
+                    if(nextIndex%25000==0){
+                        System.gc();
+                    }
+                }
+            }
+            readerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            readerThread.interrupt();
+            for(Thread worker : workers) worker.interrupt();
+        }
+        if(readError.get()!=null) {
+            throw new RuntimeException("error reading event " + nextIndex, readError.get());
+        }
+        if(pending.isEmpty()==false) {
+            System.out.println(">>>> error : " + pending.size() + " events were not written");
+        }
+    }
+
     public static void main(String[] args){
 
         OptionParser parser = new OptionParser("decoder");
@@ -759,6 +1020,7 @@ public class CLASDecoder4 {
         parser.addOption("-d", "0","debug mode, set >0 for more verbose output");
         parser.addOption("-m", "run","translation tables source (use -m devel for development tables)");
         parser.addOption("-b", "16","record buffer size in MB");
+        parser.addOption("-threads", "1","number of decoding threads");
         parser.addRequired("-o","output.hipo");
 
 
@@ -795,102 +1057,66 @@ public class CLASDecoder4 {
         int compression = parser.getOption("-c").intValue();
         int  recordsize = parser.getOption("-b").intValue();
         int debug = parser.getOption("-d").intValue();
+        int nthreads = parser.getOption("-threads").intValue();
 
-        CLASDecoder4 decoder = new CLASDecoder4(developmentMode);
+        int nrun = parser.getOption("-r").intValue();
+        double torus = parser.getOption("-t").doubleValue();
+        double solenoid = parser.getOption("-s").doubleValue();
 
-        decoder.setDebugMode(debug);
+        // one decoder per thread, each with its own CODA and detector decoders:
+        List<CLASDecoder4> decoders = new ArrayList<>();
+        for(int i = 0; i < Math.max(1, nthreads); i++) {
+            CLASDecoder4 decoder = new CLASDecoder4(developmentMode);
+            decoder.setDebugMode(debug);
+            if(nrun>0){
+                decoder.setRunNumber(nrun,true);
+            }
+            if (parser.getOption("-x").getValue() != null)
+                decoder.detectorDecoder.setTimestamp(parser.getOption("-x").stringValue());
+            if (parser.getOption("-v").getValue() != null)
+                decoder.detectorDecoder.setVariation(parser.getOption("-v").stringValue());
+            decoders.add(decoder);
+        }
 
         HipoWriterSorted writer = new HipoWriterSorted();
         writer.setCompressionType(compression);
         writer.getSchemaFactory().initFromDirectory(ClasUtilsFile.getResourceDir("CLAS12DIR", "etc/bankdefs/hipo4"));
 
-        Bank  rawScaler   = new Bank(writer.getSchemaFactory().getSchema("RAW::scaler"));
-        Bank  rawRunConf  = new Bank(writer.getSchemaFactory().getSchema("RUN::config"));
-        Bank  helicityAdc = new Bank(writer.getSchemaFactory().getSchema("HEL::adc"));
-        Event scalerEvent = new Event();
-
-        int nrun = parser.getOption("-r").intValue();
-        double torus = parser.getOption("-t").doubleValue();
-        double solenoid = parser.getOption("-s").doubleValue();
-
         writer.open(outputFile);
         ProgressPrintout progress = new ProgressPrintout();
         System.out.println("INPUT LIST SIZE = " + inputList.size());
         int nevents = parser.getOption("-n").intValue();
         int counter = 0;
 
-        if(nrun>0){
-            decoder.setRunNumber(nrun,true);
-        }
-
-        if (parser.getOption("-x").getValue() != null)
-            decoder.detectorDecoder.setTimestamp(parser.getOption("-x").stringValue());
-        if (parser.getOption("-v").getValue() != null)
-            decoder.detectorDecoder.setVariation(parser.getOption("-v").stringValue());
-
         // Store all helicity readings, ordered by timestamp:
         TreeSet<HelicityState> helicityReadings = new TreeSet<>();
 
-        for(String inputFile : inputList){
-            EvioSource reader = new EvioSource();
-            reader.open(inputFile);
-           
-            while(reader.hasEvent()==true){
-                EvioDataEvent event = (EvioDataEvent) reader.getNextEvent();
-                
-                Event  decodedEvent = decoder.getDataEvent(event);
-                
-                Bank   header = decoder.createHeaderBank( nrun, counter, (float) torus, (float) solenoid);
-                if(header!=null) decodedEvent.write(header);
-                Bank   trigger = decoder.createTriggerBank();
-                if(trigger!=null) decodedEvent.write(trigger);
-                Bank onlineHelicity = decoder.createOnlineHelicityBank();
-                if(onlineHelicity!=null) decodedEvent.write(onlineHelicity);
-                Bank decodedHelicity = decoder.createHelicityDecoderBank(event);
-                if (decodedHelicity!=null) decodedEvent.write(decodedHelicity);
-                
-                Bank epics = decoder.createEpicsBank();
-                
-                decodedEvent.read(rawScaler);
-                decodedEvent.read(rawRunConf);
-                decodedEvent.read(helicityAdc);
-
-                decoder.extractPulses(decodedEvent);
-
-                helicityReadings.add(HelicityState.createFromFadcBank(helicityAdc, rawRunConf,
-                    decoder.detectorDecoder.scalerManager));
-
-                if(rawScaler.getRows()>0 || epics!=null) {
-                    scalerEvent.reset();
-                    
-                    if(rawScaler.getRows()>0) scalerEvent.write(rawScaler);
-                    if(rawRunConf.getRows()>0) scalerEvent.write(rawRunConf);
-
-                    for (Bank b : decoder.createReconScalerBanks(decodedEvent)) {
-                        decodedEvent.write(b);
-                        scalerEvent.write(b);
+        if(decoders.size()>1) {
+            decodeParallel(decoders, inputList, writer, helicityReadings, progress,
+                    nevents, nrun, (float) torus, (float) solenoid);
+        }
+        else {
+            CLASDecoder4 decoder = decoders.get(0);
+            for(String inputFile : inputList){
+                EvioSource reader = new EvioSource();
+                reader.open(inputFile);
+
+                while(reader.hasEvent()==true){
+                    EvioDataEvent event = (EvioDataEvent) reader.getNextEvent();
+
+                    write(decoder.decode(event, counter, nrun, (float) torus, (float) solenoid),
+                            writer, helicityReadings);
+
+                    counter++;
+                    progress.updateStatus();
+                    if(counter%25000==0){
+                        System.gc();
                     }
-
-                    if (epics!=null) {
-                        decodedEvent.write(epics);
-                        scalerEvent.write(epics);
+                    if(nevents>0){
+                        if(counter>=nevents) break;
                     }
-
-                    writer.addEvent(scalerEvent, 1);
-                }
-                
-                writer.addEvent(decodedEvent,0);
-                
-                counter++;
-                progress.updateStatus();
-                if(counter%25000==0){
-                    System.gc();
-                }
-                if(nevents>0){
-                    if(counter>=nevents) break;
                 }
             }
-
         }
 
         // add the helicity flips into new tag-1 events:
@@ -45,6 +45,68 @@ public class CodaEventDecoder {
     public CodaEventDecoder(){
 
     }
+
+    /**
+     * The header properties that an event without a HEAD bank inherits from
+     * the previous event, see {@link #getDataEntries(EvioDataEvent)}.
+     */
+    public static class HeaderState {
+        private final int runNumber;
+        private final int eventNumber;
+        private final int unixTime;
+        private final byte helicityLevel3;
+        private final List<Integer> triggerWords;
+        private final int tiMaster;
+        private HeaderState(CodaEventDecoder decoder) {
+            this.runNumber      = decoder.runNumber;
+            this.eventNumber    = decoder.eventNumber;
+            this.unixTime       = decoder.unixTime;
+            this.helicityLevel3 = decoder.helicityLevel3;
+            this.triggerWords   = new ArrayList<>(decoder.triggerWords);
+            this.tiMaster       = decoder.tiMaster;
+        }
+    }
+
+    /**
+     * @return a copy of the header properties left by the last event
+     */
+    public HeaderState getHeaderState() {
+        return new HeaderState(this);
+    }
+
+    /**
+     * Restore the header properties, e.g. to decode an event on another
+     * decoder as if it followed the events read by this one.
+     * @param state 
+     */
+    public void setHeaderState(HeaderState state) {
+        this.runNumber      = state.runNumber;
+        this.eventNumber    = state.eventNumber;
+        this.unixTime       = state.unixTime;
+        this.helicityLevel3 = state.helicityLevel3;
+        this.triggerWords   = new ArrayList<>(state.triggerWords);
+        this.tiMaster       = state.tiMaster;
+    }
+
+    /**
+     * Update only the header properties from the event, as
+     * {@link #getDataEntries(EvioDataEvent)} does, without decoding the
+     * detector data.
+     * @param event 
+     */
+    public void readHeader(EvioDataEvent event){
+        this.getDataEntries_TI(event);
+        List<EvioTreeBranch> branches = this.getEventBranches(event);
+        for(EvioTreeBranch branch : branches){
+            int crate = branch.getTag();
+            for(EvioNode node : this.getEventBranch(branches, crate).getNodes()){
+                if(node.getTag()==57615){
+                    this.tiMaster = crate;
+                    this.readHeaderBank(crate, node, event);
+                }
+            }
+        }
+    }
     /**
      * returns detector digitized data entries from the event.
      * all branches are analyzed and different types of digitized data
@@ -2,10 +2,10 @@ package org.jlab.detector.decode;
 
 import java.util.Arrays;
 import java.util.List;
+import org.jlab.detector.base.DetectorDescriptor;
 import org.jlab.detector.base.DetectorType;
 import org.jlab.detector.calib.utils.ConstantsManager;
 import org.jlab.detector.decode.DetectorDataDgtz.ADCData;
-import org.jlab.utils.groups.IndexedTable;
 
 /**
  *
@@ -24,6 +24,8 @@ public class DetectorEventDecoder {
 
     private int runNumber = 10;
 
+    private volatile TranslationIndex translationIndex = null;
+
     private ExtendedFADCFitter extendedFitter = new ExtendedFADCFitter();
     private MVTFitter mvtFitter = new MVTFitter();
 
@@ -39,12 +41,14 @@ public class DetectorEventDecoder {
         translationManager.setTimeStamp(timestamp);
         fitterManager.setTimeStamp(timestamp);
         scalerManager.setTimeStamp(timestamp);
+        this.translationIndex = null;
     }
 
     public void setVariation(String variation) {
         translationManager.setVariation(variation);
         fitterManager.setVariation(variation);
         scalerManager.setVariation(variation);
+        this.translationIndex = null;
     }
 
     public void setRunNumber(int run){
@@ -76,6 +80,7 @@ public class DetectorEventDecoder {
         tablesFitter = Arrays.asList(new String[]{"/daq/fadc/clasdev/htcc"});
         translationManager.init(keysTrans,tablesTrans);
         fitterManager.init(keysFitter, tablesFitter);
+        this.translationIndex = null;
         scalerManager.init(Arrays.asList(new String[]{"/runcontrol/fcup","/runcontrol/slm","/runcontrol/hwp",
                                                       "/runcontrol/helicity","/daq/config/scalers/dsc1"}));
     }
@@ -108,11 +113,32 @@ public class DetectorEventDecoder {
             "/daq/config/ahdc"
         });
         fitterManager.init(keysFitter, tablesFitter);
+        this.translationIndex = null;
 
         scalerManager.init(Arrays.asList(new String[]{"/runcontrol/fcup","/runcontrol/slm","/runcontrol/hwp",
                                                       "/runcontrol/helicity","/daq/config/scalers/dsc1"}));
     }
 
+    /**
+     * Get the compiled translation and fitter tables for the current run,
+     * building them only when the run changes.
+     * @return the index
+     */
+    private TranslationIndex getTranslationIndex() {
+        TranslationIndex index = this.translationIndex;
+        if(index==null || index.getRun()!=this.runNumber) {
+            synchronized(this) {
+                index = this.translationIndex;
+                if(index==null || index.getRun()!=this.runNumber) {
+                    index = new TranslationIndex(this.runNumber, translationManager, keysTrans,
+                                                 fitterManager, keysFitter);
+                    this.translationIndex = index;
+                }
+            }
+        }
+        return index;
+    }
+
     /**
      * applies translation table to the digitized data to translate
      * crate,slot channel to sector layer component.
@@ -120,95 +146,87 @@ public class DetectorEventDecoder {
      */
     public void translate(List<DetectorDataDgtz>  detectorData){
 
+        TranslationIndex tt = this.getTranslationIndex();
+
         for(DetectorDataDgtz data : detectorData){
 
-            int crate    = data.getDescriptor().getCrate();
-            int slot     = data.getDescriptor().getSlot();
-            int channel  = data.getDescriptor().getChannel();
-
-            for(String table : keysTrans){
-                IndexedTable  tt = translationManager.getConstants(runNumber, table);
-                DetectorType  type = DetectorType.getType(table);
-                if(tt.hasEntry(crate,slot,channel)==true){
-                    int sector    = tt.getIntValue("sector", crate,slot,channel);
-                    int layer     = tt.getIntValue("layer", crate,slot,channel);
-                    int component = tt.getIntValue("component", crate,slot,channel);
-                    int order     = tt.getIntValue("order", crate,slot,channel);
-
-                    data.getDescriptor().setSectorLayerComponent(sector, layer, component);
-                    data.getDescriptor().setOrder(order);
-                    data.getDescriptor().setType(type);
-
-                    for(int i = 0; i < data.getADCSize(); i++) {
-                        data.getADCData(i).setOrder(order);
-                    }
-                    for(int i = 0; i < data.getTDCSize(); i++) {
-                        data.getTDCData(i).setOrder(order);
-                    }
-                }
+            DetectorDescriptor desc = data.getDescriptor();
+            int row = tt.getRow(desc.getCrate(), desc.getSlot(), desc.getChannel());
+            if(row<0 || tt.getType(row)==null) continue;
+
+            int order = tt.getOrder(row);
+            desc.setSectorLayerComponent(tt.getSector(row), tt.getLayer(row), tt.getComponent(row));
+            desc.setOrder(order);
+            desc.setType(tt.getType(row));
+
+            for(int i = 0; i < data.getADCSize(); i++) {
+                data.getADCData(i).setOrder(order);
+            }
+            for(int i = 0; i < data.getTDCSize(); i++) {
+                data.getTDCData(i).setOrder(order);
             }
         }
     }
 
+    /**
+     * fits the ADC pulses, with the MVT fitter for BMT, FMT, AHDC and FTTRK
+     * and the FADC fitter for channels in the other fitter tables.
+     * @param detectorData
+     */
     public void fitPulses(List<DetectorDataDgtz>  detectorData){
+
+        TranslationIndex daq = this.getTranslationIndex();
+
         for(DetectorDataDgtz data : detectorData){
-            int crate    = data.getDescriptor().getCrate();
-            int slot     = data.getDescriptor().getSlot();
-            int channel  = data.getDescriptor().getChannel();
-            for(String table : keysFitter){
-                //custom MM fitter
-            	if( ( (table.equals("BMT"))&&(data.getDescriptor().getType().getName().equals("BMT")) )
-                 || ( (table.equals("FMT"))&&(data.getDescriptor().getType().getName().equals("FMT")) )
-                 || ( (table.equals("AHDC"))&&(data.getDescriptor().getType().getName().equals("AHDC")) )
-                 || ( (table.equals("FTTRK"))&&(data.getDescriptor().getType().getName().equals("FTTRK")) ) ){
-                    IndexedTable daq = fitterManager.getConstants(runNumber, table);
-                    short adcOffset = (short) daq.getDoubleValue("adc_offset", 0, 0, 0);
-                    double fineTimeStampResolution = (byte) daq.getDoubleValue("dream_clock", 0, 0, 0);
-                    double samplingTime = (byte) daq.getDoubleValue("sampling_time", 0, 0, 0);
-                    int sparseSample = daq.getIntValue("sparse", 0, 0 ,0);
-                    if (data.getADCSize() > 0) {
-                        ADCData adc = data.getADCData(0);
-                        mvtFitter.fit(adcOffset, fineTimeStampResolution, samplingTime, adc.getPulseArray(), adc.getTimeStamp(), sparseSample);
-                        adc.setHeight((short) (mvtFitter.adcMax));
-                        adc.setTime((int) (mvtFitter.timeMax));
-                        adc.setIntegral((int) (mvtFitter.integral));
-                        adc.setTimeStamp(mvtFitter.timestamp);
-                    }
-                } else {
-                    IndexedTable  daq = fitterManager.getConstants(runNumber, table);
-                    DetectorType  type = DetectorType.getType(table);
-                    if(daq.hasEntry(crate,slot,channel)==true){
-                        int nsa = daq.getIntValue("nsa", crate,slot,channel);
-                        int nsb = daq.getIntValue("nsb", crate,slot,channel);
-                        int tet = daq.getIntValue("tet", crate,slot,channel);
-                        int ped = 0;
-                        if(table.equals("RF")&&data.getDescriptor().getType().getName().equals("RF")) ped = daq.getIntValue("pedestal", crate,slot,channel);
-                        if(data.getADCSize()>0){
-                            for(int i = 0; i < data.getADCSize(); i++){
-                                ADCData adc = data.getADCData(i);
-                                if(adc.getPulseSize()>0){
-                                    try {
-                                        extendedFitter.fit(nsa, nsb, tet, ped, adc.getPulseArray());
-                                    } catch (Exception e) {
-                                        System.out.println(">>>> error : fitting pulse "
-                                                            +  crate + " / " + slot + " / " + channel);
-                                    }
-                                    int adc_corrected = extendedFitter.adc + extendedFitter.ped*(nsa+nsb);
-                                    adc.setHeight((short) this.extendedFitter.pulsePeakValue);
-                                    adc.setIntegral(adc_corrected);
-                                    adc.setTimeWord(this.extendedFitter.t0);
-                                    adc.setPedestal((short) this.extendedFitter.ped);
-                                }
-                            }
-                        }
-                        if(data.getADCSize()>0){
-                            for(int i = 0; i < data.getADCSize(); i++){
-                                    data.getADCData(i).setADC(nsa, nsb);
-                            }
-                        }
-                    }
+            DetectorDescriptor desc = data.getDescriptor();
+            DetectorType type = desc.getType();
+            int row = daq.getRow(desc.getCrate(), desc.getSlot(), desc.getChannel());
+            int mvtTable = daq.getMVTTable(type);
+            int fitTable = row<0 ? -1 : daq.getFitTable(row);
+            // apply in the order of the fitter tables
+            if(mvtTable>=0 && (fitTable<0 || mvtTable<fitTable)) this.fitMVT(data, daq, type);
+            if(fitTable>=0) this.fitFADC(data, daq, row, type);
+            if(mvtTable>=0 && fitTable>=0 && mvtTable>fitTable) this.fitMVT(data, daq, type);
+        }
+    }
+
+    private void fitMVT(DetectorDataDgtz data, TranslationIndex daq, DetectorType type) {
+        if (data.getADCSize() > 0) {
+            ADCData adc = data.getADCData(0);
+            mvtFitter.fit(daq.getMVTAdcOffset(type), daq.getMVTClock(type), daq.getMVTSamplingTime(type),
+                    adc.getPulseArray(), adc.getTimeStamp(), daq.getMVTSparse(type));
+            adc.setHeight((short) (mvtFitter.adcMax));
+            adc.setTime((int) (mvtFitter.timeMax));
+            adc.setIntegral((int) (mvtFitter.integral));
+            adc.setTimeStamp(mvtFitter.timestamp);
+        }
+    }
+
+    private void fitFADC(DetectorDataDgtz data, TranslationIndex daq, int row, DetectorType type) {
+        int nsa = daq.getNSA(row);
+        int nsb = daq.getNSB(row);
+        int tet = daq.getTET(row);
+        int ped = type==DetectorType.RF ? daq.getPedestal(row) : 0;
+        for(int i = 0; i < data.getADCSize(); i++){
+            ADCData adc = data.getADCData(i);
+            if(adc.getPulseSize()>0){
+                try {
+                    extendedFitter.fit(nsa, nsb, tet, ped, adc.getPulseArray());
+                } catch (Exception e) {
+                    System.out.println(">>>> error : fitting pulse "
+                                        +  data.getDescriptor().getCrate() + " / "
+                                        +  data.getDescriptor().getSlot() + " / "
+                                        +  data.getDescriptor().getChannel());
                 }
+                int adc_corrected = extendedFitter.adc + extendedFitter.ped*(nsa+nsb);
+                adc.setHeight((short) this.extendedFitter.pulsePeakValue);
+                adc.setIntegral(adc_corrected);
+                adc.setTimeWord(this.extendedFitter.t0);
+                adc.setPedestal((short) this.extendedFitter.ped);
             }
         }
+        for(int i = 0; i < data.getADCSize(); i++){
+            data.getADCData(i).setADC(nsa, nsb);
+        }
     }
 }
@@ -0,0 +1,252 @@
+package org.jlab.detector.decode;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.jlab.detector.base.DetectorType;
+import org.jlab.detector.calib.utils.ConstantsManager;
+import org.jlab.utils.groups.CompiledIndexedTable;
+
+/**
+ * Translation and FADC fitter tables for one run, compiled into one index
+ * by crate, slot and channel, so decoding a hit takes a single lookup
+ * instead of searching every table.
+ *
+ * Channels of each (crate, slot) are stored contiguously in one flat array
+ * of row numbers, and the translation (type, sector, layer, component,
+ * order) and fitter parameters (nsa, nsb, tet, pedestal) of each row are
+ * stored in primitive arrays.  Where several tables have the same channel,
+ * the last one in the list wins, as when applying the tables in order.
+ *
+ * The fitter tables of the MVT-type detectors (BMT, FMT, AHDC, FTTRK) have
+ * one global row and are applied by detector type instead.
+ *
+ * Instances are immutable and can be shared by any number of threads.
+ */
+final class TranslationIndex {
+
+    static final List<DetectorType> MVT_TYPES = Arrays.asList(
+            DetectorType.BMT, DetectorType.FMT, DetectorType.AHDC, DetectorType.FTTRK);
+
+    private final int run;
+
+    // crate/slot/channel to row
+    private final int nslots;
+    private final int[] slotOffset;
+    private final int[] slotChannels;
+    private final int[] rows;
+
+    // translation
+    private final DetectorType[] types;
+    private final int[] sectors;
+    private final int[] layers;
+    private final int[] components;
+    private final int[] orders;
+
+    // regular FADC fitter, with the position of the table in the fitter list
+    private final int[] fitTable;
+    private final int[] nsa;
+    private final int[] nsb;
+    private final int[] tet;
+    private final int[] pedestal;
+
+    // MVT fitter, by detector type ordinal
+    private final int[] mvtTable;
+    private final short[] mvtAdcOffset;
+    private final double[] mvtClock;
+    private final double[] mvtSamplingTime;
+    private final int[] mvtSparse;
+
+    TranslationIndex(int run, ConstantsManager translationManager, List<String> keysTrans,
+            ConstantsManager fitterManager, List<String> keysFitter) {
+        this(run, compile(run, translationManager, keysTrans), keysTrans,
+                  compile(run, fitterManager, keysFitter), keysFitter);
+    }
+
+    /**
+     * @param run run number
+     * @param trans compiled translation tables, in the order of keysTrans
+     * @param keysTrans translation table names
+     * @param fitters compiled fitter tables, in the order of keysFitter
+     * @param keysFitter fitter table names
+     */
+    TranslationIndex(int run, CompiledIndexedTable[] trans, List<String> keysTrans,
+            CompiledIndexedTable[] fitters, List<String> keysFitter) {
+
+        this.run = run;
+
+        // assign row numbers to all channels and find the channel range of each slot
+        Map<Long,Integer> keys = new HashMap<>();
+        int maxCrate = 0, maxSlot = 0;
+        for (CompiledIndexedTable t : trans) {
+            for (int r = 0; r < t.getRowCount(); r++) {
+                keys.putIfAbsent(key(t.getIndex(r, 0), t.getIndex(r, 1), t.getIndex(r, 2)), keys.size());
+                maxCrate = Math.max(maxCrate, t.getIndex(r, 0));
+                maxSlot  = Math.max(maxSlot, t.getIndex(r, 1));
+            }
+        }
+        for (int i = 0; i < fitters.length; i++) {
+            if (isMVT(keysFitter.get(i))) continue;
+            CompiledIndexedTable t = fitters[i];
+            for (int r = 0; r < t.getRowCount(); r++) {
+                keys.putIfAbsent(key(t.getIndex(r, 0), t.getIndex(r, 1), t.getIndex(r, 2)), keys.size());
+                maxCrate = Math.max(maxCrate, t.getIndex(r, 0));
+                maxSlot  = Math.max(maxSlot, t.getIndex(r, 1));
+            }
+        }
+        this.nslots = maxSlot + 1;
+        this.slotOffset = new int[(maxCrate + 1) * this.nslots];
+        this.slotChannels = new int[(maxCrate + 1) * this.nslots];
+        for (long key : keys.keySet()) {
+            int cs = crate(key) * this.nslots + slot(key);
+            this.slotChannels[cs] = Math.max(this.slotChannels[cs], channel(key) + 1);
+        }
+        int size = 0;
+        for (int cs = 0; cs < this.slotOffset.length; cs++) {
+            this.slotOffset[cs] = size;
+            size += this.slotChannels[cs];
+        }
+        this.rows = new int[size];
+        Arrays.fill(this.rows, -1);
+        for (Map.Entry<Long,Integer> entry : keys.entrySet()) {
+            long key = entry.getKey();
+            this.rows[this.getPosition(crate(key), slot(key), channel(key))] = entry.getValue();
+        }
+
+        final int n = keys.size();
+        this.types = new DetectorType[n];
+        this.sectors = new int[n];
+        this.layers = new int[n];
+        this.components = new int[n];
+        this.orders = new int[n];
+        this.fitTable = new int[n];
+        this.nsa = new int[n];
+        this.nsb = new int[n];
+        this.tet = new int[n];
+        this.pedestal = new int[n];
+        Arrays.fill(this.fitTable, -1);
+
+        for (int i = 0; i < trans.length; i++) {
+            CompiledIndexedTable t = trans[i];
+            DetectorType type = DetectorType.getType(keysTrans.get(i));
+            int sector = t.getColumn("sector");
+            int layer = t.getColumn("layer");
+            int component = t.getColumn("component");
+            int order = t.getColumn("order");
+            for (int r = 0; r < t.getRowCount(); r++) {
+                int row = this.getRow(t.getIndex(r, 0), t.getIndex(r, 1), t.getIndex(r, 2));
+                this.types[row] = type;
+                this.sectors[row] = t.getInt(r, sector);
+                this.layers[row] = t.getInt(r, layer);
+                this.components[row] = t.getInt(r, component);
+                this.orders[row] = t.getInt(r, order);
+            }
+        }
+
+        this.mvtTable = new int[DetectorType.values().length];
+        this.mvtAdcOffset = new short[this.mvtTable.length];
+        this.mvtClock = new double[this.mvtTable.length];
+        this.mvtSamplingTime = new double[this.mvtTable.length];
+        this.mvtSparse = new int[this.mvtTable.length];
+        Arrays.fill(this.mvtTable, -1);
+
+        for (int i = 0; i < fitters.length; i++) {
+            CompiledIndexedTable t = fitters[i];
+            if (isMVT(keysFitter.get(i))) {
+                int type = DetectorType.getType(keysFitter.get(i)).ordinal();
+                this.mvtTable[type] = i;
+                this.mvtAdcOffset[type] = (short) t.getDoubleValue(t.getColumn("adc_offset"), 0, 0, 0);
+                this.mvtClock[type] = (byte) t.getDoubleValue(t.getColumn("dream_clock"), 0, 0, 0);
+                this.mvtSamplingTime[type] = (byte) t.getDoubleValue(t.getColumn("sampling_time"), 0, 0, 0);
+                this.mvtSparse[type] = t.getIntValue(t.getColumn("sparse"), 0, 0, 0);
+                continue;
+            }
+            int cnsa = t.getColumn("nsa");
+            int cnsb = t.getColumn("nsb");
+            int ctet = t.getColumn("tet");
+            int cped = keysFitter.get(i).equals("RF") ? t.getColumn("pedestal") : -1;
+            for (int r = 0; r < t.getRowCount(); r++) {
+                int row = this.getRow(t.getIndex(r, 0), t.getIndex(r, 1), t.getIndex(r, 2));
+                this.fitTable[row] = i;
+                this.nsa[row] = t.getInt(r, cnsa);
+                this.nsb[row] = t.getInt(r, cnsb);
+                this.tet[row] = t.getInt(r, ctet);
+                this.pedestal[row] = cped < 0 ? 0 : t.getInt(r, cped);
+            }
+        }
+    }
+
+    private static CompiledIndexedTable[] compile(int run, ConstantsManager manager, List<String> keys) {
+        CompiledIndexedTable[] tables = new CompiledIndexedTable[keys.size()];
+        for (int i = 0; i < tables.length; i++) {
+            tables[i] = manager.getConstants(run, keys.get(i)).compile();
+        }
+        return tables;
+    }
+
+    static boolean isMVT(String table) {
+        return MVT_TYPES.contains(DetectorType.getType(table));
+    }
+
+    private static long key(int crate, int slot, int channel) {
+        return ((long) crate << 32) | ((long) slot << 16) | channel;
+    }
+
+    private static int crate(long key)   { return (int) (key >>> 32); }
+    private static int slot(long key)    { return (int) (key >>> 16) & 0xFFFF; }
+    private static int channel(long key) { return (int) key & 0xFFFF; }
+
+    private int getPosition(int crate, int slot, int channel) {
+        return this.slotOffset[crate * this.nslots + slot] + channel;
+    }
+
+    int getRun() {
+        return this.run;
+    }
+
+    /**
+     * @param crate
+     * @param slot
+     * @param channel
+     * @return row number, or -1 if the channel is in none of the tables
+     */
+    int getRow(int crate, int slot, int channel) {
+        if (crate < 0 || slot < 0 || channel < 0 || slot >= this.nslots) return -1;
+        final int cs = crate * this.nslots + slot;
+        if (cs >= this.slotChannels.length || channel >= this.slotChannels[cs]) return -1;
+        return this.rows[this.slotOffset[cs] + channel];
+    }
+
+    /**
+     * @param row
+     * @return detector type, or null if the channel is in no translation table
+     */
+    DetectorType getType(int row) { return this.types[row]; }
+    int getSector(int row)        { return this.sectors[row]; }
+    int getLayer(int row)         { return this.layers[row]; }
+    int getComponent(int row)     { return this.components[row]; }
+    int getOrder(int row)         { return this.orders[row]; }
+
+    /**
+     * @param row
+     * @return position of the fitter table in the fitter list, or -1 if
+     * the channel is in no (non-MVT) fitter table
+     */
+    int getFitTable(int row)      { return this.fitTable[row]; }
+    int getNSA(int row)           { return this.nsa[row]; }
+    int getNSB(int row)           { return this.nsb[row]; }
+    int getTET(int row)           { return this.tet[row]; }
+    int getPedestal(int row)      { return this.pedestal[row]; }
+
+    /**
+     * @param type
+     * @return position of the MVT fitter table for this type in the fitter
+     * list, or -1 if there is none
+     */
+    int getMVTTable(DetectorType type)       { return this.mvtTable[type.ordinal()]; }
+    short getMVTAdcOffset(DetectorType type) { return this.mvtAdcOffset[type.ordinal()]; }
+    double getMVTClock(DetectorType type)    { return this.mvtClock[type.ordinal()]; }
+    double getMVTSamplingTime(DetectorType type) { return this.mvtSamplingTime[type.ordinal()]; }
+    int getMVTSparse(DetectorType type)      { return this.mvtSparse[type.ordinal()]; }
+}
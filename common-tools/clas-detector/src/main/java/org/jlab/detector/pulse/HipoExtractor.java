@@ -2,13 +2,16 @@
 package org.jlab.detector.pulse;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import org.jlab.io.base.DataBank;
 import org.jlab.io.base.DataEvent;
 import org.jlab.jnp.hipo4.data.Bank;
 import org.jlab.jnp.hipo4.data.Event;
+import org.jlab.jnp.hipo4.data.Schema;
 import org.jlab.jnp.hipo4.data.SchemaFactory;
 import org.jlab.utils.groups.IndexedTable;
+import org.jlab.utils.groups.NamedEntry;
 
 /**
  * For now, a place to store standard boilerplate for waveform/pulse HIPO
@@ -21,10 +24,60 @@ import org.jlab.utils.groups.IndexedTable;
  * FIXME:  Passing the #samples around is obviously bad, and there's probably a
  * few non-horrible ways that can be addressed without changing bank format.
  * 
+ * The waveform bank is read in one pass into a row-major sample matrix, and
+ * extractors can override {@link #extract(NamedEntry, int, short[], int, int)}
+ * to work on it in place instead of on a copy of each row's samples.
+ * 
  * @author baltzell
  */
 public abstract class HipoExtractor implements IExtractor {
 
+    private static final String[] INDEX_NAMES = {"sector", "layer", "component", "order"};
+
+    private static final String[] ADC_NAMES = {"sector", "layer", "component", "order", "windex", "ADC", "time"};
+
+    private static volatile String[] sampleNames = new String[0];
+
+    /**
+     * Extract pulses from the samples of one row of a sample matrix.  This
+     * default copies the row and calls {@link #extract(NamedEntry, int, short...)},
+     * override it to avoid the copy.
+     * @param pars CCDB row
+     * @param id link to row in source bank
+     * @param samples ADC samples of all rows
+     * @param offset index of the first sample of the row
+     * @param n number of samples in the row
+     * @return extracted pulses
+     */
+    public List<Pulse> extract(NamedEntry pars, int id, short[] samples, int offset, int n) {
+        return extract(pars, id, Arrays.copyOfRange(samples, offset, offset+n));
+    }
+
+    /**
+     * @param n number of samples
+     * @return the names of the sample columns, s1...sn
+     */
+    private static String[] getSampleNames(int n) {
+        String[] names = sampleNames;
+        if (names.length < n) {
+            names = new String[n];
+            for (int j=0; j<n; ++j) names[j] = "s" + (j+1);
+            sampleNames = names;
+        }
+        return names;
+    }
+
+    /**
+     * @param schema
+     * @param names
+     * @return the order of the named elements in the schema
+     */
+    private static int[] getElements(Schema schema, String... names) {
+        int[] elements = new int[names.length];
+        for (int j=0; j<names.length; ++j) elements[j] = schema.getElementOrder(names[j]);
+        return elements;
+    }
+
     /**
      * @param n number of samples in readout
      * @param it CCDB table containing extraction initialization parameters
@@ -56,11 +109,21 @@ public abstract class HipoExtractor implements IExtractor {
         DataBank wf = event.getBank(wfBankName);
         if (wf.rows() > 0) {
             event.removeBank(adcBankName);
-            List<Pulse> pulses = getPulses(n, it, wf);
+            int[][] indices = new int[INDEX_NAMES.length][wf.rows()];
+            for (int j=0; j<INDEX_NAMES.length; ++j) {
+                short[] column = wf.getShort(INDEX_NAMES[j]);
+                for (int i=0; i<wf.rows(); ++i) indices[j][i] = column[i];
+            }
+            List<Pulse> pulses = getPulses(n, it, wf.rows(), getSamples(n, wf), indices);
             if (pulses != null && !pulses.isEmpty()) {
                 DataBank adc = event.createBank(adcBankName, pulses.size());
                 for (int i=0; i<pulses.size(); ++i) {
-                    copyIndices(wf, adc, i, i);
+                    int row = pulses.get(i).id;
+                    adc.setByte("sector", i, (byte)indices[0][row]);
+                    adc.setByte("layer", i, (byte)indices[1][row]);
+                    adc.setShort("component", i, (short)indices[2][row]);
+                    adc.setByte("order", i, (byte)indices[3][row]);
+                    adc.setShort("windex", i, (short)row);
                     adc.setInt("ADC", i, (int)pulses.get(i).integral);
                     adc.setFloat("time", i, pulses.get(i).time);
                 }
@@ -78,77 +141,68 @@ public abstract class HipoExtractor implements IExtractor {
      */
     protected void update(int n, IndexedTable it, Bank wfBank, Bank adcBank) {
         if (wfBank.getRows() > 0) {
-            List<Pulse> pulses = getPulses(n, it, wfBank);
+            int[] in = getElements(wfBank.getSchema(), INDEX_NAMES);
+            int[][] indices = new int[in.length][wfBank.getRows()];
+            for (int j=0; j<in.length; ++j) {
+                for (int i=0; i<wfBank.getRows(); ++i) indices[j][i] = wfBank.getInt(in[j], i);
+            }
+            List<Pulse> pulses = getPulses(n, it, wfBank.getRows(), getSamples(n, wfBank), indices);
             adcBank.reset();
             adcBank.setRows(pulses!=null ? pulses.size() : 0);
             if (pulses!=null && !pulses.isEmpty()) {
+                int[] out = getElements(adcBank.getSchema(), ADC_NAMES);
                 for (int i=0; i<pulses.size(); ++i) {
-                    copyIndices(wfBank, adcBank, pulses.get(i).id, i);
-                    adcBank.putInt("ADC", i, (int)pulses.get(i).integral);
-                    adcBank.putFloat("time", i, pulses.get(i).time);
+                    int row = pulses.get(i).id;
+                    adcBank.putByte(out[0], i, (byte)indices[0][row]);
+                    adcBank.putByte(out[1], i, (byte)indices[1][row]);
+                    adcBank.putShort(out[2], i, (short)indices[2][row]);
+                    adcBank.putByte(out[3], i, (byte)indices[3][row]);
+                    adcBank.putShort(out[4], i, (short)row);
+                    adcBank.putInt(out[5], i, (int)pulses.get(i).integral);
+                    adcBank.putFloat(out[6], i, pulses.get(i).time);
                 }
             }
         }
     }
 
-    private static void copyIndices(Bank src, Bank dest, int isrc, int idest) {
-        dest.putByte("sector", idest, src.getByte("sector",isrc));
-        dest.putByte("layer", idest, src.getByte("layer",isrc));
-        dest.putShort("component", idest, src.getShort("component",isrc));
-        dest.putByte("order", idest, src.getByte("order",isrc));
-        dest.putShort("windex", idest, (short)isrc);
-    }
-
-    private static void copyIndices(DataBank src, DataBank dest, int isrc, int idest) {
-        dest.setByte("sector", idest, src.getByte("sector",isrc));
-        dest.setByte("layer", idest, src.getByte("layer",isrc));
-        dest.setShort("component", idest, src.getShort("component",isrc));
-        dest.setByte("order", idest, src.getByte("order",isrc));
-        dest.setShort("windex", idest, (short)isrc);
-    }
-
-    private static int[] getIndices(Bank bank, int row) {
-        return new int[] {
-            bank.getShort("sector", row),
-            bank.getShort("layer", row),
-            bank.getShort("component", row),
-            bank.getShort("order", row)};
-    }
-
-    private static int[] getIndices(DataBank bank, int row) {
-        return new int[] {
-            bank.getShort("sector", row),
-            bank.getShort("layer", row),
-            bank.getShort("component", row),
-            bank.getShort("order", row)};
+    /**
+     * @param n number of samples in readout
+     * @param wfBank waveform bank
+     * @return the samples of all rows, row-major
+     */
+    protected static short[] getSamples(int n, Bank wfBank) {
+        int rows = wfBank.getRows();
+        String[] names = getSampleNames(n);
+        short[] samples = new short[rows*n];
+        for (int j=0; j<n; ++j) {
+            int element = wfBank.getSchema().getElementOrder(names[j]);
+            for (int i=0, k=j; i<rows; ++i, k+=n) samples[k] = wfBank.getShort(element, i);
+        }
+        return samples;
     }
 
-    private List<Pulse> getPulses(int n, IndexedTable it, DataBank wfBank) {
-        List<Pulse> pulses = null;
-        short[] samples = new short[n];
-        for (int i=0; i<wfBank.rows(); ++i) {
-            for (int j=0; j<n; ++j)
-                samples[j] = wfBank.getShort(String.format("s%d",j+1), i);
-            List<Pulse> p = it==null ? extract(null, i, samples) :
-                extract(it.getNamedEntry(getIndices(wfBank,i)), i, samples);
-            if (p!=null && !p.isEmpty()) {
-                if (pulses == null) pulses = new ArrayList<>();
-                pulses.addAll(p);
-            }
+    /**
+     * @param n number of samples in readout
+     * @param wfBank waveform bank
+     * @return the samples of all rows, row-major
+     */
+    protected static short[] getSamples(int n, DataBank wfBank) {
+        String[] names = getSampleNames(n);
+        int rows = wfBank.rows();
+        short[] samples = new short[rows*n];
+        for (int j=0; j<n; ++j) {
+            short[] column = wfBank.getShort(names[j]);
+            for (int i=0, k=j; i<rows; ++i, k+=n) samples[k] = column[i];
         }
-        return pulses;
+        return samples;
     }
 
-    private List<Pulse> getPulses(int n, IndexedTable it, Bank wfBank) {
+    private List<Pulse> getPulses(int n, IndexedTable it, int rows, short[] samples, int[][] indices) {
         List<Pulse> pulses = null;
-        short[] samples = new short[n];
-        for (int i=0; i<wfBank.getRows(); ++i) {
-            for (int j=0; j<n; ++j)
-                samples[j] = wfBank.getShort(String.format("s%d",j+1), i);
-                // FIXME:  Can speed this up (but looks like not for DataBank?):
-                //samples[j] = wfBank.getShort(String.format(5+j,j+1), i);
-            List p = it==null ? extract(null, i, samples) :
-                extract(it.getNamedEntry(getIndices(wfBank,i)), i, samples);
+        for (int i=0; i<rows; ++i) {
+            NamedEntry pars = it==null ? null :
+                it.getNamedEntry(indices[0][i], indices[1][i], indices[2][i], indices[3][i]);
+            List<Pulse> p = extract(pars, i, samples, i*n, n);
             if (p!=null && !p.isEmpty()) {
                 if (pulses == null) pulses = new ArrayList<>();
                 pulses.addAll(p);
@@ -25,6 +25,19 @@ public class Mode3 extends HipoExtractor {
      */
     @Override
     public List<Pulse> extract(NamedEntry pars, int id, short... samples) {
+        return extract(pars, id, samples, 0, samples.length);
+    }
+
+    /**
+     * @param pars CCDB row
+     * @param id link to row in source bank
+     * @param samples ADC samples of all rows
+     * @param offset index of the first sample of the row
+     * @param n number of samples in the row
+     * @return extracted pulses
+     */
+    @Override
+    public List<Pulse> extract(NamedEntry pars, int id, short[] samples, int offset, int n) {
 
         List<Pulse> pulses = null;
 
@@ -36,20 +49,24 @@ public class Mode3 extends HipoExtractor {
         int nsb = pars.getValue("nsb").intValue();
         */
 
+        // Skip rows without any sample over threshold, a simple maximum that
+        // the JIT can vectorize:
+        int max = Short.MIN_VALUE;
+        for (int i=offset; i<offset+n-1; ++i) max = Math.max(max, samples[i]);
+        if (max <= ped+tet) return pulses;
+
         // Perform the extraction:
-        for (int i=0; i<samples.length-1; ++i) {
+        for (int i=0; i<n-1; ++i) {
             // Check for threshold crossing:
-            if (samples[i] > ped+tet && samples[i+1] > samples[i]) {
-                int n = 0;
+            if (samples[offset+i] > ped+tet && samples[offset+i+1] > samples[offset+i]) {
+                int m = 0;
                 float integral = 0;
                 // Integrate the pulse:
-                for (int j=i-nsb; j<=i+nsa; ++j) {
-                    if (j<0) continue;
-                    if (j>=samples.length) break;
-                    integral += samples[j];
-                    n++;
+                for (int j=Math.max(i-nsb, 0); j<=i+nsa && j<n; ++j) {
+                    integral += samples[offset+j];
+                    m++;
                 }
-                integral -= n * ped;
+                integral -= m * ped;
                 Pulse p = new Pulse(integral, i, 0x0, id);
                 p.pedestal = (float)(ped);
                 // Add the new pulse to the list:
@@ -13,15 +13,17 @@ public class Mode7 extends Mode3 {
     /**
      * @param t0 threshold-crossing sample index
      * @param ped pedestal (for calculating pulse half-height)
-     * @param samples
+     * @param samples ADC samples of all rows
+     * @param offset index of the first sample of the row
+     * @param n number of samples in the row
      * @return pulse time
      */
-    private static float calculateTime(int t0, float ped, short... samples) {
-        for (int j=t0+1; j<samples.length; ++j) {
-            if (samples[j] < samples[j-1]) {
-                float slope = (samples[j-1]-ped) / (j-t0);
-                float offset = samples[j-1] - (j-1)*slope;
-                return (samples[j-1]/2 - offset) / slope;
+    private static float calculateTime(int t0, float ped, short[] samples, int offset, int n) {
+        for (int j=t0+1; j<n; ++j) {
+            if (samples[offset+j] < samples[offset+j-1]) {
+                float slope = (samples[offset+j-1]-ped) / (j-t0);
+                float offs = samples[offset+j-1] - (j-1)*slope;
+                return (samples[offset+j-1]/2 - offs) / slope;
             }
         }
         // Fall back to Mode-3 time:
@@ -29,10 +31,12 @@ public class Mode7 extends Mode3 {
     }
 
     @Override
-    public List<Pulse> extract(NamedEntry pars, int id, short... samples) {
-        List<Pulse> pulses = super.extract(pars, id, samples);
-        for (Pulse p : pulses)
-            p.time = calculateTime((int)p.time, p.pedestal, samples);
+    public List<Pulse> extract(NamedEntry pars, int id, short[] samples, int offset, int n) {
+        List<Pulse> pulses = super.extract(pars, id, samples, offset, n);
+        if (pulses != null) {
+            for (Pulse p : pulses)
+                p.time = calculateTime((int)p.time, p.pedestal, samples, offset, n);
+        }
         return pulses;
     }
 
@@ -27,6 +27,21 @@ public class ModeAHDC extends HipoExtractor  {
 	 */
 	@Override
 	public List<Pulse> extract(NamedEntry pars, int id, short... samples){
+		return extract(pars, id, samples, 0, samples.length);
+	}
+
+	/**
+	 * Same as {@link #extract(NamedEntry, int, short...)} for one row of a
+	 * sample matrix
+	 *
+	 * @param pars CCDB row
+	 * @param id link to row in source bank
+	 * @param samples ADC samples of all rows
+	 * @param offset index of the first sample of the row
+	 * @param n number of samples in the row
+	 */
+	@Override
+	public List<Pulse> extract(NamedEntry pars, int id, short[] samples, int offset, int n){
 		// Settings parameters (they can be initialised by a CCDB)
 		float samplingTime = 0;
 		int sparseSample = 0;
@@ -67,13 +82,13 @@ public class ModeAHDC extends HipoExtractor  {
 		 * @param sparseSample used to define binOffset
 		 */
 		//private void waveformCorrection(short[] samples, short adcOffset, float samplingTime, int sparseSample, int binMax, int adcMax, int integral, short samplesCorr[], int binOffset, int timeMax){
-			binNumber = samples.length;
+			binNumber = n;
 			binMax = 0;
-			adcMax = (short) (samples[0] - adcOffset);
+			adcMax = (short) (samples[offset] - adcOffset);
 			integral = 0;
 			samplesCorr = new short[binNumber];
 			for (int bin = 0; bin < binNumber; bin++){
-				samplesCorr[bin] = (short) (samples[bin] - adcOffset);
+				samplesCorr[bin] = (short) (samples[offset + bin] - adcOffset);
 				if (adcMax < samplesCorr[bin]){
 					adcMax = samplesCorr[bin];
 					binMax = bin;
@@ -0,0 +1,135 @@
+package org.jlab.detector.calib.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jlab.utils.groups.IndexedTable;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class ConstantsCacheTest {
+
+    private static final List<String> NO_TABLES = Collections.emptyList();
+    private static final List<Integer> NO_INDICES = Collections.emptyList();
+
+    @Test
+    public void testEviction() {
+        ConstantsCache cache = new ConstantsCache(2);
+        ConstantsCache.RunTables run1 = cache.load(1, "default", "", NO_TABLES, NO_INDICES);
+        ConstantsCache.RunTables run2 = cache.load(2, "default", "", NO_TABLES, NO_INDICES);
+        assertEquals(2, cache.size());
+
+        // run 1 becomes the most recently used, run 2 is evicted first:
+        assertSame(run1, cache.getRun(1, "default", ""));
+        ConstantsCache.RunTables run3 = cache.load(3, "default", "", NO_TABLES, NO_INDICES);
+        assertEquals(2, cache.size());
+        assertTrue(run2.isEvicted());
+        assertFalse(run1.isEvicted());
+        assertFalse(run3.isEvicted());
+        assertNull(cache.getRun(2, "default", ""));
+
+        // variations and timestamps are cached separately:
+        assertNull(cache.getRun(1, "rga_fall2018", ""));
+        assertNull(cache.getRun(1, "default", "10/10/2020"));
+
+        cache.setMaxRuns(1);
+        assertEquals(1, cache.size());
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertTrue(run1.isEvicted() && run3.isEvicted());
+    }
+
+    /**
+     * Reads empty tables instead of the database, counting the reads of each
+     * table, and blocks reading the table named "/slow" until released.
+     */
+    private static class CountingCache extends ConstantsCache {
+        final Map<String,AtomicInteger> reads = new ConcurrentHashMap<>();
+        final CountDownLatch slowStarted = new CountDownLatch(1);
+        final CountDownLatch slowReleased = new CountDownLatch(1);
+        CountingCache() {
+            super(DEFAULT_MAX_RUNS);
+        }
+        @Override
+        TableReader newReader(RunKey key) {
+            return new TableReader(key) {
+                @Override
+                IndexedTable read(String name, int indices) {
+                    reads.computeIfAbsent(name, (String n) -> new AtomicInteger()).incrementAndGet();
+                    if (name.equals("/slow")) {
+                        slowStarted.countDown();
+                        try {
+                            slowReleased.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                    return new IndexedTable(indices, "value/D");
+                }
+            };
+        }
+    }
+
+    private static List<String> names(String... names) {
+        List<String> list = new ArrayList<>();
+        Collections.addAll(list, names);
+        return list;
+    }
+
+    private static List<Integer> indices(int n) {
+        return new ArrayList<>(Collections.nCopies(n, 3));
+    }
+
+    @Test(timeout = 10000)
+    public void testPrefetchDoesNotBlock() throws InterruptedException {
+        CountingCache cache = new CountingCache();
+        Thread prefetch = new Thread(() -> cache.load(1, "default", "", names("/slow", "/a", "/b"), indices(3)));
+        prefetch.start();
+        cache.slowStarted.await();
+
+        // tables not being read are read by the caller, without waiting for the prefetch:
+        ConstantsCache.RunTables tables = cache.load(1, "default", "", names("/c", "/a"), indices(2));
+        assertNotNull(tables.getTable(ConstantsCache.getTableId("/c", 3)));
+        assertNotNull(tables.getTable(ConstantsCache.getTableId("/a", 3)));
+        assertNull(tables.getTable(ConstantsCache.getTableId("/slow", 3)));
+
+        // and those being read are waited for:
+        cache.slowReleased.countDown();
+        tables = cache.load(1, "default", "", names("/slow"), indices(1));
+        assertNotNull(tables.getTable(ConstantsCache.getTableId("/slow", 3)));
+        prefetch.join();
+        assertNotNull(tables.getTable(ConstantsCache.getTableId("/b", 3)));
+        for (AtomicInteger n : cache.reads.values()) assertEquals(1, n.get());
+    }
+
+    @Test(timeout = 10000)
+    public void testConcurrentLoads() throws InterruptedException {
+        CountingCache cache = new CountingCache();
+        cache.slowReleased.countDown();
+        final List<String> all = new ArrayList<>();
+        for (int i = 0; i < 50; i++) all.add("/table" + i);
+        final AtomicInteger missing = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            final List<String> names = new ArrayList<>(all);
+            Collections.shuffle(names, new Random(t));
+            threads.add(new Thread(() -> {
+                ConstantsCache.RunTables tables = cache.load(2, "default", "", names, indices(names.size()));
+                for (String name : names) {
+                    if (tables.getTable(ConstantsCache.getTableId(name, 3)) == null) missing.incrementAndGet();
+                }
+            }));
+        }
+        for (Thread t : threads) t.start();
+        for (Thread t : threads) t.join();
+        assertEquals(0, missing.get());
+        assertEquals(all.size(), cache.reads.size());
+        for (AtomicInteger n : cache.reads.values()) assertEquals(1, n.get());
+    }
+}
@@ -0,0 +1,40 @@
+package org.jlab.detector.calib.utils;
+
+import java.util.AbstractMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class ConstantsManagerTest {
+
+    private static Map.Entry<String,Integer> table(String name, int indices) {
+        return new AbstractMap.SimpleImmutableEntry<>(name, indices);
+    }
+
+    @Test
+    public void testRequiredTables() {
+        Map<String,Integer> first = new LinkedHashMap<>();
+        first.put("/test/required/a", 3);
+        first.put("/test/required/b", 1);
+        Map<String,Integer> second = new LinkedHashMap<>();
+        second.put("/test/required/a", 3);
+        second.put("/test/required/b", 3);
+        ConstantsManager m1 = new ConstantsManager();
+        m1.init(first);
+        ConstantsManager m2 = new ConstantsManager();
+        m2.init(second);
+
+        // each table once for each number of indices it is required with:
+        List<Map.Entry<String,Integer>> tables = ConstantsManager.getRequiredTables();
+        int a = tables.indexOf(table("/test/required/a", 3));
+        assertTrue(a >= 0);
+        assertEquals(a, tables.lastIndexOf(table("/test/required/a", 3)));
+        assertTrue(tables.contains(table("/test/required/b", 1)));
+        assertTrue(tables.contains(table("/test/required/b", 3)));
+        assertNotNull(m1);
+        assertNotNull(m2);
+    }
+}
@@ -0,0 +1,173 @@
+package org.jlab.detector.calib.utils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.sql.Time;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.jlab.utils.groups.IndexedTable;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+public class ConstantsSnapshotTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static IndexedTable createTable(int offset) {
+        IndexedTable table = new IndexedTable(3, new String[]{"status/I", "gain/D", "offset/D"});
+        table.setIndexName(0, "sector");
+        table.setIndexName(1, "layer");
+        table.setIndexName(2, "component");
+        for (int sector = 1; sector <= 6; sector++) {
+            for (int component = 1; component <= 10; component++) {
+                table.addEntry(sector, 2, component);
+                table.setIntValue(sector*component % 3 - 1, "status", sector, 2, component);
+                table.setDoubleValue(1.0/(sector+component) + offset, "gain", sector, 2, component);
+                table.setDoubleValue(-1e-300*component, "offset", sector, 2, component);
+            }
+        }
+        return table;
+    }
+
+    private static void assertTableEquals(IndexedTable expected, IndexedTable actual) {
+        assertEquals(expected.getList().getIndexSize(), actual.getList().getIndexSize());
+        for (int i = 0; i < expected.getList().getIndexSize(); i++) {
+            assertEquals(expected.getIndexName(i), actual.getIndexName(i));
+        }
+        assertEquals(expected.getEntryNames(), actual.getEntryNames());
+        for (String column : expected.getEntryNames()) {
+            assertEquals(expected.getEntryType(column), actual.getEntryType(column));
+        }
+        // rows in the same order, with exactly the same values:
+        @SuppressWarnings("unchecked")
+        Map<Long,IndexedTable.IndexedEntry> expectedRows = expected.getList().getMap();
+        @SuppressWarnings("unchecked")
+        Map<Long,IndexedTable.IndexedEntry> actualRows = actual.getList().getMap();
+        assertEquals(new ArrayList<>(expectedRows.keySet()), new ArrayList<>(actualRows.keySet()));
+        for (long key : expectedRows.keySet()) {
+            for (int c = 0; c < expected.getEntryNames().size(); c++) {
+                assertEquals(expectedRows.get(key).getValue(c), actualRows.get(key).getValue(c));
+            }
+        }
+    }
+
+    @Test
+    public void testTable() throws IOException {
+        IndexedTable table = createTable(0);
+        IndexedTable decoded = ConstantsSnapshot.decodeTable(ByteBuffer.wrap(ConstantsSnapshot.encodeTable(table)));
+        assertTableEquals(table, decoded);
+        assertEquals(table.getIntValue("status", 4, 2, 7), decoded.getIntValue("status", 4, 2, 7));
+        assertEquals(table.getDoubleValue("gain", 4, 2, 7), decoded.getDoubleValue("gain", 4, 2, 7), 0);
+
+        IndexedTable empty = new IndexedTable(1, new String[]{"value/D"});
+        empty.setIndexName(0, "run");
+        assertTableEquals(empty, ConstantsSnapshot.decodeTable(ByteBuffer.wrap(ConstantsSnapshot.encodeTable(empty))));
+    }
+
+    @Test
+    public void testRcdb() throws IOException {
+        RCDBConstants rcdb = new RCDBConstants();
+        rcdb.add("beam_energy", 10604.0);
+        rcdb.add("events_rate", 12345678901L);
+        rcdb.add("run_type", "PROD66");
+        rcdb.add("run_start_time", new Time(1234567000L));
+        RCDBConstants decoded = ConstantsSnapshot.decodeRcdb(ByteBuffer.wrap(ConstantsSnapshot.encodeRcdb(rcdb)));
+        assertEquals(rcdb.getNames(), decoded.getNames());
+        assertEquals(10604.0, decoded.getDouble("beam_energy"), 0);
+        assertEquals(12345678901L, (long) decoded.getLong("events_rate"));
+        assertEquals("PROD66", decoded.getString("run_type"));
+        assertEquals(1234567000L, decoded.getTime("run_start_time").getTime());
+    }
+
+    @Test
+    public void testSnapshot() throws IOException {
+        List<Map.Entry<String,Integer>> tables = Arrays.asList(
+                new AbstractMap.SimpleEntry<>("/calibration/a", 3),
+                new AbstractMap.SimpleEntry<>("/calibration/b", 3));
+        IndexedTable a1 = createTable(0);
+        IndexedTable a2 = createTable(1);
+        IndexedTable b = createTable(2);
+        RCDBConstants rcdb = new RCDBConstants();
+        rcdb.add("beam_energy", 10604.0);
+
+        ConstantsSnapshot.Writer writer = new ConstantsSnapshot.Writer("default", null, tables);
+        writer.addRun(10, Arrays.asList(a1, b));
+        writer.addRun(11, Arrays.asList(createTable(0), createTable(2)));
+        writer.addRun(12, Arrays.asList(a2, b));
+        writer.addRun(14, Arrays.asList(a2, null));
+        writer.addRcdb(10, rcdb);
+        writer.addRcdb(11, rcdb);
+        File file = folder.newFile("snapshot.bin");
+        try (OutputStream out = new FileOutputStream(file)) {
+            writer.write(out);
+        }
+
+        ConstantsSnapshot snapshot = ConstantsSnapshot.open(file.getPath());
+        assertTrue(snapshot.matches("default", ""));
+        assertTrue(snapshot.matches("default", null));
+        assertFalse(snapshot.matches("rga_fall2018", ""));
+        assertFalse(snapshot.matches("default", "10/10/2020"));
+
+        // runs 10 and 11 are merged, 13 is missing, and identical tables
+        // and RCDB values are stored once:
+        assertTrue(snapshot.toString().contains("ranges=3"));
+        assertTrue(snapshot.toString().contains("blobs=4"));
+        for (int run : new int[]{9, 13, 15}) {
+            assertFalse(snapshot.hasRun(run));
+            assertFalse(snapshot.hasTable(run, "/calibration/a", 3));
+        }
+        List<IndexedTable> expected = Arrays.asList(a1, a1, a2, null, a2);
+        for (int run = 10; run <= 14; run++) {
+            if (run == 13) continue;
+            assertTrue(snapshot.hasRun(run));
+            assertTrue(snapshot.hasTable(run, "/calibration/a", 3));
+            assertTableEquals(expected.get(run-10), snapshot.readTable(run, "/calibration/a", 3));
+        }
+        assertTableEquals(b, snapshot.readTable(12, "/calibration/b", 3));
+
+        // not exported, or with other indices:
+        assertFalse(snapshot.hasTable(10, "/calibration/c", 3));
+        assertFalse(snapshot.hasTable(10, "/calibration/a", 1));
+
+        // not read from the database, so must be read from it again:
+        assertFalse(snapshot.hasTable(14, "/calibration/b", 3));
+        try {
+            snapshot.readTable(14, "/calibration/b", 3);
+            fail();
+        }
+        catch (IllegalArgumentException e) {
+        }
+
+        assertEquals(10604.0, snapshot.getRcdbConstants(11).getDouble("beam_energy"), 0);
+        assertNull(snapshot.getRcdbConstants(12));
+    }
+
+    @Test
+    public void testIndices() throws IOException {
+        // the same table with different numbers of indices is exported for each:
+        List<Map.Entry<String,Integer>> tables = Arrays.asList(
+                new AbstractMap.SimpleEntry<>("/calibration/a", 3),
+                new AbstractMap.SimpleEntry<>("/calibration/a", 1));
+        IndexedTable a3 = createTable(0);
+        IndexedTable a1 = createTable(1);
+        ConstantsSnapshot.Writer writer = new ConstantsSnapshot.Writer("default", null, tables);
+        writer.addRun(10, Arrays.asList(a3, a1));
+        File file = folder.newFile("indices.bin");
+        try (OutputStream out = new FileOutputStream(file)) {
+            writer.write(out);
+        }
+        ConstantsSnapshot snapshot = ConstantsSnapshot.open(file.getPath());
+        assertTableEquals(a3, snapshot.readTable(10, "/calibration/a", 3));
+        assertTableEquals(a1, snapshot.readTable(10, "/calibration/a", 1));
+    }
+}
@@ -0,0 +1,36 @@
+package org.jlab.detector.decode;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import org.jlab.detector.helicity.HelicityBit;
+
+public class CodaEventDecoderTest {
+
+    @Test
+    public void testHeaderState() {
+        CodaEventDecoder first = new CodaEventDecoder();
+        first.getTriggerWords().addAll(Arrays.asList(1, 2, 3));
+        CodaEventDecoder.HeaderState state = first.getHeaderState();
+
+        // the state is a copy, later events do not change it:
+        first.getTriggerWords().clear();
+        first.getTriggerWords().add(4);
+
+        CodaEventDecoder second = new CodaEventDecoder();
+        second.setHeaderState(state);
+        assertEquals(Arrays.asList(1, 2, 3), second.getTriggerWords());
+        assertEquals(first.getRunNumber(), second.getRunNumber());
+        assertEquals(first.getEventNumber(), second.getEventNumber());
+        assertEquals(first.getUnixTime(), second.getUnixTime());
+        assertEquals(HelicityBit.UDF.value(), second.getHelicityLevel3());
+
+        // and neither is the decoder it was restored to:
+        second.getTriggerWords().clear();
+        CodaEventDecoder third = new CodaEventDecoder();
+        third.setHeaderState(state);
+        assertEquals(Arrays.asList(1, 2, 3), third.getTriggerWords());
+    }
+}
@@ -0,0 +1,153 @@
+package org.jlab.detector.decode;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.jlab.detector.base.DetectorType;
+import org.jlab.utils.groups.CompiledIndexedTable;
+import org.jlab.utils.groups.IndexedTable;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Compare {@link TranslationIndex} with a search of the tables in order, as
+ * the decoder did before the index.
+ */
+public class TranslationIndexTest {
+
+    private static final List<String> KEYS_TRANS  = Arrays.asList("DC", "FTOF", "ECAL", "RF");
+    private static final List<String> KEYS_FITTER = Arrays.asList("FTOF", "BMT", "RF", "ECAL", "FMT");
+
+    private static int[] randomChannel(Random rand) {
+        return new int[]{1 + rand.nextInt(8), rand.nextInt(20), rand.nextInt(16)};
+    }
+
+    private static IndexedTable createTranslation(Random rand) {
+        IndexedTable table = new IndexedTable(3, new String[]{"sector/I", "layer/I", "component/I", "order/I"});
+        for (int i = 0; i < 300; i++) {
+            int[] channel = randomChannel(rand);
+            table.addEntry(channel);
+            table.setIntValue(1 + rand.nextInt(6), "sector", channel);
+            table.setIntValue(1 + rand.nextInt(36), "layer", channel);
+            table.setIntValue(1 + rand.nextInt(112), "component", channel);
+            table.setIntValue(rand.nextInt(2), "order", channel);
+        }
+        return table;
+    }
+
+    private static IndexedTable createFitter(Random rand, boolean rf) {
+        IndexedTable table = rf ? new IndexedTable(3, new String[]{"nsa/I", "nsb/I", "tet/I", "pedestal/I"})
+                                : new IndexedTable(3, new String[]{"nsa/I", "nsb/I", "tet/I"});
+        for (int i = 0; i < 200; i++) {
+            int[] channel = randomChannel(rand);
+            table.addEntry(channel);
+            table.setIntValue(rand.nextInt(100), "nsa", channel);
+            table.setIntValue(rand.nextInt(20), "nsb", channel);
+            table.setIntValue(rand.nextInt(50), "tet", channel);
+            if (rf) table.setIntValue(rand.nextInt(400), "pedestal", channel);
+        }
+        return table;
+    }
+
+    private static IndexedTable createMVTFitter(Random rand) {
+        IndexedTable table = new IndexedTable(3, new String[]{"adc_offset/D", "dream_clock/D", "sampling_time/D", "sparse/I"});
+        table.addEntry(0, 0, 0);
+        table.setDoubleValue(200.0 + rand.nextInt(100), "adc_offset", 0, 0, 0);
+        table.setDoubleValue(8.0, "dream_clock", 0, 0, 0);
+        table.setDoubleValue(40.0 + rand.nextInt(20), "sampling_time", 0, 0, 0);
+        table.setIntValue(rand.nextInt(2), "sparse", 0, 0, 0);
+        return table;
+    }
+
+    private static CompiledIndexedTable[] compile(List<IndexedTable> tables) {
+        CompiledIndexedTable[] compiled = new CompiledIndexedTable[tables.size()];
+        for (int i = 0; i < compiled.length; i++) compiled[i] = tables.get(i).compile();
+        return compiled;
+    }
+
+    @Test
+    public void testLookup() {
+        Random rand = new Random(1);
+        List<IndexedTable> trans = Arrays.asList(createTranslation(rand), createTranslation(rand),
+                                                 createTranslation(rand), createTranslation(rand));
+        List<IndexedTable> fitters = Arrays.asList(createFitter(rand, false), createMVTFitter(rand),
+                                                   createFitter(rand, true), createFitter(rand, false),
+                                                   createMVTFitter(rand));
+        TranslationIndex index = new TranslationIndex(11, compile(trans), KEYS_TRANS, compile(fitters), KEYS_FITTER);
+        assertEquals(11, index.getRun());
+
+        int translated = 0, fitted = 0;
+        for (int crate = 0; crate <= 10; crate++) {
+            for (int slot = 0; slot <= 22; slot++) {
+                for (int channel = 0; channel <= 18; channel++) {
+                    int row = index.getRow(crate, slot, channel);
+
+                    // the last translation table with the channel wins:
+                    int t = -1;
+                    for (int i = 0; i < trans.size(); i++) {
+                        if (trans.get(i).hasEntry(crate, slot, channel)) t = i;
+                    }
+                    if (t < 0) {
+                        assertTrue(row < 0 || index.getType(row) == null);
+                    }
+                    else {
+                        IndexedTable tt = trans.get(t);
+                        assertTrue(row >= 0);
+                        assertEquals(DetectorType.getType(KEYS_TRANS.get(t)), index.getType(row));
+                        assertEquals(tt.getIntValue("sector", crate, slot, channel), index.getSector(row));
+                        assertEquals(tt.getIntValue("layer", crate, slot, channel), index.getLayer(row));
+                        assertEquals(tt.getIntValue("component", crate, slot, channel), index.getComponent(row));
+                        assertEquals(tt.getIntValue("order", crate, slot, channel), index.getOrder(row));
+                        translated++;
+                    }
+
+                    // and so does the last FADC fitter table:
+                    int f = -1;
+                    for (int i = 0; i < fitters.size(); i++) {
+                        if (TranslationIndex.isMVT(KEYS_FITTER.get(i))) continue;
+                        if (fitters.get(i).hasEntry(crate, slot, channel)) f = i;
+                    }
+                    if (f < 0) {
+                        assertTrue(row < 0 || index.getFitTable(row) < 0);
+                    }
+                    else {
+                        IndexedTable daq = fitters.get(f);
+                        assertTrue(row >= 0);
+                        assertEquals(f, index.getFitTable(row));
+                        assertEquals(daq.getIntValue("nsa", crate, slot, channel), index.getNSA(row));
+                        assertEquals(daq.getIntValue("nsb", crate, slot, channel), index.getNSB(row));
+                        assertEquals(daq.getIntValue("tet", crate, slot, channel), index.getTET(row));
+                        int pedestal = KEYS_FITTER.get(f).equals("RF") ? daq.getIntValue("pedestal", crate, slot, channel) : 0;
+                        assertEquals(pedestal, index.getPedestal(row));
+                        fitted++;
+                    }
+                }
+            }
+        }
+        assertTrue(translated > 500);
+        assertTrue(fitted > 300);
+
+        // MVT fitter parameters are looked up by detector type:
+        for (int i = 0; i < fitters.size(); i++) {
+            DetectorType type = DetectorType.getType(KEYS_FITTER.get(i));
+            if (!TranslationIndex.isMVT(KEYS_FITTER.get(i))) {
+                assertEquals(-1, index.getMVTTable(type));
+                continue;
+            }
+            IndexedTable daq = fitters.get(i);
+            assertEquals(i, index.getMVTTable(type));
+            assertEquals((short) daq.getDoubleValue("adc_offset", 0, 0, 0), index.getMVTAdcOffset(type));
+            assertEquals((byte) daq.getDoubleValue("dream_clock", 0, 0, 0), index.getMVTClock(type), 0);
+            assertEquals((byte) daq.getDoubleValue("sampling_time", 0, 0, 0), index.getMVTSamplingTime(type), 0);
+            assertEquals(daq.getIntValue("sparse", 0, 0, 0), index.getMVTSparse(type));
+        }
+        assertEquals(-1, index.getMVTTable(DetectorType.AHDC));
+
+        // out of range channels:
+        assertEquals(-1, index.getRow(-1, 0, 0));
+        assertEquals(-1, index.getRow(1, 1000, 0));
+        assertEquals(-1, index.getRow(1000, 1, 0));
+        assertEquals(-1, index.getRow(1, 1, 1000));
+    }
+}
@@ -0,0 +1,248 @@
+package org.jlab.detector.pulse;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.jlab.io.base.DataBank;
+import org.jlab.io.base.DataEvent;
+import org.jlab.io.hipo.HipoDataSync;
+import org.jlab.jnp.hipo4.data.Bank;
+import org.jlab.jnp.hipo4.data.SchemaFactory;
+import org.jlab.utils.groups.NamedEntry;
+import org.jlab.utils.system.ClasUtilsFile;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Compare the pulses extracted in place from the rows of a waveform sample
+ * matrix, and the ADC banks filled with them, with the extraction of each
+ * waveform on its own.
+ */
+public class HipoExtractorTest {
+
+    // samples per waveform in AHDC::wf
+    private static final int N = 128;
+
+    private static SchemaFactory getSchemaFactory() {
+        System.setProperty("CLAS12DIR", "../../");
+        String dir = ClasUtilsFile.getResourceDir("CLAS12DIR", "etc/bankdefs/hipo4");
+        SchemaFactory schemaFactory = new SchemaFactory();
+        schemaFactory.initFromDirectory(dir);
+        return schemaFactory;
+    }
+
+    // noise around a pedestal of 2000, with up to 3 pulses, some of them saturated
+    private static short[] createSamples(Random rand, int rows) {
+        short[] samples = new short[rows*N];
+        for (int i=0; i<rows; ++i) {
+            double[] wave = new double[N];
+            for (int j=0; j<N; ++j) wave[j] = 2000 + 10*rand.nextGaussian();
+            int npulses = rand.nextInt(4);
+            for (int p=0; p<npulses; ++p) {
+                int t0 = rand.nextInt(N);
+                double amplitude = 1500 + 2200*rand.nextDouble();
+                for (int j=t0; j<N; ++j) wave[j] += amplitude*(j-t0)/8.*Math.exp(1-(j-t0)/8.);
+            }
+            for (int j=0; j<N; ++j) samples[i*N+j] = (short)Math.min(4095, Math.round(wave[j]));
+        }
+        return samples;
+    }
+
+    // the Mode3 extraction of a single waveform, as before the sample matrix
+    private static List<Pulse> mode3(int id, short... samples) {
+        final double ped = 2000;
+        final double tet = 2000;
+        final int nsa = 30;
+        final int nsb = 5;
+        List<Pulse> pulses = null;
+        for (int i=0; i<samples.length-1; ++i) {
+            if (samples[i] > ped+tet && samples[i+1] > samples[i]) {
+                int n = 0;
+                float integral = 0;
+                for (int j=i-nsb; j<=i+nsa; ++j) {
+                    if (j<0) continue;
+                    if (j>=samples.length) break;
+                    integral += samples[j];
+                    n++;
+                }
+                integral -= n * ped;
+                Pulse p = new Pulse(integral, i, 0x0, id);
+                p.pedestal = (float)(ped);
+                if (pulses == null) pulses = new ArrayList<>();
+                pulses.add(p);
+                i += nsa;
+            }
+        }
+        return pulses;
+    }
+
+    // and the Mode7 one
+    private static List<Pulse> mode7(int id, short... samples) {
+        List<Pulse> pulses = mode3(id, samples);
+        if (pulses == null) return null;
+        for (Pulse p : pulses) {
+            int t0 = (int)p.time;
+            for (int j=t0+1; j<samples.length; ++j) {
+                if (samples[j] < samples[j-1]) {
+                    float slope = (samples[j-1]-p.pedestal) / (j-t0);
+                    float offset = samples[j-1] - (j-1)*slope;
+                    p.time = (samples[j-1]/2 - offset) / slope;
+                    break;
+                }
+            }
+        }
+        return pulses;
+    }
+
+    private static List<Pulse> expected(HipoExtractor extractor, int id, short... samples) {
+        if (extractor instanceof Mode7) return mode7(id, samples);
+        if (extractor instanceof Mode3) return mode3(id, samples);
+        return extractor.extract(null, id, samples);
+    }
+
+    private static void assertPulsesEquals(List<Pulse> expected, List<Pulse> actual) {
+        if (expected == null || expected.isEmpty()) {
+            assertTrue(actual == null || actual.isEmpty());
+            return;
+        }
+        assertEquals(expected.size(), actual.size());
+        for (int i=0; i<expected.size(); ++i) {
+            Pulse e = expected.get(i);
+            Pulse a = actual.get(i);
+            assertEquals(e.id, a.id);
+            assertEquals(e.flags, a.flags);
+            assertEquals(e.integral, a.integral, 0);
+            assertEquals(e.time, a.time, 0);
+            assertEquals(e.pedestal, a.pedestal, 0);
+            assertEquals(e.adcMax, a.adcMax, 0);
+            assertEquals(e.leadingEdgeTime, a.leadingEdgeTime, 0);
+            assertEquals(e.trailingEdgeTime, a.trailingEdgeTime, 0);
+            assertEquals(e.constantFractionTime, a.constantFractionTime, 0);
+        }
+    }
+
+    private static List<HipoExtractor> extractors() {
+        // one that only extracts from a single waveform, and so relies on the default row copy:
+        HipoExtractor copy = new HipoExtractor() {
+            @Override
+            public List<Pulse> extract(NamedEntry pars, int id, short... samples) {
+                return mode3(id, samples);
+            }
+        };
+        return Arrays.asList(new Mode3(), new Mode7(), new ModeAHDC(), copy);
+    }
+
+    @Test
+    public void testRows() {
+        Random rand = new Random(1);
+        int rows = 200;
+        short[] samples = createSamples(rand, rows);
+        int npulses = 0;
+        for (HipoExtractor extractor : extractors()) {
+            for (int i=0; i<rows; ++i) {
+                short[] row = Arrays.copyOfRange(samples, i*N, (i+1)*N);
+                List<Pulse> expected = expected(extractor, i, row);
+                assertPulsesEquals(expected, extractor.extract(null, i, samples, i*N, N));
+                if (expected != null) npulses += expected.size();
+            }
+        }
+        assertTrue(npulses > 300);
+    }
+
+    // the ADC rows expected from the waveforms, ordered by waveform
+    private static List<int[]> expectedADC(HipoExtractor extractor, short[] samples, int[][] indices) {
+        List<int[]> adc = new ArrayList<>();
+        for (int i=0; i<indices.length; ++i) {
+            List<Pulse> pulses = expected(extractor, i, Arrays.copyOfRange(samples, i*N, (i+1)*N));
+            if (pulses == null) continue;
+            for (Pulse p : pulses) {
+                adc.add(new int[]{indices[i][0], indices[i][1], indices[i][2], indices[i][3], i,
+                                  (int)p.integral, Float.floatToIntBits(p.time)});
+            }
+        }
+        return adc;
+    }
+
+    private static int[][] createIndices(Random rand, int rows) {
+        int[][] indices = new int[rows][];
+        for (int i=0; i<rows; ++i) {
+            indices[i] = new int[]{1, 1 + rand.nextInt(8), 1 + rand.nextInt(99), rand.nextInt(2)};
+        }
+        return indices;
+    }
+
+    @Test
+    public void testBank() {
+        SchemaFactory schema = getSchemaFactory();
+        Random rand = new Random(2);
+        for (HipoExtractor extractor : Arrays.asList(new Mode3(), new Mode7())) {
+            int rows = 50;
+            short[] samples = createSamples(rand, rows);
+            int[][] indices = createIndices(rand, rows);
+            Bank wf = new Bank(schema.getSchema("AHDC::wf"), rows);
+            for (int i=0; i<rows; ++i) {
+                wf.putByte("sector", i, (byte)indices[i][0]);
+                wf.putByte("layer", i, (byte)indices[i][1]);
+                wf.putShort("component", i, (short)indices[i][2]);
+                wf.putByte("order", i, (byte)indices[i][3]);
+                for (int j=0; j<N; ++j) wf.putShort("s"+(j+1), i, samples[i*N+j]);
+            }
+            Bank adc = new Bank(schema.getSchema("AHDC::adc"));
+            extractor.update(N, null, wf, adc);
+
+            List<int[]> expected = expectedADC(extractor, samples, indices);
+            assertFalse(expected.isEmpty());
+            assertEquals(expected.size(), adc.getRows());
+            for (int i=0; i<adc.getRows(); ++i) {
+                int[] e = expected.get(i);
+                assertEquals(e[0], adc.getByte("sector", i));
+                assertEquals(e[1], adc.getByte("layer", i));
+                assertEquals(e[2], adc.getShort("component", i));
+                assertEquals(e[3], adc.getByte("order", i));
+                assertEquals(e[4], adc.getShort("windex", i));
+                assertEquals(e[5], adc.getInt("ADC", i));
+                assertEquals(Float.intBitsToFloat(e[6]), adc.getFloat("time", i), 0);
+            }
+        }
+    }
+
+    @Test
+    public void testDataBank() {
+        HipoDataSync writer = new HipoDataSync(getSchemaFactory());
+        Random rand = new Random(3);
+        for (HipoExtractor extractor : Arrays.asList(new Mode3(), new Mode7())) {
+            int rows = 50;
+            short[] samples = createSamples(rand, rows);
+            int[][] indices = createIndices(rand, rows);
+            DataEvent event = writer.createEvent();
+            DataBank wf = event.createBank("AHDC::wf", rows);
+            for (int i=0; i<rows; ++i) {
+                wf.setByte("sector", i, (byte)indices[i][0]);
+                wf.setByte("layer", i, (byte)indices[i][1]);
+                wf.setShort("component", i, (short)indices[i][2]);
+                wf.setByte("order", i, (byte)indices[i][3]);
+                for (int j=0; j<N; ++j) wf.setShort("s"+(j+1), i, samples[i*N+j]);
+            }
+            event.appendBank(wf);
+            extractor.update(N, null, event, "AHDC::wf", "AHDC::adc");
+
+            // each pulse has the indices of its own waveform:
+            List<int[]> expected = expectedADC(extractor, samples, indices);
+            assertFalse(expected.isEmpty());
+            DataBank adc = event.getBank("AHDC::adc");
+            assertEquals(expected.size(), adc.rows());
+            for (int i=0; i<adc.rows(); ++i) {
+                int[] e = expected.get(i);
+                assertEquals(e[0], adc.getByte("sector", i));
+                assertEquals(e[1], adc.getByte("layer", i));
+                assertEquals(e[2], adc.getShort("component", i));
+                assertEquals(e[3], adc.getByte("order", i));
+                assertEquals(e[4], adc.getShort("windex", i));
+                assertEquals(e[5], adc.getInt("ADC", i));
+                assertEquals(Float.intBitsToFloat(e[6]), adc.getFloat("time", i), 0);
+            }
+        }
+    }
+}
@@ -51,6 +51,8 @@ public abstract class AbstractComponent implements Component {
     private final Shape3D       volumeShape;
     private final Point3D       midpoint;
     
+    private List<AbstractLayer<?>> layers;
+    
     /**
      * Initializes an empty AbstractComponent with the given id.
      * @param componentId the id of this component
@@ -246,6 +248,7 @@ public abstract class AbstractComponent implements Component {
         volumeShape.translateXYZ(dx, dy, dz);
         midpoint.translateXYZ(dx, dy, dz);
         onTranslateXYZ(dx, dy, dz);
+        invalidateLayers();
     }
     
     @Override
@@ -255,6 +258,7 @@ public abstract class AbstractComponent implements Component {
         volumeShape.rotateX(angle);
         midpoint.rotateX(angle);
         onRotateX(angle);
+        invalidateLayers();
     }
     
     @Override
@@ -264,6 +268,7 @@ public abstract class AbstractComponent implements Component {
         volumeShape.rotateY(angle);
         midpoint.rotateY(angle);
         onRotateY(angle);
+        invalidateLayers();
     }
     
     @Override
@@ -273,6 +278,25 @@ public abstract class AbstractComponent implements Component {
         volumeShape.rotateZ(angle);
         midpoint.rotateZ(angle);
         onRotateZ(angle);
+        invalidateLayers();
+    }
+    
+    /**
+     * Registers a layer containing this component, so that the layer's index
+     * of component volumes is invalidated when this component is transformed.
+     * @param layer the layer
+     */
+    final void addLayer(AbstractLayer<?> layer) {
+        if (layers == null)
+            layers = new ArrayList(1);
+        if (!layers.contains(layer))
+            layers.add(layer);
+    }
+    
+    private void invalidateLayers() {
+        if (layers != null)
+            for (AbstractLayer<?> layer : layers)
+                layer.invalidateComponentIndex();
     }
     
     /**
@@ -17,6 +17,7 @@ import org.jlab.geom.prim.Plane3D;
 import org.jlab.geom.prim.Point3D;
 import org.jlab.geom.prim.Shape3D;
 import org.jlab.geom.prim.Transformation3D;
+import org.jlab.geom.prim.Vector3D;
 
 /**
  * This class provides a skeletal implementation of the
@@ -60,6 +61,19 @@ import org.jlab.geom.prim.Transformation3D;
  * enough to handle several types of detectors and components. Consequently,
  * they do not contain optimizations that may be made available by the specific
  * geometry of a specific detector or component type.
+ * <p>
+ * To find the components hit by a line, {@code getHits(Path3D)} uses an index
+ * of the component volumes, built on first use and rebuilt after
+ * {@link #addComponent(org.jlab.geom.base.Component)},
+ * {@link #setTransformation(org.jlab.geom.prim.Transformation3D)} or a
+ * translation or rotation of one of the components: only the components whose
+ * bounds overlap the line are tested for intersection. Components that do not
+ * extend {@link AbstractComponent} can not report their transformations, and
+ * the volume points of the components must not be modified directly.
+ * <p>
+ * Once the layer is built, hits may be searched for from several threads: the
+ * index is immutable and its build is synchronized. Transforming the layer or
+ * its components while other threads search for hits is not supported.
  *
  * @author jhankins
  * @param <ComponentType> the specific type of {@code Component} contained by 
@@ -79,6 +93,8 @@ public abstract class AbstractLayer<ComponentType extends Component> implements
     private final Plane3D plane;
     private final boolean useBoundaryAsHitFilter;
     
+    private volatile ComponentIndex componentIndex;
+    
     /**
      * Initializes an empty AbstractLayer with the given id.
      * @param detectorId the id of this layer's detector
@@ -144,6 +160,8 @@ public abstract class AbstractLayer<ComponentType extends Component> implements
             throw new IllegalArgumentException("component is null");
         
         componentMap.put(component.getComponentId(), component);
+        if (component instanceof AbstractComponent)
+            ((AbstractComponent) component).addLayer(this);
         List<ComponentType> list = new ArrayList(componentMap.values());
         Collections.sort(list, new Comparator<ComponentType>() {
             @Override
@@ -152,6 +170,7 @@ public abstract class AbstractLayer<ComponentType extends Component> implements
             }
         });
         componentList = Collections.unmodifiableList(list);
+        invalidateComponentIndex();
     }
     
     @Override
@@ -195,6 +214,7 @@ public abstract class AbstractLayer<ComponentType extends Component> implements
         xform.apply(boundary);
         xform.apply(plane);
         this.transform.copy(transform);
+        invalidateComponentIndex();
         onSetTransformation(xform);
     }
     
@@ -258,26 +278,23 @@ public abstract class AbstractLayer<ComponentType extends Component> implements
             
             // Check to see if the boundary was hit
             if (!useBoundaryAsHitFilter || boundary.hasIntersectionSegment(line)) {
-                // For each paddle
-                for (Component component : getAllComponents()) {
-                    // Find the paddle that the line hits
-                    if (component.getVolumeIntersection(line, hitPosition0, hitPosition1)) {
-                        hitList.add(new DetectorHit(
-                            detectorId,
-                            sectorId,
-                            superlayerId,
-                            layerId,
-                            component.getComponentId(),
-                            hitPosition0));
-                        hitList.add(new DetectorHit(
-                            detectorId,
-                            sectorId,
-                            superlayerId,
-                            layerId,
-                            component.getComponentId(),
-                            hitPosition1));
-                        return hitList;
-                    }
+                // Find the paddle that the line hits
+                Component component = getIntersectedComponent(line, hitPosition0, hitPosition1);
+                if (component != null) {
+                    hitList.add(new DetectorHit(
+                        detectorId,
+                        sectorId,
+                        superlayerId,
+                        layerId,
+                        component.getComponentId(),
+                        hitPosition0));
+                    hitList.add(new DetectorHit(
+                        detectorId,
+                        sectorId,
+                        superlayerId,
+                        layerId,
+                        component.getComponentId(),
+                        hitPosition1));
                 }
                 return hitList;
             }
@@ -285,6 +302,248 @@ public abstract class AbstractLayer<ComponentType extends Component> implements
         return hitList;
     }
     
+    /**
+     * Finds the first component, in order of component id, whose volume is
+     * intersected by the given line segment. No objects are allocated, except
+     * when the index of the component volumes is built.
+     * @param line the line segment
+     * @param inIntersect set to the incoming intersection with the component
+     * @param outIntersect set to the outgoing intersection with the component
+     * @return the intersected component, or null if there is none
+     * @see org.jlab.geom.base.Component#getVolumeIntersection(org.jlab.geom.prim.Line3D, org.jlab.geom.prim.Point3D, org.jlab.geom.prim.Point3D) 
+     */
+    public final ComponentType getIntersectedComponent(Line3D line, Point3D inIntersect, Point3D outIntersect) {
+        ComponentIndex index = getComponentIndex();
+        Point3D p0 = line.origin();
+        Point3D p1 = line.end();
+        int candidate = -1;
+        while ((candidate = index.next(p0.x(), p0.y(), p0.z(), p1.x(), p1.y(), p1.z(), candidate)) >= 0) {
+            ComponentType component = componentList.get(candidate);
+            if (component.getVolumeIntersection(line, inIntersect, outIntersect))
+                return component;
+        }
+        return null;
+    }
+    
+    private ComponentIndex getComponentIndex() {
+        ComponentIndex index = componentIndex;
+        if (index == null) {
+            synchronized (this) {
+                index = componentIndex;
+                if (index == null) {
+                    index = new ComponentIndex(componentList, plane.normal());
+                    componentIndex = index;
+                }
+            }
+        }
+        return index;
+    }
+    
+    /**
+     * Discards the index of the component volumes, which is rebuilt when next
+     * needed. Invoked when the components are changed or transformed.
+     */
+    final void invalidateComponentIndex() {
+        synchronized (this) {
+            componentIndex = null;
+        }
+    }
+    
+    /**
+     * Index of the volumes of the components of a layer.
+     * <p>
+     * The components are sorted by the extent of their volume points along the
+     * axis joining the first and the last component, and the layer is bounded
+     * by a slab perpendicular to the layer plane's normal. A segment is first
+     * clipped to the slab, then the components overlapping the clipped segment
+     * along the axis are found by binary search and checked against their
+     * bounding boxes. Intersections lie on the faces of a volume, and so within
+     * these bounds, hence no intersected component is discarded. The
+     * candidates are returned one at a time, in order of component id, so
+     * that a search allocates nothing.
+     */
+    private static final class ComponentIndex {
+        
+        private static final double EPS = 1e-6;
+        
+        private final double ux, uy, uz;
+        private final double nx, ny, nz;
+        private final boolean hasSlab;
+        private final double nmin, nmax;
+        private final int[] order;
+        private final double[] umin;
+        private final double[] umax;
+        private final double[] boxes;
+        private final double maxWidth;
+        private final int[] unbounded;
+        
+        private ComponentIndex(List<? extends Component> components, Vector3D normal) {
+            int size = components.size();
+            
+            double[] axis = null;
+            if (size > 1)
+                axis = direction(centroid(components.get(0)), centroid(components.get(size-1)));
+            if (axis == null)
+                axis = new double[] {1, 0, 0};
+            ux = axis[0];
+            uy = axis[1];
+            uz = axis[2];
+            
+            double mag = normal.mag();
+            hasSlab = mag > 0;
+            nx = hasSlab ? normal.x()/mag : 0;
+            ny = hasSlab ? normal.y()/mag : 0;
+            nz = hasSlab ? normal.z()/mag : 0;
+            
+            // Bounds of each component, components without volume points can
+            // not be bounded and are always tested
+            double[][] extents = new double[size][];
+            List<Integer> bounded = new ArrayList();
+            List<Integer> others  = new ArrayList();
+            double lo = Double.POSITIVE_INFINITY;
+            double hi = Double.NEGATIVE_INFINITY;
+            for (int i=0; i<size; i++) {
+                Component component = components.get(i);
+                if (component.getNumVolumePoints() == 0) {
+                    others.add(i);
+                    continue;
+                }
+                double[] e = {Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY,
+                              Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY,
+                              Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY,
+                              Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY};
+                for (int p=0; p<component.getNumVolumePoints(); p++) {
+                    Point3D point = component.getVolumePoint(p);
+                    double x = point.x(), y = point.y(), z = point.z();
+                    double u = ux*x + uy*y + uz*z;
+                    double n = nx*x + ny*y + nz*z;
+                    e[0] = Math.min(e[0], u); e[1] = Math.max(e[1], u);
+                    e[2] = Math.min(e[2], x); e[3] = Math.max(e[3], x);
+                    e[4] = Math.min(e[4], y); e[5] = Math.max(e[5], y);
+                    e[6] = Math.min(e[6], z); e[7] = Math.max(e[7], z);
+                    lo = Math.min(lo, n);
+                    hi = Math.max(hi, n);
+                }
+                extents[i] = e;
+                bounded.add(i);
+            }
+            Collections.sort(bounded, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer a, Integer b) {
+                    return Double.compare(extents[a][0], extents[b][0]);
+                }
+            });
+            
+            nmin  = lo - EPS;
+            nmax  = hi + EPS;
+            order = new int[bounded.size()];
+            umin  = new double[order.length];
+            umax  = new double[order.length];
+            boxes = new double[6*order.length];
+            double width = 0;
+            for (int k=0; k<order.length; k++) {
+                double[] e = extents[bounded.get(k)];
+                order[k] = bounded.get(k);
+                umin[k]  = e[0] - EPS;
+                umax[k]  = e[1] + EPS;
+                for (int j=0; j<6; j+=2) {
+                    boxes[6*k+j]   = e[j+2] - EPS;
+                    boxes[6*k+j+1] = e[j+3] + EPS;
+                }
+                width = Math.max(width, umax[k] - umin[k]);
+            }
+            maxWidth  = width;
+            unbounded = new int[others.size()];
+            for (int k=0; k<unbounded.length; k++)
+                unbounded[k] = others.get(k);
+        }
+        
+        /**
+         * @param previous the index of the previous candidate, or -1 for the
+         * first one
+         * @return the lowest index above {@code previous} of the components
+         * that may be intersected by the segment from (x0, y0, z0) to
+         * (x1, y1, z1), or -1 if there is none
+         */
+        private int next(double x0, double y0, double z0, double x1, double y1, double z1, int previous) {
+            int next = Integer.MAX_VALUE;
+            for (int i : unbounded) {
+                if (i > previous) {
+                    next = i;
+                    break;
+                }
+            }
+            double dx = x1-x0, dy = y1-y0, dz = z1-z0;
+            
+            // Clip the segment to the layer slab
+            double t0 = 0, t1 = 1;
+            if (hasSlab) {
+                double d0 = nx*x0 + ny*y0 + nz*z0;
+                double dd = nx*dx + ny*dy + nz*dz;
+                if (dd == 0) {
+                    if (d0 < nmin || d0 > nmax)
+                        return next == Integer.MAX_VALUE ? -1 : next;
+                } else {
+                    double ta = (nmin-d0)/dd;
+                    double tb = (nmax-d0)/dd;
+                    t0 = Math.max(t0, Math.min(ta, tb));
+                    t1 = Math.min(t1, Math.max(ta, tb));
+                    if (t0 > t1)
+                        return next == Integer.MAX_VALUE ? -1 : next;
+                }
+            }
+            double ax = x0+t0*dx, ay = y0+t0*dy, az = z0+t0*dz;
+            double bx = x0+t1*dx, by = y0+t1*dy, bz = z0+t1*dz;
+            double sa = ux*ax + uy*ay + uz*az;
+            double sb = ux*bx + uy*by + uz*bz;
+            double lo = Math.min(sa, sb) - EPS;
+            double hi = Math.max(sa, sb) + EPS;
+            
+            // First component that can reach lo along the axis
+            int first = 0, last = order.length;
+            while (first < last) {
+                int mid = (first+last) >>> 1;
+                if (umin[mid] < lo-maxWidth) first = mid+1;
+                else last = mid;
+            }
+            
+            for (int k=first; k<order.length && umin[k]<=hi; k++) {
+                if (order[k] <= previous || order[k] >= next || umax[k] < lo) continue;
+                int b = 6*k;
+                if (Math.max(ax, bx) < boxes[b]   || Math.min(ax, bx) > boxes[b+1] ||
+                    Math.max(ay, by) < boxes[b+2] || Math.min(ay, by) > boxes[b+3] ||
+                    Math.max(az, bz) < boxes[b+4] || Math.min(az, bz) > boxes[b+5])
+                    continue;
+                next = order[k];
+            }
+            return next == Integer.MAX_VALUE ? -1 : next;
+        }
+        
+        private static double[] centroid(Component component) {
+            int np = component.getNumVolumePoints();
+            if (np == 0)
+                return null;
+            double[] c = new double[3];
+            for (int p=0; p<np; p++) {
+                Point3D point = component.getVolumePoint(p);
+                c[0] += point.x()/np;
+                c[1] += point.y()/np;
+                c[2] += point.z()/np;
+            }
+            return c;
+        }
+        
+        private static double[] direction(double[] c0, double[] c1) {
+            if (c0 == null || c1 == null)
+                return null;
+            double dx = c1[0]-c0[0], dy = c1[1]-c0[1], dz = c1[2]-c0[2];
+            double d = Math.sqrt(dx*dx + dy*dy + dz*dz);
+            if (!(d > 0))
+                return null;
+            return new double[] {dx/d, dy/d, dz/d};
+        }
+    }
+    
     @Override
     public void show() {
         System.out.print(this);
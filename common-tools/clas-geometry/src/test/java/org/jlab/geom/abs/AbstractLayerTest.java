@@ -0,0 +1,135 @@
+package org.jlab.geom.abs;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.jlab.geom.DetectorId;
+import org.jlab.geom.component.ScintillatorPaddle;
+import org.jlab.geom.prim.Line3D;
+import org.jlab.geom.prim.Point3D;
+import org.jlab.geom.prim.Transformation3D;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Compare the components found with the index of the component volumes of
+ * {@link AbstractLayer} with a scan of all the components.
+ */
+public class AbstractLayerTest {
+
+    private static class PaddleLayer extends AbstractLayer<ScintillatorPaddle> {
+        PaddleLayer() {
+            super(DetectorId.FTOF, 1, 1, 1, false);
+        }
+        @Override
+        public String getType() {
+            return "Test Layer";
+        }
+    }
+
+    // paddles side by side along x, in the z=0 plane, with a few overlaps
+    private static PaddleLayer createLayer() {
+        PaddleLayer layer = new PaddleLayer();
+        for (int id = 1; id <= 40; id++) {
+            ScintillatorPaddle paddle = new ScintillatorPaddle(id, 5, 100 + id, 2);
+            paddle.translateXYZ(id * (id % 7 == 0 ? 4.5 : 5), 0, 0);
+            layer.addComponent(paddle);
+        }
+        layer.getPlane().set(0, 0, 0, 0, 0, 1);
+        return layer;
+    }
+
+    private static ScintillatorPaddle scan(PaddleLayer layer, Line3D line, Point3D in, Point3D out) {
+        for (ScintillatorPaddle paddle : layer.getAllComponents()) {
+            if (paddle.getVolumeIntersection(line, in, out))
+                return paddle;
+        }
+        return null;
+    }
+
+    private static Line3D randomLine(Random rand, Point3D center) {
+        Point3D p0 = new Point3D(center.x() + 150 * (rand.nextDouble() - 0.5),
+                                 center.y() + 150 * (rand.nextDouble() - 0.5),
+                                 center.z() + 20 * (rand.nextDouble() - 0.5));
+        Point3D p1 = new Point3D(p0.x() + 20 * rand.nextGaussian(),
+                                 p0.y() + 20 * rand.nextGaussian(),
+                                 p0.z() + 10 * rand.nextGaussian());
+        return new Line3D(p0, p1);
+    }
+
+    private static void compare(PaddleLayer layer, long seed) {
+        Random rand = new Random(seed);
+        Point3D center = layer.getComponent(20).getMidpoint();
+        Point3D in0 = new Point3D(), out0 = new Point3D();
+        Point3D in1 = new Point3D(), out1 = new Point3D();
+        int hits = 0;
+        for (int i = 0; i < 20000; i++) {
+            Line3D line = randomLine(rand, center);
+            ScintillatorPaddle expected = scan(layer, line, in0, out0);
+            ScintillatorPaddle actual = layer.getIntersectedComponent(line, in1, out1);
+            assertSame(expected, actual);
+            if (expected != null) {
+                assertEquals(0, in0.distance(in1), 0);
+                assertEquals(0, out0.distance(out1), 0);
+                hits++;
+            }
+        }
+        assertTrue(hits > 1000);
+    }
+
+    @Test
+    public void testIndex() {
+        compare(createLayer(), 1);
+    }
+
+    @Test
+    public void testLayerTransformation() {
+        PaddleLayer layer = createLayer();
+        compare(layer, 2);
+        Transformation3D transform = new Transformation3D();
+        transform.rotateY(Math.toRadians(25)).rotateZ(Math.toRadians(60)).translateXYZ(10, -300, 650);
+        layer.setTransformation(transform);
+        compare(layer, 3);
+    }
+
+    @Test
+    public void testComponentTransformation() {
+        PaddleLayer layer = createLayer();
+        compare(layer, 4);
+
+        // only the moved paddle is there, the index must see it:
+        ScintillatorPaddle paddle = layer.getComponent(3);
+        paddle.translateXYZ(0, 0, 500);
+        Line3D line = new Line3D(15, 0, 490, 15, 0, 510);
+        Point3D in = new Point3D(), out = new Point3D();
+        assertSame(paddle, layer.getIntersectedComponent(line, in, out));
+        assertEquals(499, in.z(), 1e-9);
+        assertNull(layer.getIntersectedComponent(new Line3D(15, 0, -10, 15, 0, 10), in, out));
+
+        paddle.rotateX(Math.toRadians(90));
+        compare(layer, 5);
+    }
+
+    @Test
+    public void testThreads() throws InterruptedException {
+        PaddleLayer layer = createLayer();
+        List<Thread> threads = new ArrayList<>();
+        List<Throwable> errors = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            final long seed = 10 + t;
+            threads.add(new Thread(() -> {
+                try {
+                    compare(layer, seed);
+                } catch (Throwable e) {
+                    synchronized (errors) {
+                        errors.add(e);
+                    }
+                }
+            }));
+        }
+        for (Thread thread : threads) thread.start();
+        for (Thread thread : threads) thread.join();
+        assertTrue(errors.toString(), errors.isEmpty());
+    }
+}
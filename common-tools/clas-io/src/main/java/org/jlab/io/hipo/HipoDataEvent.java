@@ -30,6 +30,10 @@ public class HipoDataEvent implements DataEvent {
     private SchemaFactory schemaFactory = null;
     
     private DataEventType eventType = DataEventType.EVENT_ACCUMULATE;
+
+    // list of existing banks, valid until the event is modified
+    private boolean cacheBanks = false;
+    private String[] bankList = null;
     
     public HipoDataEvent(byte[] array, SchemaFactory factory){
         hipoEvent = new Event(array.length);
@@ -46,7 +50,34 @@ public class HipoDataEvent implements DataEvent {
         schemaFactory = factory;
     }
     
-    public Event  getHipoEvent(){return this.hipoEvent;}
+    /**
+     * Access the underlying event; since the caller may modify it, this
+     * invalidates the bank cache, see {@link #setBankCache(boolean)}.
+     * @return the hipo event
+     */
+    public Event  getHipoEvent(){
+        this.invalidate();
+        return this.hipoEvent;
+    }
+
+    /**
+     * Enable caching of the list of existing banks, which is built by the
+     * first {@link #hasBank(String)} or {@link #getBankList()} call, so later
+     * calls do not scan the event again.  Banks are always decoded into a new object, so
+     * changes to a bank returned by {@link #getBank(String)} are never seen
+     * by other callers.  The cache is invalidated by
+     * {@link #appendBank(DataBank)}, {@link #removeBank(String)} and
+     * {@link #getHipoEvent()}.
+     * @param cache
+     */
+    public void setBankCache(boolean cache) {
+        this.cacheBanks = cache;
+        this.invalidate();
+    }
+
+    private void invalidate() {
+        this.bankList = null;
+    }
     
     public void initDictionary(SchemaFactory factory){
         //this.hipoEvent.getSchemaFactory().copy(factory);
@@ -55,6 +86,14 @@ public class HipoDataEvent implements DataEvent {
     
     @Override
     public String[] getBankList() {
+        if(cacheBanks) {
+            if(bankList==null) bankList = this.scanBanks();
+            return bankList.clone();
+        }
+        return this.scanBanks();
+    }
+
+    private String[] scanBanks() {
         List<Schema> schemaList = schemaFactory.getSchemaList();
         List<String> existingBanks = new ArrayList<String>();
         for(Schema schema : schemaList){
@@ -105,6 +144,7 @@ public class HipoDataEvent implements DataEvent {
         if(bank instanceof HipoDataBank){
             Bank group =  ((HipoDataBank) bank).getBank();
             hipoEvent.write(group);
+            this.invalidate();
         }
     }
 
@@ -118,6 +158,11 @@ public class HipoDataEvent implements DataEvent {
     public boolean hasBank(String name) {
         Schema schema = schemaFactory.getSchema(name);
         if(schema==null) return false;
+        if(cacheBanks) {
+            if(bankList==null) bankList = this.scanBanks();
+            for(String bank : bankList) if(bank.equals(name)) return true;
+            return false;
+        }
         return hipoEvent.scan(schema.getGroup(),schema.getItem())>0;
     }
 
@@ -320,6 +365,7 @@ public class HipoDataEvent implements DataEvent {
     public void removeBank(String bankName) {
         if(schemaFactory.hasSchema(bankName)==true){
             hipoEvent.remove(schemaFactory.getSchema(bankName));
+            this.invalidate();
         }
         //this.hipoEvent.removeGroup(bankName);
     }
@@ -24,10 +24,37 @@ public class HipoDataSource implements DataSource {
 
     HipoReader reader = null;
     int currentEventNumber = 0;
+
+    /**
+     * whether to recycle events and cache decoded banks, off by default
+     */
+    private boolean reuseEvents = Boolean.getBoolean("clas12.hipo.reuse");
+    private final ThreadLocal<Event> recycled = ThreadLocal.withInitial(Event::new);
     
     public HipoDataSource(){
         this.reader = new HipoReader();
     }
+
+    /**
+     * Set reuse mode.  When on, each thread reads every event into the same
+     * recycled {@link Event}, so an event returned by {@link #getNextEvent()}
+     * or {@link #gotoEvent(int)} is only valid until the next one is read on
+     * that thread, and the list of banks is cached per event, see
+     * {@link HipoDataEvent#setBankCache(boolean)}.  Do not enable when events
+     * are kept or handed to other threads, e.g. for parallel processing.
+     * @param reuse
+     */
+    public void setReuseEvents(boolean reuse) {
+        this.reuseEvents = reuse;
+    }
+
+    public boolean isReuseEvents() {
+        return this.reuseEvents;
+    }
+
+    private Event getEvent() {
+        return this.reuseEvents ? this.recycled.get() : new Event();
+    }
     
     @Override
     public boolean hasEvent() {
@@ -84,9 +111,10 @@ public class HipoDataSource implements DataSource {
 
     @Override
     public DataEvent getNextEvent() {
-        Event event = new Event();
+        Event event = this.getEvent();
         reader.nextEvent(event);
         HipoDataEvent  hipoEvent = new HipoDataEvent(event,reader.getSchemaFactory());
+        hipoEvent.setBankCache(this.reuseEvents);
         if(reader.hasNext()==true){
             hipoEvent.setType(DataEventType.EVENT_ACCUMULATE);
         } else {
@@ -103,9 +131,10 @@ public class HipoDataSource implements DataSource {
 
     @Override
     public DataEvent gotoEvent(int index) {
-        Event event = new Event();
+        Event event = this.getEvent();
         reader.getEvent(event, index);
         HipoDataEvent  hipoEvent = new HipoDataEvent(event,reader.getSchemaFactory());
+        hipoEvent.setBankCache(this.reuseEvents);
         if(reader.hasNext()==true){
             hipoEvent.setType(DataEventType.EVENT_ACCUMULATE);
         } else {
@@ -1,6 +1,13 @@
 package org.jlab.io.hipo;
 
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -17,14 +24,33 @@ import org.jlab.jnp.hipo4.io.HipoWriterSorted;
 
 
 /**
+ * Writes events to a HIPO file.
+ *
+ * Two optional modes, set before opening, take the record compression off
+ * the calling thread:  in asynchronous mode events are copied, queued and
+ * written, and so compressed, by a dedicated thread, in the order they were
+ * queued, and in sharded mode the events are written in turn to several
+ * files, so that the files are compressed in parallel.  Sharded output is
+ * not in input order, and an index file gives the shard and position of
+ * each event, see {@link #setShards}.
  *
  * @author gavalian
  */
 public class HipoDataSync implements DataSync {
 
     public static Logger LOGGER = Logger.getLogger(HipoDataSync.class.getName());
-    
+
+    public static final int ASYNC_QUEUE_SIZE = 64;
+
     HipoWriterSorted writer = null;
+
+    private int compressionType = 2;
+    private boolean async = false;
+    private int nshards = 0;
+
+    private final List<Output> outputs = new ArrayList<>();
+    private final AtomicLong nextEvent = new AtomicLong();
+    private PrintWriter index = null;
     
     public HipoDataSync(){
         this.writer = new HipoWriterSorted();
@@ -44,6 +70,44 @@ public class HipoDataSync implements DataSync {
             writer.getSchemaFactory().addSchema(schema);
         }
     }
+
+    /**
+     * @param async whether to write events on a dedicated thread, must be
+     * set before opening the file.  Events are copied before being queued,
+     * so they can be reused by the caller, e.g. from a reusing data source.
+     */
+    public void setAsync(boolean async) {
+        this.async = async;
+    }
+
+    public boolean isAsync() {
+        return this.async;
+    }
+
+    /**
+     * Set sharded output, which must be set before opening the file:  with
+     * n shards, opening file.hipo writes file.0.hipo to file.(n-1).hipo
+     * and the index file.hipo.shards, and writeEvent is thread-safe.
+     * The events are distributed in turn, the k-th written event going to
+     * shard k%n whatever the calling thread.  The index starts with one
+     * line "# shard i file" per shard, followed by one line per event:
+     * "k shard position run event", with k the order in which the event
+     * was written, position its number in the shard file, and run and event
+     * from RUN::config, or -1 if absent.  With several writing threads the
+     * event lines are not in order of k, sorting them by k restores the
+     * write order.
+     * @param nshards number of files, or less than 2 for a single file
+     */
+    public void setShards(int nshards) {
+        this.nshards = nshards;
+    }
+
+    /**
+     * @return the number of shard files, 0 for a single file
+     */
+    public int getShards() {
+        return this.nshards > 1 ? this.nshards : 0;
+    }
     
     @Override
     public void open(String file) {
@@ -54,7 +118,30 @@ public class HipoDataSync implements DataSync {
             String descString = dict.getDescriptor(desc).toString();
             this.writer.addHeader(descString);
         }*/
-        this.writer.open(file);
+        if (this.nshards > 1) {
+            String base = file.endsWith(".hipo") ? file.substring(0, file.length()-5) : file;
+            try {
+                this.index = new PrintWriter(file + ".shards");
+                for (int i = 0; i < this.nshards; i++) {
+                    this.index.println("# shard " + i + " " + base+"."+i+".hipo");
+                }
+            }
+            catch (IOException e) {
+                LOGGER.log(Level.SEVERE, "[HipoDataSync] error opening index "+file+".shards", e);
+            }
+            for (int i = 0; i < this.nshards; i++) {
+                HipoWriterSorted w = this.writer;
+                if (i > 0) {
+                    w = new HipoWriterSorted();
+                    w.setCompressionType(this.compressionType);
+                    w.getSchemaFactory().copy(this.writer.getSchemaFactory());
+                }
+                this.outputs.add(new Output(w, base+"."+i+".hipo", this.async, this.index));
+            }
+        }
+        else {
+            this.outputs.add(new Output(this.writer, file, this.async, null));
+        }
     }
 
     public void addSchema(Schema schema){
@@ -71,16 +158,47 @@ public class HipoDataSync implements DataSync {
         if(event instanceof HipoDataEvent) {
             HipoDataEvent hipoEvent = (HipoDataEvent) event;
             
-            this.writer.addEvent(hipoEvent.getHipoEvent(),hipoEvent.getHipoEvent().getEventTag());
+            if (this.outputs.isEmpty()) {
+                this.writer.addEvent(hipoEvent.getHipoEvent(),hipoEvent.getHipoEvent().getEventTag());
+            }
+            else {
+                if (this.outputs.size() == 1) {
+                    this.outputs.get(0).add(hipoEvent.getHipoEvent(), null);
+                }
+                else {
+                    long k = this.nextEvent.getAndIncrement();
+                    Output output = this.outputs.get((int) (k % this.outputs.size()));
+                    String entry = null;
+                    if (this.index != null) {
+                        int run = -1, evn = -1;
+                        if (hipoEvent.hasBank("RUN::config")) {
+                            DataBank config = hipoEvent.getBank("RUN::config");
+                            run = config.getInt("run", 0);
+                            evn = config.getInt("event", 0);
+                        }
+                        entry = k + " " + (k % this.outputs.size()) + " %d " + run + " " + evn;
+                    }
+                    output.add(hipoEvent.getHipoEvent(), entry);
+                }
+            }
         }
     }
     public HipoWriterSorted getWriter(){ return writer;}
     
     public void close() {
-        this.writer.close();
+        if (this.outputs.isEmpty()) this.writer.close();
+        for (Output output : this.outputs) output.close();
+        if (this.index != null) {
+            if (this.index.checkError()) LOGGER.log(Level.SEVERE, "[HipoDataSync] error writing the shard index");
+            this.index.close();
+        }
+        this.outputs.clear();
+        this.index = null;
+        this.nextEvent.set(0);
     }
     
     public void setCompressionType(int type){
+        this.compressionType = type;
         this.writer.setCompressionType(type);
     }
     
@@ -90,6 +208,93 @@ public class HipoDataSync implements DataSync {
         return new HipoDataEvent(event,writer.getSchemaFactory());
     }
     
+    /**
+     * One output file, written either on the calling thread or, in
+     * asynchronous mode, on its own thread.
+     */
+    private static class Output {
+
+        private static final Event END = new Event();
+
+        final HipoWriterSorted writer;
+        final String file;
+        final PrintWriter index;
+        long events = 0;
+
+        private BlockingQueue<Event> queue = null;
+        private Thread thread = null;
+
+        Output(HipoWriterSorted writer, String file, boolean async, PrintWriter index) {
+            this.writer = writer;
+            this.file = file;
+            this.index = index;
+            writer.open(file);
+            if (async) {
+                this.queue = new ArrayBlockingQueue<>(ASYNC_QUEUE_SIZE);
+                this.thread = new Thread(this::drain, "HipoDataSync-"+file);
+                this.thread.setDaemon(true);
+                this.thread.start();
+            }
+        }
+
+        /**
+         * @param event the event
+         * @param entry the index line, with %d for the position in the file,
+         * or null if not indexed
+         */
+        synchronized void add(Event event, String entry) {
+            if (entry != null) this.index.println(String.format(entry, this.events));
+            this.events++;
+            if (this.queue == null) {
+                this.writer.addEvent(event, event.getEventTag());
+            }
+            else {
+                // the caller may reuse the event once it is queued:
+                byte[] buffer = event.getEventBuffer().array();
+                Event copy = new Event(buffer.length);
+                copy.initFrom(Arrays.copyOf(buffer, buffer.length));
+                try {
+                    this.queue.put(copy);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    LOGGER.log(Level.SEVERE, "[HipoDataSync] interrupted, event not written to {0}", this.file);
+                }
+            }
+        }
+
+        private void drain() {
+            // after an error keep taking events, so the callers do not block:
+            boolean failed = false;
+            try {
+                while (true) {
+                    Event event = this.queue.take();
+                    if (event == END) break;
+                    if (failed) continue;
+                    try {
+                        this.writer.addEvent(event, event.getEventTag());
+                    } catch (Exception e) {
+                        LOGGER.log(Level.SEVERE, "[HipoDataSync] error writing "+this.file, e);
+                        failed = true;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        synchronized void close() {
+            if (this.thread != null) {
+                try {
+                    this.queue.put(END);
+                    this.thread.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            this.writer.close();
+        }
+    }
+
     public static void printUsage(){
         System.out.println("\tUsage: convert -[option] output.hipo input.evio [input2.evio] [input3.evio]");
             System.out.println("\n\t Options :");
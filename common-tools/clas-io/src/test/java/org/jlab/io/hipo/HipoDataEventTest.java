@@ -0,0 +1,126 @@
+package org.jlab.io.hipo;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+import org.jlab.io.base.DataBank;
+import org.jlab.io.base.DataEvent;
+import org.jlab.jnp.hipo4.data.Event;
+import org.jlab.jnp.hipo4.data.SchemaFactory;
+import org.jlab.utils.system.ClasUtilsFile;
+
+public class HipoDataEventTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static SchemaFactory getSchemaFactory() {
+        System.setProperty("CLAS12DIR", "../../");
+        String dir = ClasUtilsFile.getResourceDir("CLAS12DIR", "etc/bankdefs/hipo4");
+        SchemaFactory schemaFactory = new SchemaFactory();
+        schemaFactory.initFromDirectory(dir);
+        return schemaFactory;
+    }
+
+    private static String write(File file, int nevents) {
+        HipoDataSync writer = new HipoDataSync(getSchemaFactory());
+        writer.open(file.getPath());
+        for(int i=0; i<nevents; i++) {
+            DataEvent event = writer.createEvent();
+            DataBank config = event.createBank("RUN::config", 1);
+            config.setInt("run", 0, 11);
+            config.setInt("event", 0, i);
+            event.appendBank(config);
+            writer.writeEvent(event);
+        }
+        writer.close();
+        return file.getPath();
+    }
+
+    @Test
+    public void testBankCache() {
+        HipoDataSync writer = new HipoDataSync(getSchemaFactory());
+        HipoDataEvent event = (HipoDataEvent) writer.createEvent();
+        event.setBankCache(true);
+        assertFalse(event.hasBank("RUN::config"));
+        assertEquals(0, event.getBankList().length);
+
+        DataBank config = event.createBank("RUN::config", 1);
+        config.setInt("event", 0, 1);
+        event.appendBank(config);
+        assertTrue(event.hasBank("RUN::config"));
+        assertEquals(1, event.getBankList().length);
+
+        // banks are decoded for each caller, in-place changes are not shared:
+        DataBank first = event.getBank("RUN::config");
+        first.setInt("event", 0, 2);
+        DataBank second = event.getBank("RUN::config");
+        assertNotSame(first, second);
+        assertEquals(1, second.getInt("event", 0));
+
+        // changes through the hipo event invalidate the cached bank list:
+        event.getHipoEvent().remove(((HipoDataBank) second).getBank().getSchema());
+        assertFalse(event.hasBank("RUN::config"));
+        assertEquals(0, event.getBankList().length);
+
+        event.removeBank("RUN::config");
+        event.appendBank(config);
+        assertTrue(event.hasBank("RUN::config"));
+    }
+
+    @Test
+    public void testHasBankCache() {
+        HipoDataSync writer = new HipoDataSync(getSchemaFactory());
+        HipoDataEvent source = (HipoDataEvent) writer.createEvent();
+        DataBank config = source.createBank("RUN::config", 1);
+        Event hipoEvent = source.getHipoEvent();
+        HipoDataEvent event = new HipoDataEvent(hipoEvent, getSchemaFactory());
+        event.setBankCache(true);
+
+        // the first hasBank call builds the list, so a bank written to the
+        // hipo event behind this event's back is not seen:
+        assertFalse(event.hasBank("RUN::config"));
+        hipoEvent.write(((HipoDataBank) config).getBank());
+        assertFalse(event.hasBank("RUN::config"));
+        assertEquals(0, event.getBankList().length);
+
+        // without the cache every call scans the event:
+        event.setBankCache(false);
+        assertTrue(event.hasBank("RUN::config"));
+    }
+
+    @Test
+    public void testReuseEvents() throws IOException {
+        String file = write(folder.newFile("events.hipo"), 5);
+
+        HipoDataSource reader = new HipoDataSource();
+        reader.setReuseEvents(true);
+        reader.open(file);
+        HipoDataEvent previous = null;
+        int n = 0;
+        while(reader.hasEvent()) {
+            HipoDataEvent event = (HipoDataEvent) reader.getNextEvent();
+            if(previous != null) assertSame(previous.getHipoEvent(), event.getHipoEvent());
+            assertTrue(event.hasBank("RUN::config"));
+            assertEquals(n, event.getBank("RUN::config").getInt("event", 0));
+            previous = event;
+            n++;
+        }
+        reader.close();
+        assertEquals(5, n);
+
+        reader = new HipoDataSource();
+        reader.setReuseEvents(false);
+        reader.open(file);
+        DataEvent first  = reader.getNextEvent();
+        DataEvent second = reader.getNextEvent();
+        assertNotSame(((HipoDataEvent) first).getHipoEvent(), ((HipoDataEvent) second).getHipoEvent());
+        assertEquals(0, first.getBank("RUN::config").getInt("event", 0));
+        reader.close();
+    }
+}
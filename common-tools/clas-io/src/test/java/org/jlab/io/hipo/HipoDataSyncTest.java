@@ -0,0 +1,132 @@
+package org.jlab.io.hipo;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+import org.jlab.io.base.DataBank;
+import org.jlab.io.base.DataEvent;
+import org.jlab.jnp.hipo4.data.SchemaFactory;
+import org.jlab.utils.system.ClasUtilsFile;
+
+public class HipoDataSyncTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static SchemaFactory getSchemaFactory() {
+        System.setProperty("CLAS12DIR", "../../");
+        String dir = ClasUtilsFile.getResourceDir("CLAS12DIR", "etc/bankdefs/hipo4");
+        SchemaFactory schemaFactory = new SchemaFactory();
+        schemaFactory.initFromDirectory(dir);
+        return schemaFactory;
+    }
+
+    /**
+     * Write events from, from+step, ... below to, reusing a single event
+     * as a reusing data source does.
+     */
+    private static void write(HipoDataSync writer, int from, int to, int step) {
+        DataEvent event = writer.createEvent();
+        for(int i=from; i<to; i+=step) {
+            event.removeBank("RUN::config");
+            DataBank config = event.createBank("RUN::config", 1);
+            config.setInt("run", 0, 11);
+            config.setInt("event", 0, i);
+            event.appendBank(config);
+            writer.writeEvent(event);
+        }
+    }
+
+    private static List<Integer> read(String file) {
+        List<Integer> events = new ArrayList<>();
+        HipoDataSource reader = new HipoDataSource();
+        reader.open(file);
+        while(reader.hasEvent()) {
+            DataEvent event = reader.getNextEvent();
+            assertTrue(event.hasBank("RUN::config"));
+            assertEquals(11, event.getBank("RUN::config").getInt("run", 0));
+            events.add(event.getBank("RUN::config").getInt("event", 0));
+        }
+        reader.close();
+        return events;
+    }
+
+    @Test
+    public void testAsync() throws IOException {
+        String file = folder.newFile("async.hipo").getPath();
+        HipoDataSync writer = new HipoDataSync(getSchemaFactory());
+        writer.setAsync(true);
+        writer.open(file);
+        write(writer, 0, 1000, 1);
+        writer.close();
+
+        List<Integer> events = read(file);
+        assertEquals(1000, events.size());
+        for(int i=0; i<events.size(); i++) assertEquals(i, (int) events.get(i));
+    }
+
+    @Test
+    public void testShards() throws IOException, InterruptedException {
+        final int nshards = 3;
+        final int nthreads = 4;
+        final int nevents = 1000;
+        String file = new File(folder.getRoot(), "sharded.hipo").getPath();
+        final HipoDataSync writer = new HipoDataSync(getSchemaFactory());
+        writer.setAsync(true);
+        writer.setShards(nshards);
+        writer.open(file);
+
+        // the calling thread writes too:
+        write(writer, 0, 1, 1);
+        List<Thread> threads = new ArrayList<>();
+        for(int t=0; t<nthreads; t++) {
+            final int first = 1+t;
+            threads.add(new Thread(() -> write(writer, first, nevents, nthreads)));
+        }
+        for(Thread thread : threads) thread.start();
+        for(Thread thread : threads) thread.join();
+        writer.close();
+
+        List<String> lines = Files.readAllLines(new File(file+".shards").toPath());
+        List<List<Integer>> shards = new ArrayList<>();
+        for(int i=0; i<nshards; i++) {
+            String[] header = lines.get(i).split(" ");
+            assertEquals("#", header[0]);
+            assertEquals("shard", header[1]);
+            assertEquals(i, Integer.parseInt(header[2]));
+            shards.add(read(header[3]));
+        }
+
+        // events are shared in turn, whatever the thread:
+        for(List<Integer> shard : shards) {
+            assertTrue(Math.abs(shard.size() - nevents/nshards) <= 1);
+        }
+
+        // each event is indexed once, where it is in the shards:
+        assertEquals(nshards+nevents, lines.size());
+        boolean[] found = new boolean[nevents];
+        boolean[] written = new boolean[nevents];
+        for(String line : lines.subList(nshards, lines.size())) {
+            String[] entry = line.split(" ");
+            int k        = Integer.parseInt(entry[0]);
+            int shard    = Integer.parseInt(entry[1]);
+            int position = Integer.parseInt(entry[2]);
+            assertEquals(k%nshards, shard);
+            assertEquals(11, Integer.parseInt(entry[3]));
+            int event = Integer.parseInt(entry[4]);
+            assertEquals(event, (int) shards.get(shard).get(position));
+            assertFalse(found[event]);
+            assertFalse(written[k]);
+            found[event] = true;
+            written[k] = true;
+        }
+    }
+}
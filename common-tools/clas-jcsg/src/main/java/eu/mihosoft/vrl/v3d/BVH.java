@@ -0,0 +1,432 @@
+package eu.mihosoft.vrl.v3d;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Bounding volume hierarchy of triangles, for fast ray intersection with
+ * polygon meshes such as CSGs.
+ *
+ * Triangles are stored in flat coordinate arrays, each with an integer tag
+ * chosen by the user (e.g. the id of the volume it belongs to), and the tree
+ * is stored in flat arrays of axis-aligned boxes, built by splitting the
+ * triangles at the median of the longest axis of their centroids.  Queries
+ * take primitive coordinates and write their result into a reusable
+ * {@link Query}, so they do not allocate.  A hierarchy is immutable once
+ * built and can be shared by any number of threads, each using its own
+ * {@link Query}.
+ *
+ * Rays are given by an origin o and a direction d, and points along them by
+ * the parameter t of o+t*d;  unbounded lines are queried with infinite
+ * parameter limits.
+ */
+public final class BVH {
+
+    /**
+     * Maximum number of triangles in a leaf.
+     */
+    public static final int LEAF_SIZE = 4;
+
+    private static final double EPSILON = 1e-12;
+
+    private final int ntriangles;
+    private final double[] vertices;    // 9 coordinates per triangle
+    private final int[] tags;
+
+    // nodes: box, and either children (left>=0) or a range of triangles (left<0)
+    private int nnodes = 0;
+    private final double[] boxes;             // 6 per node: xmin,ymin,zmin,xmax,ymax,zmax
+    private final int[] left;
+    private final int[] right;
+    private final int[] first;
+    private final int[] count;
+    private final int[] order;          // triangles ordered by leaf
+    private int depth = 0;
+
+    /**
+     * Reusable state and result of a query.  Not thread-safe: use one per
+     * thread.
+     */
+    public static final class Query {
+
+        private int[] stack = new int[64];
+        private int[] candidates = new int[64];
+        private int ncandidates = 0;
+
+        private double t;
+        private double x, y, z;
+        private int triangle = -1;
+        private int tag = -1;
+
+        /**
+         * @return parameter of the nearest intersection along the ray
+         */
+        public double getT() { return t; }
+        public double getX() { return x; }
+        public double getY() { return y; }
+        public double getZ() { return z; }
+
+        /**
+         * @return index of the intersected triangle, or -1 if none
+         */
+        public int getTriangle() { return triangle; }
+
+        /**
+         * @return tag of the intersected triangle, or -1 if none
+         */
+        public int getTag() { return tag; }
+
+        /**
+         * @return number of candidate triangles found by the last
+         * {@link BVH#candidates} call
+         */
+        public int getCandidateCount() { return ncandidates; }
+
+        /**
+         * @param i
+         * @return i-th candidate triangle, in increasing order
+         */
+        public int getCandidate(int i) { return candidates[i]; }
+
+        private void reset() {
+            triangle = -1;
+            tag = -1;
+            t = Double.POSITIVE_INFINITY;
+            ncandidates = 0;
+        }
+
+        private void push(int n, int value) {
+            if (n == stack.length) stack = Arrays.copyOf(stack, 2 * n);
+            stack[n] = value;
+        }
+
+        private void addCandidate(int tri) {
+            if (ncandidates == candidates.length) candidates = Arrays.copyOf(candidates, 2 * ncandidates);
+            candidates[ncandidates++] = tri;
+        }
+    }
+
+    /**
+     * @param vertices 9 coordinates (3 points) per triangle
+     * @param tags one tag per triangle
+     */
+    public BVH(double[] vertices, int[] tags) {
+        if (vertices.length != 9 * tags.length) {
+            throw new IllegalArgumentException("expected 9 coordinates per tag");
+        }
+        this.ntriangles = tags.length;
+        this.vertices = vertices.clone();
+        this.tags = tags.clone();
+        this.order = new int[ntriangles];
+        for (int i = 0; i < ntriangles; i++) order[i] = i;
+        int capacity = Math.max(1, 2 * ntriangles);
+        boxes = new double[6 * capacity];
+        left = new int[capacity];
+        right = new int[capacity];
+        first = new int[capacity];
+        count = new int[capacity];
+        if (ntriangles > 0) {
+            double[] centroids = new double[3 * ntriangles];
+            for (int i = 0; i < ntriangles; i++) {
+                for (int a = 0; a < 3; a++) {
+                    centroids[3 * i + a] = (vertices[9 * i + a] + vertices[9 * i + 3 + a] + vertices[9 * i + 6 + a]) / 3;
+                }
+            }
+            build(0, ntriangles, centroids, 1);
+        }
+    }
+
+    /**
+     * Create the hierarchy of the polygons of CSGs, fan-triangulating
+     * polygons with more than 3 vertices.
+     *
+     * @param csgs the CSGs
+     * @param tags one tag per CSG, given to all its triangles
+     * @return the hierarchy
+     */
+    public static BVH fromCSGs(List<CSG> csgs, int[] tags) {
+        List<Polygon> polygons = new ArrayList<>();
+        List<Integer> polygonTags = new ArrayList<>();
+        for (int i = 0; i < csgs.size(); i++) {
+            for (Polygon p : csgs.get(i).getPolygons()) {
+                polygons.add(p);
+                polygonTags.add(tags[i]);
+            }
+        }
+        int[] ptags = new int[polygonTags.size()];
+        for (int i = 0; i < ptags.length; i++) ptags[i] = polygonTags.get(i);
+        return fromPolygons(polygons, ptags);
+    }
+
+    /**
+     * Create the hierarchy of polygons, fan-triangulating polygons with more
+     * than 3 vertices.
+     *
+     * @param polygons the polygons
+     * @param tags one tag per polygon, given to all its triangles
+     * @return the hierarchy
+     */
+    public static BVH fromPolygons(List<Polygon> polygons, int[] tags) {
+        int n = 0;
+        for (Polygon p : polygons) n += Math.max(0, p.vertices.size() - 2);
+        double[] coords = new double[9 * n];
+        int[] ttags = new int[n];
+        int k = 0;
+        for (int i = 0; i < polygons.size(); i++) {
+            List<Vertex> v = polygons.get(i).vertices;
+            for (int j = 1; j + 1 < v.size(); j++) {
+                setVertex(coords, 9 * k, v.get(0).pos);
+                setVertex(coords, 9 * k + 3, v.get(j).pos);
+                setVertex(coords, 9 * k + 6, v.get(j + 1).pos);
+                ttags[k++] = tags[i];
+            }
+        }
+        return new BVH(coords, ttags);
+    }
+
+    private static void setVertex(double[] coords, int offset, Vector3d pos) {
+        coords[offset] = pos.x;
+        coords[offset + 1] = pos.y;
+        coords[offset + 2] = pos.z;
+    }
+
+    public int getTriangleCount() {
+        return ntriangles;
+    }
+
+    public int getNodeCount() {
+        return nnodes;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * @param triangle
+     * @return tag of the triangle
+     */
+    public int getTag(int triangle) {
+        return tags[triangle];
+    }
+
+    /**
+     * @param triangle
+     * @param vertex 0, 1 or 2
+     * @param axis 0, 1 or 2 for x, y or z
+     * @return coordinate of a triangle vertex
+     */
+    public double getVertex(int triangle, int vertex, int axis) {
+        return vertices[9 * triangle + 3 * vertex + axis];
+    }
+
+    private int build(int from, int to, double[] centroids, int level) {
+        final int node = nnodes++;
+        depth = Math.max(depth, level);
+        double[] b = new double[]{Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE,
+                                  -Double.MAX_VALUE, -Double.MAX_VALUE, -Double.MAX_VALUE};
+        double[] c = new double[]{Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE,
+                                  -Double.MAX_VALUE, -Double.MAX_VALUE, -Double.MAX_VALUE};
+        for (int i = from; i < to; i++) {
+            int tri = order[i];
+            for (int v = 0; v < 3; v++) {
+                for (int a = 0; a < 3; a++) {
+                    double x = vertices[9 * tri + 3 * v + a];
+                    b[a] = Math.min(b[a], x);
+                    b[a + 3] = Math.max(b[a + 3], x);
+                }
+            }
+            for (int a = 0; a < 3; a++) {
+                c[a] = Math.min(c[a], centroids[3 * tri + a]);
+                c[a + 3] = Math.max(c[a + 3], centroids[3 * tri + a]);
+            }
+        }
+        System.arraycopy(b, 0, boxes, 6 * node, 6);
+
+        int axis = 0;
+        for (int a = 1; a < 3; a++) {
+            if (c[a + 3] - c[a] > c[axis + 3] - c[axis]) axis = a;
+        }
+        if (to - from <= LEAF_SIZE || c[axis + 3] - c[axis] <= 0) {
+            left[node] = -1;
+            first[node] = from;
+            count[node] = to - from;
+            return node;
+        }
+
+        // partition at the median centroid along the longest axis
+        final int mid = (from + to) >>> 1;
+        select(from, to, mid, centroids, axis);
+        left[node] = build(from, mid, centroids, level + 1);
+        right[node] = build(mid, to, centroids, level + 1);
+        return node;
+    }
+
+    /**
+     * Partially sort order[from,to) so that order[k] has the k-th smallest
+     * centroid coordinate along axis (quickselect).
+     */
+    private void select(int from, int to, int k, double[] centroids, int axis) {
+        int lo = from, hi = to - 1;
+        while (lo < hi) {
+            double pivot = centroids[3 * order[(lo + hi) >>> 1] + axis];
+            int i = lo, j = hi;
+            while (i <= j) {
+                while (centroids[3 * order[i] + axis] < pivot) i++;
+                while (centroids[3 * order[j] + axis] > pivot) j--;
+                if (i <= j) {
+                    int tmp = order[i];
+                    order[i] = order[j];
+                    order[j] = tmp;
+                    i++;
+                    j--;
+                }
+            }
+            if (k <= j) hi = j;
+            else if (k >= i) lo = i;
+            else return;
+        }
+    }
+
+    /**
+     * Find the nearest intersection of a ray with the triangles.
+     *
+     * @param ox ray origin x
+     * @param oy ray origin y
+     * @param oz ray origin z
+     * @param dx ray direction x
+     * @param dy ray direction y
+     * @param dz ray direction z
+     * @param tmin minimum ray parameter
+     * @param tmax maximum ray parameter
+     * @param query where to store the intersection
+     * @return whether an intersection with tmin &lt;= t &lt;= tmax was found
+     */
+    public boolean intersect(double ox, double oy, double oz, double dx, double dy, double dz,
+            double tmin, double tmax, Query query) {
+        query.reset();
+        if (ntriangles == 0) return false;
+        final double ix = 1 / dx, iy = 1 / dy, iz = 1 / dz;
+        double tbest = tmax;
+        int n = 0;
+        query.push(n++, 0);
+        while (n > 0) {
+            int node = query.stack[--n];
+            if (!hitsBox(node, ox, oy, oz, ix, iy, iz, tmin, tbest, 0)) continue;
+            if (left[node] >= 0) {
+                query.push(n++, right[node]);
+                query.push(n++, left[node]);
+                continue;
+            }
+            for (int i = first[node]; i < first[node] + count[node]; i++) {
+                int tri = order[i];
+                double t = intersectTriangle(tri, ox, oy, oz, dx, dy, dz);
+                if (t >= tmin && t <= tbest && (t < query.t || (t == query.t && tri < query.triangle))) {
+                    query.t = t;
+                    query.triangle = tri;
+                    tbest = t;
+                }
+            }
+        }
+        if (query.triangle < 0) return false;
+        query.tag = tags[query.triangle];
+        query.x = ox + query.t * dx;
+        query.y = oy + query.t * dy;
+        query.z = oz + query.t * dz;
+        return true;
+    }
+
+    /**
+     * Find the triangles whose bounding boxes, enlarged by tolerance, are
+     * crossed by a ray within the given parameter range:  these include all
+     * triangles intersected by the ray, which can then be tested exactly by
+     * the caller.  The candidates are stored in the query in increasing
+     * order.
+     *
+     * @param ox ray origin x
+     * @param oy ray origin y
+     * @param oz ray origin z
+     * @param dx ray direction x
+     * @param dy ray direction y
+     * @param dz ray direction z
+     * @param tmin minimum ray parameter
+     * @param tmax maximum ray parameter
+     * @param tolerance enlargement of the boxes
+     * @param query where to store the candidates
+     * @return number of candidates
+     */
+    public int candidates(double ox, double oy, double oz, double dx, double dy, double dz,
+            double tmin, double tmax, double tolerance, Query query) {
+        query.reset();
+        if (ntriangles == 0) return 0;
+        final double ix = 1 / dx, iy = 1 / dy, iz = 1 / dz;
+        int n = 0;
+        query.push(n++, 0);
+        while (n > 0) {
+            int node = query.stack[--n];
+            if (!hitsBox(node, ox, oy, oz, ix, iy, iz, tmin, tmax, tolerance)) continue;
+            if (left[node] >= 0) {
+                query.push(n++, right[node]);
+                query.push(n++, left[node]);
+                continue;
+            }
+            for (int i = first[node]; i < first[node] + count[node]; i++) query.addCandidate(order[i]);
+        }
+        Arrays.sort(query.candidates, 0, query.ncandidates);
+        return query.ncandidates;
+    }
+
+    /**
+     * Slab test of a ray against the box of a node.
+     */
+    private boolean hitsBox(int node, double ox, double oy, double oz, double ix, double iy, double iz,
+            double tmin, double tmax, double tolerance) {
+        final int b = 6 * node;
+        double lo = tmin, hi = tmax;
+        for (int a = 0; a < 3; a++) {
+            double orig = a == 0 ? ox : (a == 1 ? oy : oz);
+            double inv = a == 0 ? ix : (a == 1 ? iy : iz);
+            double bmin = boxes[b + a] - tolerance;
+            double bmax = boxes[b + 3 + a] + tolerance;
+            if (Double.isInfinite(inv)) {
+                // ray parallel to the slab
+                if (orig < bmin || orig > bmax) return false;
+                continue;
+            }
+            double t0 = (bmin - orig) * inv;
+            double t1 = (bmax - orig) * inv;
+            if (t0 > t1) {
+                double tmp = t0;
+                t0 = t1;
+                t1 = tmp;
+            }
+            if (t0 > lo) lo = t0;
+            if (t1 < hi) hi = t1;
+            if (lo > hi) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Moller-Trumbore intersection of a ray with a triangle, edges included.
+     *
+     * @return ray parameter of the intersection, or NaN if none
+     */
+    private double intersectTriangle(int tri, double ox, double oy, double oz, double dx, double dy, double dz) {
+        final int v = 9 * tri;
+        double e1x = vertices[v + 3] - vertices[v], e1y = vertices[v + 4] - vertices[v + 1], e1z = vertices[v + 5] - vertices[v + 2];
+        double e2x = vertices[v + 6] - vertices[v], e2y = vertices[v + 7] - vertices[v + 1], e2z = vertices[v + 8] - vertices[v + 2];
+        double px = dy * e2z - dz * e2y, py = dz * e2x - dx * e2z, pz = dx * e2y - dy * e2x;
+        double det = e1x * px + e1y * py + e1z * pz;
+        if (Math.abs(det) < EPSILON) return Double.NaN;
+        double inv = 1 / det;
+        double sx = ox - vertices[v], sy = oy - vertices[v + 1], sz = oz - vertices[v + 2];
+        double u = (sx * px + sy * py + sz * pz) * inv;
+        if (u < 0 || u > 1) return Double.NaN;
+        double qx = sy * e1z - sz * e1y, qy = sz * e1x - sx * e1z, qz = sx * e1y - sy * e1x;
+        double w = (dx * qx + dy * qy + dz * qz) * inv;
+        if (w < 0 || u + w > 1) return Double.NaN;
+        return (e2x * qx + e2y * qy + e2z * qz) * inv;
+    }
+}
@@ -1,6 +1,9 @@
 package org.jlab.detector.geant4.v2;
 
 import eu.mihosoft.vrl.v3d.Vector3d;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -584,9 +587,20 @@ public final class DCGeant4Factory extends Geant4Factory {
     private final double z_enlargement = -2.46;
     private final double microgap = 0.01;
 
-    private final Wire[][][][] wires;
+    // wire midpoints, ends and directions, as x,y,z triplets indexed by getWireIndex:
+    private final int nsectors;
+    private final int nsuperlayers;
+    private final int nlayers;
+    private final int nwires;
+    private final double[] wireMids;
+    private final double[] wireLefts;
+    private final double[] wireRights;
+    private final double[] wireDirs;
+    private final double[] cellSizes;
     private final Vector3d[][][] layerMids;
     private final Vector3d[][] regionMids;
+
+    public static final int CACHE_VERSION = 1;
     
     public static enum MinistaggerStatus {
         OFF          ( 0, "OFF"),          // no ministagger
@@ -707,7 +721,18 @@ public final class DCGeant4Factory extends Geant4Factory {
         properties.put("date", "05/08/16");
 
         // define wire and layer points in tilted coordinate frame (z axis is perpendicular to the chamber, y is along the wire)
-        wires = new Wire[dbref.nsectors()][dbref.nsuperlayers()][][];
+        nsectors = dbref.nsectors();
+        nsuperlayers = dbref.nsuperlayers();
+        int maxlayers = 0;
+        for(int isuper=0; isuper<nsuperlayers; isuper++) maxlayers = Math.max(maxlayers, dbref.nsenselayers(isuper));
+        nlayers = maxlayers;
+        nwires = dbref.nsensewires();
+        wireMids = new double[3*nsectors*nsuperlayers*nlayers*nwires];
+        wireLefts = new double[wireMids.length];
+        wireRights = new double[wireMids.length];
+        wireDirs = new double[wireMids.length];
+        cellSizes = new double[nsuperlayers];
+        for(int isuper=0; isuper<nsuperlayers; isuper++) cellSizes[isuper] = dbref.cellthickness(isuper);
         layerMids = new Vector3d[dbref.nsectors()][dbref.nsuperlayers()][];
         regionMids = new Vector3d[dbref.nsectors()][dbref.nregions()];
 
@@ -744,7 +769,6 @@ public final class DCGeant4Factory extends Geant4Factory {
             }
 
             for(int isuper=0; isuper<dbref.nsuperlayers(); isuper++) {
-                wires[isec][isuper]   = new Wire[dbref.nsenselayers(isuper)][dbref.nsensewires()];
                 for(int ilayer=0; ilayer<dbref.nsenselayers(isuper); ilayer++) {
                     layerMids[isec][isuper][ilayer].add(regionMids[isec][isuper/2].times(-1.0));
                     layerMids[isec][isuper][ilayer].rotateZ(Math.toRadians(dbref.getAlignmentThetaZ(isec, isuper/2)));
@@ -753,22 +777,28 @@ public final class DCGeant4Factory extends Geant4Factory {
                     layerMids[isec][isuper][ilayer].add(regionMids[isec][isuper/2]);
 
                     for(int iwire=0; iwire<dbref.nsensewires(); iwire++) {
-                        wires[isec][isuper][ilayer][iwire] = new Wire(isec+1, isuper, ilayer+1, iwire+1);
+                        Wire wire = new Wire(isec+1, isuper, ilayer+1, iwire+1);
                         //rotate in tilted sector coordinate system
-                        wires[isec][isuper][ilayer][iwire].rotateZ(Math.toRadians(-90.0 + isec * 60))
+                        wire.rotateZ(Math.toRadians(-90.0 + isec * 60))
 						.translate(dbref.getAlignmentShift(isec, isuper/2))
 						.rotateZ(Math.toRadians(-isec * 60))
 						.rotateY(-dbref.thtilt(isuper/2));
                         
                         //implement end-plates bow in the tilted sector coordinate system (ziegler)
                         if(dbref.getEndPlatesStatus())
-                            wires[isec][isuper][ilayer][iwire].correctEnds();
+                            wire.correctEnds();
                         //dc alignment implementation
-                        wires[isec][isuper][ilayer][iwire].translate(regionMids[isec][isuper/2].times(-1.0));
-                        wires[isec][isuper][ilayer][iwire].rotateZ(Math.toRadians(dbref.getAlignmentThetaZ(isec, isuper/2)));
-                        wires[isec][isuper][ilayer][iwire].rotateX(Math.toRadians(dbref.getAlignmentThetaX(isec, isuper/2)));
-                        wires[isec][isuper][ilayer][iwire].rotateY(Math.toRadians(dbref.getAlignmentThetaY(isec, isuper/2)));
-                        wires[isec][isuper][ilayer][iwire].translate(regionMids[isec][isuper/2]);
+                        wire.translate(regionMids[isec][isuper/2].times(-1.0));
+                        wire.rotateZ(Math.toRadians(dbref.getAlignmentThetaZ(isec, isuper/2)));
+                        wire.rotateX(Math.toRadians(dbref.getAlignmentThetaX(isec, isuper/2)));
+                        wire.rotateY(Math.toRadians(dbref.getAlignmentThetaY(isec, isuper/2)));
+                        wire.translate(regionMids[isec][isuper/2]);
+
+                        int index = getWireIndex(isec, isuper, ilayer, iwire);
+                        set(wireMids, index, wire.mid());
+                        set(wireLefts, index, wire.left());
+                        set(wireRights, index, wire.right());
+                        set(wireDirs, index, wire.dir());
                     }
                 }
 
@@ -776,16 +806,197 @@ public final class DCGeant4Factory extends Geant4Factory {
         }
     }
 
+    /**
+     * Create a factory from the wire geometry written by {@link #write}.
+     * It has no volumes, so it can only be used for the wire, layer and
+     * region positions and the cell sizes.
+     * @param in
+     * @throws IOException if the cache cannot be read or has a different version
+     */
+    private DCGeant4Factory(DataInput in) throws IOException {
+        int version = in.readInt();
+        if(version != CACHE_VERSION) throw new IOException("unsupported DC geometry cache version " + version);
+        nsectors = in.readInt();
+        nsuperlayers = in.readInt();
+        nlayers = in.readInt();
+        nwires = in.readInt();
+        wireMids = readArray(in, 3*nsectors*nsuperlayers*nlayers*nwires);
+        wireLefts = readArray(in, wireMids.length);
+        wireRights = readArray(in, wireMids.length);
+        wireDirs = readArray(in, wireMids.length);
+        cellSizes = readArray(in, nsuperlayers);
+        nsgwires = in.readInt();
+        regionMids = new Vector3d[nsectors][in.readInt()];
+        layerMids = new Vector3d[nsectors][nsuperlayers][nlayers];
+        for(int isec = 0; isec < nsectors; isec++) {
+            for(int iregion = 0; iregion < regionMids[isec].length; iregion++) {
+                regionMids[isec][iregion] = readVector(in);
+            }
+            for(int isuper = 0; isuper < nsuperlayers; isuper++) {
+                layerMids[isec][isuper] = new Vector3d[in.readInt()];
+                for(int ilayer = 0; ilayer < layerMids[isec][isuper].length; ilayer++) {
+                    layerMids[isec][isuper][ilayer] = readVector(in);
+                }
+            }
+        }
+    }
+
+    /**
+     * Read the wire geometry written by {@link #write}.
+     * @param in
+     * @return a factory without volumes, see {@link #hasVolumes}
+     * @throws IOException
+     */
+    public static DCGeant4Factory read(DataInput in) throws IOException {
+        return new DCGeant4Factory(in);
+    }
+
+    /**
+     * Write the wire geometry, i.e. everything but the volumes, so it can be
+     * read without the database.
+     * @param out
+     * @throws IOException
+     */
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(CACHE_VERSION);
+        out.writeInt(nsectors);
+        out.writeInt(nsuperlayers);
+        out.writeInt(nlayers);
+        out.writeInt(nwires);
+        writeArray(out, wireMids);
+        writeArray(out, wireLefts);
+        writeArray(out, wireRights);
+        writeArray(out, wireDirs);
+        writeArray(out, cellSizes);
+        out.writeInt(nsgwires);
+        out.writeInt(regionMids[0].length);
+        for(int isec = 0; isec < nsectors; isec++) {
+            for(Vector3d v : regionMids[isec]) writeVector(out, v);
+            for(int isuper = 0; isuper < nsuperlayers; isuper++) {
+                out.writeInt(layerMids[isec][isuper].length);
+                for(Vector3d v : layerMids[isec][isuper]) writeVector(out, v);
+            }
+        }
+    }
+
+    /**
+     * @return whether this factory has volumes, i.e. was not read from a cache
+     */
+    public boolean hasVolumes() {
+        return dbref != null;
+    }
+
+    private static double[] readArray(DataInput in, int n) throws IOException {
+        if(in.readInt() != n) throw new IOException("inconsistent DC geometry cache");
+        double[] a = new double[n];
+        for(int i = 0; i < n; i++) a[i] = in.readDouble();
+        return a;
+    }
+
+    private static void writeArray(DataOutput out, double[] a) throws IOException {
+        out.writeInt(a.length);
+        for(double x : a) out.writeDouble(x);
+    }
+
+    private static Vector3d readVector(DataInput in) throws IOException {
+        return new Vector3d(in.readDouble(), in.readDouble(), in.readDouble());
+    }
+
+    private static void writeVector(DataOutput out, Vector3d v) throws IOException {
+        out.writeDouble(v.x);
+        out.writeDouble(v.y);
+        out.writeDouble(v.z);
+    }
+
+    private static void set(double[] a, int index, Vector3d v) {
+        a[index]   = v.x;
+        a[index+1] = v.y;
+        a[index+2] = v.z;
+    }
+
+    private static Vector3d get(double[] a, int index) {
+        return new Vector3d(a[index], a[index+1], a[index+2]);
+    }
+
+    /**
+     * @param isec sector index 0...5
+     * @param isuper superlayer index 0...5
+     * @param ilayer layer index 0...5
+     * @param iwire wire index 0...111
+     * @return the index of the x coordinate of the wire in the arrays of
+     * wire coordinates, followed by y and z
+     */
+    public int getWireIndex(int isec, int isuper, int ilayer, int iwire) {
+        return 3*(((isec*nsuperlayers + isuper)*nlayers + ilayer)*nwires + iwire);
+    }
+
+    /**
+     * @return the wire midpoints as x,y,z triplets, see {@link #getWireIndex};
+     * the array is shared and must not be modified
+     */
+    public double[] getWireMidpoints() {
+        return wireMids;
+    }
+
+    /**
+     * @return the wire left ends, see {@link #getWireMidpoints}
+     */
+    public double[] getWireLeftends() {
+        return wireLefts;
+    }
+
+    /**
+     * @return the wire right ends, see {@link #getWireMidpoints}
+     */
+    public double[] getWireRightends() {
+        return wireRights;
+    }
+
+    /**
+     * @return the wire directions, see {@link #getWireMidpoints}
+     */
+    public double[] getWireDirections() {
+        return wireDirs;
+    }
+
+    public double getWireMidpointX(int isec, int isuper, int ilayer, int iwire) {
+        return wireMids[getWireIndex(isec, isuper, ilayer, iwire)];
+    }
+
+    public double getWireMidpointY(int isec, int isuper, int ilayer, int iwire) {
+        return wireMids[getWireIndex(isec, isuper, ilayer, iwire)+1];
+    }
+
+    public double getWireMidpointZ(int isec, int isuper, int ilayer, int iwire) {
+        return wireMids[getWireIndex(isec, isuper, ilayer, iwire)+2];
+    }
+
+    public double getWireLeftendX(int isec, int isuper, int ilayer, int iwire) {
+        return wireLefts[getWireIndex(isec, isuper, ilayer, iwire)];
+    }
+
+    public double getWireLeftendY(int isec, int isuper, int ilayer, int iwire) {
+        return wireLefts[getWireIndex(isec, isuper, ilayer, iwire)+1];
+    }
+
+    public double getWireRightendX(int isec, int isuper, int ilayer, int iwire) {
+        return wireRights[getWireIndex(isec, isuper, ilayer, iwire)];
+    }
+
+    public double getWireRightendY(int isec, int isuper, int ilayer, int iwire) {
+        return wireRights[getWireIndex(isec, isuper, ilayer, iwire)+1];
+    }
+
     public Vector3d getWireMidpoint(int isec, int isuper, int ilayer, int iwire) {
-        return wires[isec][isuper][ilayer][iwire].mid();
+        return get(wireMids, getWireIndex(isec, isuper, ilayer, iwire));
     }
 
     public Vector3d getWireLeftend(int isec, int isuper, int ilayer, int iwire) {
-        return wires[isec][isuper][ilayer][iwire].left();
+        return get(wireLefts, getWireIndex(isec, isuper, ilayer, iwire));
     }
 
     public Vector3d getWireRightend(int isec, int isuper, int ilayer, int iwire) {
-        return wires[isec][isuper][ilayer][iwire].right();
+        return get(wireRights, getWireIndex(isec, isuper, ilayer, iwire));
     }
 
     public Vector3d getRegionMidpoint(int isec, int iregion) {
@@ -797,15 +1008,15 @@ public final class DCGeant4Factory extends Geant4Factory {
     }
 
     public Vector3d getWireMidpoint(int isuper, int ilayer, int iwire) {
-        return wires[0][isuper][ilayer][iwire].mid();
+        return getWireMidpoint(0, isuper, ilayer, iwire);
     }
 
     public Vector3d getWireLeftend(int isuper, int ilayer, int iwire) {
-        return wires[0][isuper][ilayer][iwire].left();
+        return getWireLeftend(0, isuper, ilayer, iwire);
     }
 
     public Vector3d getWireRightend(int isuper, int ilayer, int iwire) {
-        return wires[0][isuper][ilayer][iwire].right();
+        return getWireRightend(0, isuper, ilayer, iwire);
     }
 
     public Vector3d getRegionMidpoint(int iregion) {
@@ -817,7 +1028,7 @@ public final class DCGeant4Factory extends Geant4Factory {
     }
 
     public Vector3d getWireDirection(int isuper, int ilayer, int iwire) {
-        return wires[0][isuper][ilayer][iwire].dir();
+        return get(wireDirs, getWireIndex(0, isuper, ilayer, iwire));
     }
 
     private Geant4Basic getRegion(int isec, int ireg) {
@@ -947,6 +1158,7 @@ public final class DCGeant4Factory extends Geant4Factory {
     }
 
     public Trap3D getTrajectorySurface(int isector, int isuperlayer, int ilayer) {
+        if(!hasVolumes()) throw new IllegalStateException("DC trajectory surfaces are not available from a geometry cache");
         Wire lw0 = new Wire(isector+1, isuperlayer, ilayer+1, 0);
         Wire lw1 = new Wire(isector+1, isuperlayer, ilayer+1, nsgwires - 1);
         
@@ -984,7 +1196,7 @@ public final class DCGeant4Factory extends Geant4Factory {
 
     
     public double getCellSize(int isuperlayer) {
-        return dbref.cellthickness(isuperlayer);
+        return cellSizes[isuperlayer];
     }
     
     /*
@@ -373,6 +373,11 @@ public class RICHGeoFactory{
 
             }
             richlayers.add(modulelayers);
+
+            /*
+            * Hierarchies of the final tracking surfaces for fast intersections
+            */
+            for (RICHLayer layer: modulelayers) layer.build_BVH();
             
         }
         if(debugMode>=2)show_RICH("Real RICH Geometry", "RR");
@@ -575,6 +580,11 @@ public class RICHGeoFactory{
     //------------------------------
 
 
+    //------------------------------
+    public RICHGeoParameters get_GeoParameters() { return geopar; }
+    //------------------------------
+
+
     //------------------------------
     /*public Vector3d GetPixelCenter(int ipmt, int anode){
     //------------------------------
@@ -11,6 +11,7 @@ import org.jlab.geom.prim.Line3D;
 import org.jlab.geom.prim.Vector3D;
 import org.jlab.geom.prim.Plane3D;
 
+import eu.mihosoft.vrl.v3d.BVH;
 import eu.mihosoft.vrl.v3d.Vertex;
 import eu.mihosoft.vrl.v3d.Vector3d;
 import eu.mihosoft.vrl.v3d.Polygon;
@@ -44,6 +45,15 @@ public class RICHLayer extends ArrayList<RICHComponent> {
     private RICHFrame local_frame = new RICHFrame();
     private RICHPixel pmtpixels   = null;
 
+    // hierarchies of the faces of the global and tracking surfaces, for fast intersections
+    private Shape3D  bvh_global_surf      = null;
+    private BVH      bvh_global           = null;
+    private Shape3D  bvh_tracking_surf    = null;
+    private BVH      bvh_tracking         = null;
+
+    private static final double BVH_TOLERANCE = 1.e-4;
+    private static final ThreadLocal<BVH.Query> BVH_QUERY = ThreadLocal.withInitial(BVH.Query::new);
+
 
     // ----------------
     public RICHLayer(int isec, int ilay, RICHGeoParameters geopar) {
@@ -725,7 +735,7 @@ public class RICHLayer extends ArrayList<RICHComponent> {
         List<Point3D> inters = new ArrayList<Point3D>();
         List<Integer> ifaces = new ArrayList<Integer>();
 
-        int nint = plane.intersection_with_faces(ray, inters, ifaces);
+        int nint = intersection_with_faces(plane, ray, inters, ifaces);
         if(debugMode>=1) {
             String ee="out";
             if(exit==0) ee="into";
@@ -844,6 +854,66 @@ public class RICHLayer extends ArrayList<RICHComponent> {
 
     }
 
+    // ----------------
+    public void build_BVH(){
+    // ----------------
+    // build the hierarchies of the faces of the global and tracking surfaces, once the surfaces are final
+
+        bvh_global_surf   = global_surf;
+        bvh_global        = build_BVH(global_surf);
+        bvh_tracking_surf = tracking_surf;
+        bvh_tracking      = build_BVH(tracking_surf);
+
+    }
+
+    // ----------------
+    public static BVH build_BVH(Shape3D shape){
+    // ----------------
+    // hierarchy of the faces of shape, tagged with the face index, if all are triangles
+
+        if(shape==null || shape.size()==0) return null;
+        double[] verts = new double[9*shape.size()];
+        int[] tags = new int[shape.size()];
+        for (int ifa=0; ifa<shape.size(); ifa++){
+            if(!(shape.face(ifa) instanceof Triangle3D)) return null;
+            for (int ip=0; ip<3; ip++){
+                Point3D p = shape.face(ifa).point(ip);
+                verts[9*ifa+3*ip]   = p.x();
+                verts[9*ifa+3*ip+1] = p.y();
+                verts[9*ifa+3*ip+2] = p.z();
+            }
+            tags[ifa] = ifa;
+        }
+        return new BVH(verts, tags);
+
+    }
+
+    // ----------------
+    private int intersection_with_faces(Shape3D plane, Line3D ray, List<Point3D> inters, List<Integer> ifaces){
+    // ----------------
+    // same as plane.intersection_with_faces, testing only the faces whose bounding boxes are crossed by the ray
+
+        BVH bvh = null;
+        if(plane==bvh_global_surf) bvh = bvh_global;
+        if(plane==bvh_tracking_surf) bvh = bvh_tracking;
+        if(bvh==null) return plane.intersection_with_faces(ray, inters, ifaces);
+
+        BVH.Query query = BVH_QUERY.get();
+        Point3D ori = ray.origin();
+        Vector3D dir = ray.direction();
+        int ncand = bvh.candidates(ori.x(), ori.y(), ori.z(), dir.x(), dir.y(), dir.z(),
+                                   Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, BVH_TOLERANCE, query);
+        int count = 0;
+        for (int ic=0; ic<ncand; ic++){
+            int ifa = query.getCandidate(ic);
+            int nint = plane.face(ifa).intersection(ray, inters);
+            count += nint;
+            for(int ii=0; ii<nint; ii++)ifaces.add(ifa);
+        }
+        return count;
+
+    }
+
     //------------------------------
     public Vector3D get_SurfMainAx(int icompo, Vector3D vers, Vector3D vref){
     //------------------------------
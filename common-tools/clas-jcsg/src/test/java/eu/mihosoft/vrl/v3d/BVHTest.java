@@ -0,0 +1,141 @@
+package eu.mihosoft.vrl.v3d;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import org.jlab.geom.prim.Line3D;
+import org.jlab.geom.prim.Point3D;
+import org.jlab.geom.prim.Shape3D;
+import org.jlab.geom.prim.Triangle3D;
+import org.jlab.geom.prim.Vector3D;
+
+public class BVHTest {
+
+    /**
+     * @return random triangles in a 100 cm cube, mostly small ones
+     */
+    private static Shape3D getTriangles(Random rand, int n) {
+        Shape3D shape = new Shape3D();
+        for(int i=0; i<n; i++) {
+            double size = rand.nextInt(10)==0 ? 50 : 5;
+            double x = 100*rand.nextDouble(), y = 100*rand.nextDouble(), z = 100*rand.nextDouble();
+            Point3D[] p = new Point3D[3];
+            for(int j=0; j<3; j++) {
+                p[j] = new Point3D(x+size*(rand.nextDouble()-0.5), y+size*(rand.nextDouble()-0.5), z+size*(rand.nextDouble()-0.5));
+            }
+            shape.addFace(new Triangle3D(p[0], p[1], p[2]));
+        }
+        return shape;
+    }
+
+    private static BVH getBVH(Shape3D shape) {
+        double[] verts = new double[9*shape.size()];
+        int[] tags = new int[shape.size()];
+        for(int ifa=0; ifa<shape.size(); ifa++) {
+            for(int ip=0; ip<3; ip++) {
+                Point3D p = shape.face(ifa).point(ip);
+                verts[9*ifa+3*ip]   = p.x();
+                verts[9*ifa+3*ip+1] = p.y();
+                verts[9*ifa+3*ip+2] = p.z();
+            }
+            tags[ifa] = 10*ifa;
+        }
+        return new BVH(verts, tags);
+    }
+
+    private static Line3D getRay(Random rand) {
+        Point3D origin = new Point3D(-50+200*rand.nextDouble(), -50+200*rand.nextDouble(), -50+200*rand.nextDouble());
+        Vector3D direction = new Vector3D(rand.nextGaussian(), rand.nextGaussian(), rand.nextGaussian());
+        // some rays along the axes, to test the parallel slabs:
+        if(rand.nextInt(10)==0) direction = new Vector3D(0, 0, 1);
+        return new Line3D(origin, direction.asUnit());
+    }
+
+    @Test
+    public void testCandidates() {
+        Random rand = new Random(1);
+        Shape3D shape = getTriangles(rand, 2000);
+        BVH bvh = getBVH(shape);
+        assertEquals(shape.size(), bvh.getTriangleCount());
+        BVH.Query query = new BVH.Query();
+
+        int nhits = 0;
+        for(int i=0; i<2000; i++) {
+            Line3D ray = getRay(rand);
+            Point3D o = ray.origin();
+            Vector3D d = ray.direction();
+
+            // brute force, all faces:
+            List<Point3D> expected = new ArrayList<>();
+            List<Integer> expectedFaces = new ArrayList<>();
+            int nexpected = shape.intersection_with_faces(ray, expected, expectedFaces);
+
+            // exact test of the candidates only, as in RICHLayer:
+            int ncand = bvh.candidates(o.x(), o.y(), o.z(), d.x(), d.y(), d.z(),
+                    Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, 1e-4, query);
+            List<Point3D> actual = new ArrayList<>();
+            List<Integer> actualFaces = new ArrayList<>();
+            int nactual = 0;
+            for(int ic=0; ic<ncand; ic++) {
+                int ifa = query.getCandidate(ic);
+                if(ic>0) assertTrue(ifa>query.getCandidate(ic-1));
+                int nint = shape.face(ifa).intersection(ray, actual);
+                nactual += nint;
+                for(int ii=0; ii<nint; ii++) actualFaces.add(ifa);
+            }
+
+            assertEquals(nexpected, nactual);
+            assertEquals(expectedFaces, actualFaces);
+            for(int j=0; j<expected.size(); j++) {
+                assertEquals(0, expected.get(j).distance(actual.get(j)), 0);
+            }
+            nhits += nexpected;
+        }
+        assertTrue(nhits>0);
+    }
+
+    @Test
+    public void testNearest() {
+        Random rand = new Random(2);
+        Shape3D shape = getTriangles(rand, 2000);
+        BVH bvh = getBVH(shape);
+        BVH.Query query = new BVH.Query();
+
+        int nhits = 0;
+        for(int i=0; i<2000; i++) {
+            Line3D ray = getRay(rand);
+            Point3D o = ray.origin();
+            Vector3D d = ray.direction();
+
+            // brute force nearest intersection in the forward direction:
+            double tbest = Double.POSITIVE_INFINITY;
+            int best = -1;
+            List<Point3D> points = new ArrayList<>();
+            for(int ifa=0; ifa<shape.size(); ifa++) {
+                points.clear();
+                if(shape.face(ifa).intersection(ray, points)==0) continue;
+                double t = o.vectorTo(points.get(0)).dot(d);
+                if(t>=0 && t<tbest) {
+                    tbest = t;
+                    best = ifa;
+                }
+            }
+
+            boolean found = bvh.intersect(o.x(), o.y(), o.z(), d.x(), d.y(), d.z(),
+                    0, Double.POSITIVE_INFINITY, query);
+            assertEquals(best>=0, found);
+            if(!found) continue;
+            assertEquals(tbest, query.getT(), 1e-6);
+            assertEquals(best, query.getTriangle());
+            assertEquals(10*best, query.getTag());
+            assertEquals(0, o.toVector3D().add(d.multiply(query.getT())).sub(
+                    new Vector3D(query.getX(), query.getY(), query.getZ())).mag(), 1e-9);
+            nhits++;
+        }
+        assertTrue(nhits>0);
+    }
+}
@@ -0,0 +1,86 @@
+package org.jlab.detector.geant4.v2;
+
+import eu.mihosoft.vrl.v3d.Vector3d;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import org.jlab.detector.base.DetectorType;
+import org.jlab.detector.base.GeometryFactory;
+import org.jlab.geom.base.ConstantProvider;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * The wire geometry read back from {@link DCGeant4Factory#write} must be
+ * identical to the geometry built from the database.
+ */
+public class DCGeant4FactoryTest {
+
+    private static void assertVectorEquals(Vector3d expected, Vector3d actual) {
+        assertEquals(expected.x, actual.x, 0);
+        assertEquals(expected.y, actual.y, 0);
+        assertEquals(expected.z, actual.z, 0);
+    }
+
+    @Test
+    public void testWriteRead() throws IOException {
+        System.setProperty("CLAS12DIR", "../../");
+        ConstantProvider provider = GeometryFactory.getConstants(DetectorType.DC, 11, "default");
+        // region alignment shifts, x, y, z and rotations:
+        double[][] shifts = new double[3][6];
+        for (int i = 0; i < 3; i++) {
+            for (int j = 0; j < 6; j++) shifts[i][j] = 0.01*(i+1)*(j%2 == 0 ? 1 : -1);
+        }
+        DCGeant4Factory factory = new DCGeant4Factory(provider, DCGeant4Factory.MinistaggerStatus.ON,
+                DCGeant4Factory.FeedthroughsStatus.SHIFTANDDIR, DCGeant4Factory.ENDPLATESBOWON, shifts);
+        assertTrue(factory.hasVolumes());
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        factory.write(new DataOutputStream(bytes));
+        DCGeant4Factory read = DCGeant4Factory.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertFalse(read.hasVolumes());
+
+        assertArrayEquals(factory.getWireMidpoints(), read.getWireMidpoints(), 0);
+        assertArrayEquals(factory.getWireLeftends(), read.getWireLeftends(), 0);
+        assertArrayEquals(factory.getWireRightends(), read.getWireRightends(), 0);
+        assertArrayEquals(factory.getWireDirections(), read.getWireDirections(), 0);
+        for (int isuper = 0; isuper < 6; isuper++) {
+            assertEquals(factory.getCellSize(isuper), read.getCellSize(isuper), 0);
+        }
+        for (int isec = 0; isec < 6; isec++) {
+            for (int iregion = 0; iregion < 3; iregion++) {
+                assertVectorEquals(factory.getRegionMidpoint(isec, iregion), read.getRegionMidpoint(isec, iregion));
+            }
+            for (int isuper = 0; isuper < 6; isuper++) {
+                for (int ilayer = 0; ilayer < 6; ilayer++) {
+                    assertVectorEquals(factory.getLayerMidpoint(isec, isuper, ilayer), read.getLayerMidpoint(isec, isuper, ilayer));
+                    for (int iwire = 0; iwire < 112; iwire += 37) {
+                        assertVectorEquals(factory.getWireMidpoint(isec, isuper, ilayer, iwire),
+                                read.getWireMidpoint(isec, isuper, ilayer, iwire));
+                        assertEquals(factory.getWireLeftendX(isec, isuper, ilayer, iwire),
+                                read.getWireLeftendX(isec, isuper, ilayer, iwire), 0);
+                    }
+                }
+            }
+        }
+
+        // the primitive getters see the same wires as the vector getters:
+        Vector3d mid = read.getWireMidpoint(2, 3, 4, 50);
+        assertEquals(mid.x, read.getWireMidpointX(2, 3, 4, 50), 0);
+        assertEquals(mid.y, read.getWireMidpointY(2, 3, 4, 50), 0);
+        assertEquals(mid.z, read.getWireMidpointZ(2, 3, 4, 50), 0);
+
+        // a different version cannot be read:
+        byte[] corrupted = bytes.toByteArray();
+        corrupted[3]++;
+        try {
+            DCGeant4Factory.read(new DataInputStream(new ByteArrayInputStream(corrupted)));
+            fail();
+        }
+        catch (IOException e) {
+        }
+    }
+}
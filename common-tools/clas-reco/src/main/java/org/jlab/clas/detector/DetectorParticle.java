@@ -461,6 +461,56 @@ public class DetectorParticle implements Comparable {
         }
         return bestIndex;
     }
+
+    /**
+     * Same as {@link #getDetectorHit(List,DetectorType,int,double)}, looking
+     * only at the index's candidates in the track's sector.
+     * @param index the response index
+     * @param type the detector type
+     * @param detectorLayer the detector layer, or non-positive for any
+     * @param distanceThreshold the maximum distance
+     * @return the index of the best hit in the response list, else -1
+     */
+    public int getDetectorHit(DetectorResponseIndex index, DetectorType type,
+            int detectorLayer,
+            double distanceThreshold){
+
+        Line3D   trajectory = this.detectorTrack.getLastCross();
+        Point3D  hitPoint = new Point3D();
+        double   minimumDistance = 500.0;
+        int      bestIndex       = -1;
+
+        boolean hitSharing=false;
+        for (int ii=0; ii<sharedDetectors.length && this.getCharge()!=0; ii++) {
+            if (type == sharedDetectors[ii]) {
+                hitSharing=true;
+                break;
+            }
+        }
+
+        final List<DetectorResponse> hitList = index.getResponses();
+        for (int loop : index.get(type, detectorLayer<=0 ? -1 : detectorLayer, this.detectorTrack.getSector())) {
+
+            DetectorResponse response = hitList.get(loop);
+
+            if (hitSharing || response.getAssociation()<0) {
+
+                hitPoint.set(
+                        response.getPosition().x(),
+                        response.getPosition().y(),
+                        response.getPosition().z()
+                        );
+
+                double hitdistance = trajectory.distance(hitPoint).length();
+
+                if (hitdistance<distanceThreshold && hitdistance<minimumDistance) {
+                    minimumDistance = hitdistance;
+                    bestIndex       = loop;
+                }
+            }
+        }
+        return bestIndex;
+    }
     
     public double getDetectorHitQuality(List<DetectorResponse>  hitList, int index, Vector3D hitRes){
         
@@ -562,6 +612,42 @@ public class DetectorParticle implements Comparable {
         return bestIndex;
     } 
 
+    /**
+     * Same as {@link #getCherenkovSignal(List,DetectorType)}, looking only at
+     * the index's candidates of the given type.
+     * @param index the response index
+     * @param type HTCC or LTCC
+     * @return the index of the best response in the response list, else -1
+     */
+    public int getCherenkovSignal(DetectorResponseIndex index, DetectorType type){
+
+        Line3D cross;
+        if (type==DetectorType.HTCC) {
+            cross=this.detectorTrack.getFirstCross();
+        }
+        else if (type==DetectorType.LTCC)
+            cross=this.detectorTrack.getLastCross();
+        else throw new RuntimeException(
+                "DetectorParticle:getCheckr5noSignal:  invalid type:  "+type);
+
+        int bestIndex = -1;
+        double bestConeAngle = Double.POSITIVE_INFINITY;
+        final List<DetectorResponse> responses = index.getResponses();
+        for (int loop : index.get(type, -1)) {
+            if (responses.get(loop).getAssociation()>=0) continue;
+            CherenkovResponse cher = (CherenkovResponse)responses.get(loop);
+            CherenkovResponse.TrackResidual tres = cher.getTrackResidual(cross);
+            if (Math.abs(tres.getDeltaTheta()) < cher.getDeltaTheta() &&
+                Math.abs(tres.getDeltaPhi())   < cher.getDeltaPhi()) {
+                if (tres.getConeAngle() < bestConeAngle) {
+                    bestIndex = loop;
+                    bestConeAngle = tres.getConeAngle();
+                }
+            }
+        }
+        return bestIndex;
+    }
+
     public double getTime(DetectorType type, int layer) {
         DetectorResponse response = this.getHit(type,layer);
         if(response==null) return -1.0;
@@ -0,0 +1,178 @@
+package org.jlab.clas.detector;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.jlab.detector.base.DetectorType;
+
+/**
+ * Index of an event's detector responses by detector type and layer, and
+ * within that by sector and by azimuthal angle, to find the candidates for
+ * matching a particle without scanning all responses.
+ *
+ * Queries return indices into the response list in increasing order, the
+ * same order as scanning the list, so matching on the candidates gives the
+ * same result as matching on the whole list.  Responses appended to the list
+ * after the index is created, e.g. copies for shared hits, are indexed on
+ * the next query;  other modifications of the list are not supported.
+ * Associations are not indexed and must still be checked by the caller.
+ */
+public class DetectorResponseIndex {
+
+    public static final int NPHIBINS = 36;
+
+    private static final double PHIBINWIDTH = 2*Math.PI/NPHIBINS;
+
+    private final List<DetectorResponse> responses;
+    private final Map<Long,Bucket> buckets = new HashMap<>();
+    private int indexed = 0;
+
+    public DetectorResponseIndex(List<DetectorResponse> responses) {
+        this.responses = responses;
+    }
+
+    public List<DetectorResponse> getResponses() {
+        return this.responses;
+    }
+
+    /**
+     * @param type detector type, or null for all types
+     * @param layer detector layer, or negative for all layers
+     * @return indices of the responses of the given type and layer
+     */
+    public int[] get(DetectorType type, int layer) {
+        if (type == null) return this.all();
+        Bucket b = this.getBucket(type, layer);
+        return b == null ? new int[0] : b.all.toArray();
+    }
+
+    /**
+     * @param type detector type, or null for all types
+     * @param layer detector layer, or negative for all layers
+     * @param sector sector, or non-positive for all sectors
+     * @return indices of the responses of the given type and layer and in the
+     * given sector or with no sector
+     */
+    public int[] get(DetectorType type, int layer, int sector) {
+        if (type == null) return this.all();
+        Bucket b = this.getBucket(type, layer);
+        if (b == null) return new int[0];
+        if (sector <= 0) return b.all.toArray();
+        return merge(b.sectors.get(sector), b.sectors.get(0));
+    }
+
+    /**
+     * @param type detector type, or null for all types
+     * @param layer detector layer, or negative for all layers
+     * @param phi azimuthal angle in radians
+     * @param dphi maximum azimuthal difference in radians
+     * @return indices of the responses of the given type and layer, including
+     * at least all with positions within dphi of phi
+     */
+    public int[] get(DetectorType type, int layer, double phi, double dphi) {
+        if (type == null) return this.all();
+        Bucket b = this.getBucket(type, layer);
+        if (b == null) return new int[0];
+        // pad by one bin on each side against rounding at the edges:
+        final int nbins = 2 + (int) Math.ceil(2*dphi/PHIBINWIDTH) + 1;
+        if (nbins >= NPHIBINS || Double.isNaN(phi)) return b.all.toArray();
+        final int first = phiBin(phi - dphi) - 1;
+        Indices c = new Indices();
+        for (int i = 0; i < nbins; i++) {
+            Indices bin = b.phis[Math.floorMod(first + i, NPHIBINS)];
+            if (bin != null) c.addAll(bin);
+        }
+        int[] candidates = c.toArray();
+        Arrays.sort(candidates);
+        return candidates;
+    }
+
+    private int[] all() {
+        this.update();
+        int[] candidates = new int[this.responses.size()];
+        for (int i = 0; i < candidates.length; i++) candidates[i] = i;
+        return candidates;
+    }
+
+    private Bucket getBucket(DetectorType type, int layer) {
+        this.update();
+        return this.buckets.get(key(type, layer < 0 ? -1 : layer));
+    }
+
+    private static long key(DetectorType type, int layer) {
+        return ((long) type.getDetectorId() << 32) | (layer & 0xFFFFFFFFL);
+    }
+
+    private static int phiBin(double phi) {
+        return (int) Math.floor((phi + Math.PI) / PHIBINWIDTH);
+    }
+
+    /**
+     * Index any responses added to the list since the last update.
+     */
+    private void update() {
+        for (; this.indexed < this.responses.size(); this.indexed++) {
+            DetectorResponse r = this.responses.get(this.indexed);
+            DetectorType type = r.getDescriptor().getType();
+            this.add(key(type, r.getDescriptor().getLayer()), r, this.indexed);
+            this.add(key(type, -1), r, this.indexed);
+        }
+    }
+
+    private void add(long key, DetectorResponse r, int index) {
+        Bucket b = this.buckets.get(key);
+        if (b == null) {
+            b = new Bucket();
+            this.buckets.put(key, b);
+        }
+        b.all.add(index);
+        Integer sector = Math.max(0, r.getSector());
+        if (!b.sectors.containsKey(sector)) b.sectors.put(sector, new Indices());
+        b.sectors.get(sector).add(index);
+        final int phi = Math.floorMod(phiBin(r.getPosition().phi()), NPHIBINS);
+        if (b.phis[phi] == null) b.phis[phi] = new Indices();
+        b.phis[phi].add(index);
+    }
+
+    private static int[] merge(Indices a, Indices b) {
+        if (a == null) return b == null ? new int[0] : b.toArray();
+        if (b == null) return a.toArray();
+        int[] merged = new int[a.size + b.size];
+        int i = 0, j = 0, k = 0;
+        while (i < a.size && j < b.size) {
+            merged[k++] = a.data[i] < b.data[j] ? a.data[i++] : b.data[j++];
+        }
+        while (i < a.size) merged[k++] = a.data[i++];
+        while (j < b.size) merged[k++] = b.data[j++];
+        return merged;
+    }
+
+    /**
+     * Responses of one type and layer.
+     */
+    private static class Bucket {
+        final Indices all = new Indices();
+        final Map<Integer,Indices> sectors = new HashMap<>();
+        final Indices[] phis = new Indices[NPHIBINS];
+    }
+
+    /**
+     * Growable list of indices, in increasing order since they are added in
+     * list order.
+     */
+    private static class Indices {
+        int[] data = new int[4];
+        int size = 0;
+        void add(int index) {
+            if (this.size == this.data.length) this.data = Arrays.copyOf(this.data, 2*this.size);
+            this.data[this.size++] = index;
+        }
+        void addAll(Indices other) {
+            for (int i = 0; i < other.size; i++) this.add(other.data[i]);
+        }
+        int[] toArray() {
+            return Arrays.copyOf(this.data, this.size);
+        }
+    }
+}
@@ -4,6 +4,7 @@ import java.util.List;
 import javafx.util.Pair;
 import org.jlab.clas.detector.DetectorParticle;
 import org.jlab.clas.detector.DetectorResponse;
+import org.jlab.clas.detector.DetectorResponseIndex;
 import org.jlab.detector.base.DetectorType;
 import org.jlab.geom.prim.Point3D;
 
@@ -31,6 +32,20 @@ public abstract class AMatch implements IMatch {
         return getDeltaPhi(Math.atan2(p1.y(),p1.x()),Math.atan2(p2.y(),p2.x()));
     }
     
+    /**
+     * Get the azimuthal window outside of which no response of the given type
+     * and layer can match the given particle, to limit the candidates looked
+     * at when matching with a {@link DetectorResponseIndex}.  Subclasses with
+     * an azimuthal cut should override this, the default is no window.
+     * @param p the particle
+     * @param t the detector type
+     * @param l the detector layer
+     * @return {phi, dphi} in radians, or null if there is no window
+     */
+    public double[] getPhiWindow(DetectorParticle p, DetectorType t, final int l) {
+        return null;
+    }
+
     /**
      * Find a matching response in the given list for the given particle.
      * @param p the particle
@@ -66,6 +81,41 @@ public abstract class AMatch implements IMatch {
         return bestIndex;
     }
 
+    /**
+     * Find a matching response in the given index for the given particle,
+     * looking only at the candidates of the requested type, layer and, if
+     * available, azimuthal window.  Candidates are in list order, so the
+     * result is the same as from searching the whole list.
+     * @param p the particle
+     * @param r the index of responses
+     * @param t the requested detector type to consider
+     * @param l the requested detector layer to consider
+     * @param first whether to accept the first match, else look for the best one
+     * @return the index of the resulting match in the list, else negative
+     */
+    private int findMatch(DetectorParticle p, DetectorResponseIndex r, DetectorType t, final int l, final boolean first) {
+        final double[] window = t != null && l >= 0 ? this.getPhiWindow(p, t, l) : null;
+        final int[] candidates = window == null ? r.get(t, l) : r.get(t, l, window[0], window[1]);
+        final List<DetectorResponse> responses = r.getResponses();
+        int bestIndex = -1;
+        double bestQuality = Double.POSITIVE_INFINITY;
+        for (int i : candidates) {
+            if (responses.get(i).getAssociation()>=0 && !sharing) {
+                continue;
+            }
+            if (this.matches(p,responses.get(i))) {
+                if (first) {
+                    return i;
+                }
+                else if (this.quality(p,responses.get(i)) < bestQuality) {
+                    bestQuality = this.quality(p,responses.get(i));
+                    bestIndex = i;
+                }
+            }
+        }
+        return bestIndex;
+    }
+
     /**
      * Find the first matching response in the given list for the given particle.
      * @param p the particle
@@ -116,6 +166,32 @@ public abstract class AMatch implements IMatch {
         return this.bestMatch(p, r, t, -1);
     }
 
+    /**
+     * Find the first matching response in the given index for the given particle.
+     * @param p the particle
+     * @param r the index of responses
+     * @param t the requested detector type to consider
+     * @param l the requested detector layer to consider
+     * @return the index of the resulting match in the list, else negative
+     */
+    @Override
+    public final int firstMatch(DetectorParticle p, DetectorResponseIndex r, DetectorType t, final int l) {
+        return this.findMatch(p, r, t, l, true);
+    }
+
+    /**
+     * Find the best matching response in the given index for the given particle.
+     * @param p the particle
+     * @param r the index of responses
+     * @param t the requested detector type to consider
+     * @param l the requested detector layer to consider
+     * @return the index of the resulting match in the list, else negative
+     */
+    @Override
+    public final int bestMatch(DetectorParticle p, DetectorResponseIndex r, DetectorType t, final int l) {
+        return this.findMatch(p, r, t, l, false);
+    }
+
     /**
      * Compare the quality of two particle-response pairs.
      * @param a
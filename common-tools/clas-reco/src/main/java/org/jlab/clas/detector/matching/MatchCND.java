@@ -3,6 +3,7 @@ package org.jlab.clas.detector.matching;
 import org.jlab.clas.detector.DetectorParticle;
 import org.jlab.clas.detector.DetectorResponse;
 import org.jlab.clas.detector.DetectorTrack.TrajectoryPoint;
+import org.jlab.detector.base.DetectorType;
 
 /**
  * 
@@ -26,6 +27,16 @@ public class MatchCND extends AMatch {
         this.limit_dt = dt;
     }
     
+    @Override
+    public double[] getPhiWindow(DetectorParticle p, DetectorType t, final int l) {
+        if (p.getCharge() == 0) {
+            return new double[]{p.getTrack().getVector().phi(), this.limit_dphi};
+        }
+        TrajectoryPoint tp = p.getTrack().getTrajectoryPoint(t.getDetectorId(), l);
+        if (tp == null) return null;
+        return new double[]{tp.getCross().origin().toVector3D().phi(), this.limit_dphi};
+    }
+
     @Override
     public boolean matches(DetectorParticle p, DetectorResponse r) {
         return matches(p,r,false);
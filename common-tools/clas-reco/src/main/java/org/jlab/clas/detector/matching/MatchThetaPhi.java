@@ -3,6 +3,7 @@ package org.jlab.clas.detector.matching;
 import org.jlab.clas.detector.DetectorParticle;
 import org.jlab.clas.detector.DetectorResponse;
 import org.jlab.clas.detector.DetectorTrack.TrajectoryPoint;
+import org.jlab.detector.base.DetectorType;
 
 /**
  * 
@@ -35,6 +36,13 @@ public class MatchThetaPhi extends AMatch {
         this.limit_dt = -1;
     }
 
+    @Override
+    public double[] getPhiWindow(DetectorParticle p, DetectorType t, final int l) {
+        TrajectoryPoint tp = p.getTrack().getTrajectoryPoint(t.getDetectorId(), l);
+        if (tp == null) return null;
+        return new double[]{tp.getCross().origin().toVector3D().phi(), this.limit_dphi};
+    }
+
     @Override
     public boolean matches(DetectorParticle p, DetectorResponse r) {
         TrajectoryPoint tp = p.getTrack().getTrajectoryPoint(r.getDescriptor());
@@ -0,0 +1,78 @@
+package org.jlab.clas.reco;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.jlab.detector.calib.utils.ConstantsManager;
+import org.jlab.detector.calib.utils.ConstantsSnapshot;
+import org.jlab.utils.ClaraYaml;
+import org.jlab.utils.options.OptionParser;
+import org.json.JSONObject;
+
+/**
+ * Export a {@link ConstantsSnapshot} of all the tables required by the
+ * engines of a CLARA YAML file, so they can run without a database.
+ *
+ * The engines are initialized as recon-util would, which registers their
+ * tables with {@link ConstantsManager}, and the tables of all managers are
+ * then exported for the requested runs.  The variation and timestamp
+ * default to those of the YAML's global configuration.
+ */
+public class ConstantsExporter {
+
+    private static final Logger LOGGER = Logger.getLogger(ConstantsExporter.class.getName());
+
+    /**
+     * Initialize the engines of a YAML file.
+     * @param yaml the YAML file
+     * @return the tables required by all engines, see
+     * {@link ConstantsManager#getRequiredTables()}
+     */
+    public static List<Map.Entry<String,Integer>> getRequiredTables(ClaraYaml yaml) {
+        EngineProcessor proc = new EngineProcessor();
+        proc.addEngines(yaml);
+        List<Map.Entry<String,Integer>> tables = ConstantsManager.getRequiredTables();
+        proc.destroy();
+        return tables;
+    }
+
+    public static void main(String[] args) {
+        OptionParser parser = new OptionParser("constants-snapshot");
+        parser.setDescription("Export the CCDB tables required by the engines of a YAML file, and RCDB values, to a snapshot");
+        parser.addRequired("-y", "yaml file");
+        parser.addRequired("-o", "output snapshot file");
+        parser.addRequired("-r", "runs, e.g. 5038,5040-5050");
+        parser.addOption("-v", null, "CCDB variation, if not the YAML's");
+        parser.addOption("-x", null, "CCDB timestamp (MM/DD/YYYY-HH:MM:SS), if not the YAML's");
+        parser.addOption("-rcdb", "1", "include RCDB values (0/1)");
+        parser.parse(args);
+
+        ClaraYaml yaml = new ClaraYaml(parser.getOption("-y").stringValue());
+        if (!yaml.valid()) {
+            LOGGER.log(Level.SEVERE, "[ConstantsExporter] ---> cannot read " + parser.getOption("-y").stringValue());
+            System.exit(1);
+        }
+
+        // no service has this name, so this is the global configuration:
+        JSONObject global = yaml.filter("");
+        String variation = parser.getOption("-v").stringValue();
+        if (variation == null) variation = global.optString("variation", "default");
+        String timestamp = parser.getOption("-x").stringValue();
+        if (timestamp == null) timestamp = global.optString("timestamp", "");
+
+        List<Map.Entry<String,Integer>> tables = getRequiredTables(yaml);
+        LOGGER.log(Level.INFO, "[ConstantsExporter] ---> exporting " + tables.size() + " tables for variation "
+                + variation + " and timestamp " + timestamp);
+        try {
+            ConstantsSnapshot.export(parser.getOption("-o").stringValue(), variation, timestamp,
+                    ConstantsSnapshot.parseRuns(parser.getOption("-r").stringValue()),
+                    tables, parser.getOption("-rcdb").intValue() != 0);
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "[ConstantsExporter] ---> export failed", e);
+            System.exit(1);
+        }
+    }
+}
@@ -2,9 +2,14 @@ package org.jlab.clas.reco;
 
 import java.io.File;
 import java.nio.file.Files;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.jlab.io.base.DataEvent;
@@ -32,6 +37,7 @@ public class EngineProcessor {
     private final Map<String,ReconstructionEngine>  processorEngines = new LinkedHashMap<>();
     private static final Logger LOGGER = Logger.getLogger(EngineProcessor.class.getPackage().getName());
     private boolean updateDictionary = true;
+    private boolean shardedOutput = false;
     private SchemaFactory banksToKeep = null;
     private final List<String> schemaExempt = Arrays.asList("RUN::config","DC::tdc");
 
@@ -81,6 +87,16 @@ public class EngineProcessor {
         }
     }
 
+    /**
+     * @param sharded whether multi-threaded processing writes the events in
+     * turn to one output file per worker thread, see
+     * {@link HipoDataSync#setShards}, instead of a
+     * single file in input order
+     */
+    public void setShardedOutput(boolean sharded) {
+        this.shardedOutput = sharded;
+    }
+
     private void setBanksToKeep(String schemaDirectory) {
         if (!Files.isDirectory((new File(schemaDirectory)).toPath())) {
             LOGGER.log(Level.SEVERE, "Invalid schema directory, aborting:  "+schemaDirectory);
@@ -247,6 +263,25 @@ public class EngineProcessor {
         this.addEngine(null, clazz, null);
     }
 
+    /**
+     * Add the services of a CLARA YAML file to the chain, in order, each
+     * configured as CLARA would, and keep the banks of its writer schema.
+     * @param yaml the YAML file
+     */
+    public void addEngines(ClaraYaml yaml) {
+        if (yaml.schemaDirectory() != null) {
+            this.setBanksToKeep(yaml.schemaDirectory());
+        }
+        for (JSONObject service : yaml.services()) {
+            JSONObject cfg = yaml.filter(service.getString("name"));
+            if (cfg.length() > 0) {
+                this.addEngine(service.getString("name"),service.getString("class"),cfg.toString());
+            } else {
+                this.addEngine(service.getString("name"),service.getString("class"));
+            }
+        }
+    }
+
     /**
      * Initialize all the engines in the chain.
      */
@@ -260,6 +295,15 @@ public class EngineProcessor {
         System.out.println("\n\n");
     }
 
+    /**
+     * Release the resources of all the engines in the chain.
+     */
+    public void destroy(){
+        for(Map.Entry<String,ReconstructionEngine> entry : this.processorEngines.entrySet()){
+            entry.getValue().destroy();
+        }
+    }
+
     /**
      * process a single event through the chain.
      * @param event
@@ -287,27 +331,64 @@ public class EngineProcessor {
      * @param nevents number of events to process
      */
     public void processFile(String file, String output, int nskip, int nevents){
+        this.processFile(file, output, nskip, nevents, 1);
+    }
+
+    /**
+     * process entire file through engine chain, optionally with multiple
+     * worker threads.
+     * @param file input file name to process
+     * @param output output filename
+     * @param nskip number of events to skip
+     * @param nevents number of events to process
+     * @param nthreads number of reconstruction threads, serial if less than 2
+     */
+    public void processFile(String file, String output, int nskip, int nevents, int nthreads){
         if(file.endsWith(".hipo")==true||file.endsWith(".h5")==true
                 ||file.endsWith(".h4")==true){
             HipoDataSource reader = new HipoDataSource();
             reader.open(file);
-            
-            int eventCounter = 0;
-            HipoDataSync   writer = new HipoDataSync();
-            writer.setCompressionType(2);
+            this.processFile(reader, new HipoDataSync(), output, nskip, nevents, nthreads);
+        } else {
+            LOGGER.info("\n\n>>>> error in file extension (use .hipo,.h4 or .h5)\n>>>> how is this not simple ?\n");
+        }
+        
+    }
+
+    /**
+     * process the events of an open source through the engine chain.
+     * @param reader input source
+     * @param writer output, opened here
+     * @param output output filename
+     * @param nskip number of events to skip
+     * @param nevents number of events to process
+     * @param nthreads number of reconstruction threads, serial if less than 2
+     */
+    void processFile(HipoDataSource reader, HipoDataSync writer, String output, int nskip, int nevents, int nthreads){
+        int eventCounter = 0;
+        writer.setCompressionType(2);
+        // compress multi-threaded output on the writer's own threads:
+        if(nthreads>1) {
+            writer.setAsync(true);
+            if(shardedOutput) writer.setShards(nthreads);
+        }
 
-            // this doesn't work (before or after "open"):
-            //if (this.banksToKeep != null)
-            //    writer.getWriter().getSchemaFactory().reduce(banksToKeep.getSchemaKeys());
+        // this doesn't work (before or after "open"):
+        //if (this.banksToKeep != null)
+        //    writer.getWriter().getSchemaFactory().reduce(banksToKeep.getSchemaKeys());
 
-            writer.open(output);
+        writer.open(output);
 
-            if(updateDictionary==true)
-                updateDictionary(reader, writer);
-           
-            if(nskip>0 && nevents>0) nevents += nskip;
-            
-            ProgressPrintout  progress = new ProgressPrintout();
+        if(updateDictionary==true)
+            updateDictionary(reader, writer);
+       
+        if(nskip>0 && nevents>0) nevents += nskip;
+        
+        ProgressPrintout  progress = new ProgressPrintout();
+        if(nthreads>1) {
+            processParallel(reader, writer, progress, nskip, nevents, nthreads);
+        }
+        else {
             while(reader.hasEvent()==true){
                 DataEvent event = reader.getNextEvent();
                 if(nskip<=0 || eventCounter>nskip) {
@@ -324,12 +405,152 @@ public class EngineProcessor {
                 }
                 progress.updateStatus();
             }
-            progress.showStatus();
-            writer.close();
-        } else {
-            LOGGER.info("\n\n>>>> error in file extension (use .hipo,.h4 or .h5)\n>>>> how is this not simple ?\n");
         }
-        
+        progress.showStatus();
+        writer.close();
+    }
+
+    /**
+     * An event tagged with its position in the output stream.
+     */
+    private static class OrderedEvent {
+        final long index;
+        final DataEvent event;
+        OrderedEvent(long index, DataEvent event) {
+            this.index = index;
+            this.event = event;
+        }
+    }
+
+    private static final OrderedEvent END_OF_STREAM = new OrderedEvent(-1, null);
+
+    /**
+     * Pipelined processing:  one thread reads events from the input file,
+     * nthreads workers each run the full engine chain on an event, and the
+     * calling thread writes events in their original input order, so the
+     * output file is identical to a serial run.  With sharded output, the
+     * workers instead write their events directly to the shard files.  The
+     * number of events in flight, including those waiting to be reordered,
+     * is bounded.
+     * The first event is processed before any workers start, so one-time
+     * initialization (e.g. the COAT::config bank) happens exactly as in serial.
+     */
+    private void processParallel(final HipoDataSource reader, HipoDataSync writer,
+            ProgressPrintout progress, final int nskip, final int nevents, final int nthreads) {
+
+        final int capacity = 4*nthreads;
+        final boolean sharded = writer.getShards()>0;
+        final BlockingQueue<OrderedEvent> todo = new ArrayBlockingQueue<>(capacity);
+        final BlockingQueue<OrderedEvent> done = new LinkedBlockingQueue<>();
+        final Semaphore inFlight = new Semaphore(capacity);
+
+        // events are handed to other threads, so they cannot be recycled
+        reader.setReuseEvents(false);
+
+        Thread readerThread = new Thread(() -> {
+            int eventCounter = 0;
+            long index = 0;
+            try {
+                while(reader.hasEvent()==true){
+                    DataEvent event = reader.getNextEvent();
+                    if(nskip<=0 || eventCounter>nskip) {
+                        inFlight.acquire();
+                        if(index==0) {
+                            processEvent(event);
+                            removeBanks(event);
+                            done.put(new OrderedEvent(index, event));
+                        }
+                        else {
+                            todo.put(new OrderedEvent(index, event));
+                        }
+                        index++;
+                    }
+                    eventCounter++;
+                    if(nevents>0){
+                        if(eventCounter>nevents) break;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                LOGGER.log(Level.SEVERE, "[EngineProcessor] error reading input", e);
+            } finally {
+                for(int i = 0; i < nthreads; i++) {
+                    try {
+                        todo.put(END_OF_STREAM);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        }, "EngineProcessor-reader");
+
+        Thread[] workers = new Thread[nthreads];
+        for(int i = 0; i < nthreads; i++) {
+            workers[i] = new Thread(() -> {
+                try {
+                    while(true) {
+                        OrderedEvent next = todo.take();
+                        if(next==END_OF_STREAM) break;
+                        try {
+                            processEvent(next.event);
+                            removeBanks(next.event);
+                        } catch (Exception e) {
+                            LOGGER.log(Level.SEVERE, "[EngineProcessor] error processing event", e);
+                        } finally {
+                            if(sharded) writer.writeEvent(next.event);
+                            done.put(next);
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.add(END_OF_STREAM);
+                }
+            }, "EngineProcessor-worker-"+i);
+        }
+
+        readerThread.setDaemon(true);
+        readerThread.start();
+        for(Thread worker : workers) {
+            worker.setDaemon(true);
+            worker.start();
+        }
+
+        // reorder and write on this thread:
+        Map<Long,DataEvent> pending = new HashMap<>();
+        long nextIndex = 0;
+        int finished = 0;
+        try {
+            while(finished<nthreads || done.isEmpty()==false) {
+                OrderedEvent next = done.take();
+                if(next==END_OF_STREAM) {
+                    finished++;
+                    continue;
+                }
+                if(sharded) {
+                    if(next.index==0) writer.writeEvent(next.event);
+                    inFlight.release();
+                    progress.updateStatus();
+                    continue;
+                }
+                pending.put(next.index, next.event);
+                while(pending.containsKey(nextIndex)) {
+                    writer.writeEvent(pending.remove(nextIndex));
+                    inFlight.release();
+                    nextIndex++;
+                    progress.updateStatus();
+                }
+            }
+            readerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            readerThread.interrupt();
+            for(Thread worker : workers) worker.interrupt();
+        }
+        if(pending.isEmpty()==false) {
+            LOGGER.log(Level.SEVERE, "[EngineProcessor] {0} events were not written", pending.size());
+        }
     }
 
     /**
@@ -358,6 +579,8 @@ public class EngineProcessor {
         parser.addOption("-P",null,"preload file for post-processing");
         parser.addOption("-R","0","rebuild scalers");
         parser.addOption("-H","0","restream helicity");
+        parser.addOption("-t","1","number of reconstruction threads");
+        parser.addOption("-W","0","with multiple threads, write the events in turn to one output file per thread [0 - no, 1 - yes]");
 
         parser.parse(args);
 
@@ -374,24 +597,15 @@ public class EngineProcessor {
         int config  = parser.getOption("-c").intValue();
         int nskip   = parser.getOption("-s").intValue();
         int nevents = parser.getOption("-n").intValue();
+        int nthreads = parser.getOption("-t").intValue();
         String yamlFileName = parser.getOption("-y").stringValue();
 
         String update = parser.getOption("-u").stringValue();
         if(update.contains("false")==true) proc.updateDictionary = false;
+        proc.setShardedOutput(parser.getOption("-W").intValue()!=0);
 
         if(!yamlFileName.equals("0")) {
-            ClaraYaml yaml = new ClaraYaml(yamlFileName);
-            if (yaml.schemaDirectory() != null) {
-                proc.setBanksToKeep(yaml.schemaDirectory());
-            }
-            for (JSONObject service : yaml.services()) {
-                JSONObject cfg = yaml.filter(service.getString("name"));
-                if (cfg.length() > 0) {
-                    proc.addEngine(service.getString("name"),service.getString("class"),cfg.toString());
-                } else {
-                    proc.addEngine(service.getString("name"),service.getString("class"));
-                }
-            }
+            proc.addEngines(new ClaraYaml(yamlFileName));
         }
         else if (config>0){
             if(config>2){
@@ -424,7 +638,8 @@ public class EngineProcessor {
                 parser.getOption("-R").intValue()!=0);
         }
 
-        proc.processFile(inputFile,outputFile,nskip,nevents);
+        proc.processFile(inputFile,outputFile,nskip,nevents,nthreads);
+        proc.destroy();
     }
 
 }
@@ -0,0 +1,137 @@
+package org.jlab.clas.detector;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.jlab.clas.detector.DetectorTrack.TrajectoryPoint;
+import org.jlab.clas.detector.matching.MatchThetaPhi;
+import org.jlab.detector.base.DetectorType;
+import org.jlab.geom.prim.Line3D;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Compare the candidates from {@link DetectorResponseIndex}, and the matches
+ * found with them, with a scan of the whole response list.
+ */
+public class DetectorResponseIndexTest {
+
+    private static final List<DetectorType> TYPES = Arrays.asList(
+            DetectorType.FTOF, DetectorType.ECAL, DetectorType.CTOF, DetectorType.CND);
+
+    private static double randomPhi(Random rand) {
+        return Math.PI * (2 * rand.nextDouble() - 1);
+    }
+
+    private static DetectorResponse createResponse(Random rand) {
+        DetectorResponse r = new DetectorResponse(rand.nextInt(7), 1 + rand.nextInt(3), 1 + rand.nextInt(60));
+        r.getDescriptor().setType(TYPES.get(rand.nextInt(TYPES.size())));
+        double theta = Math.toRadians(5 + 30 * rand.nextDouble());
+        double phi = rand.nextInt(20) == 0 ? Math.PI : randomPhi(rand);
+        double d = 500 + 200 * rand.nextDouble();
+        r.setPosition(d * Math.sin(theta) * Math.cos(phi), d * Math.sin(theta) * Math.sin(phi), d * Math.cos(theta));
+        if (rand.nextInt(5) == 0) r.setAssociation(0);
+        return r;
+    }
+
+    private static List<DetectorResponse> createResponses(Random rand, int n) {
+        List<DetectorResponse> responses = new ArrayList<>();
+        for (int i = 0; i < n; i++) responses.add(createResponse(rand));
+        return responses;
+    }
+
+    private static int[] scan(List<DetectorResponse> responses, DetectorType type, int layer, int sector) {
+        List<Integer> indices = new ArrayList<>();
+        for (int i = 0; i < responses.size(); i++) {
+            DetectorResponse r = responses.get(i);
+            if (r.getDescriptor().getType() != type) continue;
+            if (layer >= 0 && r.getDescriptor().getLayer() != layer) continue;
+            if (sector > 0 && r.getSector() > 0 && r.getSector() != sector) continue;
+            indices.add(i);
+        }
+        return indices.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static double deltaPhi(double phi1, double phi2) {
+        return Math.abs(Math.IEEEremainder(phi1 - phi2, 2 * Math.PI));
+    }
+
+    private static void compareQueries(List<DetectorResponse> responses, DetectorResponseIndex index, Random rand) {
+        for (DetectorType type : TYPES) {
+            for (int layer = -1; layer <= 4; layer++) {
+                assertArrayEquals(scan(responses, type, layer, -1), index.get(type, layer));
+                for (int sector = 0; sector <= 7; sector++) {
+                    assertArrayEquals(scan(responses, type, layer, sector), index.get(type, layer, sector));
+                }
+                for (int i = 0; i < 20; i++) {
+                    double phi = randomPhi(rand);
+                    double dphi = Math.toRadians(30 * rand.nextDouble());
+                    int[] candidates = index.get(type, layer, phi, dphi);
+                    // in list order, of the right type and layer, and with all within the window:
+                    int[] all = scan(responses, type, layer, -1);
+                    for (int k = 1; k < candidates.length; k++) assertTrue(candidates[k-1] < candidates[k]);
+                    for (int c : candidates) assertTrue(Arrays.binarySearch(all, c) >= 0);
+                    for (int c : all) {
+                        if (deltaPhi(responses.get(c).getPosition().phi(), phi) <= dphi) {
+                            assertTrue(Arrays.binarySearch(candidates, c) >= 0);
+                        }
+                    }
+                }
+            }
+        }
+        assertEquals(responses.size(), index.get(null, -1).length);
+    }
+
+    @Test
+    public void testQueries() {
+        Random rand = new Random(1);
+        List<DetectorResponse> responses = createResponses(rand, 500);
+        DetectorResponseIndex index = new DetectorResponseIndex(responses);
+        compareQueries(responses, index, rand);
+
+        // responses appended later, e.g. for shared hits, are found too:
+        for (int i = 0; i < 50; i++) responses.add(new DetectorResponse(responses.get(rand.nextInt(responses.size()))));
+        responses.addAll(createResponses(rand, 50));
+        compareQueries(responses, index, rand);
+    }
+
+    @Test
+    public void testMatching() {
+        Random rand = new Random(2);
+        MatchThetaPhi matcher = new MatchThetaPhi(10, 15);
+        int matched = 0;
+        for (int event = 0; event < 200; event++) {
+            List<DetectorResponse> responses = createResponses(rand, 100);
+            DetectorResponseIndex index = new DetectorResponseIndex(responses);
+            for (int t = 0; t < 5; t++) {
+                DetectorTrack track = new DetectorTrack(1, 1, 1, 1);
+                double theta = Math.toRadians(5 + 30 * rand.nextDouble());
+                double phi = randomPhi(rand);
+                for (DetectorType type : TYPES) {
+                    for (int layer = 1; layer <= 3; layer++) {
+                        double x = 600 * Math.sin(theta) * Math.cos(phi);
+                        double y = 600 * Math.sin(theta) * Math.sin(phi);
+                        double z = 600 * Math.cos(theta);
+                        track.getTrajectory().add(new TrajectoryPoint(type.getDetectorId(), layer,
+                                new Line3D(x, y, z, 2 * x, 2 * y, 2 * z), 600, 0, 1));
+                    }
+                }
+                DetectorParticle p = new DetectorParticle(track);
+                for (boolean sharing : new boolean[]{false, true}) {
+                    matcher.setSharing(sharing);
+                    for (DetectorType type : TYPES) {
+                        for (int layer = 1; layer <= 3; layer++) {
+                            int first = matcher.firstMatch(p, responses, type, layer);
+                            assertEquals(first, matcher.firstMatch(p, index, type, layer));
+                            assertEquals(matcher.bestMatch(p, responses, type, layer), matcher.bestMatch(p, index, type, layer));
+                            if (first >= 0) matched++;
+                        }
+                    }
+                }
+            }
+        }
+        assertTrue(matched > 1000);
+    }
+}
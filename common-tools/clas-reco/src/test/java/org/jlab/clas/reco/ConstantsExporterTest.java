@@ -0,0 +1,54 @@
+package org.jlab.clas.reco;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.jlab.io.base.DataEvent;
+import org.jlab.utils.ClaraYaml;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ * The tables exported for a YAML file are those required by its engines.
+ */
+public class ConstantsExporterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    public static class TableEngine extends ReconstructionEngine {
+        public TableEngine() {
+            super("TABLES", "test", "1.0");
+        }
+        @Override
+        public boolean init() {
+            this.requireConstants(Arrays.asList("/test/exporter/a", "/test/exporter/b"));
+            return true;
+        }
+        @Override
+        public boolean processDataEvent(DataEvent event) {
+            return true;
+        }
+    }
+
+    @Test
+    public void testRequiredTables() throws IOException {
+        File file = folder.newFile("tables.yaml");
+        Files.write(file.toPath(), Arrays.asList(
+                "services:",
+                "  - class: " + TableEngine.class.getName(),
+                "    name: TABLES"), StandardCharsets.UTF_8);
+
+        List<Map.Entry<String,Integer>> tables = ConstantsExporter.getRequiredTables(new ClaraYaml(file.getPath()));
+        assertTrue(tables.contains(new AbstractMap.SimpleImmutableEntry<>("/test/exporter/a", 3)));
+        assertTrue(tables.contains(new AbstractMap.SimpleImmutableEntry<>("/test/exporter/b", 3)));
+    }
+}
@@ -0,0 +1,151 @@
+package org.jlab.clas.reco;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jlab.io.base.DataBank;
+import org.jlab.io.base.DataEvent;
+import org.jlab.io.hipo.HipoDataSource;
+import org.jlab.io.hipo.HipoDataSync;
+import org.jlab.jnp.hipo4.data.SchemaFactory;
+import org.jlab.utils.system.ClasUtilsFile;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ * Compare the output of multi-threaded processing with that of a serial run.
+ */
+public class EngineProcessorTest {
+
+    private static final int NEVENTS = 200;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Tags RUN::config with the event number, taking longer on some events
+     * so that they finish out of order when processed in parallel.
+     */
+    private static class TagEngine extends ReconstructionEngine {
+        final AtomicInteger processed = new AtomicInteger();
+        TagEngine() {
+            super("TAG", "baltzell", "1.0");
+        }
+        @Override
+        public boolean init() {
+            return true;
+        }
+        @Override
+        public boolean processDataEvent(DataEvent event) {
+            DataBank config = event.getBank("RUN::config");
+            int number = config.getInt("event", 0);
+            try {
+                Thread.sleep(number%3);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            config.setLong("timestamp", 0, 1000L*number+1);
+            event.removeBank("RUN::config");
+            event.appendBank(config);
+            processed.incrementAndGet();
+            return true;
+        }
+    }
+
+    private static SchemaFactory getSchemaFactory() {
+        System.setProperty("CLAS12DIR", "../../");
+        String dir = ClasUtilsFile.getResourceDir("CLAS12DIR", "etc/bankdefs/hipo4");
+        SchemaFactory schemaFactory = new SchemaFactory();
+        schemaFactory.initFromDirectory(dir);
+        return schemaFactory;
+    }
+
+    private String writeInput() throws IOException {
+        String file = new File(folder.getRoot(), "input.hipo").getPath();
+        HipoDataSync writer = new HipoDataSync(getSchemaFactory());
+        writer.open(file);
+        for (int i=0; i<NEVENTS; i++) {
+            DataEvent event = writer.createEvent();
+            DataBank config = event.createBank("RUN::config", 1);
+            config.setInt("run", 0, 11);
+            config.setInt("event", 0, i);
+            event.appendBank(config);
+            writer.writeEvent(event);
+        }
+        writer.close();
+        return file;
+    }
+
+    // event number, tag, and whether the event got the engine configuration
+    private static List<String> read(String file) {
+        List<String> events = new ArrayList<>();
+        HipoDataSource reader = new HipoDataSource();
+        reader.open(file);
+        while (reader.hasEvent()) {
+            DataEvent event = reader.getNextEvent();
+            DataBank config = event.getBank("RUN::config");
+            events.add(config.getInt("event", 0) + " " + config.getLong("timestamp", 0)
+                    + " " + event.hasBank(ReconstructionEngine.CONFIG_BANK_NAME));
+        }
+        reader.close();
+        return events;
+    }
+
+    private List<String> process(String input, String name, int nskip, int nevents, int nthreads, boolean sharded) {
+        EngineProcessor processor = new EngineProcessor();
+        TagEngine engine = new TagEngine();
+        processor.addEngine("TAG", engine);
+        processor.setShardedOutput(sharded);
+        String output = new File(folder.getRoot(), name + ".hipo").getPath();
+        HipoDataSource reader = new HipoDataSource();
+        reader.open(input);
+        processor.processFile(reader, new HipoDataSync(getSchemaFactory()), output, nskip, nevents, nthreads);
+
+        List<String> events = new ArrayList<>();
+        if (sharded) {
+            for (int i=0; i<nthreads; i++) {
+                events.addAll(read(new File(folder.getRoot(), name + "." + i + ".hipo").getPath()));
+            }
+        }
+        else {
+            events.addAll(read(output));
+        }
+        assertEquals(engine.processed.get(), events.size());
+        return events;
+    }
+
+    @Test
+    public void testOrder() throws IOException {
+        String input = writeInput();
+        for (int[] range : new int[][]{{-1, -1}, {10, 50}}) {
+            List<String> serial = process(input, "serial", range[0], range[1], 1, false);
+            assertFalse(serial.isEmpty());
+            assertTrue(serial.get(0).endsWith("true"));
+            for (int i=1; i<serial.size(); i++) assertTrue(serial.get(i).endsWith("false"));
+            for (int nthreads : new int[]{2, 4}) {
+                assertEquals(serial, process(input, "parallel"+nthreads, range[0], range[1], nthreads, false));
+            }
+        }
+    }
+
+    @Test
+    public void testSharded() throws IOException {
+        String input = writeInput();
+        List<String> serial = process(input, "serial", -1, -1, 1, false);
+        List<String> sharded = process(input, "sharded", -1, -1, 3, true);
+        Collections.sort(serial);
+        Collections.sort(sharded);
+        assertEquals(serial, sharded);
+
+        // one index line per event, after those of the shards:
+        List<String> index = Files.readAllLines(new File(folder.getRoot(), "sharded.hipo.shards").toPath());
+        assertEquals(3 + NEVENTS, index.size());
+    }
+}
@@ -32,6 +32,7 @@ public abstract class AKFitter {
 
     private Swim swimmer;
     private KFCovMatOps mo = new KFCovMatOps(Libr.EJML);
+    private final KFCovMatKernel kernel = new KFCovMatKernel();
     
     public Map<Integer, HitOnTrack> trajPoints = new HashMap<>();
     
@@ -51,6 +52,10 @@ public abstract class AKFitter {
         return mo;
     }
     
+    public KFCovMatKernel getCovMatKernel() {
+        return kernel;
+    }
+    
     public void setMeasurements(List<Surface> measSurfaces, AMeasVecs mv) {
         mv.setMeasVecs(measSurfaces);
     }
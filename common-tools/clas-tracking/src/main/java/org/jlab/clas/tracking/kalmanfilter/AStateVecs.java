@@ -41,6 +41,12 @@ public abstract class AStateVecs {
 
     public boolean straight;
 
+    // covariance matrix kernel and its scratch buffers
+    private final KFCovMatKernel kernel = new KFCovMatKernel();
+    private final double[] fMat = new double[KFCovMatKernel.SIZE];
+    private final double[] cMat = new double[KFCovMatKernel.SIZE];
+    private final double[] qMat = new double[KFCovMatKernel.SIZE];
+
     public abstract void init(Helix trk, double[][] cov, double xref, double yref, double zref, double mass, Swim swimmer);
 
     public abstract void init(double x0, double z0, double tx, double tz, Units units, double[][] cov);
@@ -90,24 +96,26 @@ public abstract class AStateVecs {
 
         if(dir<0) this.corrForEloss(dir, fVec, mv);
 
-        //transport covariance matrix
-        double[][] fCov = this.propagateCovMat(iVec, fVec);
-        double[][] fQ = null;
-        
+        //transport covariance matrix, adding the process noise before the
+        //propagation going forward and after it going backward
+        double[][] FMat = this.F(iVec, fVec);
+        iVec.F = FMat;
+        KFCovMatKernel.copy(FMat, fMat);
+        KFCovMatKernel.copy(iVec.covMat, cMat);
         if(dir>0) {
-            double[][] iQ = this.Q(iVec, mv);
-            fQ = this.propagateMatrix(iVec, fVec, iQ);
+            KFCovMatKernel.copy(this.Q(iVec, mv), qMat);
+            KFCovMatKernel.add(cMat, qMat, cMat);
+            kernel.propagate(fMat, cMat, null, cMat);
 //            System.out.println("From " + i + " to " + f + " including material from surface " + i + " with X0 = " +  mv.measurements.get(i).surface.getToverX0());
 //            System.out.println(mv.measurements.get(i).surface.toString());
-                        }
+        }
         else {
-            fQ =this.Q(fVec, mv);
+            KFCovMatKernel.copy(this.Q(fVec, mv), qMat);
+            kernel.propagate(fMat, cMat, qMat, cMat);
 //            System.out.println("From " + i + " to " + f + " including material from surface " + f + " with X0 = " +  mv.measurements.get(f).surface.getToverX0());
 //            System.out.println(mv.measurements.get(f).surface.toString());
         }
-        if (fCov != null) {
-            fVec.covMat = addProcessNoise(fCov, fQ);            
-        }
+        fVec.covMat = KFCovMatKernel.toArray(cMat);
         
         return fVec;
     }
@@ -127,9 +135,11 @@ public abstract class AStateVecs {
     
     private double[][] propagateMatrix(StateVec ivec, StateVec fvec, double[][] matrix) {
         double[][] FMat  = this.F(ivec, fvec);
-        double[][] FMatT = this.transposeMatrix(FMat);
         ivec.F = FMat;
-        return multiplyMatrices(FMat, matrix, FMatT);
+        KFCovMatKernel.copy(FMat, fMat);
+        KFCovMatKernel.copy(matrix, cMat);
+        kernel.propagate(fMat, cMat, null, cMat);
+        return KFCovMatKernel.toArray(cMat);
     }
     
     private double[][] multiplyMatrices(double[][] firstMatrix, double[][] secondMatrix) {
@@ -0,0 +1,244 @@
+package org.jlab.clas.tracking.kalmanfilter;
+
+import org.jlab.jnp.matrix.Matrix;
+
+/**
+ * Specialized operations on 5x5 covariance matrices for the Kalman filter,
+ * on flat row-major double[25] arrays.
+ *
+ * The inner products are unrolled and the symmetry of the covariance
+ * matrices is used to compute only the upper triangle of the results.
+ * Intermediate results are kept in scratch buffers owned by the instance,
+ * so no operation allocates, and an instance must only be used by one
+ * thread at a time, e.g. be owned by a fitter.
+ */
+public class KFCovMatKernel {
+
+    public static final int N = 5;
+    public static final int SIZE = N*N;
+
+    private final double[] fc = new double[SIZE];
+    private final double[] ikh = new double[SIZE];
+    private final double[] gj = new double[SIZE];
+    private final double[] ch = new double[N];
+
+    /**
+     * Propagate a covariance matrix: out = F*C*F^T + Q
+     * @param F the propagator matrix
+     * @param C the symmetric covariance matrix
+     * @param Q the symmetric process noise matrix, or null for none
+     * @param out the propagated covariance matrix, can be C but not F
+     */
+    public void propagate(double[] F, double[] C, double[] Q, double[] out) {
+        for (int i = 0; i < SIZE; i += N) {
+            for (int j = 0; j < N; j++) {
+                fc[i+j] = F[i]*C[j] + F[i+1]*C[N+j] + F[i+2]*C[2*N+j] + F[i+3]*C[3*N+j] + F[i+4]*C[4*N+j];
+            }
+        }
+        for (int i = 0; i < N; i++) {
+            final int r = N*i;
+            for (int j = i; j < N; j++) {
+                final int c = N*j;
+                double v = fc[r]*F[c] + fc[r+1]*F[c+1] + fc[r+2]*F[c+2] + fc[r+3]*F[c+3] + fc[r+4]*F[c+4];
+                if (Q != null) v += Q[r+j];
+                out[r+j] = v;
+                out[c+i] = v;
+            }
+        }
+    }
+
+    /**
+     * Update a covariance matrix with a one-dimensional measurement, in
+     * Joseph form: out = (I-K*H)*C*(I-K*H)^T + K*V*K^T, with the gain
+     * K = C*H^T/(H*C*H^T+V), which keeps the result symmetric and positive
+     * definite and needs no inversion.
+     * @param C the symmetric covariance matrix
+     * @param H the projector
+     * @param V the measurement variance
+     * @param out the updated covariance matrix, can be C
+     * @param K the gain
+     * @return the variance of the residual H*C*H^T+V, or NaN if it is not
+     * positive, in which case out and K are not set
+     */
+    public double update(double[] C, double[] H, double V, double[] out, double[] K) {
+        for (int i = 0; i < N; i++) {
+            final int r = N*i;
+            ch[i] = C[r]*H[0] + C[r+1]*H[1] + C[r+2]*H[2] + C[r+3]*H[3] + C[r+4]*H[4];
+        }
+        final double S = H[0]*ch[0] + H[1]*ch[1] + H[2]*ch[2] + H[3]*ch[3] + H[4]*ch[4] + V;
+        if (!(S > 0) || Double.isInfinite(S)) return Double.NaN;
+        for (int i = 0; i < N; i++) {
+            K[i] = ch[i] / S;
+            final int r = N*i;
+            for (int j = 0; j < N; j++) ikh[r+j] = -K[i]*H[j];
+            ikh[r+i] += 1;
+        }
+        this.propagate(ikh, C, null, out);
+        for (int i = 0; i < N; i++) {
+            final int r = N*i;
+            for (int j = i; j < N; j++) {
+                final double v = out[r+j] + K[i]*V*K[j];
+                out[r+j] = v;
+                out[N*j+i] = v;
+            }
+        }
+        return S;
+    }
+
+    /**
+     * Update a covariance matrix with a one-dimensional measurement, as
+     * {@link #update(double[], double[], double, double[], double[])}, also
+     * failing if the determinant of C or of the updated weight matrix
+     * C^-1+H^T*H/V is smaller than minDet in absolute value, as the update
+     * in information form does. By the matrix determinant lemma the second
+     * determinant is S/(V*det(C)), so no inversion is needed.
+     * @param C the symmetric covariance matrix
+     * @param H the projector
+     * @param V the measurement variance
+     * @param out the updated covariance matrix, can be C
+     * @param K the gain
+     * @param minDet the smallest accepted determinant
+     * @return the variance of the residual H*C*H^T+V, or NaN if the update
+     * failed, in which case out and K are not set
+     */
+    public double update(double[] C, double[] H, double V, double[] out, double[] K, double minDet) {
+        final double det = this.determinant(C);
+        if (!(Math.abs(det) >= minDet)) return Double.NaN;
+        for (int i = 0; i < N; i++) {
+            final int r = N*i;
+            ch[i] = C[r]*H[0] + C[r+1]*H[1] + C[r+2]*H[2] + C[r+3]*H[3] + C[r+4]*H[4];
+        }
+        final double S = H[0]*ch[0] + H[1]*ch[1] + H[2]*ch[2] + H[3]*ch[3] + H[4]*ch[4] + V;
+        if (!(Math.abs(S/(V*det)) >= minDet)) return Double.NaN;
+        return this.update(C, H, V, out, K);
+    }
+
+    /**
+     * Determinant by Gaussian elimination with partial pivoting.
+     * @param C the matrix
+     * @return the determinant
+     */
+    public double determinant(double[] C) {
+        System.arraycopy(C, 0, gj, 0, SIZE);
+        double det = 1;
+        for (int c = 0; c < N; c++) {
+            int p = c;
+            for (int r = c+1; r < N; r++) {
+                if (Math.abs(gj[N*r+c]) > Math.abs(gj[N*p+c])) p = r;
+            }
+            final double pivot = gj[N*p+c];
+            if (pivot == 0) return 0;
+            if (p != c) {
+                swapRows(gj, p, c);
+                det = -det;
+            }
+            det *= pivot;
+            final int rc = N*c;
+            for (int r = c+1; r < N; r++) {
+                final int rr = N*r;
+                final double f = gj[rr+c] / pivot;
+                if (f == 0) continue;
+                for (int j = c+1; j < N; j++) gj[rr+j] -= f*gj[rc+j];
+            }
+        }
+        return det;
+    }
+
+    /**
+     * Invert a matrix by Gauss-Jordan elimination with partial pivoting.
+     * @param C the matrix
+     * @param out the inverse, can be C
+     * @return false if the matrix is singular, in which case out is not set
+     */
+    public boolean invert(double[] C, double[] out) {
+        System.arraycopy(C, 0, gj, 0, SIZE);
+        for (int i = 0; i < SIZE; i++) ikh[i] = 0;
+        for (int i = 0; i < SIZE; i += N+1) ikh[i] = 1;
+        for (int c = 0; c < N; c++) {
+            int p = c;
+            for (int r = c+1; r < N; r++) {
+                if (Math.abs(gj[N*r+c]) > Math.abs(gj[N*p+c])) p = r;
+            }
+            final double pivot = gj[N*p+c];
+            if (!(Math.abs(pivot) > 0) || Double.isInfinite(pivot)) return false;
+            if (p != c) {
+                swapRows(gj, p, c);
+                swapRows(ikh, p, c);
+            }
+            final int rc = N*c;
+            final double ip = 1 / pivot;
+            for (int j = 0; j < N; j++) {
+                gj[rc+j] *= ip;
+                ikh[rc+j] *= ip;
+            }
+            for (int r = 0; r < N; r++) {
+                final int rr = N*r;
+                final double f = gj[rr+c];
+                if (r == c || f == 0) continue;
+                for (int j = 0; j < N; j++) {
+                    gj[rr+j] -= f*gj[rc+j];
+                    ikh[rr+j] -= f*ikh[rc+j];
+                }
+            }
+        }
+        System.arraycopy(ikh, 0, out, 0, SIZE);
+        return true;
+    }
+
+    private static void swapRows(double[] m, int r1, int r2) {
+        for (int j = 0; j < N; j++) {
+            final double t = m[N*r1+j];
+            m[N*r1+j] = m[N*r2+j];
+            m[N*r2+j] = t;
+        }
+    }
+
+    /**
+     * @param A
+     * @param B
+     * @param out A+B, can be A or B
+     */
+    public static void add(double[] A, double[] B, double[] out) {
+        for (int i = 0; i < SIZE; i++) out[i] = A[i] + B[i];
+    }
+
+    /**
+     * @param A
+     * @param x
+     * @param out A*x, can not be x
+     */
+    public static void multiply(double[] A, double[] x, double[] out) {
+        for (int i = 0; i < N; i++) {
+            final int r = N*i;
+            out[i] = A[r]*x[0] + A[r+1]*x[1] + A[r+2]*x[2] + A[r+3]*x[3] + A[r+4]*x[4];
+        }
+    }
+
+    public static void copy(double[][] src, double[] dst) {
+        for (int i = 0; i < N; i++) System.arraycopy(src[i], 0, dst, N*i, N);
+    }
+
+    public static void copy(double[] src, double[][] dst) {
+        for (int i = 0; i < N; i++) System.arraycopy(src, N*i, dst[i], 0, N);
+    }
+
+    public static double[][] toArray(double[] src) {
+        double[][] dst = new double[N][N];
+        copy(src, dst);
+        return dst;
+    }
+
+    public static void copy(Matrix src, double[] dst) {
+        for (int i = 0; i < N; i++) {
+            for (int j = 0; j < N; j++) dst[N*i+j] = src.get(i, j);
+        }
+    }
+
+    public static void copy(double[] src, Matrix dst) {
+        dst.set(src[0],  src[1],  src[2],  src[3],  src[4],
+                src[5],  src[6],  src[7],  src[8],  src[9],
+                src[10], src[11], src[12], src[13], src[14],
+                src[15], src[16], src[17], src[18], src[19],
+                src[20], src[21], src[22], src[23], src[24]);
+    }
+}
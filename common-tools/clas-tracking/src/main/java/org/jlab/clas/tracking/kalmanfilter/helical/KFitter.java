@@ -6,6 +6,7 @@ import org.jlab.clas.tracking.kalmanfilter.AKFitter;
 import org.jlab.clas.tracking.kalmanfilter.AMeasVecs;
 import org.jlab.clas.tracking.kalmanfilter.AStateVecs;
 import org.jlab.clas.tracking.kalmanfilter.AStateVecs.StateVec;
+import org.jlab.clas.tracking.kalmanfilter.KFCovMatKernel;
 import org.jlab.clas.tracking.kalmanfilter.Surface;
 import org.jlab.clas.tracking.trackrep.Helix;
 import org.jlab.clas.tracking.utilities.MatrixOps.Libr;
@@ -21,6 +22,14 @@ public class KFitter extends AKFitter {
     private StateVec finalSmoothedStateVec = null;    
     private StateVec finalTransportedStateVec = null;    
     
+    // scratch buffers for the covariance matrix kernel
+    private final double[] gain = new double[5];
+    private final double[] c1 = new double[KFCovMatKernel.SIZE];
+    private final double[] c2 = new double[KFCovMatKernel.SIZE];
+    private final double[] c  = new double[KFCovMatKernel.SIZE];
+    private final double[] w1 = new double[5];
+    private final double[] w2 = new double[5];
+
     
     public KFitter(boolean filter, int iterations, int dir, Swim swim, Libr mo) {
         super(filter, iterations, dir, swim, mo);
@@ -216,7 +225,7 @@ public class KFitter extends AKFitter {
             
             if(mv.measurements.get(k).skip == false && filterOn) {
 
-                double[] K = new double[5];
+                double[] K = this.gain;
                 double V = mv.measurements.get(k).error*mv.measurements.get(k).error;
 
                 double dh = mv.dh(k, fVec);
@@ -225,20 +234,12 @@ public class KFitter extends AKFitter {
                 double[] H = mv.H(fVec, sv,  mv.measurements.get(k), this.getSwimmer());
     //            System.out.println(k + " " + mv.measurements.get(k).layer + " " + H[0] + " " + H[1] + " " + H[2] + " " + H[3] + " " + H[4] + " " +dh );
                 
-                double[][] CaInv =  this.getMatrixOps().filterCovMat(H, fVec.covMat, V);
-                if (CaInv != null) {
-                        fVec.covMat = CaInv;
-                    } else {
-                        return null;
-                }
-
-                for (int j = 0; j < 5; j++) {
-                    // the gain matrix
-                    K[j] = 0;
-                    for (int i = 0; i < 5; i++) {
-                        K[j] += H[i] * fVec.covMat[j][i] / V; 
-                    } 
+                // updated covariance matrix and gain
+                KFCovMatKernel.copy(fVec.covMat, c1);
+                if (Double.isNaN(this.getCovMatKernel().update(c1, H, V, c1, K))) {
+                    return null;
                 }
+                KFCovMatKernel.copy(c1, fVec.covMat);
                 if(sv.straight) {
                         K[2] = 0;
                 }
@@ -357,26 +358,21 @@ public class KFitter extends AKFitter {
         // move pivot of first state vector to match second
         v1.setPivot(v2.x0, v2.y0, v2.z0);
         // get covariance matrices and arrays
-        double[][] c1 = v1.covMat;
-        double[][] c2 = v2.covMat;
         double[]   a1 = v1.getHelixArray();
         double[]   a2 = v2.getHelixArray();
         // smooth covariance matrices
-        double[][] c1i = this.getMatrixOps().inverse(c1);
-        double[][] c2i = this.getMatrixOps().inverse(c2);
-        if(c1i == null || c2i == null) return null;
-        double[][]  ci = this.getMatrixOps().mo.MatrixAddition(c1i, c2i);
-        double[][]   c = this.getMatrixOps().inverse(ci);
-        if(c == null) return null;
+        KFCovMatKernel kernel = this.getCovMatKernel();
+        KFCovMatKernel.copy(v1.covMat, c1);
+        KFCovMatKernel.copy(v2.covMat, c2);
+        if(!kernel.invert(c1, c1) || !kernel.invert(c2, c2)) return null;
+        KFCovMatKernel.add(c1, c2, c);
+        if(!kernel.invert(c, c)) return null;
         // smooth state vectors
+        KFCovMatKernel.multiply(c1, a1, w1);
+        KFCovMatKernel.multiply(c2, a2, w2);
+        for(int i=0; i<a1.length; i++) w1[i] += w2[i];
         double[] a = new double[a1.length];
-        for(int i=0; i<a1.length; i++) {
-            for(int j=0; j<a1.length; j++) {
-                for(int k=0; k<a1.length; k++) {
-                    a[i] += c[i][j]*(c1i[j][k]*a1[k]+c2i[j][k]*a2[k]);
-                }
-            }
-        }
+        KFCovMatKernel.multiply(c, w1, a);
         // create averaged state vector
         StateVec vave = sv.new StateVec(v2);
         vave.d_rho = a[0];
@@ -384,7 +380,7 @@ public class KFitter extends AKFitter {
         vave.kappa = a[2];
         vave.dz    = a[3];
         vave.tanL  = a[4];
-        vave.covMat = c;
+        vave.covMat = KFCovMatKernel.toArray(c);
         if(this.getSwimmer()!=null && !sv.straight) vave.rollBack(mv.rollBackAngle);
         vave.updateFromHelix();
 
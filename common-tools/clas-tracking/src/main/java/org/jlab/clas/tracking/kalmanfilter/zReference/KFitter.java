@@ -9,6 +9,7 @@ import org.jlab.clas.swimtools.Swim;
 import org.jlab.clas.tracking.kalmanfilter.AKFitter;
 import org.jlab.clas.tracking.kalmanfilter.AMeasVecs;
 import org.jlab.clas.tracking.kalmanfilter.AStateVecs;
+import org.jlab.clas.tracking.kalmanfilter.KFCovMatKernel;
 import org.jlab.clas.tracking.kalmanfilter.Surface;
 import org.jlab.clas.tracking.kalmanfilter.AStateVecs.StateVec;
 import org.jlab.clas.tracking.kalmanfilter.zReference.MeasVecs;
@@ -56,11 +57,10 @@ public class KFitter extends AKFitter {
 
     private boolean TBT = false;
 
-    Matrix first_inverse = new Matrix();
-    Matrix addition = new Matrix();
-    Matrix result = new Matrix();
-    Matrix result_inv = new Matrix();
-    Matrix adj = new Matrix();
+    // scratch buffers for the covariance matrix kernel
+    private final double[] gain = new double[5];
+    private final double[] cov = new double[KFCovMatKernel.SIZE];
+    private final Matrix result = new Matrix();
 
     public KFitter(boolean filter, int iterations, int dir, Swim swim, double Z[], Libr mo) {
         super(filter, iterations, dir, swim, mo);
@@ -572,7 +572,6 @@ public class KFitter extends AKFitter {
             double tx_filt = 0;
             double ty_filt = 0;
             double Q_filt = 0;
-            Matrix cMat = new Matrix();
             
             double updatedWeights_singleHit = 1;
             double[] updatedWeights_doubleHits = {0.5, 0.5};
@@ -591,22 +590,14 @@ public class KFitter extends AKFitter {
                 double effectiveVar = daf.get_EffectiveVar();
                 
                 
-                double[] K = new double[5];
+                double[] K = this.gain;
                 double V = effectiveVar;
                 double[] H = mv.H(sVec.x, sVec.y, mVec.surface.measPoint.z(), mVec.surface.wireLine[0]);
-                Matrix CaInv = this.filterCovMat(H, sVec.CM, V);
-                if (CaInv != null) {
-                    Matrix5x5.copy(CaInv, cMat);
-                } else {
+                KFCovMatKernel.copy(sVec.CM, cov);
+                if (!this.filterCovMat(H, cov, V, K)) {
                     return false;
                 }
 
-                for (int j = 0; j < 5; j++) {
-                    // the gain matrix
-                    K[j] = (H[0] * cMat.get(j, 0)
-                            + H[1] * cMat.get(j, 1)) / V;
-                }
-
                 Point3D point = new Point3D(sVec.x, sVec.y, mVec.surface.measPoint.z());
                 double h = mv.hDoca(point, mVec.surface.wireLine[0]);
                                
@@ -643,22 +634,14 @@ public class KFitter extends AKFitter {
                 double effectiveVar = daf.get_EffectiveVar();
                 int indexReferenceWire = daf.get_IndexReferenceWire();
 
-                double[] K = new double[5];
+                double[] K = this.gain;
                 double V = effectiveVar;
                 double[] H = mv.H(sVec.x, sVec.y, mVec.surface.measPoint.z(), mVec.surface.wireLine[indexReferenceWire]);
-                Matrix CaInv = this.filterCovMat(H, sVec.CM, V);
-                if (CaInv != null) {
-                    Matrix5x5.copy(CaInv, cMat);
-                } else {
+                KFCovMatKernel.copy(sVec.CM, cov);
+                if (!this.filterCovMat(H, cov, V, K)) {
                     return false;
                 }
 
-                for (int j = 0; j < 5; j++) {
-                    // the gain matrix
-                    K[j] = (H[0] * cMat.get(j, 0)
-                            + H[1] * cMat.get(j, 1)) / V;
-                }
-
                 Point3D point = new Point3D(sVec.x, sVec.y, mVec.surface.measPoint.z());
                 double h = mv.hDoca(point, mVec.surface.wireLine[indexReferenceWire]);
 
@@ -694,7 +677,7 @@ public class KFitter extends AKFitter {
                 filteredVec.B = sVec.B;
                 filteredVec.deltaPath = sVec.deltaPath;
 
-                filteredVec.CM = cMat;
+                KFCovMatKernel.copy(cov, filteredVec.CM);
                 filteredVec.setWeightDAF_singleHit(updatedWeights_singleHit);
                 filteredVec.setWeightDAF_doubleHits(updatedWeights_doubleHits);
 
@@ -722,23 +705,14 @@ public class KFitter extends AKFitter {
         if (sVec != null && sVec.CM != null
                 && k < mv.measurements.size() && mVec.skip == false) {
 
-            double[] K = new double[5];
+            double[] K = this.gain;
             double V = mVec.surface.unc[0] * KFScale;
             double[] H = mv.H(sVec.x, sVec.y, mVec.surface.measPoint.z(), mVec.surface.wireLine[0]);
-            Matrix CaInv = this.filterCovMat(H, sVec.CM, V);
-            Matrix cMat = new Matrix();
-            if (CaInv != null) {
-                Matrix5x5.copy(CaInv, cMat);
-            } else {
+            KFCovMatKernel.copy(sVec.CM, cov);
+            if (!this.filterCovMat(H, cov, V, K)) {
                 return false;
             }
 
-            for (int j = 0; j < 5; j++) {
-                // the gain matrix
-                K[j] = (H[0] * cMat.get(j, 0)
-                        + H[1] * cMat.get(j, 1)) / V;
-            }
-
             Point3D point = new Point3D(sVec.x, sVec.y, mVec.surface.measPoint.z());
             double h = mv.hDoca(point, mVec.surface.wireLine[0]);
 
@@ -775,19 +749,9 @@ public class KFitter extends AKFitter {
                 V = mVec.surface.unc[1] * KFScale;
                 H = mv.H(x_filt, y_filt, mVec.surface.measPoint.z(),
                         mVec.surface.wireLine[1]);
-                CaInv = this.filterCovMat(H, cMat, V);
-                if (CaInv != null) {
-                    for (int i = 0; i < 5; i++) {
-                        Matrix5x5.copy(CaInv, cMat);
-                    }
-                } else {
+                if (!this.filterCovMat(H, cov, V, K)) {
                     return false;
                 }
-                for (int j = 0; j < 5; j++) {
-                    // the gain matrix
-                    K[j] = (H[0] * cMat.get(j, 0)
-                            + H[1] * cMat.get(j, 1)) / V;
-                }
 
                 Point3D point2 = new Point3D(x_filt, y_filt, mVec.surface.measPoint.z());
 
@@ -818,7 +782,7 @@ public class KFitter extends AKFitter {
                 filteredVec.B = sVec.B;
                 filteredVec.deltaPath = sVec.deltaPath;
 
-                filteredVec.CM = cMat;
+                KFCovMatKernel.copy(cov, filteredVec.CM);
 
                 sv.filtered(forward).put(k, filteredVec);
             } else {
@@ -832,26 +796,26 @@ public class KFitter extends AKFitter {
     }
 
     public Matrix filterCovMat(double[] H, Matrix Ci, double V) {
-
-        double det = Matrix5x5.inverse(Ci, first_inverse, adj);
-        if (Math.abs(det) < 1.e-60) {
-            return null;
-        }
-
-        addition.set(
-                H[0] * H[0] / V, H[0] * H[1] / V, 0, 0, 0,
-                H[0] * H[1] / V, H[1] * H[1] / V, 0, 0, 0,
-                0, 0, 0, 0, 0,
-                0, 0, 0, 0, 0,
-                0, 0, 0, 0, 0);
-
-        Matrix5x5.add(first_inverse, addition, result);
-        double det2 = Matrix5x5.inverse(result, result_inv, adj);
-        if (Math.abs(det2) < 1.e-60) {
+        KFCovMatKernel.copy(Ci, cov);
+        if (!this.filterCovMat(H, cov, V, gain)) {
             return null;
         }
+        KFCovMatKernel.copy(cov, result);
+        return result;
+    }
 
-        return result_inv;
+    /**
+     * Update a covariance matrix with a DOCA measurement, rejecting it as
+     * the information-form update did when the matrix or the updated weight
+     * matrix has a determinant below 1e-60.
+     * @param H the projector
+     * @param C the covariance matrix, updated in place
+     * @param V the measurement variance
+     * @param K the gain
+     * @return false if the update failed, in which case C is not changed
+     */
+    private boolean filterCovMat(double[] H, double[] C, double V, double[] K) {
+        return !Double.isNaN(this.getCovMatKernel().update(C, H, V, C, K, 1.e-60));
     }
 
     private void calcFinalChisq(int sector) {
@@ -6,6 +6,7 @@ import org.jlab.clas.tracking.kalmanfilter.AMeasVecs;
 import org.jlab.clas.tracking.kalmanfilter.AMeasVecs.MeasVec;
 import org.jlab.clas.tracking.kalmanfilter.AStateVecs.StateVec;
 import org.jlab.clas.tracking.kalmanfilter.AStateVecs;
+import org.jlab.clas.tracking.kalmanfilter.KFCovMatKernel;
 import org.jlab.clas.tracking.kalmanfilter.Surface;
 import org.jlab.clas.tracking.kalmanfilter.Units;
 import org.jlab.clas.tracking.trackrep.Helix;
@@ -13,7 +14,6 @@ import org.jlab.clas.tracking.utilities.MatrixOps;
 import org.jlab.geom.prim.Line3D;
 import org.jlab.geom.prim.Point3D;
 import org.jlab.geom.prim.Vector3D;
-import org.jlab.jnp.matrix.Matrix5x5;
 import org.jlab.clas.tracking.utilities.RungeKuttaDoca;
 import org.jlab.jnp.matrix.Matrix;
 
@@ -24,8 +24,7 @@ import org.jlab.jnp.matrix.Matrix;
 public class StateVecs extends AStateVecs {
 
     private RungeKuttaDoca rk = new RungeKuttaDoca();
-    private final Matrix fMS = new Matrix();
-    private final Matrix copyMatrix = new Matrix();
+    private final double[] cov = new double[KFCovMatKernel.SIZE];
 
     public double Z[];
 
@@ -73,7 +72,7 @@ public class StateVecs extends AStateVecs {
         fVec.ty = iVec.ty;
         fVec.Q = iVec.Q;
         fVec.B = iVec.B;
-        Matrix5x5.copy(iVec.CM, fVec.CM);
+        KFCovMatKernel.copy(iVec.CM, cov);
 
         double s = 0;
         double zInit = mv.measurements.get(i).surface.measPoint.z();
@@ -93,8 +92,6 @@ public class StateVecs extends AStateVecs {
             double ty = fVec.ty;
             double Q = fVec.Q;
             double dPath = fVec.deltaPath;
-            Matrix cMat = new Matrix();
-            Matrix5x5.copy(fVec.CM, cMat);
             s = Math.signum(Zf - zInit) * stepSize;
 
             // LOGGER.log(Level.FINE, " from "+(float)Z[i]+" to "+(float)Z[f]+" at "+(float)z+" By is "+bf[1]+" B is "+Math.sqrt(bf[0]*bf[0]+bf[1]*bf[1]+bf[2]*bf[2])/Bmax+" stepSize is "+s);
@@ -103,7 +100,7 @@ public class StateVecs extends AStateVecs {
             }
 
             //rk.RK4transport(sector, Q, x, y, z, tx, ty, s, swimmer, cMat, fVec, dPath);
-            rk.RK4transport(sector, s, swimmer, cMat, fVec);
+            rk.RK4transport(sector, s, swimmer, cov, fVec);
 
             // Q  process noise matrix estimate            
             double p = Math.abs(1. / iVec.Q);
@@ -130,16 +127,10 @@ public class StateVecs extends AStateVecs {
             double cov_tyty = (1 + ty * ty) * (1 + tx * tx + ty * ty) * sctRMS * sctRMS;
             double cov_txty = tx * ty * (1 + tx * tx + ty * ty) * sctRMS * sctRMS;
 
-            fMS.set(
-                    0, 0, 0, 0, 0,
-                    0, 0, 0, 0, 0,
-                    0, 0, cov_txtx, cov_txty, 0,
-                    0, 0, cov_txty, cov_tyty, 0,
-                    0, 0, 0, 0, 0
-            );
-
-            Matrix5x5.copy(fVec.CM, copyMatrix);
-            Matrix5x5.add(copyMatrix, fMS, fVec.CM);
+            cov[12] += cov_txtx;
+            cov[13] += cov_txty;
+            cov[17] += cov_txty;
+            cov[18] += cov_tyty;
 
             if (Math.abs(fVec.B - BatMeas) < 0.0001) {
                 stepSize *= 2;
@@ -147,6 +138,7 @@ public class StateVecs extends AStateVecs {
 
             BatMeas = fVec.B;
         }
+        KFCovMatKernel.copy(cov, fVec.CM);
 
         return fVec.CM;
 
@@ -173,7 +165,7 @@ public class StateVecs extends AStateVecs {
         fVec.ty = iVec.ty;
         fVec.Q = iVec.Q;
         fVec.B = iVec.B;
-        Matrix5x5.copy(iVec.CM, fVec.CM);
+        KFCovMatKernel.copy(iVec.CM, cov);
 
         double s = 0;
         double zInit = mv.measurements.get(i).surface.measPoint.z();
@@ -194,8 +186,6 @@ public class StateVecs extends AStateVecs {
             double ty = fVec.ty;
             double Q = fVec.Q;
             double dPath = fVec.deltaPath;
-            Matrix cMat = new Matrix();
-            Matrix5x5.copy(fVec.CM, cMat);
             s = Math.signum(zFinal - zInit) * stepSize;
 
             // LOGGER.log(Level.FINE, " from "+(float)Z[i]+" to "+(float)Z[f]+" at "+(float)z+" By is "+bf[1]+" B is "+Math.sqrt(bf[0]*bf[0]+bf[1]*bf[1]+bf[2]*bf[2])/Bmax+" stepSize is "+s);
@@ -204,7 +194,7 @@ public class StateVecs extends AStateVecs {
             }
 
             //rk.RK4transport(sector, Q, x, y, z, tx, ty, s, swimmer, cMat, fVec, dPath);
-            rk.RK4transport(sector, s, swimmer, cMat, fVec);
+            rk.RK4transport(sector, s, swimmer, cov, fVec);
 
             // Q  process noise matrix estimate            
             double p = Math.abs(1. / iVec.Q);
@@ -231,16 +221,10 @@ public class StateVecs extends AStateVecs {
             double cov_tyty = (1 + ty * ty) * (1 + tx * tx + ty * ty) * sctRMS * sctRMS;
             double cov_txty = tx * ty * (1 + tx * tx + ty * ty) * sctRMS * sctRMS;
 
-            fMS.set(
-                    0, 0, 0, 0, 0,
-                    0, 0, 0, 0, 0,
-                    0, 0, cov_txtx, cov_txty, 0,
-                    0, 0, cov_txty, cov_tyty, 0,
-                    0, 0, 0, 0, 0
-            );
-
-            Matrix5x5.copy(fVec.CM, copyMatrix);
-            Matrix5x5.add(copyMatrix, fMS, fVec.CM);
+            cov[12] += cov_txtx;
+            cov[13] += cov_txty;
+            cov[17] += cov_txty;
+            cov[18] += cov_tyty;
 
             if (Math.abs(fVec.B - BatMeas) < 0.0001) {
                 stepSize *= 2;
@@ -248,6 +232,7 @@ public class StateVecs extends AStateVecs {
 
             BatMeas = fVec.B;
         }
+        KFCovMatKernel.copy(cov, fVec.CM);
 
         if (forward) {
             this.trackTrajT.put(f, fVec);
@@ -4,6 +4,7 @@ import org.jlab.clas.pdg.PhysicsConstants;
 import org.jlab.jnp.matrix.*;
 import org.jlab.clas.swimtools.Swim;
 import org.jlab.clas.tracking.kalmanfilter.AStateVecs.StateVec;;
+import org.jlab.clas.tracking.kalmanfilter.KFCovMatKernel;
 
 /**
  * Swims a given state vector to a given Z position using Runge Kutta 4 transport.
@@ -15,7 +16,17 @@ public class RungeKuttaDoca {
     private final float[] _b = new float[3];
     final double v =  PhysicsConstants.speedOfLight() * 0.0001;
 
-    public RungeKuttaDoca() {}
+    // scratch states and covariance matrices, reused for every step
+    private final double[][] _s = new double[5][4];
+    private final double[] _sNull = new double[4];
+    private final RK4Vec[] _v = new RK4Vec[6];
+    private final RK4Vec _vNull = new RK4Vec();
+    private final double[] _cov = new double[KFCovMatKernel.SIZE];
+    private final double[] _covNext = new double[KFCovMatKernel.SIZE];
+
+    public RungeKuttaDoca() {
+        for (int i = 0; i < _v.length; i++) _v[i] = new RK4Vec();
+    }
 
     /** Swim to Z position without updating the covariance matrix. */
     public void SwimToZ(int sector, StateVec vec, Swim swim, double z0, float[] bf) {
@@ -45,14 +56,17 @@ public class RungeKuttaDoca {
     private void RK4transport(int sector, double h, Swim swim, StateVec vec) {
         // Set initial state.
         double qv = vec.Q*v;
-        double[] s0 = {vec.x, vec.y, vec.tx, vec.ty};
-        double[] sNull = {0, 0, 0, 0};
+        double[] s0 = _s[0], s1 = _s[1], s2 = _s[2], s3 = _s[3], s4 = _s[4];
+        s0[0] = vec.x;
+        s0[1] = vec.y;
+        s0[2] = vec.tx;
+        s0[3] = vec.ty;
         
         // Transport.
-        double[] s1 = RK4step(sector, vec.z, 0,     swim, s0, sNull, qv);
-        double[] s2 = RK4step(sector, vec.z, 0.5*h, swim, s0, s1,    qv);
-        double[] s3 = RK4step(sector, vec.z, 0.5*h, swim, s0, s2,    qv);
-        double[] s4 = RK4step(sector, vec.z, h,     swim, s0, s3,    qv);
+        RK4step(sector, vec.z, 0,     swim, s0, _sNull, qv, s1);
+        RK4step(sector, vec.z, 0.5*h, swim, s0, s1,     qv, s2);
+        RK4step(sector, vec.z, 0.5*h, swim, s0, s2,     qv, s3);
+        RK4step(sector, vec.z, h,     swim, s0, s3,     qv, s4);
 
         // Set final state.
         vec.z  += h;
@@ -66,33 +80,40 @@ public class RungeKuttaDoca {
     }
 
     /** Perform a single RK4 step without updating the covariance matrix. */
-    private double[] RK4step(int sector, double z0, double h, Swim swim, double[] sInit,
-                             double[] sPrev, double qv) {
+    private void RK4step(int sector, double z0, double h, Swim swim, double[] sInit,
+                         double[] sPrev, double qv, double[] sNext) {
         swim.Bfield(sector, sInit[0]+h*sPrev[0], sInit[1]+h*sPrev[1], z0+h, _b);
-        double[] sNext = {0,0,0,0};
         sNext[0] = sInit[2] + h*sPrev[2];
         sNext[1] = sInit[3] + h*sPrev[3];
         double C = C(sNext[0], sNext[1]);
         sNext[2] = qv * Ax(C, sNext[0], sNext[1]);
         sNext[3] = qv * Ay(C, sNext[0], sNext[1]);
-        return sNext;
     }
 
     /** Transport using Runge Kutta 4, updating the covariance matrix. */
     public void RK4transport(int sector, double h, Swim swim, Matrix cMat, StateVec vec) {
+        KFCovMatKernel.copy(cMat, _cov);
+        this.RK4transport(sector, h, swim, _cov, vec);
+        KFCovMatKernel.copy(_cov, vec.CM);
+    }
+
+    /**
+     * Transport using Runge Kutta 4, updating in place the covariance matrix
+     * given as a flat row-major array.  The state vector's CM is not used.
+     */
+    public void RK4transport(int sector, double h, Swim swim, double[] cov, StateVec vec) {
         // Set initial state and Jacobian.
         double qv = vec.Q*v;
-        RK4Vec s0 = new RK4Vec(vec);
-        RK4Vec sNull = new RK4Vec();
+        RK4Vec s0 = _v[0].set(vec);
 
         // Perform steps.
-        RK4Vec s1 = RK4step(sector, vec.z, 0,     swim, s0, sNull, qv);
-        RK4Vec s2 = RK4step(sector, vec.z, 0.5*h, swim, s0, s1,    qv);
-        RK4Vec s3 = RK4step(sector, vec.z, 0.5*h, swim, s0, s2,    qv);
-        RK4Vec s4 = RK4step(sector, vec.z, h,     swim, s0, s3,    qv);
+        RK4Vec s1 = RK4step(sector, vec.z, 0,     swim, s0, _vNull, qv, _v[1]);
+        RK4Vec s2 = RK4step(sector, vec.z, 0.5*h, swim, s0, s1,     qv, _v[2]);
+        RK4Vec s3 = RK4step(sector, vec.z, 0.5*h, swim, s0, s2,     qv, _v[3]);
+        RK4Vec s4 = RK4step(sector, vec.z, h,     swim, s0, s3,     qv, _v[4]);
 
         // Compute and set final state and covariance matrix.
-        RK4Vec sF = computeFinalState(h, s0, s1, s2, s3, s4);
+        RK4Vec sF = computeFinalState(h, s0, s1, s2, s3, s4, _v[5]);
 
         vec.x   = sF.x;
         vec.y   = sF.y;
@@ -101,13 +122,13 @@ public class RungeKuttaDoca {
         vec.z  += h;
         vec.B   = Math.sqrt(_b[0]*_b[0]+_b[1]*_b[1]+_b[2]*_b[2]);
         vec.deltaPath += Math.sqrt((s0.x-vec.x)*(s0.x-vec.x) + (s0.y-vec.y)*(s0.y-vec.y) + h*h);
-        vec.CM.set(computeCovMat(cMat, sF));
+        computeCovMat(cov, sF, _covNext);
+        System.arraycopy(_covNext, 0, cov, 0, KFCovMatKernel.SIZE);
     }
 
     /** Perform one RK4 step, updating the covariance matrix. */
     private RK4Vec RK4step(int sector, double z0, double h, Swim swim,
-                               RK4Vec sInit, RK4Vec sPrev, double qv) {
-        RK4Vec sNext = new RK4Vec();
+                               RK4Vec sInit, RK4Vec sPrev, double qv, RK4Vec sNext) {
         swim.Bfield(sector, sInit.x + h*sPrev.x, sInit.y + h*sPrev.y, z0 + h, _b);
 
         // State.
@@ -147,8 +168,7 @@ public class RungeKuttaDoca {
 
     /** Compute the final state for each entry in the internal state matrix. */
     private RK4Vec computeFinalState(double h, RK4Vec s0, RK4Vec s1, RK4Vec s2, RK4Vec s3,
-            RK4Vec s4) {
-        RK4Vec sF = new RK4Vec();
+            RK4Vec s4, RK4Vec sF) {
 
         sF.x      = s0.x  + this.RK4(s1.x,      s2.x,      s3.x,      s4.x,      h);
         sF.dxdtx0 =         this.RK4(s1.dxdtx0, s2.dxdtx0, s3.dxdtx0, s4.dxdtx0, h);
@@ -174,99 +194,96 @@ public class RungeKuttaDoca {
     }
 
     /** Compute the final covariance matrix. covMat = FCF^T. */
-    private double[][] computeCovMat(Matrix C, RK4Vec sF) {
-        double[][] cNext = new double[5][5];
-        cNext[0][0] = C.get(0,0)+C.get(2,0)*sF.dxdtx0+C.get(3,0)*sF.dxdty0+C.get(4,0)*sF.dxdq0
-                    + sF.dxdq0 *(C.get(0,4)+C.get(2,4)*sF.dxdtx0+C.get(3,4)*sF.dxdty0+C.get(4,4)*sF.dxdq0)
-                    + sF.dxdtx0*(C.get(0,2)+C.get(2,2)*sF.dxdtx0+C.get(3,2)*sF.dxdty0+C.get(4,2)*sF.dxdq0)
-                    + sF.dxdty0*(C.get(0,3)+C.get(2,3)*sF.dxdtx0+C.get(3,3)*sF.dxdty0+C.get(4,3)*sF.dxdq0);
+    private void computeCovMat(double[] C, RK4Vec sF, double[] cNext) {
+        cNext[0] = C[0]+C[10]*sF.dxdtx0+C[15]*sF.dxdty0+C[20]*sF.dxdq0
+                    + sF.dxdq0 *(C[4]+C[14]*sF.dxdtx0+C[19]*sF.dxdty0+C[24]*sF.dxdq0)
+                    + sF.dxdtx0*(C[2]+C[12]*sF.dxdtx0+C[17]*sF.dxdty0+C[22]*sF.dxdq0)
+                    + sF.dxdty0*(C[3]+C[13]*sF.dxdtx0+C[18]*sF.dxdty0+C[23]*sF.dxdq0);
 
-        cNext[0][1] = C.get(0,1)+C.get(2,1)*sF.dxdtx0+C.get(3,1)*sF.dxdty0+C.get(4,1)*sF.dxdq0
-                    + sF.dydq0 *(C.get(0,4)+C.get(2,4)*sF.dxdtx0+C.get(3,4)*sF.dxdty0+C.get(4,4)*sF.dxdq0)
-                    + sF.dydtx0*(C.get(0,2)+C.get(2,2)*sF.dxdtx0+C.get(3,2)*sF.dxdty0+C.get(4,2)*sF.dxdq0)
-                    + sF.dydty0*(C.get(0,3)+C.get(2,3)*sF.dxdtx0+C.get(3,3)*sF.dxdty0+C.get(4,3)*sF.dxdq0);
+        cNext[1] = C[1]+C[11]*sF.dxdtx0+C[16]*sF.dxdty0+C[21]*sF.dxdq0
+                    + sF.dydq0 *(C[4]+C[14]*sF.dxdtx0+C[19]*sF.dxdty0+C[24]*sF.dxdq0)
+                    + sF.dydtx0*(C[2]+C[12]*sF.dxdtx0+C[17]*sF.dxdty0+C[22]*sF.dxdq0)
+                    + sF.dydty0*(C[3]+C[13]*sF.dxdtx0+C[18]*sF.dxdty0+C[23]*sF.dxdq0);
 
-        cNext[0][2] = sF.dtxdq0 *(C.get(0,4)+C.get(2,4)*sF.dxdtx0+C.get(3,4)*sF.dxdty0+C.get(4,4)*sF.dxdq0)
-                    + sF.dtxdtx0*(C.get(0,2)+C.get(2,2)*sF.dxdtx0+C.get(3,2)*sF.dxdty0+C.get(4,2)*sF.dxdq0)
-                    + sF.dtxdty0*(C.get(0,3)+C.get(2,3)*sF.dxdtx0+C.get(3,3)*sF.dxdty0+C.get(4,3)*sF.dxdq0);
+        cNext[2] = sF.dtxdq0 *(C[4]+C[14]*sF.dxdtx0+C[19]*sF.dxdty0+C[24]*sF.dxdq0)
+                    + sF.dtxdtx0*(C[2]+C[12]*sF.dxdtx0+C[17]*sF.dxdty0+C[22]*sF.dxdq0)
+                    + sF.dtxdty0*(C[3]+C[13]*sF.dxdtx0+C[18]*sF.dxdty0+C[23]*sF.dxdq0);
 
-        cNext[0][3] = sF.dtydq0 *(C.get(0,4)+C.get(2,4)*sF.dxdtx0+C.get(3,4)*sF.dxdty0+C.get(4,4)*sF.dxdq0)
-                    + sF.dtydtx0*(C.get(0,2)+C.get(2,2)*sF.dxdtx0+C.get(3,2)*sF.dxdty0+C.get(4,2)*sF.dxdq0)
-                    + sF.dtydty0*(C.get(0,3)+C.get(2,3)*sF.dxdtx0+C.get(3,3)*sF.dxdty0+C.get(4,3)*sF.dxdq0);
+        cNext[3] = sF.dtydq0 *(C[4]+C[14]*sF.dxdtx0+C[19]*sF.dxdty0+C[24]*sF.dxdq0)
+                    + sF.dtydtx0*(C[2]+C[12]*sF.dxdtx0+C[17]*sF.dxdty0+C[22]*sF.dxdq0)
+                    + sF.dtydty0*(C[3]+C[13]*sF.dxdtx0+C[18]*sF.dxdty0+C[23]*sF.dxdq0);
 
-        cNext[0][4] = C.get(0,4)+C.get(2,4)*sF.dxdtx0+C.get(3,4)*sF.dxdty0+C.get(4,4)*sF.dxdq0;
+        cNext[4] = C[4]+C[14]*sF.dxdtx0+C[19]*sF.dxdty0+C[24]*sF.dxdq0;
 
-        cNext[1][0] = C.get(1,0)+C.get(2,0)*sF.dydtx0+C.get(3,0)*sF.dydty0+C.get(4,0)*sF.dydq0
-                    + sF.dxdq0 *(C.get(1,4)+C.get(2,4)*sF.dydtx0+C.get(3,4)*sF.dydty0+C.get(4,4)*sF.dydq0)
-                    + sF.dxdtx0*(C.get(1,2)+C.get(2,2)*sF.dydtx0+C.get(3,2)*sF.dydty0+C.get(4,2)*sF.dydq0)
-                    + sF.dxdty0*(C.get(1,3)+C.get(2,3)*sF.dydtx0+C.get(3,3)*sF.dydty0+C.get(4,3)*sF.dydq0);
+        cNext[5] = C[5]+C[10]*sF.dydtx0+C[15]*sF.dydty0+C[20]*sF.dydq0
+                    + sF.dxdq0 *(C[9]+C[14]*sF.dydtx0+C[19]*sF.dydty0+C[24]*sF.dydq0)
+                    + sF.dxdtx0*(C[7]+C[12]*sF.dydtx0+C[17]*sF.dydty0+C[22]*sF.dydq0)
+                    + sF.dxdty0*(C[8]+C[13]*sF.dydtx0+C[18]*sF.dydty0+C[23]*sF.dydq0);
 
-        cNext[1][1] = C.get(1,1)+C.get(2,1)*sF.dydtx0+C.get(3,1)*sF.dydty0+C.get(4,1)*sF.dydq0
-                    + sF.dydq0 *(C.get(1,4)+C.get(2,4)*sF.dydtx0+C.get(3,4)*sF.dydty0+C.get(4,4)*sF.dydq0)
-                    + sF.dydtx0*(C.get(1,2)+C.get(2,2)*sF.dydtx0+C.get(3,2)*sF.dydty0+C.get(4,2)*sF.dydq0)
-                    + sF.dydty0*(C.get(1,3)+C.get(2,3)*sF.dydtx0+C.get(3,3)*sF.dydty0+C.get(4,3)*sF.dydq0);
+        cNext[6] = C[6]+C[11]*sF.dydtx0+C[16]*sF.dydty0+C[21]*sF.dydq0
+                    + sF.dydq0 *(C[9]+C[14]*sF.dydtx0+C[19]*sF.dydty0+C[24]*sF.dydq0)
+                    + sF.dydtx0*(C[7]+C[12]*sF.dydtx0+C[17]*sF.dydty0+C[22]*sF.dydq0)
+                    + sF.dydty0*(C[8]+C[13]*sF.dydtx0+C[18]*sF.dydty0+C[23]*sF.dydq0);
 
-        cNext[1][2] = sF.dtxdq0 *(C.get(1,4)+C.get(2,4)*sF.dydtx0+C.get(3,4)*sF.dydty0+C.get(4,4)*sF.dydq0)
-                    + sF.dtxdtx0*(C.get(1,2)+C.get(2,2)*sF.dydtx0+C.get(3,2)*sF.dydty0+C.get(4,2)*sF.dydq0)
-                    + sF.dtxdty0*(C.get(1,3)+C.get(2,3)*sF.dydtx0+C.get(3,3)*sF.dydty0+C.get(4,3)*sF.dydq0);
+        cNext[7] = sF.dtxdq0 *(C[9]+C[14]*sF.dydtx0+C[19]*sF.dydty0+C[24]*sF.dydq0)
+                    + sF.dtxdtx0*(C[7]+C[12]*sF.dydtx0+C[17]*sF.dydty0+C[22]*sF.dydq0)
+                    + sF.dtxdty0*(C[8]+C[13]*sF.dydtx0+C[18]*sF.dydty0+C[23]*sF.dydq0);
 
-        cNext[1][3] = sF.dtydq0 *(C.get(1,4)+C.get(2,4)*sF.dydtx0+C.get(3,4)*sF.dydty0+C.get(4,4)*sF.dydq0)
-                    + sF.dtydtx0*(C.get(1,2)+C.get(2,2)*sF.dydtx0+C.get(3,2)*sF.dydty0+C.get(4,2)*sF.dydq0)
-                    + sF.dtydty0*(C.get(1,3)+C.get(2,3)*sF.dydtx0+C.get(3,3)*sF.dydty0+C.get(4,3)*sF.dydq0);
+        cNext[8] = sF.dtydq0 *(C[9]+C[14]*sF.dydtx0+C[19]*sF.dydty0+C[24]*sF.dydq0)
+                    + sF.dtydtx0*(C[7]+C[12]*sF.dydtx0+C[17]*sF.dydty0+C[22]*sF.dydq0)
+                    + sF.dtydty0*(C[8]+C[13]*sF.dydtx0+C[18]*sF.dydty0+C[23]*sF.dydq0);
 
-        cNext[1][4] = C.get(1,4)+C.get(2,4)*sF.dydtx0+C.get(3,4)*sF.dydty0+C.get(4,4)*sF.dydq0;
+        cNext[9] = C[9]+C[14]*sF.dydtx0+C[19]*sF.dydty0+C[24]*sF.dydq0;
 
-        cNext[2][0] = C.get(2,0)*sF.dtxdtx0+C.get(3,0)*sF.dtxdty0+C.get(4,0)*sF.dtxdq0
-                    + sF.dxdq0 *(C.get(2,4)*sF.dtxdtx0+C.get(3,4)*sF.dtxdty0+C.get(4,4)*sF.dtxdq0)
-                    + sF.dxdtx0*(C.get(2,2)*sF.dtxdtx0+C.get(3,2)*sF.dtxdty0+C.get(4,2)*sF.dtxdq0)
-                    + sF.dxdty0*(C.get(2,3)*sF.dtxdtx0+C.get(3,3)*sF.dtxdty0+C.get(4,3)*sF.dtxdq0);
+        cNext[10] = C[10]*sF.dtxdtx0+C[15]*sF.dtxdty0+C[20]*sF.dtxdq0
+                    + sF.dxdq0 *(C[14]*sF.dtxdtx0+C[19]*sF.dtxdty0+C[24]*sF.dtxdq0)
+                    + sF.dxdtx0*(C[12]*sF.dtxdtx0+C[17]*sF.dtxdty0+C[22]*sF.dtxdq0)
+                    + sF.dxdty0*(C[13]*sF.dtxdtx0+C[18]*sF.dtxdty0+C[23]*sF.dtxdq0);
 
-        cNext[2][1] = C.get(2,1)*sF.dtxdtx0+C.get(3,1)*sF.dtxdty0+C.get(4,1)*sF.dtxdq0
-                    + sF.dydq0 *(C.get(2,4)*sF.dtxdtx0+C.get(3,4)*sF.dtxdty0+C.get(4,4)*sF.dtxdq0)
-                    + sF.dydtx0*(C.get(2,2)*sF.dtxdtx0+C.get(3,2)*sF.dtxdty0+C.get(4,2)*sF.dtxdq0)
-                    + sF.dydty0*(C.get(2,3)*sF.dtxdtx0+C.get(3,3)*sF.dtxdty0+C.get(4,3)*sF.dtxdq0);
+        cNext[11] = C[11]*sF.dtxdtx0+C[16]*sF.dtxdty0+C[21]*sF.dtxdq0
+                    + sF.dydq0 *(C[14]*sF.dtxdtx0+C[19]*sF.dtxdty0+C[24]*sF.dtxdq0)
+                    + sF.dydtx0*(C[12]*sF.dtxdtx0+C[17]*sF.dtxdty0+C[22]*sF.dtxdq0)
+                    + sF.dydty0*(C[13]*sF.dtxdtx0+C[18]*sF.dtxdty0+C[23]*sF.dtxdq0);
 
-        cNext[2][2] = sF.dtxdq0 *(C.get(2,4)*sF.dtxdtx0+C.get(3,4)*sF.dtxdty0+C.get(4,4)*sF.dtxdq0)
-                    + sF.dtxdtx0*(C.get(2,2)*sF.dtxdtx0+C.get(3,2)*sF.dtxdty0+C.get(4,2)*sF.dtxdq0)
-                    + sF.dtxdty0*(C.get(2,3)*sF.dtxdtx0+C.get(3,3)*sF.dtxdty0+C.get(4,3)*sF.dtxdq0);
+        cNext[12] = sF.dtxdq0 *(C[14]*sF.dtxdtx0+C[19]*sF.dtxdty0+C[24]*sF.dtxdq0)
+                    + sF.dtxdtx0*(C[12]*sF.dtxdtx0+C[17]*sF.dtxdty0+C[22]*sF.dtxdq0)
+                    + sF.dtxdty0*(C[13]*sF.dtxdtx0+C[18]*sF.dtxdty0+C[23]*sF.dtxdq0);
 
-        cNext[2][3] = sF.dtydq0 *(C.get(2,4)*sF.dtxdtx0+C.get(3,4)*sF.dtxdty0+C.get(4,4)*sF.dtxdq0)
-                    + sF.dtydtx0*(C.get(2,2)*sF.dtxdtx0+C.get(3,2)*sF.dtxdty0+C.get(4,2)*sF.dtxdq0)
-                    + sF.dtydty0*(C.get(2,3)*sF.dtxdtx0+C.get(3,3)*sF.dtxdty0+C.get(4,3)*sF.dtxdq0);
+        cNext[13] = sF.dtydq0 *(C[14]*sF.dtxdtx0+C[19]*sF.dtxdty0+C[24]*sF.dtxdq0)
+                    + sF.dtydtx0*(C[12]*sF.dtxdtx0+C[17]*sF.dtxdty0+C[22]*sF.dtxdq0)
+                    + sF.dtydty0*(C[13]*sF.dtxdtx0+C[18]*sF.dtxdty0+C[23]*sF.dtxdq0);
 
-        cNext[2][4] = C.get(2,4)*sF.dtxdtx0+C.get(3,4)*sF.dtxdty0+C.get(4,4)*sF.dtxdq0;
+        cNext[14] = C[14]*sF.dtxdtx0+C[19]*sF.dtxdty0+C[24]*sF.dtxdq0;
 
-        cNext[3][0] = C.get(2,0)*sF.dtydtx0+C.get(3,0)*sF.dtydty0+C.get(4,0)*sF.dtydq0
-                    + sF.dxdq0 *(C.get(2,4)*sF.dtydtx0+C.get(3,4)*sF.dtydty0+C.get(4,4)*sF.dtydq0)
-                    + sF.dxdtx0*(C.get(2,2)*sF.dtydtx0+C.get(3,2)*sF.dtydty0+C.get(4,2)*sF.dtydq0)
-                    + sF.dxdty0*(C.get(2,3)*sF.dtydtx0+C.get(3,3)*sF.dtydty0+C.get(4,3)*sF.dtydq0);
+        cNext[15] = C[10]*sF.dtydtx0+C[15]*sF.dtydty0+C[20]*sF.dtydq0
+                    + sF.dxdq0 *(C[14]*sF.dtydtx0+C[19]*sF.dtydty0+C[24]*sF.dtydq0)
+                    + sF.dxdtx0*(C[12]*sF.dtydtx0+C[17]*sF.dtydty0+C[22]*sF.dtydq0)
+                    + sF.dxdty0*(C[13]*sF.dtydtx0+C[18]*sF.dtydty0+C[23]*sF.dtydq0);
 
-        cNext[3][1] = C.get(2,1)*sF.dtydtx0+C.get(3,1)*sF.dtydty0+C.get(4,1)*sF.dtydq0
-                    + sF.dydq0 *(C.get(2,4)*sF.dtydtx0+C.get(3,4)*sF.dtydty0+C.get(4,4)*sF.dtydq0)
-                    + sF.dydtx0*(C.get(2,2)*sF.dtydtx0+C.get(3,2)*sF.dtydty0+C.get(4,2)*sF.dtydq0)
-                    + sF.dydty0*(C.get(2,3)*sF.dtydtx0+C.get(3,3)*sF.dtydty0+C.get(4,3)*sF.dtydq0);
+        cNext[16] = C[11]*sF.dtydtx0+C[16]*sF.dtydty0+C[21]*sF.dtydq0
+                    + sF.dydq0 *(C[14]*sF.dtydtx0+C[19]*sF.dtydty0+C[24]*sF.dtydq0)
+                    + sF.dydtx0*(C[12]*sF.dtydtx0+C[17]*sF.dtydty0+C[22]*sF.dtydq0)
+                    + sF.dydty0*(C[13]*sF.dtydtx0+C[18]*sF.dtydty0+C[23]*sF.dtydq0);
 
-        cNext[3][2] = sF.dtxdq0 *(C.get(2,4)*sF.dtydtx0+C.get(3,4)*sF.dtydty0+C.get(4,4)*sF.dtydq0)
-                    + sF.dtxdtx0*(C.get(2,2)*sF.dtydtx0+C.get(3,2)*sF.dtydty0+C.get(4,2)*sF.dtydq0)
-                    + sF.dtxdty0*(C.get(2,3)*sF.dtydtx0+C.get(3,3)*sF.dtydty0+C.get(4,3)*sF.dtydq0);
+        cNext[17] = sF.dtxdq0 *(C[14]*sF.dtydtx0+C[19]*sF.dtydty0+C[24]*sF.dtydq0)
+                    + sF.dtxdtx0*(C[12]*sF.dtydtx0+C[17]*sF.dtydty0+C[22]*sF.dtydq0)
+                    + sF.dtxdty0*(C[13]*sF.dtydtx0+C[18]*sF.dtydty0+C[23]*sF.dtydq0);
 
-        cNext[3][3] = sF.dtydq0 *(C.get(2,4)*sF.dtydtx0+C.get(3,4)*sF.dtydty0+C.get(4,4)*sF.dtydq0)
-                    + sF.dtydtx0*(C.get(2,2)*sF.dtydtx0+C.get(3,2)*sF.dtydty0+C.get(4,2)*sF.dtydq0)
-                    + sF.dtydty0*(C.get(2,3)*sF.dtydtx0+C.get(3,3)*sF.dtydty0+C.get(4,3)*sF.dtydq0);
+        cNext[18] = sF.dtydq0 *(C[14]*sF.dtydtx0+C[19]*sF.dtydty0+C[24]*sF.dtydq0)
+                    + sF.dtydtx0*(C[12]*sF.dtydtx0+C[17]*sF.dtydty0+C[22]*sF.dtydq0)
+                    + sF.dtydty0*(C[13]*sF.dtydtx0+C[18]*sF.dtydty0+C[23]*sF.dtydq0);
 
-        cNext[3][4] = C.get(2,4)*sF.dtydtx0+C.get(3,4)*sF.dtydty0+C.get(4,4)*sF.dtydq0;
+        cNext[19] = C[14]*sF.dtydtx0+C[19]*sF.dtydty0+C[24]*sF.dtydq0;
 
-        cNext[4][0] = C.get(4,0)+C.get(4,2)*sF.dxdtx0+C.get(4,3)*sF.dxdty0+C.get(4,4)*sF.dxdq0;
+        cNext[20] = C[20]+C[22]*sF.dxdtx0+C[23]*sF.dxdty0+C[24]*sF.dxdq0;
 
-        cNext[4][1] = C.get(4,1)+C.get(4,2)*sF.dydtx0+C.get(4,3)*sF.dydty0+C.get(4,4)*sF.dydq0;
+        cNext[21] = C[21]+C[22]*sF.dydtx0+C[23]*sF.dydty0+C[24]*sF.dydq0;
 
-        cNext[4][2] = C.get(4,2)*sF.dtxdtx0+C.get(4,3)*sF.dtxdty0+C.get(4,4)*sF.dtxdq0;
+        cNext[22] = C[22]*sF.dtxdtx0+C[23]*sF.dtxdty0+C[24]*sF.dtxdq0;
 
-        cNext[4][3] = C.get(4,2)*sF.dtydtx0+C.get(4,3)*sF.dtydty0+C.get(4,4)*sF.dtydq0;
+        cNext[23] = C[22]*sF.dtydtx0+C[23]*sF.dtydty0+C[24]*sF.dtydq0;
 
-        cNext[4][4] = C.get(4,4);
-
-        return cNext;
+        cNext[24] = C[24];
     }
 
     /** Get the final RK4 estimate. */
@@ -351,15 +368,26 @@ public class RungeKuttaDoca {
         public double dtydty0 = 0;
         public double dtydq0  = 0;
 
-        RK4Vec() {}
-        RK4Vec(StateVec vec) {
+        RK4Vec set(StateVec vec) {
             this.x  = vec.x;
             this.y  = vec.y;
             this.tx = vec.tx;
             this.ty = vec.ty;
 
+            this.dxdtx0 = 0;
+            this.dxdty0 = 0;
+            this.dxdq0  = 0;
+            this.dydtx0 = 0;
+            this.dydty0 = 0;
+            this.dydq0  = 0;
+
             this.dtxdtx0 = 1;
+            this.dtxdty0 = 0;
+            this.dtxdq0  = 0;
+            this.dtydtx0 = 0;
             this.dtydty0 = 1;
+            this.dtydq0  = 0;
+            return this;
         }
     }
 }
@@ -0,0 +1,143 @@
+package org.jlab.clas.tracking.kalmanfilter;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.jlab.jnp.matrix.Matrix;
+import org.jlab.jnp.matrix.Matrix5x5;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Benchmark of the covariance matrix kernel against the Matrix5x5 and
+ * double[][] operations it replaces in the Kalman fitters: the update with
+ * a DOCA measurement, in information form with two inversions as done
+ * by the zReference fitters before, and the propagation F*C*F^T+Q.
+ *
+ * Not run by the tests, run it after mvn test-compile with:
+ * java -cp target/test-classes:target/classes:(test classpath) org.jlab.clas.tracking.kalmanfilter.KFCovMatKernelBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KFCovMatKernelBenchmark {
+
+    private static final int N = KFCovMatKernel.N;
+
+    private final KFCovMatKernel kernel = new KFCovMatKernel();
+
+    private final double[] H = new double[N];
+    private double V;
+    private final double[][] covArray = new double[N][N];
+    private final double[][] fArray = new double[N][N];
+    private final double[][] qArray = new double[N][N];
+
+    // Matrix5x5 buffers, as in the fitters
+    private final Matrix cov = new Matrix();
+    private final Matrix first_inverse = new Matrix();
+    private final Matrix addition = new Matrix();
+    private final Matrix result = new Matrix();
+    private final Matrix result_inv = new Matrix();
+    private final Matrix adj = new Matrix();
+
+    // kernel buffers
+    private final double[] c = new double[KFCovMatKernel.SIZE];
+    private final double[] f = new double[KFCovMatKernel.SIZE];
+    private final double[] q = new double[KFCovMatKernel.SIZE];
+    private final double[] out = new double[KFCovMatKernel.SIZE];
+    private final double[] K = new double[N];
+
+    @Setup
+    public void setup() {
+        Random rand = new Random(1);
+        double[][] a = new double[N][N];
+        for (int i = 0; i < N; i++) {
+            for (int j = 0; j < N; j++) {
+                a[i][j] = rand.nextGaussian();
+                fArray[i][j] = (i == j ? 1 : 0) + 0.1*rand.nextGaussian();
+            }
+        }
+        for (int i = 0; i < N; i++) {
+            for (int j = 0; j < N; j++) {
+                for (int k = 0; k < N; k++) covArray[i][j] += a[i][k]*a[j][k];
+                qArray[i][j] = i == j ? 1e-4 : 0;
+            }
+            covArray[i][i] += 0.1;
+        }
+        H[0] = rand.nextGaussian();
+        H[1] = rand.nextGaussian();
+        V = 0.01;
+        cov.set(covArray);
+        KFCovMatKernel.copy(covArray, c);
+        KFCovMatKernel.copy(fArray, f);
+        KFCovMatKernel.copy(qArray, q);
+    }
+
+    @Benchmark
+    public Matrix filterMatrix5x5() {
+        double det = Matrix5x5.inverse(cov, first_inverse, adj);
+        if (Math.abs(det) < 1.e-60) {
+            return null;
+        }
+        addition.set(
+                H[0] * H[0] / V, H[0] * H[1] / V, 0, 0, 0,
+                H[0] * H[1] / V, H[1] * H[1] / V, 0, 0, 0,
+                0, 0, 0, 0, 0,
+                0, 0, 0, 0, 0,
+                0, 0, 0, 0, 0);
+        Matrix5x5.add(first_inverse, addition, result);
+        double det2 = Matrix5x5.inverse(result, result_inv, adj);
+        if (Math.abs(det2) < 1.e-60) {
+            return null;
+        }
+        return result_inv;
+    }
+
+    @Benchmark
+    public double filterKernel() {
+        return kernel.update(c, H, V, out, K, 1.e-60);
+    }
+
+    @Benchmark
+    public double[][] propagateArrays() {
+        double[][] fc = new double[N][N];
+        double[][] fcf = new double[N][N];
+        for (int i = 0; i < N; i++) {
+            for (int j = 0; j < N; j++) {
+                for (int k = 0; k < N; k++) fc[i][j] += fArray[i][k]*covArray[k][j];
+            }
+        }
+        for (int i = 0; i < N; i++) {
+            for (int j = 0; j < N; j++) {
+                for (int k = 0; k < N; k++) fcf[i][j] += fc[i][k]*fArray[j][k];
+                fcf[i][j] += qArray[i][j];
+            }
+        }
+        return fcf;
+    }
+
+    @Benchmark
+    public double[] propagateKernel() {
+        kernel.propagate(f, c, q, out);
+        return out;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(KFCovMatKernelBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
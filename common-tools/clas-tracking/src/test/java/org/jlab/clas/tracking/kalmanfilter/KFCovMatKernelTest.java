@@ -0,0 +1,235 @@
+package org.jlab.clas.tracking.kalmanfilter;
+
+import java.util.Random;
+import org.jlab.jnp.matrix.Matrix;
+import org.jlab.jnp.matrix.Matrix5x5;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class KFCovMatKernelTest {
+
+    private static final int N = KFCovMatKernel.N;
+
+    /**
+     * @return a random symmetric positive definite matrix, scaled by scale
+     */
+    private static double[][] getCovMat(Random rand, double scale) {
+        double[][] a = new double[N][N];
+        for (int i = 0; i < N; i++) {
+            for (int j = 0; j < N; j++) a[i][j] = rand.nextGaussian();
+        }
+        double[][] c = new double[N][N];
+        for (int i = 0; i < N; i++) {
+            for (int j = 0; j < N; j++) {
+                for (int k = 0; k < N; k++) c[i][j] += a[i][k]*a[j][k];
+                c[i][j] *= scale;
+            }
+            c[i][i] += 0.1*scale;
+        }
+        return c;
+    }
+
+    private static double[][] getMatrix(Random rand) {
+        double[][] m = new double[N][N];
+        for (int i = 0; i < N; i++) {
+            for (int j = 0; j < N; j++) m[i][j] = (i == j ? 1 : 0) + 0.1*rand.nextGaussian();
+        }
+        return m;
+    }
+
+    private static double[][] multiply(double[][] a, double[][] b) {
+        double[][] c = new double[N][N];
+        for (int i = 0; i < N; i++) {
+            for (int j = 0; j < N; j++) {
+                for (int k = 0; k < N; k++) c[i][j] += a[i][k]*b[k][j];
+            }
+        }
+        return c;
+    }
+
+    private static double[][] transpose(double[][] a) {
+        double[][] t = new double[N][N];
+        for (int i = 0; i < N; i++) {
+            for (int j = 0; j < N; j++) t[i][j] = a[j][i];
+        }
+        return t;
+    }
+
+    private static double[] flat(double[][] a) {
+        double[] f = new double[KFCovMatKernel.SIZE];
+        KFCovMatKernel.copy(a, f);
+        return f;
+    }
+
+    private static void assertMatrixEquals(double[][] expected, double[] actual) {
+        double norm = 0;
+        for (int i = 0; i < N; i++) {
+            for (int j = 0; j < N; j++) norm = Math.max(norm, Math.abs(expected[i][j]));
+        }
+        for (int i = 0; i < N; i++) {
+            for (int j = 0; j < N; j++) assertEquals(expected[i][j], actual[N*i+j], 1e-9*norm);
+        }
+    }
+
+    /**
+     * The covariance matrix update in information form, with the
+     * singularity cuts of the zReference fitters.
+     * @return the updated covariance matrix, or null if rejected
+     */
+    private static double[][] filterCovMat(double[] H, double[][] C, double V) {
+        Matrix ci = new Matrix();
+        Matrix first_inverse = new Matrix();
+        Matrix addition = new Matrix();
+        Matrix result = new Matrix();
+        Matrix result_inv = new Matrix();
+        Matrix adj = new Matrix();
+        ci.set(C);
+        double det = Matrix5x5.inverse(ci, first_inverse, adj);
+        if (Math.abs(det) < 1.e-60) {
+            return null;
+        }
+        double[][] a = new double[N][N];
+        for (int i = 0; i < N; i++) {
+            for (int j = 0; j < N; j++) a[i][j] = H[i]*H[j]/V;
+        }
+        addition.set(a);
+        Matrix5x5.add(first_inverse, addition, result);
+        double det2 = Matrix5x5.inverse(result, result_inv, adj);
+        if (Math.abs(det2) < 1.e-60) {
+            return null;
+        }
+        double[][] out = new double[N][N];
+        for (int i = 0; i < N; i++) {
+            for (int j = 0; j < N; j++) out[i][j] = result_inv.get(i, j);
+        }
+        return out;
+    }
+
+    @Test
+    public void testPropagate() {
+        Random rand = new Random(1);
+        KFCovMatKernel kernel = new KFCovMatKernel();
+        for (int n = 0; n < 1000; n++) {
+            double[][] F = getMatrix(rand);
+            double[][] C = getCovMat(rand, 1);
+            double[][] Q = getCovMat(rand, 0.01);
+            double[][] expected = multiply(multiply(F, C), transpose(F));
+
+            double[] out = new double[KFCovMatKernel.SIZE];
+            kernel.propagate(flat(F), flat(C), null, out);
+            assertMatrixEquals(expected, out);
+
+            for (int i = 0; i < N; i++) {
+                for (int j = 0; j < N; j++) expected[i][j] += Q[i][j];
+            }
+            double[] c = flat(C);
+            kernel.propagate(flat(F), c, flat(Q), c);
+            assertMatrixEquals(expected, c);
+        }
+    }
+
+    @Test
+    public void testInvert() {
+        Random rand = new Random(2);
+        KFCovMatKernel kernel = new KFCovMatKernel();
+        double[][] I = new double[N][N];
+        for (int i = 0; i < N; i++) I[i][i] = 1;
+        for (int n = 0; n < 1000; n++) {
+            double[][] C = getCovMat(rand, 1);
+            double[] c = flat(C);
+            assertTrue(kernel.invert(c, c));
+            assertMatrixEquals(I, flat(multiply(C, KFCovMatKernel.toArray(c))));
+        }
+        assertFalse(kernel.invert(new double[KFCovMatKernel.SIZE], new double[KFCovMatKernel.SIZE]));
+    }
+
+    @Test
+    public void testDeterminant() {
+        Random rand = new Random(3);
+        KFCovMatKernel kernel = new KFCovMatKernel();
+        for (int n = 0; n < 1000; n++) {
+            double[][] C = getMatrix(rand);
+            Matrix m = new Matrix();
+            m.set(C);
+            double det = Matrix5x5.inverse(m, new Matrix(), new Matrix());
+            assertEquals(det, kernel.determinant(flat(C)), 1e-12*Math.abs(det));
+        }
+        double[][] C = getCovMat(rand, 1);
+        for (int j = 0; j < N; j++) C[4][j] = C[0][j];
+        assertEquals(0, kernel.determinant(flat(C)), 1e-12);
+    }
+
+    private static double[] getProjector(Random rand, boolean doca) {
+        double[] H = new double[N];
+        for (int i = 0; i < N; i++) {
+            if (i < 2 || !doca) H[i] = rand.nextGaussian();
+        }
+        return H;
+    }
+
+    @Test
+    public void testUpdate() {
+        Random rand = new Random(4);
+        KFCovMatKernel kernel = new KFCovMatKernel();
+        for (int n = 0; n < 1000; n++) {
+            double[][] C = getCovMat(rand, 1);
+            double[] H = getProjector(rand, n%2 == 0);
+            double V = Math.pow(10, -2 + 2*rand.nextDouble());
+
+            double[][] expected = filterCovMat(H, C, V);
+            assertNotNull(expected);
+            double[] c = flat(C);
+            double[] K = new double[N];
+            double S = kernel.update(c, H, V, c, K, 1.e-60);
+            assertFalse(Double.isNaN(S));
+            assertMatrixEquals(expected, c);
+            // the gain as computed by the fitters from the updated matrix
+            for (int j = 0; j < N; j++) {
+                double k = 0;
+                for (int i = 0; i < N; i++) k += H[i]*expected[j][i]/V;
+                assertEquals(k, K[j], 1e-9);
+            }
+        }
+    }
+
+    @Test
+    public void testUpdateCuts() {
+        Random rand = new Random(5);
+        KFCovMatKernel kernel = new KFCovMatKernel();
+        int naccepted = 0;
+        int nrejected = 0;
+        for (int n = 0; n < 3000; n++) {
+            // scales giving determinants on both sides of the cuts on C and
+            // on the weight matrix; the variance follows the scale of C since
+            // the information form is dominated by rounding errors when
+            // H^T*H/V is more than ~1e8 times larger than C^-1
+            double scale = Math.pow(10, -16 + 32*rand.nextDouble());
+            double[][] C = getCovMat(rand, scale);
+            double[] H = getProjector(rand, n%2 == 0);
+            double V = scale*Math.pow(10, -6 + 8*rand.nextDouble());
+
+            // skip the cases too close to the cuts to be decided reliably
+            double det = kernel.determinant(flat(C));
+            double S = V;
+            for (int i = 0; i < N; i++) {
+                for (int j = 0; j < N; j++) S += H[i]*C[i][j]*H[j];
+            }
+            if (Math.abs(Math.log10(Math.abs(det)) + 60) < 1) continue;
+            if (Math.abs(Math.log10(Math.abs(S/(V*det))) + 60) < 1) continue;
+
+            boolean expected = filterCovMat(H, C, V) != null;
+            double[] c = flat(C);
+            double s = kernel.update(c, H, V, c, new double[N], 1.e-60);
+            assertEquals(expected, !Double.isNaN(s));
+            if (expected) {
+                naccepted++;
+            }
+            else {
+                assertArrayEquals(flat(C), c, 0);
+                nrejected++;
+            }
+        }
+        assertTrue(naccepted > 100);
+        assertTrue(nrejected > 100);
+    }
+}
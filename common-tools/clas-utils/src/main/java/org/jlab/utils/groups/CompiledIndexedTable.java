@@ -0,0 +1,206 @@
+package org.jlab.utils.groups;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable, flat-array copy of an {@link IndexedTable} for fast lookups.
+ *
+ * Rows are found by open addressing on the same packed key as
+ * {@link IndexedList.IndexGenerator}, and column values are stored in
+ * primitive arrays.  Resolve column names to handles once with
+ * {@link #getColumn(String)}, then lookups by handle and fixed-arity indices
+ * do not allocate:
+ * <pre>
+ *   CompiledIndexedTable t = table.compile();
+ *   int gain = t.getColumn("gain");
+ *   ...
+ *   double g = t.getDoubleValue(gain, sector, layer, component);
+ * </pre>
+ *
+ * Missing rows return 0, like IndexedTable.
+ */
+public final class CompiledIndexedTable {
+
+    private final int indexSize;
+    private final String[] columnNames;
+    private final long[] rowKeys;
+    private final double[][] doubles;
+    private final int[][] ints;
+
+    private final long[] slotKeys;
+    private final int[] slotRows;
+    private final int slotMask;
+    private final int slotShift;
+
+    CompiledIndexedTable(IndexedList<IndexedTable.IndexedEntry> entries, List<String> names, Map<String,String> types) {
+
+        this.indexSize = entries.getIndexSize();
+        this.columnNames = names.toArray(new String[0]);
+
+        final int nrows = entries.getMap().size();
+        final int ncols = this.columnNames.length;
+
+        this.rowKeys = new long[nrows];
+        this.doubles = new double[ncols][nrows];
+        this.ints = new int[ncols][];
+        for (int c = 0; c < ncols; c++) {
+            if (!"D".equals(types.get(this.columnNames[c]))) this.ints[c] = new int[nrows];
+        }
+
+        int bits = 2;
+        while ((1 << bits) < 2 * nrows) bits++;
+        this.slotKeys = new long[1 << bits];
+        this.slotRows = new int[1 << bits];
+        this.slotMask = (1 << bits) - 1;
+        this.slotShift = 64 - bits;
+        Arrays.fill(this.slotRows, -1);
+
+        int row = 0;
+        for (Map.Entry<Long,IndexedTable.IndexedEntry> entry : entries.getMap().entrySet()) {
+            final long key = entry.getKey();
+            this.rowKeys[row] = key;
+            for (int c = 0; c < ncols && c < entry.getValue().getSize(); c++) {
+                Number value = entry.getValue().getValue(c);
+                this.doubles[c][row] = value.doubleValue();
+                if (this.ints[c] != null) this.ints[c][row] = value.intValue();
+            }
+            int slot = this.slot(key);
+            while (this.slotRows[slot] >= 0) slot = (slot + 1) & this.slotMask;
+            this.slotKeys[slot] = key;
+            this.slotRows[slot] = row;
+            row++;
+        }
+    }
+
+    private int slot(long key) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> this.slotShift);
+    }
+
+    private static long pack(int index, int shift) {
+        return (((long) index) & 0xFFFFL) << shift;
+    }
+
+    /**
+     * @param key packed key from {@link IndexedList.IndexGenerator#hashCode}
+     * @return row number, or -1 if it does not exist
+     */
+    public int getRow(long key) {
+        int slot = this.slot(key);
+        while (true) {
+            final int row = this.slotRows[slot];
+            if (row < 0 || this.slotKeys[slot] == key) return row;
+            slot = (slot + 1) & this.slotMask;
+        }
+    }
+
+    public int getRow(int i0) {
+        return this.indexSize == 1 ? this.getRow(pack(i0, 48)) : -1;
+    }
+
+    public int getRow(int i0, int i1) {
+        return this.indexSize == 2 ? this.getRow(pack(i0, 48) | pack(i1, 32)) : -1;
+    }
+
+    public int getRow(int i0, int i1, int i2) {
+        return this.indexSize == 3 ? this.getRow(pack(i0, 48) | pack(i1, 32) | pack(i2, 16)) : -1;
+    }
+
+    public int getRow(int i0, int i1, int i2, int i3) {
+        return this.indexSize == 4 ? this.getRow(pack(i0, 48) | pack(i1, 32) | pack(i2, 16) | pack(i3, 0)) : -1;
+    }
+
+    public boolean hasEntry(int i0) {
+        return this.getRow(i0) >= 0;
+    }
+
+    public boolean hasEntry(int i0, int i1) {
+        return this.getRow(i0, i1) >= 0;
+    }
+
+    public boolean hasEntry(int i0, int i1, int i2) {
+        return this.getRow(i0, i1, i2) >= 0;
+    }
+
+    public boolean hasEntry(int i0, int i1, int i2, int i3) {
+        return this.getRow(i0, i1, i2, i3) >= 0;
+    }
+
+    /**
+     * @param name column name
+     * @return column handle, or -1 if there is no such column
+     */
+    public int getColumn(String name) {
+        for (int c = 0; c < this.columnNames.length; c++) {
+            if (this.columnNames[c].equals(name)) return c;
+        }
+        return -1;
+    }
+
+    public String getColumnName(int column) {
+        return this.columnNames[column];
+    }
+
+    public int getColumnCount() {
+        return this.columnNames.length;
+    }
+
+    public int getRowCount() {
+        return this.rowKeys.length;
+    }
+
+    public int getIndexSize() {
+        return this.indexSize;
+    }
+
+    /**
+     * @param row row number
+     * @param order which index, starting from 0
+     * @return the index value for the row
+     */
+    public int getIndex(int row, int order) {
+        return IndexedList.IndexGenerator.getIndex(this.rowKeys[row], order);
+    }
+
+    public double getDouble(int row, int column) {
+        return row < 0 ? 0 : this.doubles[column][row];
+    }
+
+    public int getInt(int row, int column) {
+        if (row < 0) return 0;
+        return this.ints[column] != null ? this.ints[column][row] : (int) this.doubles[column][row];
+    }
+
+    public double getDoubleValue(int column, int i0) {
+        return this.getDouble(this.getRow(i0), column);
+    }
+
+    public double getDoubleValue(int column, int i0, int i1) {
+        return this.getDouble(this.getRow(i0, i1), column);
+    }
+
+    public double getDoubleValue(int column, int i0, int i1, int i2) {
+        return this.getDouble(this.getRow(i0, i1, i2), column);
+    }
+
+    public double getDoubleValue(int column, int i0, int i1, int i2, int i3) {
+        return this.getDouble(this.getRow(i0, i1, i2, i3), column);
+    }
+
+    public int getIntValue(int column, int i0) {
+        return this.getInt(this.getRow(i0), column);
+    }
+
+    public int getIntValue(int column, int i0, int i1) {
+        return this.getInt(this.getRow(i0, i1), column);
+    }
+
+    public int getIntValue(int column, int i0, int i1, int i2) {
+        return this.getInt(this.getRow(i0, i1, i2), column);
+    }
+
+    public int getIntValue(int column, int i0, int i1, int i2, int i3) {
+        return this.getInt(this.getRow(i0, i1, i2, i3), column);
+    }
+}
@@ -1,23 +1,24 @@
 package org.jlab.utils.groups;
 
-import java.awt.Color;
-import java.awt.Component;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import javax.swing.JTable;
-import javax.swing.table.DefaultTableCellRenderer;
-import javax.swing.table.DefaultTableModel;
 
 /**
+ * Table of constants indexed by up to four integers, with named columns.
+ * 
+ * For frequent lookups, use {@link #compile()} to get an immutable copy with
+ * primitive storage and pre-resolved columns.  For display in a JTable, wrap
+ * it in an {@link IndexedTableModel}.
  *
  * @author gavalian
  */
-public class IndexedTable extends DefaultTableModel {
+public class IndexedTable {
     
     private IndexedList<IndexedEntry> entries    = null;
     private Map<String,Integer>       entryMap   = new LinkedHashMap<>();
@@ -27,6 +28,8 @@ public class IndexedTable extends DefaultTableModel {
     private String                    precisionFormat = "%.6f";
     
     private Map<Integer,List<RowConstraint>>  constrains = new HashMap<>(); 
+
+    private volatile CompiledIndexedTable compiled = null;
     
     private int DEBUG_MODE = 0;
     
@@ -73,9 +76,41 @@ public class IndexedTable extends DefaultTableModel {
     public final void setIndexName(int index, String name){
         indexNames.set(index, name);
     }
-    
+
+    public String getIndexName(int index){
+        return indexNames.get(index);
+    }
+
+    public List<String> getEntryNames(){
+        return Collections.unmodifiableList(entryNames);
+    }
+
+    /**
+     * @param item entry name
+     * @return the type of the entry, "D" for double and "I" for integer
+     */
+    public String getEntryType(String item){
+        return entryTypes.get(item);
+    }
+
     public  void addEntry(int... index){
         this.entries.add(new IndexedEntry(entryMap.size()), index);       
+        this.compiled = null;
+    }
+
+    /**
+     * Get an immutable copy of this table for fast, allocation-free lookups.
+     * The copy is cached until this table is modified through its setters;
+     * modifications made directly through {@link #getList()} are not tracked.
+     * @return compiled copy of this table
+     */
+    public CompiledIndexedTable compile(){
+        CompiledIndexedTable c = this.compiled;
+        if(c==null){
+            c = new CompiledIndexedTable(this.entries, this.entryNames, this.entryTypes);
+            this.compiled = c;
+        }
+        return c;
     }
     
     public  void addConstraint(int column, double min, double max){
@@ -101,6 +136,7 @@ public class IndexedTable extends DefaultTableModel {
             } else {
                 Integer mapIndex = this.entryMap.get(item);
                 this.entries.getItem(index).setValue(mapIndex, value);
+                this.compiled = null;
             }
         }
     }
@@ -114,6 +150,7 @@ public class IndexedTable extends DefaultTableModel {
             } else {
                 Integer mapIndex = this.entryMap.get(item);
                 this.entries.getItem(index).setValue(mapIndex, value);
+                this.compiled = null;
             }
         }
     }
@@ -194,6 +231,7 @@ public class IndexedTable extends DefaultTableModel {
                 entries.getItem(index).setValue(i, Integer.valueOf(values[i+indexNames.size()]));
             }
         }
+        this.compiled = null;
     }
     
     public void show(){        
@@ -236,11 +274,10 @@ public class IndexedTable extends DefaultTableModel {
     }
     
     /**
-     * Interface classes for Table Model
+     * Tabular view of the table, used by {@link IndexedTableModel}.
      * @param col
      * @return 
      */
-    @Override
     public String getColumnName(int col) {
         if(col>2){
             return this.entryNames.get(col-3);
@@ -250,7 +287,6 @@ public class IndexedTable extends DefaultTableModel {
     
     
     
-    @Override
     public int getColumnCount(){
         int ncolumns = 0;
         try{
@@ -261,12 +297,10 @@ public class IndexedTable extends DefaultTableModel {
         return ncolumns;
     }
     
-    @Override
     public boolean isCellEditable(int row, int column) {
        return false;
     }
     
-    @Override
     public int getRowCount(){
         int nrows = 0;
         try {
@@ -278,15 +312,24 @@ public class IndexedTable extends DefaultTableModel {
     }
     
     
-    @Override
     public Object getValueAt(int row, int column) { 
         Set<Long>  keys = entries.getMap().keySet();
-        int   ic = entries.getIndexSize();
         Iterator   iter = keys.iterator();
         Long       value = (Long) iter.next();
         for(int i = 0; i < row; i++){
             value = (Long) iter.next();
         }
+        return this.getValueAt(value, column);
+    }
+
+    /**
+     * @param key packed index of the row
+     * @param column
+     * @return formatted value of the column
+     */
+    public Object getValueAt(long key, int column) { 
+        int   ic = entries.getIndexSize();
+        Long  value = key;
         if(column<entries.getIndexSize()){
             Integer index = IndexedList.IndexGenerator.getIndex(value, column);
             return index.toString();
@@ -329,29 +372,6 @@ public class IndexedTable extends DefaultTableModel {
     }
     
     
-    /**
-     * internal class used for cell rendering
-     */
-    public static class IndexedCellRenderer extends DefaultTableCellRenderer {
-        @Override
-        public Component getTableCellRendererComponent
-                (JTable table, Object value, boolean isSelected, boolean hasFocus, int row, int column){
-            Component c = super.getTableCellRendererComponent
-                          (table, value, isSelected, hasFocus, row, column);
-            if(isSelected==true){
-                c.setBackground(new Color(20,20,255));                
-                return c;
-            }
-            if(row%2==0){
-                c.setBackground(new Color(220,255,220));
-            } else {
-                c.setBackground(new Color(220,220,255));
-            }
-                    
-            return c;
-        }
-    }
-    
     public static class IndexedEntry {
         
         List<Number> entryValues = new ArrayList<>();
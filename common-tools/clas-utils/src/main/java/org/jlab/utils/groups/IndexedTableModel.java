@@ -0,0 +1,95 @@
+package org.jlab.utils.groups;
+
+import java.awt.Color;
+import java.awt.Component;
+import javax.swing.JTable;
+import javax.swing.table.AbstractTableModel;
+import javax.swing.table.DefaultTableCellRenderer;
+
+/**
+ * Swing TableModel adapter for displaying an {@link IndexedTable} in a JTable.
+ *
+ * Call {@link #fireTableDataChanged()} after modifying the table.
+ */
+public class IndexedTableModel extends AbstractTableModel {
+
+    private final IndexedTable table;
+    private long[] keys = null;
+
+    public IndexedTableModel(IndexedTable table) {
+        this.table = table;
+    }
+
+    public IndexedTable getTable() {
+        return this.table;
+    }
+
+    /**
+     * Row keys in display order, cached to avoid walking the table's map for
+     * every cell.
+     */
+    private long[] getKeys() {
+        if (this.keys == null || this.keys.length != this.table.getRowCount()) {
+            this.keys = new long[this.table.getRowCount()];
+            int row = 0;
+            for (Object key : this.table.getList().getMap().keySet()) {
+                this.keys[row++] = (Long) key;
+            }
+        }
+        return this.keys;
+    }
+
+    @Override
+    public void fireTableDataChanged() {
+        this.keys = null;
+        super.fireTableDataChanged();
+    }
+
+    @Override
+    public String getColumnName(int col) {
+        return this.table.getColumnName(col);
+    }
+
+    @Override
+    public int getColumnCount() {
+        return this.table.getColumnCount();
+    }
+
+    @Override
+    public int getRowCount() {
+        return this.table.getRowCount();
+    }
+
+    @Override
+    public boolean isCellEditable(int row, int column) {
+        return this.table.isCellEditable(row, column);
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        return this.table.getValueAt(this.getKeys()[row], column);
+    }
+
+    /**
+     * internal class used for cell rendering
+     */
+    public static class IndexedCellRenderer extends DefaultTableCellRenderer {
+        @Override
+        public Component getTableCellRendererComponent
+                (JTable table, Object value, boolean isSelected, boolean hasFocus, int row, int column){
+            Component c = super.getTableCellRendererComponent
+                          (table, value, isSelected, hasFocus, row, column);
+            if(isSelected==true){
+                c.setBackground(new Color(20,20,255));
+                return c;
+            }
+            if(row%2==0){
+                c.setBackground(new Color(220,255,220));
+            } else {
+                c.setBackground(new Color(220,220,255));
+            }
+
+            return c;
+        }
+    }
+}
@@ -28,7 +28,7 @@ public class IndexedTableViewer extends JPanel {
         JPanel innerPane = new JPanel();
         innerPane.setLayout(new BorderLayout());
         innerPane.setBorder(BorderFactory.createSoftBevelBorder(SoftBevelBorder.LOWERED));
-        uiTable.setModel(this.indexedTable);
+        uiTable.setModel(new IndexedTableModel(this.indexedTable));
         JScrollPane  scroll = new JScrollPane(uiTable);
         innerPane.add(scroll,BorderLayout.CENTER);
         this.add(innerPane,BorderLayout.CENTER);
@@ -0,0 +1,127 @@
+package org.jlab.utils.groups;
+
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Compare the lookups of {@link CompiledIndexedTable} with those of the
+ * {@link IndexedTable} it was compiled from.
+ */
+public class CompiledIndexedTableTest {
+
+    private static int[] randomIndex(Random rand, int size) {
+        int[] index = new int[size];
+        for (int i = 0; i < size; i++) index[i] = rand.nextInt(12) - (i == size-1 ? 1 : 0);
+        return index;
+    }
+
+    private static IndexedTable createTable(Random rand, int size, int rows) {
+        IndexedTable table = new IndexedTable(size, new String[]{"status/I", "gain/D", "offset/D"});
+        for (int r = 0; r < rows; r++) {
+            int[] index = randomIndex(rand, size);
+            table.addEntry(index);
+            table.setIntValue(rand.nextInt(5) - 2, "status", index);
+            table.setDoubleValue(rand.nextGaussian(), "gain", index);
+            // offset is left to its default for some rows
+            if (rand.nextBoolean()) table.setDoubleValue(1000*rand.nextGaussian(), "offset", index);
+        }
+        return table;
+    }
+
+    private static int getRow(CompiledIndexedTable compiled, int[] index) {
+        switch (index.length) {
+            case 1:  return compiled.getRow(index[0]);
+            case 2:  return compiled.getRow(index[0], index[1]);
+            case 3:  return compiled.getRow(index[0], index[1], index[2]);
+            default: return compiled.getRow(index[0], index[1], index[2], index[3]);
+        }
+    }
+
+    private static double getDoubleValue(CompiledIndexedTable compiled, int column, int[] index) {
+        switch (index.length) {
+            case 1:  return compiled.getDoubleValue(column, index[0]);
+            case 2:  return compiled.getDoubleValue(column, index[0], index[1]);
+            case 3:  return compiled.getDoubleValue(column, index[0], index[1], index[2]);
+            default: return compiled.getDoubleValue(column, index[0], index[1], index[2], index[3]);
+        }
+    }
+
+    private static int getIntValue(CompiledIndexedTable compiled, int column, int[] index) {
+        switch (index.length) {
+            case 1:  return compiled.getIntValue(column, index[0]);
+            case 2:  return compiled.getIntValue(column, index[0], index[1]);
+            case 3:  return compiled.getIntValue(column, index[0], index[1], index[2]);
+            default: return compiled.getIntValue(column, index[0], index[1], index[2], index[3]);
+        }
+    }
+
+    private static void compare(IndexedTable table, Random rand) {
+        CompiledIndexedTable compiled = table.compile();
+        int size = table.getList().getIndexSize();
+        assertEquals(size, compiled.getIndexSize());
+        assertEquals(table.getList().getMap().size(), compiled.getRowCount());
+        assertEquals(table.getEntryNames().size(), compiled.getColumnCount());
+        assertEquals(-1, compiled.getColumn("nothing"));
+
+        // existing and missing rows:
+        for (int i = 0; i < 5000; i++) {
+            int[] index = randomIndex(rand, size);
+            int row = getRow(compiled, index);
+            assertEquals(table.hasEntry(index), row >= 0);
+            if (row >= 0) {
+                for (int order = 0; order < size; order++) {
+                    assertEquals(index[order] & 0xFFFF, compiled.getIndex(row, order));
+                }
+            }
+            for (String name : table.getEntryNames()) {
+                int column = compiled.getColumn(name);
+                assertEquals(name, compiled.getColumnName(column));
+                assertEquals(table.getDoubleValue(name, index), getDoubleValue(compiled, column, index), 0);
+                assertEquals(table.getIntValue(name, index), getIntValue(compiled, column, index));
+            }
+        }
+    }
+
+    @Test
+    public void testLookup() {
+        Random rand = new Random(1);
+        for (int size = 1; size <= 4; size++) {
+            compare(createTable(rand, size, 0), rand);
+            compare(createTable(rand, size, 1), rand);
+            compare(createTable(rand, size, 10*size*size), rand);
+        }
+    }
+
+    @Test
+    public void testWrongArity() {
+        IndexedTable table = createTable(new Random(2), 3, 100);
+        CompiledIndexedTable compiled = table.compile();
+        assertEquals(-1, compiled.getRow(1));
+        assertEquals(-1, compiled.getRow(1, 2));
+        assertEquals(-1, compiled.getRow(1, 2, 3, 4));
+        assertEquals(0, compiled.getDoubleValue(compiled.getColumn("gain"), 1, 2), 0);
+    }
+
+    @Test
+    public void testCache() {
+        IndexedTable table = createTable(new Random(3), 3, 100);
+        CompiledIndexedTable compiled = table.compile();
+        assertSame(compiled, table.compile());
+
+        // setting a missing entry does not change the table:
+        table.setDoubleValue(12.5, "gain", 20, 2, 3);
+        assertSame(compiled, table.compile());
+        table.addEntry(20, 2, 3);
+        table.setDoubleValue(12.5, "gain", 20, 2, 3);
+        assertNotSame(compiled, table.compile());
+        assertEquals(12.5, table.compile().getDoubleValue(table.compile().getColumn("gain"), 20, 2, 3), 0);
+
+        compiled = table.compile();
+        table.setIntValue(7, "status", 20, 2, 3);
+        assertNotSame(compiled, table.compile());
+        assertEquals(7, table.compile().getIntValue(table.compile().getColumn("status"), 20, 2, 3));
+        compare(table, new Random(4));
+    }
+}
@@ -0,0 +1,189 @@
+package cnuphys.magfield;
+
+/**
+ * The interpolation cells of the points of batched field lookups, for the
+ * solenoid. Point i of every batch has its own cell, the last one it was in,
+ * as a {@link Cell2D} has for a single point, and the bilinear interpolation
+ * is done for all the points together, with the same arithmetic as
+ * {@link Cell2D#calculate(double, double, float[])}.
+ */
+class Cell2DBatch {
+
+	// the probe using these cells
+	private final FieldProbe _probe;
+
+	// the number of points with a cell
+	private int _size;
+
+	// the limits of the cells and their inverse widths
+	private double _q2Min[];
+	private double _q2Max[];
+	private double _q3Min[];
+	private double _q3Max[];
+	private double _q2Norm[];
+	private double _q3Norm[];
+
+	// the grid indices of the cells
+	private int _n2[];
+	private int _n3[];
+
+	// rho and z components of the field at the 4 corners of the cells,
+	// as Cell2D.b[i][j].x and Cell2D.b[i][j].z
+	private double _brho00[], _brho01[], _brho10[], _brho11[];
+	private double _bz00[], _bz01[], _bz10[], _bz11[];
+
+	// the points inside the grid
+	private boolean _inside[];
+
+	/**
+	 * Create the cells for batched lookups of the solenoid
+	 *
+	 * @param probe the magnetic probe
+	 */
+	Cell2DBatch(FieldProbe probe) {
+		_probe = probe;
+		ensureSize(16);
+	}
+
+	// make room for n points, the cells of new points are empty
+	private void ensureSize(int n) {
+		if (n <= _size) {
+			return;
+		}
+		_q2Min = grow(_q2Min, n, Double.POSITIVE_INFINITY);
+		_q2Max = grow(_q2Max, n, Double.NEGATIVE_INFINITY);
+		_q3Min = grow(_q3Min, n, Double.POSITIVE_INFINITY);
+		_q3Max = grow(_q3Max, n, Double.NEGATIVE_INFINITY);
+		_q2Norm = grow(_q2Norm, n, 0);
+		_q3Norm = grow(_q3Norm, n, 0);
+		_brho00 = grow(_brho00, n, 0);
+		_brho01 = grow(_brho01, n, 0);
+		_brho10 = grow(_brho10, n, 0);
+		_brho11 = grow(_brho11, n, 0);
+		_bz00 = grow(_bz00, n, 0);
+		_bz01 = grow(_bz01, n, 0);
+		_bz10 = grow(_bz10, n, 0);
+		_bz11 = grow(_bz11, n, 0);
+
+		int n2[] = new int[n];
+		int n3[] = new int[n];
+		java.util.Arrays.fill(n2, -1);
+		java.util.Arrays.fill(n3, -1);
+		if (_size > 0) {
+			System.arraycopy(_n2, 0, n2, 0, _size);
+			System.arraycopy(_n3, 0, n3, 0, _size);
+		}
+		_n2 = n2;
+		_n3 = n3;
+
+		_inside = new boolean[n];
+		_size = n;
+	}
+
+	private double[] grow(double old[], int n, double empty) {
+		double a[] = new double[n];
+		int nold = (old == null) ? 0 : old.length;
+		if (nold > 0) {
+			System.arraycopy(old, 0, a, 0, nold);
+		}
+		for (int i = nold; i < n; i++) {
+			a[i] = empty;
+		}
+		return a;
+	}
+
+	// load the cell of point i, as Cell2D.reset
+	private void reset(int i, double rho, double z) {
+		GridCoordinate q2Coord = _probe.q2Coordinate;
+		GridCoordinate q3Coord = _probe.q3Coordinate;
+
+		_n2[i] = q2Coord.getIndex(rho);
+		if (_n2[i] < 0) {
+			return;
+		}
+		_n3[i] = q3Coord.getIndex(z);
+		if (_n3[i] < 0) {
+			return;
+		}
+
+		_q2Min[i] = q2Coord.getMin(_n2[i]);
+		_q2Max[i] = q2Coord.getMax(_n2[i]);
+		_q2Norm[i] = 1. / (_q2Max[i] - _q2Min[i]);
+
+		_q3Min[i] = q3Coord.getMin(_n3[i]);
+		_q3Max[i] = q3Coord.getMax(_n3[i]);
+		_q3Norm[i] = 1. / (_q3Max[i] - _q3Min[i]);
+
+		int i000 = _probe.getCompositeIndex(0, _n2[i], _n3[i]);
+		int i001 = i000 + 1;
+
+		int i010 = _probe.getCompositeIndex(0, _n2[i] + 1, _n3[i]);
+		int i011 = i010 + 1;
+
+		_brho00[i] = _probe.getB2(i000);
+		_brho01[i] = _probe.getB2(i001);
+		_brho10[i] = _probe.getB2(i010);
+		_brho11[i] = _probe.getB2(i011);
+		_bz00[i] = _probe.getB3(i000);
+		_bz01[i] = _probe.getB3(i001);
+		_bz10[i] = _probe.getB3(i010);
+		_bz11[i] = _probe.getB3(i011);
+	}
+
+	/**
+	 * Calculate the rho and z components of the field in kG by bilinear
+	 * interpolation at several points, zero for the points outside the grid
+	 *
+	 * @param n      the number of points
+	 * @param active if not <code>null</code>, only the points i with active[i]
+	 *               set are calculated
+	 * @param rho    the rho coordinates in cm
+	 * @param z      the z coordinates in cm
+	 * @param brho   upon return, the rho components of the field in kG
+	 * @param bz     upon return, the z components of the field in kG
+	 */
+	void calculate(int n, boolean active[], double rho[], double z[], float brho[], float bz[]) {
+		ensureSize(n);
+
+		// first move the points that left their cells
+		for (int i = 0; i < n; i++) {
+			if ((active != null) && !active[i]) {
+				_inside[i] = false;
+				continue;
+			}
+			_inside[i] = true;
+			if (!((rho[i] > _q2Min[i]) && (rho[i] < _q2Max[i]) && (z[i] > _q3Min[i]) && (z[i] < _q3Max[i]))) {
+				reset(i, rho[i], z[i]);
+				if ((_n2[i] < 0) || (_n3[i] < 0)) {
+					_inside[i] = false;
+					brho[i] = 0;
+					bz[i] = 0;
+				}
+			}
+		}
+
+		// then interpolate for all points
+		for (int i = 0; i < n; i++) {
+			if (!_inside[i]) {
+				continue;
+			}
+			double f1 = (rho[i] - _q2Min[i]) * _q2Norm[i];
+			double f2 = (z[i] - _q3Min[i]) * _q3Norm[i];
+
+			f1 = f1 - Math.floor(f1);
+			f2 = f2 - Math.floor(f2);
+
+			double g1 = 1 - f1;
+			double g2 = 1 - f2;
+
+			double g1g2 = g1 * g2;
+			double f1g2 = f1 * g2;
+			double g1f2 = g1 * f2;
+			double f1f2 = f1 * f2;
+
+			brho[i] = (float) (_brho00[i] * g1g2 + _brho01[i] * g1f2 + _brho10[i] * f1g2 + _brho11[i] * f1f2);
+			bz[i] = (float) (_bz00[i] * g1g2 + _bz01[i] * g1f2 + _bz10[i] * f1g2 + _bz11[i] * f1f2);
+		}
+	}
+
+}
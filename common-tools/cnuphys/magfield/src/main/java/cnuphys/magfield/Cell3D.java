@@ -34,6 +34,18 @@ public class Cell3D {
 	private int _n2 = -1;
 	private int _n3 = -1;
 
+	/** The maximum number of cached interpolation cells */
+	public static final int MAXCACHESIZE = 16;
+
+	// number of cached interpolation cells, 0 for the plain single cell
+	private int _cacheSize = 0;
+
+	// the cached cells with precomputed coefficients, used if the cell cache
+	// size is set, the last one used, and the next one to replace
+	private CellCoefficients _cache[];
+	private int _lastCached;
+	private int _nextCached;
+
 	/**
 	 * Create a 3D cell (for Torus and Transverse solenoid)
 	 * 
@@ -43,6 +55,30 @@ public class Cell3D {
 		_probe = probe;
 	}
 
+	/**
+	 * Get the number of cached interpolation cells
+	 * 
+	 * @return the number of cached cells, 0 for the single cell
+	 */
+	public int getCacheSize() {
+		return _cacheSize;
+	}
+
+	/**
+	 * Set the number of cached interpolation cells. With a cache, the
+	 * trilinear interpolation coefficients of the most recently used cells
+	 * are precomputed and kept, so a track that steps back and forth across
+	 * cell boundaries does not reload the corners, and the gradient of the
+	 * field can be computed from the same coefficients. The interpolated
+	 * values can differ from those of the single cell in the last bits.
+	 * 
+	 * @param size the number of cached cells, 0 (the default) for the single
+	 *             cell, at most {@link #MAXCACHESIZE}
+	 */
+	public void setCacheSize(int size) {
+		_cacheSize = Math.max(0, Math.min(size, MAXCACHESIZE));
+	}
+
 	// reset because we have crossed into another cell
 	private boolean reset(double q1, double q2, double q3) {
 		GridCoordinate q1Coord = _probe.q1Coordinate;
@@ -152,6 +188,10 @@ public class Cell3D {
 			return;
 		}
 
+		if (_cacheSize > 0) {
+			calculate(q1, q2, q3, result, null);
+			return;
+		}
 
 		// do we need to reset?
 		if (!contained(q1, q2, q3)) {
@@ -166,6 +206,72 @@ public class Cell3D {
 		trilinear(q1, q2, q3, result);
 	}
 
+	/**
+	 * Calculate the field in kG, and optionally its derivatives, by trilinear
+	 * interpolation with the precomputed coefficients of the cached cells.
+	 * This always interpolates, and uses a single cached cell if the cell
+	 * cache size is not set.
+	 * 
+	 * @param q1       phi in deg for cylindrical, x (cm) for rectangular
+	 * @param q2       rho (cm) for cylindrical, y (cm) for rectangular
+	 * @param q3       z (cm) for cylindrical or rectangular
+	 * @param result   the field in kG
+	 * @param gradient if not <code>null</code>, upon return gradient[3*i+j]
+	 *                 holds the derivative of component i of the field with
+	 *                 respect to qj, in kG per unit of qj
+	 * @return <code>false</code> if the point is outside the grid, in which
+	 *         case the field and its derivatives are zero
+	 */
+	public boolean calculate(double q1, double q2, double q3, float[] result, double[] gradient) {
+		CellCoefficients cell = cachedCell(q1, q2, q3);
+		if (cell == null) {
+			result[0] = 0;
+			result[1] = 0;
+			result[2] = 0;
+			if (gradient != null) {
+				for (int i = 0; i < 9; i++) {
+					gradient[i] = 0;
+				}
+			}
+			return false;
+		}
+
+		cell.evaluate(q1, q2, q3, result, gradient);
+		return true;
+	}
+
+	// get the cached cell containing the point, loading it in place of the
+	// oldest one if needed
+	private CellCoefficients cachedCell(double q1, double q2, double q3) {
+		int size = Math.max(1, _cacheSize);
+		if ((_cache == null) || (_cache.length != size)) {
+			_cache = new CellCoefficients[size];
+			for (int i = 0; i < size; i++) {
+				_cache[i] = new CellCoefficients();
+			}
+			_lastCached = 0;
+			_nextCached = 0;
+		}
+
+		if (_cache[_lastCached].contained(q1, q2, q3)) {
+			return _cache[_lastCached];
+		}
+		for (int i = 0; i < size; i++) {
+			if (_cache[i].contained(q1, q2, q3)) {
+				_lastCached = i;
+				return _cache[i];
+			}
+		}
+
+		CellCoefficients cell = _cache[_nextCached];
+		if (!cell.reset(q1, q2, q3)) {
+			return null;
+		}
+		_lastCached = _nextCached;
+		_nextCached = (_nextCached + 1) % size;
+		return cell;
+	}
+
 	// nearest neighbor algorithm
 	private void nearestNeighbor(double phi, double rho, double z, float[] result) {
 		
@@ -185,4 +291,114 @@ public class Cell3D {
 		
 	}
 
+	/**
+	 * A cell with the coefficients of the trilinear interpolation of each
+	 * field component, as a polynomial in the fractional coordinates u, v, w
+	 * in the cell: a0 + a1 u + a2 v + a3 w + a4 uv + a5 uw + a6 vw + a7 uvw
+	 */
+	private class CellCoefficients {
+
+		// the limits of the cell, empty until loaded
+		double q1Min = Double.POSITIVE_INFINITY;
+		double q1Max = Double.NEGATIVE_INFINITY;
+		double q2Min = Double.POSITIVE_INFINITY;
+		double q2Max = Double.NEGATIVE_INFINITY;
+		double q3Min = Double.POSITIVE_INFINITY;
+		double q3Max = Double.NEGATIVE_INFINITY;
+
+		// inverse grid spacings
+		double id1, id2, id3;
+
+		// coefficients, 8 per component
+		final double a[] = new double[24];
+
+		boolean contained(double q1, double q2, double q3) {
+			return ((q1 > q1Min) && (q1 < q1Max) && (q2 > q2Min) && 
+					(q2 < q2Max) && (q3 > q3Min) && (q3 < q3Max));
+		}
+
+		// load the cell containing the point
+		boolean reset(double q1, double q2, double q3) {
+			GridCoordinate q1Coord = _probe.q1Coordinate;
+			GridCoordinate q2Coord = _probe.q2Coordinate;
+			GridCoordinate q3Coord = _probe.q3Coordinate;
+
+			int n1 = q1Coord.getIndex(q1);
+			int n2 = q2Coord.getIndex(q2);
+			int n3 = q3Coord.getIndex(q3);
+
+			if ((n1 < 0) || (n2 < 0) || (n3 < 0)) {
+				q1Min = Double.POSITIVE_INFINITY;
+				q1Max = Double.NEGATIVE_INFINITY;
+				return false;
+			}
+
+			q1Min = q1Coord.getValue(n1);
+			q1Max = q1Coord.getValue(n1 + 1);
+			q2Min = q2Coord.getValue(n2);
+			q2Max = q2Coord.getValue(n2 + 1);
+			q3Min = q3Coord.getValue(n3);
+			q3Max = q3Coord.getValue(n3 + 1);
+
+			id1 = 1 / q1Coord.getDelta();
+			id2 = 1 / q2Coord.getDelta();
+			id3 = 1 / q3Coord.getDelta();
+
+			for (int i = 0; i < 3; i++) {
+				double c000 = corner(n1, n2, n3, i);
+				double c100 = corner(n1 + 1, n2, n3, i);
+				double c010 = corner(n1, n2 + 1, n3, i);
+				double c001 = corner(n1, n2, n3 + 1, i);
+				double c110 = corner(n1 + 1, n2 + 1, n3, i);
+				double c101 = corner(n1 + 1, n2, n3 + 1, i);
+				double c011 = corner(n1, n2 + 1, n3 + 1, i);
+				double c111 = corner(n1 + 1, n2 + 1, n3 + 1, i);
+
+				int o = 8 * i;
+				a[o] = c000;
+				a[o + 1] = c100 - c000;
+				a[o + 2] = c010 - c000;
+				a[o + 3] = c001 - c000;
+				a[o + 4] = c110 - c100 - c010 + c000;
+				a[o + 5] = c101 - c100 - c001 + c000;
+				a[o + 6] = c011 - c010 - c001 + c000;
+				a[o + 7] = c111 - c110 - c101 - c011 + c100 + c010 + c001 - c000;
+			}
+			return true;
+		}
+
+		double corner(int n1, int n2, int n3, int component) {
+			int index = _probe.getCompositeIndex(n1, n2, n3);
+			switch (component) {
+			case 0:
+				return _probe.getB1(index);
+			case 1:
+				return _probe.getB2(index);
+			default:
+				return _probe.getB3(index);
+			}
+		}
+
+		void evaluate(double q1, double q2, double q3, float[] result, double[] gradient) {
+			double u = (q1 - q1Min) * id1;
+			double v = (q2 - q2Min) * id2;
+			double w = (q3 - q3Min) * id3;
+			double vw = v * w;
+
+			for (int i = 0; i < 3; i++) {
+				int o = 8 * i;
+				double du = a[o + 1] + v * a[o + 4] + w * a[o + 5] + vw * a[o + 7];
+				result[i] = (float) (a[o] + u * du + v * (a[o + 2] + w * a[o + 6]) + w * a[o + 3]);
+
+				if (gradient != null) {
+					double dv = a[o + 2] + u * (a[o + 4] + w * a[o + 7]) + w * a[o + 6];
+					double dw = a[o + 3] + u * (a[o + 5] + v * a[o + 7]) + v * a[o + 6];
+					gradient[3 * i] = du * id1;
+					gradient[3 * i + 1] = dv * id2;
+					gradient[3 * i + 2] = dw * id3;
+				}
+			}
+		}
+	}
+
 }
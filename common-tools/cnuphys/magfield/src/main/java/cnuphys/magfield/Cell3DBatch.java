@@ -0,0 +1,181 @@
+package cnuphys.magfield;
+
+/**
+ * The interpolation cells of the points of batched field lookups, for the 3D
+ * probes. Point i of every batch has its own cell, the last one it was in, as
+ * a {@link Cell3D} has for a single point, so tracks swum in lockstep keep
+ * their cells. The cells are held in flat arrays indexed by point, and the
+ * trilinear interpolation is done for all the points together, with the same
+ * arithmetic as {@link Cell3D#trilinear(double, double, double, float[])}.
+ */
+class Cell3DBatch {
+
+	// the probe using these cells
+	private final FieldProbe _probe;
+
+	// the number of points with a cell
+	private int _size;
+
+	// the limits of the cells
+	private double _q1Min[];
+	private double _q1Max[];
+	private double _q2Min[];
+	private double _q2Max[];
+	private double _q3Min[];
+	private double _q3Max[];
+
+	// field at the 8 corners of the cells, _c[3 * (4 * i + 2 * j + k) +
+	// component][point] holding Cell3D.c[i][j][k][component]
+	private double _c[][] = new double[24][];
+
+	// the points inside the grid
+	private boolean _inside[];
+
+	/**
+	 * Create the cells for batched lookups of a 3D probe
+	 *
+	 * @param probe the magnetic probe
+	 */
+	Cell3DBatch(FieldProbe probe) {
+		_probe = probe;
+		ensureSize(16);
+	}
+
+	// make room for n points, the cells of new points are empty
+	private void ensureSize(int n) {
+		if (n <= _size) {
+			return;
+		}
+		_q1Min = grow(_q1Min, n, Double.POSITIVE_INFINITY);
+		_q1Max = grow(_q1Max, n, Double.NEGATIVE_INFINITY);
+		_q2Min = grow(_q2Min, n, Double.POSITIVE_INFINITY);
+		_q2Max = grow(_q2Max, n, Double.NEGATIVE_INFINITY);
+		_q3Min = grow(_q3Min, n, Double.POSITIVE_INFINITY);
+		_q3Max = grow(_q3Max, n, Double.NEGATIVE_INFINITY);
+		for (int i = 0; i < _c.length; i++) {
+			_c[i] = grow(_c[i], n, 0);
+		}
+		_inside = new boolean[n];
+		_size = n;
+	}
+
+	private double[] grow(double old[], int n, double empty) {
+		double a[] = new double[n];
+		int nold = (old == null) ? 0 : old.length;
+		if (nold > 0) {
+			System.arraycopy(old, 0, a, 0, nold);
+		}
+		for (int i = nold; i < n; i++) {
+			a[i] = empty;
+		}
+		return a;
+	}
+
+	// whether the cell of point i includes the point
+	private boolean contained(int i, double q1, double q2, double q3) {
+		return ((q1 > _q1Min[i]) && (q1 < _q1Max[i]) && (q2 > _q2Min[i]) && (q2 < _q2Max[i])
+				&& (q3 > _q3Min[i]) && (q3 < _q3Max[i]));
+	}
+
+	// load the cell of point i, as Cell3D.reset
+	private boolean reset(int i, double q1, double q2, double q3) {
+		GridCoordinate q1Coord = _probe.q1Coordinate;
+		GridCoordinate q2Coord = _probe.q2Coordinate;
+		GridCoordinate q3Coord = _probe.q3Coordinate;
+
+		int n1 = q1Coord.getIndex(q1);
+		int n2 = q2Coord.getIndex(q2);
+		int n3 = q3Coord.getIndex(q3);
+
+		if ((n1 < 0) || (n2 < 0) || (n3 < 0)) {
+			return false;
+		}
+
+		_q1Min[i] = q1Coord.getValue(n1);
+		_q1Max[i] = q1Coord.getValue(n1 + 1);
+		_q2Min[i] = q2Coord.getValue(n2);
+		_q2Max[i] = q2Coord.getValue(n2 + 1);
+		_q3Min[i] = q3Coord.getValue(n3);
+		_q3Max[i] = q3Coord.getValue(n3 + 1);
+
+		for (int corner = 0; corner < 8; corner++) {
+			int index = _probe.getCompositeIndex(n1 + (corner >> 2), n2 + ((corner >> 1) & 1), n3 + (corner & 1));
+			_c[3 * corner][i] = _probe.getB1(index);
+			_c[3 * corner + 1][i] = _probe.getB2(index);
+			_c[3 * corner + 2][i] = _probe.getB3(index);
+		}
+		return true;
+	}
+
+	/**
+	 * Calculate the field in kG by trilinear interpolation at several points,
+	 * zero for the points outside the grid
+	 *
+	 * @param n      the number of points
+	 * @param active if not <code>null</code>, only the points i with active[i]
+	 *               set are calculated
+	 * @param q1     phi in deg for cylindrical, x (cm) for rectangular
+	 * @param q2     rho (cm) for cylindrical, y (cm) for rectangular
+	 * @param q3     z (cm) for cylindrical or rectangular
+	 * @param b1     upon return, the first components of the field in kG
+	 * @param b2     upon return, the second components of the field in kG
+	 * @param b3     upon return, the third components of the field in kG
+	 */
+	void calculate(int n, boolean active[], double q1[], double q2[], double q3[], float b1[], float b2[],
+			float b3[]) {
+		ensureSize(n);
+
+		// first move the points that left their cells
+		for (int i = 0; i < n; i++) {
+			if ((active != null) && !active[i]) {
+				_inside[i] = false;
+				continue;
+			}
+			_inside[i] = contained(i, q1[i], q2[i], q3[i]) || reset(i, q1[i], q2[i], q3[i]);
+			if (!_inside[i]) {
+				b1[i] = 0;
+				b2[i] = 0;
+				b3[i] = 0;
+			}
+		}
+
+		// then interpolate each component for all points
+		double d1 = _probe.q1Coordinate.getDelta();
+		double d2 = _probe.q2Coordinate.getDelta();
+		double d3 = _probe.q3Coordinate.getDelta();
+		for (int comp = 0; comp < 3; comp++) {
+			double c000[] = _c[comp];
+			double c001[] = _c[3 + comp];
+			double c010[] = _c[6 + comp];
+			double c011[] = _c[9 + comp];
+			double c100[] = _c[12 + comp];
+			double c101[] = _c[15 + comp];
+			double c110[] = _c[18 + comp];
+			double c111[] = _c[21 + comp];
+			float b[] = (comp == 0) ? b1 : ((comp == 1) ? b2 : b3);
+
+			for (int i = 0; i < n; i++) {
+				if (!_inside[i]) {
+					continue;
+				}
+				double xd = (q1[i] - _q1Min[i]) / d1;
+				double yd = (q2[i] - _q2Min[i]) / d2;
+				double zd = (q3[i] - _q3Min[i]) / d3;
+
+				double omxd = 1 - xd;
+				double omyd = 1 - yd;
+
+				double c00 = c000[i] * omxd + c100[i] * xd;
+				double c01 = c001[i] * omxd + c101[i] * xd;
+				double c10 = c010[i] * omxd + c110[i] * xd;
+				double c11 = c011[i] * omxd + c111[i] * xd;
+
+				double c0 = c00 * omyd + c10 * yd;
+				double c1 = c01 * omyd + c11 * yd;
+
+				b[i] = (float) (c0 * (1 - zd) + c1 * zd);
+			}
+		}
+	}
+
+}
@@ -6,6 +6,15 @@ public class CompositeProbe extends FieldProbe {
 
 	protected ArrayList<FieldProbe> probes = new ArrayList<FieldProbe>();
 
+	// work space for the batched lookups: the lab coordinates, the points
+	// looked up together and the field of each probe
+	protected float _xl[], _yl[], _zl[];
+	protected boolean _batched[];
+	private float _bxp[], _byp[], _bzp[];
+
+	// work space for a single point
+	protected final float _point[] = new float[3];
+
 	/**
 	 * Create a composite probe from a composite field.
 	 * 
@@ -19,6 +28,28 @@ public class CompositeProbe extends FieldProbe {
 
 	}
 
+	/**
+	 * Set the number of interpolation cells cached by each of the probes
+	 * 
+	 * @param size the number of cached cells, 0 (the default) for the single
+	 *             cell
+	 */
+	@Override
+	public void setCellCacheSize(int size) {
+		for (FieldProbe probe : probes) {
+			probe.setCellCacheSize(size);
+		}
+	}
+
+	@Override
+	public int getCellCacheSize() {
+		int size = 0;
+		for (FieldProbe probe : probes) {
+			size = Math.max(size, probe.getCellCacheSize());
+		}
+		return size;
+	}
+
 	/**
 	 * Obtain the magnetic field at a given location expressed in Cartesian
 	 * coordinates for the sector system. The field is returned as a Cartesian
@@ -73,6 +104,120 @@ public class CompositeProbe extends FieldProbe {
 		result[2] = bz;
 	}
 
+	/**
+	 * Obtain the magnetic field at several locations at once, the sum of the
+	 * batched lookups of the probes.
+	 * 
+	 * @see FieldProbe#field(int, boolean[], float[], float[], float[], float[],
+	 *      float[], float[])
+	 */
+	@Override
+	public void field(int n, boolean active[], float x[], float y[], float z[], float bx[], float by[],
+			float bz[]) {
+		sumProbes(n, active, x, y, z, bx, by, bz);
+	}
+
+	/**
+	 * Sum the batched lookups of the probes at several lab locations, in the
+	 * order of {@link #field(float, float, float, float[])}. The field arrays
+	 * must not be the coordinate arrays.
+	 * 
+	 * @param n      the number of points
+	 * @param active if not <code>null</code>, only the points i with active[i]
+	 *               set are looked up
+	 * @param x      the x lab coordinates in cm
+	 * @param y      the y lab coordinates in cm
+	 * @param z      the z lab coordinates in cm
+	 * @param bx     upon return, the x components of the field in kiloGauss
+	 * @param by     upon return, the y components of the field in kiloGauss
+	 * @param bz     upon return, the z components of the field in kiloGauss
+	 */
+	protected void sumProbes(int n, boolean active[], float x[], float y[], float z[], float bx[], float by[],
+			float bz[]) {
+
+		ensureWorkSpace(n);
+
+		for (int i = 0; i < n; i++) {
+			if ((active == null) || active[i]) {
+				bx[i] = 0f;
+				by[i] = 0f;
+				bz[i] = 0f;
+			}
+		}
+
+		for (FieldProbe probe : probes) {
+			probe.field(n, active, x, y, z, _bxp, _byp, _bzp);
+			for (int i = 0; i < n; i++) {
+				if ((active == null) || active[i]) {
+					bx[i] += _bxp[i];
+					by[i] += _byp[i];
+					bz[i] += _bzp[i];
+				}
+			}
+		}
+	}
+
+	/**
+	 * Obtain the magnetic field at several locations at once in the sector
+	 * systems. The points are rotated to the lab, looked up together and the
+	 * field is rotated back, as in
+	 * {@link #field(int, float, float, float, float[])}.
+	 * 
+	 * @see FieldProbe#field(int, boolean[], int[], float[], float[], float[],
+	 *      float[], float[], float[])
+	 */
+	@Override
+	public void field(int n, boolean active[], int sector[], float x[], float y[], float z[], float bx[],
+			float by[], float bz[]) {
+
+		ensureWorkSpace(n);
+
+		for (int i = 0; i < n; i++) {
+			_batched[i] = ((active == null) || active[i]) && (sector[i] >= 1) && (sector[i] <= 6);
+			if (_batched[i]) {
+				MagneticFields.sectorToLab(sector[i], _point, x[i], y[i], z[i]);
+				_xl[i] = _point[0];
+				_yl[i] = _point[1];
+				_zl[i] = _point[2];
+			} else if ((active == null) || active[i]) {
+				// a bad sector, leave the complaining to the single point lookup
+				field(sector[i], x[i], y[i], z[i], _point);
+				bx[i] = _point[0];
+				by[i] = _point[1];
+				bz[i] = _point[2];
+			}
+		}
+
+		sumProbes(n, _batched, _xl, _yl, _zl, bx, by, bz);
+
+		// rotate back
+		for (int i = 0; i < n; i++) {
+			if (_batched[i]) {
+				MagneticFields.labToSector(sector[i], _point, bx[i], by[i], bz[i]);
+				bx[i] = _point[0];
+				by[i] = _point[1];
+				bz[i] = _point[2];
+			}
+		}
+	}
+
+	/**
+	 * Make sure the work space of the batched lookups holds n points
+	 * 
+	 * @param n the number of points
+	 */
+	protected void ensureWorkSpace(int n) {
+		if ((_xl == null) || (_xl.length < n)) {
+			_xl = new float[n];
+			_yl = new float[n];
+			_zl = new float[n];
+			_batched = new boolean[n];
+			_bxp = new float[n];
+			_byp = new float[n];
+			_bzp = new float[n];
+		}
+	}
+
 	/**
 	 * Checks whether the field has been set to always return zero.
 	 * 
@@ -36,6 +36,9 @@ public abstract class FieldProbe implements IField {
 	 */
 	protected GridCoordinate q3Coordinate;
 
+	// work space for the points of the batched lookups
+	private final float _pointResult[] = new float[3];
+
 	/**
 	 * Create a probe, which is a thread safe way to use the field
 	 * 
@@ -150,6 +153,80 @@ public abstract class FieldProbe implements IField {
 
 	}
 
+	/**
+	 * Obtain the magnetic field at several locations at once, e.g. for tracks
+	 * swum in lockstep, expressed in Cartesian coordinates. The points are
+	 * looked up one at a time; the torus and solenoid probes override this to
+	 * interpolate all of them together, with a grid cell per point index, so
+	 * the cells of different tracks do not evict each other. The values are the
+	 * same as those of {@link #field(float, float, float, float[])}.
+	 * 
+	 * @param n      the number of points
+	 * @param active if not <code>null</code>, only the points i with active[i]
+	 *               set are looked up, and the results of the others are left
+	 *               unchanged
+	 * @param x      the x coordinates in cm
+	 * @param y      the y coordinates in cm
+	 * @param z      the z coordinates in cm
+	 * @param bx     upon return, the x components of the field in kiloGauss
+	 * @param by     upon return, the y components of the field in kiloGauss
+	 * @param bz     upon return, the z components of the field in kiloGauss
+	 */
+	public void field(int n, boolean active[], float x[], float y[], float z[], float bx[], float by[],
+			float bz[]) {
+		fieldByPoint(n, active, x, y, z, bx, by, bz);
+	}
+
+	/**
+	 * Obtain the magnetic field at several locations at once, expressed in
+	 * Cartesian coordinates in the sector (not lab or global) systems, as
+	 * {@link #field(int, float, float, float, float[])} for each point.
+	 * 
+	 * @param n      the number of points
+	 * @param active if not <code>null</code>, only the points i with active[i]
+	 *               set are looked up, and the results of the others are left
+	 *               unchanged
+	 * @param sector the sectors [1..6]
+	 * @param x      the x sector coordinates in cm
+	 * @param y      the y sector coordinates in cm
+	 * @param z      the z sector coordinates in cm
+	 * @param bx     upon return, the x components of the field in kiloGauss
+	 * @param by     upon return, the y components of the field in kiloGauss
+	 * @param bz     upon return, the z components of the field in kiloGauss
+	 */
+	public void field(int n, boolean active[], int sector[], float x[], float y[], float z[], float bx[],
+			float by[], float bz[]) {
+		float result[] = _pointResult;
+		for (int i = 0; i < n; i++) {
+			if ((active == null) || active[i]) {
+				field(sector[i], x[i], y[i], z[i], result);
+				bx[i] = result[0];
+				by[i] = result[1];
+				bz[i] = result[2];
+			}
+		}
+	}
+
+	/**
+	 * Look up the field at several locations one at a time, with
+	 * {@link #field(float, float, float, float[])}
+	 * 
+	 * @see #field(int, boolean[], float[], float[], float[], float[], float[],
+	 *      float[])
+	 */
+	protected final void fieldByPoint(int n, boolean active[], float x[], float y[], float z[], float bx[],
+			float by[], float bz[]) {
+		float result[] = _pointResult;
+		for (int i = 0; i < n; i++) {
+			if ((active == null) || active[i]) {
+				field(x[i], y[i], z[i], result);
+				bx[i] = result[0];
+				by[i] = result[1];
+				bz[i] = result[2];
+			}
+		}
+	}
+
 	/**
 	 * Obtain an approximation for the magnetic field gradient at a given location
 	 * expressed in Cartesian coordinates. The field is returned as a Cartesian
@@ -185,6 +262,26 @@ public abstract class FieldProbe implements IField {
 		result[2] = (bv3 + 4 * bz0 - bz1) / del2;
 	}
 
+	/**
+	 * Set the number of interpolation cells cached by this probe. Only the 3D
+	 * probes (torus and transverse solenoid) cache cells, see
+	 * {@link Cell3D#setCacheSize(int)}; for the others this does nothing.
+	 * 
+	 * @param size the number of cached cells, 0 (the default) for the single
+	 *             cell
+	 */
+	public void setCellCacheSize(int size) {
+	}
+
+	/**
+	 * Get the number of interpolation cells cached by this probe
+	 * 
+	 * @return the number of cached cells, 0 if the probe uses a single cell
+	 */
+	public int getCellCacheSize() {
+		return 0;
+	}
+
 	/**
 	 * Obtain an approximation for the magnetic field gradient at a given location
 	 * expressed in cylindrical coordinates. The field is returned as a Cartesian
@@ -1,12 +1,13 @@
 package cnuphys.magfield;
 
-import java.io.DataInputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -24,6 +25,12 @@ public abstract class MagneticField implements IMagField {
 	/** Magic number used to check if byteswapping is necessary. */
 	public static final int MAGICNUMBER = 0xced;
 
+	/** Size in bytes of the header preceding the field values. */
+	public static final int HEADERSIZE = 80;
+
+	// whether field values are read from a memory mapping of the file
+	private static boolean _memoryMapped = !"false".equalsIgnoreCase(System.getProperty("magfield.mmap"));
+
 	// used to reconfigure fields so solenoid and torus do not overlap
 	private double _fakeZMax = Float.POSITIVE_INFINITY;
 
@@ -62,7 +69,7 @@ public abstract class MagneticField implements IMagField {
 	/** The field unit. */
 	protected FieldUnit fieldUnit;
 
-	/** holds the field in a float buffer. */
+	/** holds the field in a float buffer, possibly a read-only file mapping. */
 	protected FloatBuffer field;
 
 	/** high word of unix creation time */
@@ -411,7 +418,13 @@ public abstract class MagneticField implements IMagField {
 	}
 
 	/**
-	 * Read a magnetic field from a binary file. The file has the documented format.
+	 * Read a magnetic field from a binary file. The file has the documented format,
+	 * in either byte order (detected from the magic number).
+	 * <p>
+	 * If memory mapping is enabled (the default, see {@link #setMemoryMapped(boolean)})
+	 * the field values are not copied onto the heap but read directly from a
+	 * read-only mapping of the file, so all processes on a node using the same map
+	 * share one copy in the page cache.
 	 *
 	 * @param binaryFile the binary file.
 	 * @throws FileNotFoundException the file not found exception
@@ -426,76 +439,108 @@ public abstract class MagneticField implements IMagField {
 
 		// N23 = -1;
 
-		try {
-			DataInputStream dos = new DataInputStream(new FileInputStream(binaryFile));
+		try (FileChannel channel = new RandomAccessFile(binaryFile, "r").getChannel()) {
 
-			boolean swap = false;
-			int magicnum = dos.readInt(); // magic number
+			ByteBuffer header = ByteBuffer.allocate(HEADERSIZE);
+			while (header.hasRemaining()) {
+				if (channel.read(header) < 0) {
+					LOGGER.log(Level.SEVERE, "truncated header in field map " + binaryFile.getPath());
+					return;
+				}
+			}
+			header.flip();
 
-			LOGGER.log(Level.INFO, "Magic number: %04x", magicnum);
+			int magicnum = header.getInt(); // magic number
 
-			// TODO handle swapping if necessary
-			swap = (magicnum != MAGICNUMBER);
-			if (swap) {
-				LOGGER.log(Level.SEVERE, "byte swapping required but not yet implemented.");
-				dos.close();
+			LOGGER.log(Level.INFO, String.format("Magic number: %04x", magicnum));
+
+			if (magicnum == MAGICNUMBER) {
+				header.order(ByteOrder.BIG_ENDIAN);
+			}
+			else if (Integer.reverseBytes(magicnum) == MAGICNUMBER) {
+				header.order(ByteOrder.LITTLE_ENDIAN);
+			}
+			else {
+				LOGGER.log(Level.SEVERE, String.format("bad magic number %04x in field map %s", magicnum,
+						binaryFile.getPath()));
 				return;
 			}
 
 			// grid cs
-			gridCoordinateSystem = CoordinateSystem.fromInt(dos.readInt());
+			gridCoordinateSystem = CoordinateSystem.fromInt(header.getInt());
 
 			// field cs
-			fieldCoordinateSystem = CoordinateSystem.fromInt(dos.readInt());
+			fieldCoordinateSystem = CoordinateSystem.fromInt(header.getInt());
 
-			lengthUnit = LengthUnit.fromInt(dos.readInt()); // length units
-			angularUnit = AngularUnit.fromInt(dos.readInt()); // angle units
-			fieldUnit = FieldUnit.fromInt(dos.readInt()); // field units
+			lengthUnit = LengthUnit.fromInt(header.getInt()); // length units
+			angularUnit = AngularUnit.fromInt(header.getInt()); // angle units
+			fieldUnit = FieldUnit.fromInt(header.getInt()); // field units
 
-			float q1Min = dos.readFloat();
-			float q1Max = dos.readFloat();
-			int nQ1 = dos.readInt();
+			float q1Min = header.getFloat();
+			float q1Max = header.getFloat();
+			int nQ1 = header.getInt();
 			q1Coordinate = new GridCoordinate(_q1Name, q1Min, q1Max, nQ1);
 
-			float q2Min = dos.readFloat();
-			float q2Max = dos.readFloat();
-			int nQ2 = dos.readInt();
+			float q2Min = header.getFloat();
+			float q2Max = header.getFloat();
+			int nQ2 = header.getInt();
 			q2Coordinate = new GridCoordinate(_q2Name, q2Min, q2Max, nQ2);
 
-			float q3Min = dos.readFloat();
-			float q3Max = dos.readFloat();
-			int nQ3 = dos.readInt();
+			float q3Min = header.getFloat();
+			float q3Max = header.getFloat();
+			int nQ3 = header.getInt();
 			q3Coordinate = new GridCoordinate(_q3Name, q3Min, q3Max, nQ3);
 
 			numFieldPoints = nQ1 * nQ2 * nQ3;
 
 			// last five reserved
-			highTime = dos.readInt();
-			lowTime = dos.readInt();
-			reserved3 = dos.readInt();
-			reserved4 = dos.readInt();
-			reserved5 = dos.readInt();
+			highTime = header.getInt();
+			lowTime = header.getInt();
+			reserved3 = header.getInt();
+			reserved4 = header.getInt();
+			reserved5 = header.getInt();
 
 			// now get the field values
-			int size = 3 * 4 * numFieldPoints;
+			long size = 3L * 4L * numFieldPoints;
 
-			byte bytes[] = new byte[size];
+			if (channel.size() < HEADERSIZE + size) {
+				LOGGER.log(Level.SEVERE, String.format("field map %s has %d bytes, expected %d",
+						binaryFile.getPath(), channel.size(), HEADERSIZE + size));
+				return;
+			}
 
-			// read the bytes as a block
-			dos.read(bytes);
-			// ByteBuffer byteBuffer = ByteBuffer.wrap(bytes).asReadOnlyBuffer();
-			// field = byteBuffer.asFloatBuffer().asReadOnlyBuffer();
-			ByteBuffer byteBuffer = ByteBuffer.wrap(bytes);
-			field = byteBuffer.asFloatBuffer();
+			ByteBuffer byteBuffer;
+			if (_memoryMapped) {
+				// the mapping stays valid after the channel is closed
+				byteBuffer = channel.map(FileChannel.MapMode.READ_ONLY, HEADERSIZE, size);
+			}
+			else {
+				byteBuffer = ByteBuffer.allocate((int) size);
+				while (byteBuffer.hasRemaining() && channel.read(byteBuffer) >= 0);
+				byteBuffer.flip();
+			}
+			field = byteBuffer.order(header.order()).asFloatBuffer();
 
 			computeMaxField();
 
-			dos.close();
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
 	}
 
+	/**
+	 * Make sure the field values can be modified, copying them from a read-only
+	 * memory mapping onto the heap if necessary.
+	 */
+	protected final void makeWritable() {
+		if (field.isReadOnly()) {
+			FloatBuffer copy = FloatBuffer.allocate(field.capacity());
+			copy.put(field.duplicate());
+			copy.rewind();
+			field = copy;
+		}
+	}
+
 	/**
 	 * Get the magnitude for a given index.
 	 * 
@@ -675,6 +720,26 @@ public abstract class MagneticField implements IMagField {
 		LOGGER.log(Level.FINE, "Interpolating fields: " + _interpolate);
 	}
 
+	/**
+	 * Check whether field maps are memory mapped rather than read onto the heap
+	 * 
+	 * @return the memory mapped flag
+	 */
+	public static final boolean isMemoryMapped() {
+		return _memoryMapped;
+	}
+
+	/**
+	 * Set whether field maps read from now on are memory mapped (the default) or
+	 * read onto the heap. Also settable with the system property
+	 * <code>magfield.mmap</code>.
+	 * 
+	 * @param memoryMapped the memory mapped flag to set
+	 */
+	public static final void setMemoryMapped(boolean memoryMapped) {
+		_memoryMapped = memoryMapped;
+	}
+
 	/**
 	 * Get the phi coordinate which will be q1
 	 * 
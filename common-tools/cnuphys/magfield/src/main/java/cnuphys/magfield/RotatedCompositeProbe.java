@@ -56,11 +56,83 @@ public class RotatedCompositeProbe extends CompositeProbe {
 	@Override
 	public void field(int sector, float xtilt, float ytilt, float ztilt, float[] result) {
 
-		float x, y, z;
 		float bxl = 0, byl = 0, bzl = 0;
 
 		//covert tilted coordinates to lab
-		//see the comments at the top of this file for more details
+		tiltedToLab(sector, xtilt, ytilt, ztilt, _point);
+		float x = _point[0];
+		float y = _point[1];
+		float z = _point[2];
+
+		//get the field using the lab cordinates
+		for (IField probe : probes) {
+			probe.field(x, y, z, result);
+			bxl += result[0];
+			byl += result[1];
+			bzl += result[2];
+		}
+
+		//reverse transform the B components back to tilted
+		labToTilted(sector, bxl, byl, bzl, result);
+	}
+
+	/**
+	 * Obtain the magnetic field at several locations at once in the tilted
+	 * sector systems. The points are converted to the lab, looked up together
+	 * and the field is converted back, as in
+	 * {@link #field(int, float, float, float, float[])}.
+	 * 
+	 * @see FieldProbe#field(int, boolean[], int[], float[], float[], float[],
+	 *      float[], float[], float[])
+	 */
+	@Override
+	public void field(int n, boolean active[], int sector[], float x[], float y[], float z[], float bx[],
+			float by[], float bz[]) {
+
+		ensureWorkSpace(n);
+
+		for (int i = 0; i < n; i++) {
+			_batched[i] = ((active == null) || active[i]) && (sector[i] >= 1) && (sector[i] <= 6);
+			if (_batched[i]) {
+				tiltedToLab(sector[i], x[i], y[i], z[i], _point);
+				_xl[i] = _point[0];
+				_yl[i] = _point[1];
+				_zl[i] = _point[2];
+			} else if ((active == null) || active[i]) {
+				// a bad sector, leave the complaining to the single point lookup
+				field(sector[i], x[i], y[i], z[i], _point);
+				bx[i] = _point[0];
+				by[i] = _point[1];
+				bz[i] = _point[2];
+			}
+		}
+
+		sumProbes(n, _batched, _xl, _yl, _zl, bx, by, bz);
+
+		for (int i = 0; i < n; i++) {
+			if (_batched[i]) {
+				labToTilted(sector[i], bx[i], by[i], bz[i], _point);
+				bx[i] = _point[0];
+				by[i] = _point[1];
+				bz[i] = _point[2];
+			}
+		}
+	}
+
+	/**
+	 * Convert a point from a tilted sector system to the lab, see the comments
+	 * at the top of this file for more details
+	 * 
+	 * @param sector the sector [1..6]
+	 * @param xtilt  the tilted x coordinate in cm
+	 * @param ytilt  the tilted y coordinate in cm
+	 * @param ztilt  the tilted z coordinate in cm
+	 * @param lab    upon return, the lab coordinates in cm
+	 */
+	private static void tiltedToLab(int sector, float xtilt, float ytilt, float ztilt, float lab[]) {
+
+		float x, y, z;
+
 		z = -m12 * xtilt + m11 * ztilt;
 
 		switch (sector) {
@@ -101,15 +173,22 @@ public class RotatedCompositeProbe extends CompositeProbe {
 			break;
 		}
 
-		//get the field using the lab cordinates
-		for (IField probe : probes) {
-			probe.field(x, y, z, result);
-			bxl += result[0];
-			byl += result[1];
-			bzl += result[2];
-		}
+		lab[0] = x;
+		lab[1] = y;
+		lab[2] = z;
+	}
 
-		//reverse transform the B components back to tilted
+	/**
+	 * Convert the field from the lab to a tilted sector system. For a bad
+	 * sector the result is left unchanged.
+	 * 
+	 * @param sector the sector [1..6]
+	 * @param bxl    the x lab component of the field
+	 * @param byl    the y lab component of the field
+	 * @param bzl    the z lab component of the field
+	 * @param result upon return, the tilted components of the field
+	 */
+	private static void labToTilted(int sector, float bxl, float byl, float bzl, float result[]) {
 		switch (sector) {
 		case 1:
 			result[0] = m11 * bxl - m12 * bzl;
@@ -176,6 +255,16 @@ public class RotatedCompositeProbe extends CompositeProbe {
 		field(1, xs, ys, zs, result); // assume sector 1
 	}
 
+	/**
+	 * As {@link #field(float, float, float, float[])}, this should not be
+	 * called, the points must come with their sectors.
+	 */
+	@Override
+	public void field(int n, boolean active[], float x[], float y[], float z[], float bx[], float by[],
+			float bz[]) {
+		fieldByPoint(n, active, x, y, z, bx, by, bz);
+	}
+
 	/**
 	 * Obtain an approximation for the magnetic field gradient at a given location
 	 * expressed in Cartesian coordinates. The field is returned as a Cartesian
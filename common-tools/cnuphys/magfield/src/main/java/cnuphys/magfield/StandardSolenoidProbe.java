@@ -6,6 +6,11 @@ public class StandardSolenoidProbe extends SolenoidProbe {
 
 	private StandardSolenoid _solenoid;
 
+	// cells and work space for the batched lookups, created when first used
+	private Cell2DBatch _cells;
+	private double _rho[], _z[], _phi[];
+	private boolean _inside[];
+
 	// cache the z shift
 	// private double _shiftZ;
 
@@ -67,6 +72,81 @@ public class StandardSolenoidProbe extends SolenoidProbe {
 		fieldCylindrical(_cell, phi, rho, z, result);
 	}
 
+	/**
+	 * Get the field in kG at several points, interpolated for all of them
+	 * together with a grid cell per point index. Falls back to one point at a
+	 * time for nearest neighbor lookups.
+	 * 
+	 * @see FieldProbe#field(int, boolean[], float[], float[], float[], float[],
+	 *      float[], float[])
+	 */
+	@Override
+	public void field(int n, boolean active[], float x[], float y[], float z[], float bx[], float by[],
+			float bz[]) {
+
+		if (isZeroField() || !MagneticField.isInterpolate()) {
+			fieldByPoint(n, active, x, y, z, bx, by, bz);
+			return;
+		}
+
+		if (_cells == null) {
+			_cells = new Cell2DBatch(this);
+		}
+		if ((_rho == null) || (_rho.length < n)) {
+			_rho = new double[n];
+			_z = new double[n];
+			_phi = new double[n];
+			_inside = new boolean[n];
+		}
+
+		double shiftX = _solenoid.getShiftX();
+		double shiftY = _solenoid.getShiftY();
+		double shiftZ = _solenoid.getShiftZ();
+
+		// cylindrical coordinates, as in field(x, y, z, result)
+		for (int i = 0; i < n; i++) {
+			_inside[i] = ((active == null) || active[i]) && contains(x[i], y[i], z[i]);
+			if (!_inside[i]) {
+				if ((active == null) || active[i]) {
+					bx[i] = 0f;
+					by[i] = 0f;
+					bz[i] = 0f;
+				}
+				continue;
+			}
+
+			float xs = x[i];
+			float ys = y[i];
+			float zs = z[i];
+			xs -= shiftX;
+			ys -= shiftY;
+			zs -= shiftZ;
+
+			_rho[i] = FastMath.sqrt(xs * xs + ys * ys);
+			_phi[i] = FastMath.atan2Deg(ys, xs);
+			_z[i] = zs;
+		}
+
+		// brho goes in bx until it is rotated
+		_cells.calculate(n, _inside, _rho, _z, bx, bz);
+
+		// rotate onto the proper phi and scale, as in fieldCylindrical
+		double sf = _solenoid.getScaleFactor();
+		for (int i = 0; i < n; i++) {
+			if (!_inside[i]) {
+				continue;
+			}
+			double rphi = Math.toRadians(_phi[i]);
+			double brho = bx[i];
+			bx[i] = (float) (brho * Math.cos(rphi));
+			by[i] = (float) (brho * Math.sin(rphi));
+
+			bx[i] *= sf;
+			by[i] *= sf;
+			bz[i] *= sf;
+		}
+	}
+
 	/**
 	 * Get the field by bilinear interpolation.
 	 * 
@@ -145,6 +145,7 @@ public class Torus extends MagneticField {
 	 * @param result         the solenoid field added in
 	 */
 	public void addToField(int compositeIndex, float[] result) {
+		makeWritable();
 		int index = 3 * compositeIndex;
 		for (int i = 0; i < 3; i++) {
 			int j = index + i;
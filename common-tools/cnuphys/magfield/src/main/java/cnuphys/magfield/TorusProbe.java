@@ -17,6 +17,16 @@ public class TorusProbe extends FieldProbe {
 	// 12 -fold symmetry or full map?
 	private boolean _fullMap;
 
+	// work space for the gradient
+	private final float _b[] = new float[3];
+	private final double _db[] = new double[9];
+
+	// cells and work space for the batched lookups, created when first used
+	private Cell3DBatch _cells;
+	private double _q1[], _q2[], _q3[];
+	private boolean _inside[], _flip[];
+	private int _sect[];
+
 	/**
 	 * Create a probe for use with the torus
 	 * 
@@ -100,6 +110,189 @@ public class TorusProbe extends FieldProbe {
 		fieldCylindrical(_cell, phi, rho, z, result);
 	}
 
+	/**
+	 * Get the field in kG at several points, interpolated for all of them
+	 * together with a grid cell per point index. Falls back to one point at a
+	 * time for nearest neighbor lookups and when the cell cache is set.
+	 * 
+	 * @see FieldProbe#field(int, boolean[], float[], float[], float[], float[],
+	 *      float[], float[])
+	 */
+	@Override
+	public void field(int n, boolean active[], float x[], float y[], float z[], float bx[], float by[],
+			float bz[]) {
+
+		if (isZeroField() || !MagneticField.isInterpolate() || (_cell.getCacheSize() > 0)) {
+			fieldByPoint(n, active, x, y, z, bx, by, bz);
+			return;
+		}
+
+		if (_cells == null) {
+			_cells = new Cell3DBatch(this);
+		}
+		if ((_q1 == null) || (_q1.length < n)) {
+			_q1 = new double[n];
+			_q2 = new double[n];
+			_q3 = new double[n];
+			_inside = new boolean[n];
+			_flip = new boolean[n];
+			_sect = new int[n];
+		}
+
+		double shiftX = _torus.getShiftX();
+		double shiftY = _torus.getShiftY();
+		double shiftZ = _torus.getShiftZ();
+
+		// grid coordinates, as in field(x, y, z, result)
+		for (int i = 0; i < n; i++) {
+			_inside[i] = ((active == null) || active[i]) && contains(x[i], y[i], z[i]);
+			if (!_inside[i]) {
+				if ((active == null) || active[i]) {
+					bx[i] = 0f;
+					by[i] = 0f;
+					bz[i] = 0f;
+				}
+				continue;
+			}
+
+			float xs = x[i];
+			float ys = y[i];
+			float zs = z[i];
+			xs -= shiftX;
+			ys -= shiftY;
+			zs -= shiftZ;
+
+			double rho = FastMath.sqrt(xs * xs + ys * ys);
+			double phi = FastMath.atan2Deg(ys, xs);
+
+			if (_fullMap) {
+				if (phi < 0) {
+					phi += 360;
+				}
+				_q1[i] = phi;
+			} else {
+				double relativePhi = relativePhi(phi);
+				_flip[i] = (relativePhi < 0.0);
+				_sect[i] = getSector(phi);
+				_q1[i] = Math.abs(relativePhi);
+			}
+			_q2[i] = rho;
+			_q3[i] = zs;
+		}
+
+		_cells.calculate(n, _inside, _q1, _q2, _q3, bx, by, bz);
+
+		// symmetry and scale, as in fieldCylindrical
+		double sf = _torus._scaleFactor;
+		for (int i = 0; i < n; i++) {
+			if (!_inside[i]) {
+				continue;
+			}
+			if (!_fullMap) {
+				if (_flip[i]) {
+					bx[i] = -bx[i];
+					bz[i] = -bz[i];
+				}
+
+				int sector = _sect[i];
+				if (sector > 1) {
+					double cos = cosSect[sector];
+					double sin = sinSect[sector];
+					double b1 = bx[i];
+					double b2 = by[i];
+					bx[i] = (float) (b1 * cos - b2 * sin);
+					by[i] = (float) (b1 * sin + b2 * cos);
+				}
+			}
+
+			bx[i] *= sf;
+			by[i] *= sf;
+			bz[i] *= sf;
+		}
+	}
+
+	@Override
+	public void setCellCacheSize(int size) {
+		_cell.setCacheSize(size);
+	}
+
+	@Override
+	public int getCellCacheSize() {
+		return _cell.getCacheSize();
+	}
+
+	/**
+	 * Obtain the gradient of the magnitude of the field in kG/cm. If the cell
+	 * cache is set (see {@link #setCellCacheSize(int)}) it is the
+	 * exact gradient of the interpolated field, from the interpolation
+	 * coefficients of the cell, otherwise it is approximated by finite
+	 * differences.
+	 *
+	 * @param x      the x coordinate in cm
+	 * @param y      the y coordinate in cm
+	 * @param z      the z coordinate in cm
+	 * @param result holds the Cartesian components of the gradient
+	 */
+	@Override
+	public void gradient(float x, float y, float z, float result[]) {
+
+		if ((_cell.getCacheSize() == 0) || !MagneticField.isInterpolate()) {
+			super.gradient(x, y, z, result);
+			return;
+		}
+
+		result[X] = 0f;
+		result[Y] = 0f;
+		result[Z] = 0f;
+
+		if (isZeroField() || !contains(x, y, z)) {
+			return;
+		}
+
+		// apply the shifts
+		double xs = x - _torus.getShiftX();
+		double ys = y - _torus.getShiftY();
+		double zs = z - _torus.getShiftZ();
+
+		double rho = FastMath.sqrt(xs * xs + ys * ys);
+		if (!(rho > 0)) {
+			super.gradient(x, y, z, result);
+			return;
+		}
+		double phi = FastMath.atan2Deg(ys, xs);
+
+		// the grid phi and its derivative with respect to phi
+		double q1;
+		double dq1 = 1;
+		if (_fullMap) {
+			q1 = (phi < 0) ? phi + 360 : phi;
+		} else {
+			double relativePhi = relativePhi(phi);
+			q1 = Math.abs(relativePhi);
+			if (relativePhi < 0.0) {
+				dq1 = -1;
+			}
+		}
+
+		if (!_cell.calculate(q1, rho, zs, _b, _db)) {
+			return;
+		}
+
+		// the magnitude does not change with the flip and the sector rotation
+		double bb = _b[X] * _b[X] + _b[Y] * _b[Y] + _b[Z] * _b[Z];
+		if (!(bb > 0)) {
+			return;
+		}
+		double sf = Math.abs(_torus._scaleFactor) / Math.sqrt(bb);
+		double dphi = sf * dq1 * (_b[X] * _db[0] + _b[Y] * _db[3] + _b[Z] * _db[6]) * (180 / Math.PI) / (rho * rho);
+		double drho = sf * (_b[X] * _db[1] + _b[Y] * _db[4] + _b[Z] * _db[7]) / rho;
+		double dz = sf * (_b[X] * _db[2] + _b[Y] * _db[5] + _b[Z] * _db[8]);
+
+		result[X] = (float) (-ys * dphi + xs * drho);
+		result[Y] = (float) (xs * dphi + ys * drho);
+		result[Z] = (float) dz;
+	}
+
 	/**
 	 * Get the field by trilinear interpolation. Assumes all shifting from
 	 * misalignment is done.
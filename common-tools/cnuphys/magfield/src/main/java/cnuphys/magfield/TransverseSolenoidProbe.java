@@ -8,6 +8,10 @@ public class TransverseSolenoidProbe extends SolenoidProbe {
 	// the transverse solenoid field
 	private TransverseSolenoid _transverseSolenoid;
 
+	// work space for the gradient
+	private final float _b[] = new float[3];
+	private final double _db[] = new double[9];
+
 	
 	/**
 	 * Create a probe for use with the transverse solenoid field
@@ -61,4 +65,61 @@ public class TransverseSolenoidProbe extends SolenoidProbe {
 
 	}
 
+	@Override
+	public void setCellCacheSize(int size) {
+		_cell.setCacheSize(size);
+	}
+
+	@Override
+	public int getCellCacheSize() {
+		return _cell.getCacheSize();
+	}
+
+	/**
+	 * Obtain the gradient of the magnitude of the field in kG/cm. If the cell
+	 * cache is set (see {@link #setCellCacheSize(int)}) it is the exact
+	 * gradient of the interpolated field, from the interpolation coefficients
+	 * of the cell, otherwise it is approximated by finite differences.
+	 *
+	 * @param x      the x coordinate in cm
+	 * @param y      the y coordinate in cm
+	 * @param z      the z coordinate in cm
+	 * @param result holds the Cartesian components of the gradient
+	 */
+	@Override
+	public void gradient(float x, float y, float z, float result[]) {
+
+		if ((_cell.getCacheSize() == 0) || !MagneticField.isInterpolate()) {
+			super.gradient(x, y, z, result);
+			return;
+		}
+
+		result[X] = 0f;
+		result[Y] = 0f;
+		result[Z] = 0f;
+
+		if (isZeroField() || !contains(x, y, z)) {
+			return;
+		}
+
+		// apply the shifts, the grid is Cartesian
+		double xs = x - _transverseSolenoid.getShiftX();
+		double ys = y - _transverseSolenoid.getShiftY();
+		double zs = z - _transverseSolenoid.getShiftZ();
+
+		if (!_cell.calculate(xs, ys, zs, _b, _db)) {
+			return;
+		}
+
+		double bb = _b[X] * _b[X] + _b[Y] * _b[Y] + _b[Z] * _b[Z];
+		if (!(bb > 0)) {
+			return;
+		}
+		double sf = Math.abs(_transverseSolenoid._scaleFactor) / Math.sqrt(bb);
+
+		result[X] = (float) (sf * (_b[X] * _db[0] + _b[Y] * _db[3] + _b[Z] * _db[6]));
+		result[Y] = (float) (sf * (_b[X] * _db[1] + _b[Y] * _db[4] + _b[Z] * _db[7]));
+		result[Z] = (float) (sf * (_b[X] * _db[2] + _b[Y] * _db[5] + _b[Z] * _db[8]));
+	}
+
 }
@@ -0,0 +1,149 @@
+package cnuphys.magfield;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Compare the batched field lookups of the probes with the single point
+ * lookups, on synthetic torus and solenoid maps. The values must be the same
+ * to the bit, the points outside the grids included.
+ */
+public class BatchFieldTest {
+
+	private static final int N = 37;
+
+	// marks the results that must be left unchanged
+	private static final float UNSET = 12345f;
+
+	private Torus torus;
+	private StandardSolenoid solenoid;
+
+	@Before
+	public void setUp() throws IOException {
+		torus = Torus.fromBinaryFile(Cell3DTest.writeMap(true, 0, 30, 31, 0, 400, 81, 100, 500, 81));
+		solenoid = StandardSolenoid.fromBinaryFile(Cell3DTest.writeMap(true, 0, 0, 1, 0, 300, 61, -200, 300, 101));
+		torus.setScaleFactor(-0.75);
+		solenoid.setScaleFactor(0.9);
+		solenoid.setShiftZ(-3);
+		MagneticFields.getInstance().setTorus(torus);
+		MagneticFields.getInstance().setSolenoid(solenoid);
+	}
+
+	@After
+	public void restore() {
+		MagneticField.setInterpolate(true);
+	}
+
+	private static <T extends CompositeField> T composite(T field, IMagField... fields) {
+		for (IMagField f : fields) {
+			field.add(f);
+		}
+		MagneticFields.getInstance().setActiveField(field);
+		return field;
+	}
+
+	// random walks of the points, back and forth across cells and grid edges
+	private static void compare(FieldProbe probe, boolean sectors) {
+		Random rand = new Random(3);
+		float x[] = new float[N], y[] = new float[N], z[] = new float[N];
+		float bx[] = new float[N], by[] = new float[N], bz[] = new float[N];
+		int sector[] = new int[N];
+		boolean active[] = new boolean[N];
+		float single[] = new float[3];
+		int nonzero = 0, outside = 0;
+
+		for (int i = 0; i < N; i++) {
+			x[i] = (float) (-300 + 600 * rand.nextDouble());
+			y[i] = (float) (-300 + 600 * rand.nextDouble());
+			z[i] = (float) (-100 + 600 * rand.nextDouble());
+			sector[i] = 1 + rand.nextInt(6);
+		}
+
+		for (int step = 0; step < 500; step++) {
+			for (int i = 0; i < N; i++) {
+				x[i] = (float) Math.max(-450, Math.min(450, x[i] + 8 * rand.nextGaussian()));
+				y[i] = (float) Math.max(-450, Math.min(450, y[i] + 8 * rand.nextGaussian()));
+				z[i] = (float) Math.max(-250, Math.min(600, z[i] + 8 * rand.nextGaussian()));
+				active[i] = rand.nextInt(4) != 0;
+			}
+			Arrays.fill(bx, UNSET);
+			Arrays.fill(by, UNSET);
+			Arrays.fill(bz, UNSET);
+
+			boolean mask[] = (step % 5 == 0) ? null : active;
+			if (sectors) {
+				probe.field(N, mask, sector, x, y, z, bx, by, bz);
+			} else {
+				probe.field(N, mask, x, y, z, bx, by, bz);
+			}
+
+			for (int i = 0; i < N; i++) {
+				if ((mask != null) && !mask[i]) {
+					assertEquals(UNSET, bx[i], 0f);
+					assertEquals(UNSET, by[i], 0f);
+					assertEquals(UNSET, bz[i], 0f);
+					continue;
+				}
+				if (sectors) {
+					probe.field(sector[i], x[i], y[i], z[i], single);
+				} else {
+					probe.field(x[i], y[i], z[i], single);
+				}
+				assertEquals(single[0], bx[i], 0f);
+				assertEquals(single[1], by[i], 0f);
+				assertEquals(single[2], bz[i], 0f);
+				if (single[2] != 0) {
+					nonzero++;
+				} else {
+					outside++;
+				}
+			}
+		}
+		assertTrue(nonzero > 1000);
+		assertTrue(outside > 100);
+	}
+
+	@Test
+	public void testTorus() {
+		MagneticFields.getInstance().setActiveField(torus);
+		FieldProbe probe = new TorusProbe(torus);
+		compare(probe, false);
+		compare(probe, true);
+
+		// one point at a time with the cell cache and for nearest neighbors
+		probe.setCellCacheSize(4);
+		compare(probe, false);
+		probe.setCellCacheSize(0);
+		MagneticField.setInterpolate(false);
+		compare(probe, false);
+	}
+
+	@Test
+	public void testSolenoid() {
+		MagneticFields.getInstance().setActiveField(solenoid);
+		FieldProbe probe = new StandardSolenoidProbe(solenoid);
+		compare(probe, false);
+		compare(probe, true);
+		MagneticField.setInterpolate(false);
+		compare(probe, false);
+	}
+
+	@Test
+	public void testComposite() {
+		FieldProbe probe = new CompositeProbe(composite(new CompositeField(), torus, solenoid));
+		compare(probe, false);
+		compare(probe, true);
+	}
+
+	@Test
+	public void testRotatedComposite() {
+		FieldProbe probe = new RotatedCompositeProbe(composite(new RotatedCompositeField(), torus, solenoid));
+		compare(probe, true);
+	}
+}
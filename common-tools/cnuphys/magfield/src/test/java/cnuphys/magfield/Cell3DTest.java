@@ -0,0 +1,184 @@
+package cnuphys.magfield;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Compare the cached cells of {@link Cell3D} with the single cell, and the
+ * analytic gradient of the field magnitude with finite differences, on
+ * synthetic torus and transverse solenoid maps.
+ */
+public class Cell3DTest {
+
+	// a smooth field, not zero anywhere in the grids
+	private static double component(int i, double q1, double q2, double q3) {
+		switch (i) {
+		case 0:
+			return 5 + 2 * Math.sin(0.05 * q1 + 0.01 * q2) + 0.001 * q3;
+		case 1:
+			return 3 * Math.cos(0.02 * q2 - 0.01 * q3) + 0.1 * q1 * 0.01;
+		default:
+			return 1 + Math.sin(0.01 * q1 * 0.1 + 0.02 * q3);
+		}
+	}
+
+	// write a map in the binary format read by MagneticField
+	static File writeMap(boolean cylindrical, double q1Min, double q1Max, int n1, double q2Min,
+			double q2Max, int n2, double q3Min, double q3Max, int n3) throws IOException {
+		File file = File.createTempFile("fieldmap", ".dat");
+		file.deleteOnExit();
+		try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file))) {
+			out.writeInt(MagneticField.MAGICNUMBER);
+			out.writeInt(cylindrical ? 0 : 1); // grid coordinate system
+			out.writeInt(cylindrical ? 0 : 1); // field coordinate system
+			out.writeInt(0); // cm
+			out.writeInt(0); // degrees
+			out.writeInt(0); // kG
+			out.writeFloat((float) q1Min);
+			out.writeFloat((float) q1Max);
+			out.writeInt(n1);
+			out.writeFloat((float) q2Min);
+			out.writeFloat((float) q2Max);
+			out.writeInt(n2);
+			out.writeFloat((float) q3Min);
+			out.writeFloat((float) q3Max);
+			out.writeInt(n3);
+			for (int i = 0; i < 5; i++) {
+				out.writeInt(0);
+			}
+			for (int i1 = 0; i1 < n1; i1++) {
+				double q1 = q1Min + i1 * (q1Max - q1Min) / Math.max(1, n1 - 1);
+				for (int i2 = 0; i2 < n2; i2++) {
+					double q2 = q2Min + i2 * (q2Max - q2Min) / (n2 - 1);
+					for (int i3 = 0; i3 < n3; i3++) {
+						double q3 = q3Min + i3 * (q3Max - q3Min) / (n3 - 1);
+						for (int i = 0; i < 3; i++) {
+							out.writeFloat((float) component(i, q1, q2, q3));
+						}
+					}
+				}
+			}
+		}
+		return file;
+	}
+
+	private static FieldProbe getTorusProbe() throws IOException {
+		Torus torus = Torus.fromBinaryFile(writeMap(true, 0, 30, 31, 0, 400, 81, 100, 500, 81));
+		MagneticFields.getInstance().setTorus(torus);
+		MagneticFields.getInstance().setActiveField(torus);
+		return new TorusProbe(torus);
+	}
+
+	private static FieldProbe getTransverseSolenoidProbe() throws IOException {
+		TransverseSolenoid solenoid = TransverseSolenoid
+				.fromBinaryFile(writeMap(false, -100, 100, 41, -100, 100, 41, -100, 100, 41));
+		MagneticFields.getInstance().setSolenoid(solenoid);
+		MagneticFields.getInstance().setActiveField(solenoid);
+		return new TransverseSolenoidProbe(solenoid);
+	}
+
+	// random steps back and forth in a box, crossing cell boundaries often
+	private static void testValues(FieldProbe probe, double xMin, double xMax, double yMin, double yMax,
+			double zMin, double zMax) {
+		Random rand = new Random(1);
+		float single[] = new float[3];
+		float cached[] = new float[3];
+		double x = 0.5 * (xMin + xMax), y = 0.5 * (yMin + yMax), z = 0.5 * (zMin + zMax);
+		int nonzero = 0;
+		for (int i = 0; i < 20000; i++) {
+			x = Math.max(xMin, Math.min(xMax, x + 10 * rand.nextGaussian()));
+			y = Math.max(yMin, Math.min(yMax, y + 10 * rand.nextGaussian()));
+			z = Math.max(zMin, Math.min(zMax, z + 10 * rand.nextGaussian()));
+
+			probe.setCellCacheSize(0);
+			probe.field((float) x, (float) y, (float) z, single);
+			probe.setCellCacheSize(4);
+			probe.field((float) x, (float) y, (float) z, cached);
+
+			for (int j = 0; j < 3; j++) {
+				assertEquals(single[j], cached[j], 1e-5 * (1 + Math.abs(single[j])));
+			}
+			if (single[0] != 0) {
+				nonzero++;
+			}
+		}
+		assertTrue(nonzero > 10000);
+	}
+
+	private static void testGradient(FieldProbe probe, double xMin, double xMax, double yMin, double yMax,
+			double zMin, double zMax) {
+		Random rand = new Random(2);
+		float gradient[] = new float[3];
+		double h = 0.01;
+		int checked = 0;
+		for (int i = 0; i < 2000; i++) {
+			double x = xMin + (xMax - xMin) * rand.nextDouble();
+			double y = yMin + (yMax - yMin) * rand.nextDouble();
+			double z = zMin + (zMax - zMin) * rand.nextDouble();
+
+			probe.setCellCacheSize(4);
+			probe.gradient((float) x, (float) y, (float) z, gradient);
+
+			double b0 = probe.fieldMagnitude((float) x, (float) y, (float) z);
+			double p[] = { x, y, z };
+			boolean kink = false;
+			double expected[] = new double[3];
+			for (int j = 0; j < 3; j++) {
+				p[j] += h;
+				double bp = probe.fieldMagnitude((float) p[0], (float) p[1], (float) p[2]);
+				p[j] -= 2 * h;
+				double bm = probe.fieldMagnitude((float) p[0], (float) p[1], (float) p[2]);
+				p[j] += h;
+				// the interpolated field is not differentiable on cell
+				// boundaries, skip the points next to them
+				if (Math.abs((bp - b0) - (b0 - bm)) > 1e-3 * h) {
+					kink = true;
+				}
+				expected[j] = (bp - bm) / (2 * h);
+			}
+			if (kink) {
+				continue;
+			}
+			for (int j = 0; j < 3; j++) {
+				assertEquals(expected[j], gradient[j], 1e-3 + 1e-3 * Math.abs(expected[j]));
+			}
+			checked++;
+		}
+		assertTrue(checked > 1500);
+	}
+
+	@Test
+	public void testTorus() throws IOException {
+		FieldProbe probe = getTorusProbe();
+		// all sectors, both halves of each sector
+		testValues(probe, -300, 300, -300, 300, 150, 450);
+		testGradient(probe, -300, 300, -300, 300, 150, 450);
+	}
+
+	@Test
+	public void testTransverseSolenoid() throws IOException {
+		FieldProbe probe = getTransverseSolenoidProbe();
+		testValues(probe, -90, 90, -90, 90, -90, 90);
+		testGradient(probe, -90, 90, -90, 90, -90, 90);
+	}
+
+	@Test
+	public void testCacheSize() throws IOException {
+		FieldProbe probe = getTorusProbe();
+		assertEquals(0, probe.getCellCacheSize());
+		probe.setCellCacheSize(100);
+		assertEquals(Cell3D.MAXCACHESIZE, probe.getCellCacheSize());
+
+		// the setting belongs to the probe
+		FieldProbe other = new TorusProbe(MagneticFields.getInstance().getTorus());
+		assertEquals(0, other.getCellCacheSize());
+		probe.setCellCacheSize(-1);
+		assertEquals(0, probe.getCellCacheSize());
+	}
+}
@@ -0,0 +1,111 @@
+package cnuphys.magfield;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Read field maps written in both byte orders, memory mapped or onto the heap.
+ */
+public class MagneticFieldTest {
+
+	private static final int N1 = 7, N2 = 11, N3 = 13;
+
+	private final boolean memoryMapped = MagneticField.isMemoryMapped();
+
+	@After
+	public void restore() {
+		MagneticField.setMemoryMapped(memoryMapped);
+	}
+
+	private static float value(int index) {
+		return (float) (Math.sin(0.01 * index) * 10 + 1e-3 * index);
+	}
+
+	// write a torus map in the binary format, truncated by the given bytes
+	private static File writeMap(ByteOrder order, int truncate) throws IOException {
+		int size = MagneticField.HEADERSIZE + 12 * N1 * N2 * N3;
+		ByteBuffer buffer = ByteBuffer.allocate(size).order(order);
+		buffer.putInt(MagneticField.MAGICNUMBER);
+		buffer.putInt(0); // cylindrical grid
+		buffer.putInt(0); // cylindrical field
+		buffer.putInt(0); // cm
+		buffer.putInt(0); // degrees
+		buffer.putInt(0); // kG
+		buffer.putFloat(0).putFloat(30).putInt(N1);
+		buffer.putFloat(0).putFloat(400).putInt(N2);
+		buffer.putFloat(100).putFloat(500).putInt(N3);
+		buffer.putInt(12).putInt(34).putInt(0).putInt(0).putInt(0);
+		for (int i = 0; i < 3 * N1 * N2 * N3; i++) {
+			buffer.putFloat(value(i));
+		}
+
+		File file = File.createTempFile("fieldmap", ".dat");
+		file.deleteOnExit();
+		try (FileOutputStream out = new FileOutputStream(file)) {
+			out.write(buffer.array(), 0, size - truncate);
+		}
+		return file;
+	}
+
+	private static void check(Torus torus) {
+		assertNotNull(torus.field);
+		assertEquals(3 * N1 * N2 * N3, torus.field.limit());
+		assertEquals(N1, torus.getQ1Coordinate().getNumPoints());
+		assertEquals(N2, torus.getQ2Coordinate().getNumPoints());
+		assertEquals(N3, torus.getQ3Coordinate().getNumPoints());
+		assertEquals(100, torus.getQ3Coordinate().getMin(), 0);
+		assertEquals(500, torus.getQ3Coordinate().getMax(), 0);
+		assertEquals(12, torus.highTime);
+		assertEquals(34, torus.lowTime);
+		for (int index = 0; index < N1 * N2 * N3; index++) {
+			assertEquals(value(3 * index), torus.getB1(index), 0);
+			assertEquals(value(3 * index + 1), torus.getB2(index), 0);
+			assertEquals(value(3 * index + 2), torus.getB3(index), 0);
+		}
+	}
+
+	@Test
+	public void testByteOrder() throws IOException {
+		for (boolean mapped : new boolean[] { true, false }) {
+			MagneticField.setMemoryMapped(mapped);
+			for (ByteOrder order : Arrays.asList(ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN)) {
+				Torus torus = Torus.fromBinaryFile(writeMap(order, 0));
+				check(torus);
+				assertEquals(mapped, torus.field.isReadOnly());
+				assertEquals(order, torus.field.order());
+			}
+		}
+	}
+
+	@Test
+	public void testTruncated() throws IOException {
+		for (boolean mapped : new boolean[] { true, false }) {
+			MagneticField.setMemoryMapped(mapped);
+			// complete header, missing field values
+			assertNull(Torus.fromBinaryFile(writeMap(ByteOrder.BIG_ENDIAN, 4)).field);
+			assertNull(Torus.fromBinaryFile(writeMap(ByteOrder.BIG_ENDIAN, 12 * N1 * N2 * N3)).field);
+		}
+	}
+
+	@Test
+	public void testAddToField() throws IOException {
+		MagneticField.setMemoryMapped(true);
+		Torus torus = Torus.fromBinaryFile(writeMap(ByteOrder.LITTLE_ENDIAN, 0));
+		assertTrue(torus.field.isReadOnly());
+		double scale = torus.getScaleFactor();
+		torus.addToField(5, new float[] { 1, 2, 3 });
+		assertFalse(torus.field.isReadOnly());
+		assertEquals(value(15) + scale, torus.getB1(5), 1e-5);
+		assertEquals(value(16) + 2 * scale, torus.getB2(5), 1e-5);
+		assertEquals(value(17) + 3 * scale, torus.getB3(5), 1e-5);
+		assertEquals(value(18), torus.getB1(6), 0);
+	}
+}
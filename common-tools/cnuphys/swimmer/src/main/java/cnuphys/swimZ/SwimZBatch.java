@@ -0,0 +1,712 @@
+package cnuphys.swimZ;
+
+import cnuphys.magfield.FastMath;
+import cnuphys.magfield.FieldProbe;
+import cnuphys.magfield.IMagField;
+import cnuphys.magfield.MagneticField;
+import cnuphys.rk4.IStopper;
+import cnuphys.rk4.RungeKuttaZ;
+
+/**
+ * Swims a batch of tracks to fixed z values in lockstep, with the same
+ * adaptive half-step RK4 integration as {@link SwimZ#adaptiveRK} and
+ * {@link SwimZ#sectorAdaptiveRK}. Each track gets the same steps, and so
+ * the same final state, path length and integral |B x dL|, as if it was swum
+ * alone.
+ * <p>
+ * The state of the tracks in flight (the "lanes") is held as a structure of
+ * arrays, one array per state variable indexed by lane, and every stage of
+ * the integration (field lookups, derivatives, RK4 sums, error estimates) is
+ * done for all lanes before the next, so the arithmetic runs over contiguous
+ * arrays. The field of all lanes is looked up with one batched call of the
+ * probe, which keeps an interpolation cell per lane. Tracks that are done,
+ * stopped by their stopper or failed are masked out while the others
+ * continue.
+ * <p>
+ * A batch swimmer is not thread safe: use one per thread, like {@link SwimZ}.
+ *
+ * @author heddle
+ *
+ */
+public class SwimZBatch {
+
+	/** The default number of lanes */
+	public static final int DEFAULTLANES = 16;
+
+	//growth factor of the step size after an accepted step, as in RungeKuttaZ
+	private static final double HGROWTH = 1.5;
+
+	//the probe, shared by the lanes
+	private final FieldProbe _probe;
+
+	//number of lanes
+	private final int _nLanes;
+
+	//baseline absolute tolerance
+	private double _eps = 1.0e-3;
+
+	//absolute tolerances
+	private double _absoluteTolerance[] = new double[4];
+
+	//step size limits
+	private double _minStepSize = RungeKuttaZ.DEFMINSTEPSIZE;
+	private double _maxStepSize = RungeKuttaZ.DEFMAXSTEPSIZE;
+
+	//the sectors of the lanes, null for the lab system
+	private int _sector[];
+
+	//the lanes: track index, q*v, z, final z, step size, steps taken
+	private final int _track[];
+	private final int _laneSector[];
+	private final double _qv[];
+	private final double _t[];
+	private final double _tf[];
+	private final double _h[];
+	private final double _hs[];
+	private final int _nStep[];
+
+	//path length and integral |B x dL| of the lanes
+	private final double _pathLength[];
+	private final double _bdl[];
+
+	//lane masks
+	private final boolean _normalDir[];
+	private final boolean _busy[];
+	private final boolean _lastStep[];
+	private final boolean _accepted[];
+
+	//state vectors (x, y, tx, ty) and derivatives, by component then lane
+	private final double _yt[][];
+	private final double _yfull[][];
+	private final double _yhalf[][];
+	private final double _ytemp[][];
+	private final double _k1[][];
+	private final double _kmid[][];
+	private final double _k2[][];
+	private final double _k3[][];
+	private final double _k4[][];
+	private final double _ys[] = new double[4];
+
+	//the positions before the last accepted steps
+	private final double _xprev[];
+	private final double _yprev[];
+	private final double _zprev[];
+
+	//scratch z values and step sizes of the half steps and of the RK4 stages
+	private final double _tmid[];
+	private final double _h2[];
+	private final double _umid[];
+	private final double _uend[];
+	private final double _uhh[];
+
+	//the points and field values of the batched lookups
+	private final float _xf[];
+	private final float _yf[];
+	private final float _zf[];
+	private final float _bx[];
+	private final float _by[];
+	private final float _bz[];
+	private final float _B[] = new float[3];
+	private final double _dr[] = new double[3];
+	private final double _bxdl[] = new double[3];
+
+	/**
+	 * Create a batch swimmer with the default number of lanes that uses the
+	 * active field.
+	 */
+	public SwimZBatch() {
+		this(DEFAULTLANES);
+	}
+
+	/**
+	 * Create a batch swimmer that uses the active field.
+	 *
+	 * @param nLanes
+	 *            the number of tracks swum in lockstep
+	 */
+	public SwimZBatch(int nLanes) {
+		this(null, nLanes);
+	}
+
+	/**
+	 * Create a batch swimmer that uses the given field.
+	 *
+	 * @param magneticField
+	 *            the magnetic field
+	 * @param nLanes
+	 *            the number of tracks swum in lockstep
+	 */
+	public SwimZBatch(MagneticField magneticField, int nLanes) {
+		this((IMagField) magneticField, nLanes);
+	}
+
+	/**
+	 * Create a batch swimmer that uses the given field.
+	 *
+	 * @param magneticField
+	 *            the magnetic field, or <code>null</code> for the active
+	 *            field
+	 * @param nLanes
+	 *            the number of tracks swum in lockstep
+	 */
+	public SwimZBatch(IMagField magneticField, int nLanes) {
+		if (nLanes < 1) {
+			throw new IllegalArgumentException("Need at least one lane, not " + nLanes);
+		}
+		_nLanes = nLanes;
+
+		_probe = (magneticField == null) ? FieldProbe.factory() : FieldProbe.factory(magneticField);
+
+		_track = new int[nLanes];
+		_laneSector = new int[nLanes];
+		_qv = new double[nLanes];
+		_t = new double[nLanes];
+		_tf = new double[nLanes];
+		_h = new double[nLanes];
+		_hs = new double[nLanes];
+		_nStep = new int[nLanes];
+		_pathLength = new double[nLanes];
+		_bdl = new double[nLanes];
+		_normalDir = new boolean[nLanes];
+		_busy = new boolean[nLanes];
+		_lastStep = new boolean[nLanes];
+		_accepted = new boolean[nLanes];
+
+		_yt = new double[4][nLanes];
+		_yfull = new double[4][nLanes];
+		_yhalf = new double[4][nLanes];
+		_ytemp = new double[4][nLanes];
+		_k1 = new double[4][nLanes];
+		_kmid = new double[4][nLanes];
+		_k2 = new double[4][nLanes];
+		_k3 = new double[4][nLanes];
+		_k4 = new double[4][nLanes];
+
+		_xprev = new double[nLanes];
+		_yprev = new double[nLanes];
+		_zprev = new double[nLanes];
+
+		_tmid = new double[nLanes];
+		_h2 = new double[nLanes];
+		_umid = new double[nLanes];
+		_uend = new double[nLanes];
+		_uhh = new double[nLanes];
+
+		_xf = new float[nLanes];
+		_yf = new float[nLanes];
+		_zf = new float[nLanes];
+		_bx = new float[nLanes];
+		_by = new float[nLanes];
+		_bz = new float[nLanes];
+
+		setAbsoluteTolerance(1.0e-3);
+	}
+
+	/**
+	 * Get the number of lanes
+	 *
+	 * @return the number of tracks swum in lockstep
+	 */
+	public int getNumLanes() {
+		return _nLanes;
+	}
+
+	/**
+	 * Get the underlying field probe
+	 *
+	 * @return the probe
+	 */
+	public FieldProbe getProbe() {
+		return _probe;
+	}
+
+	/**
+	 * Set the tolerance, as in {@link SwimZ#setAbsoluteTolerance(double)}
+	 *
+	 * @param eps
+	 *            the baseline absolute tolerance.
+	 */
+	public void setAbsoluteTolerance(double eps) {
+		_eps = eps;
+		double xscale = 1.0; // position scale order of cm
+		double pscale = 1.0; // track slope scale order of 1
+		double xTol = eps * xscale;
+		double pTol = eps * pscale;
+		for (int i = 0; i < 2; i++) {
+			_absoluteTolerance[i] = xTol;
+			_absoluteTolerance[i + 2] = pTol;
+		}
+	}
+
+	/**
+	 * Get the baseline absolute tolerance
+	 *
+	 * @return the baseline absolute tolerance
+	 */
+	public double getEps() {
+		return _eps;
+	}
+
+	/**
+	 * Set the step size limits
+	 *
+	 * @param minSS
+	 *            the minimum step size (cm)
+	 * @param maxSS
+	 *            the maximum step size (cm)
+	 */
+	public void setStepSizeLimits(double minSS, double maxSS) {
+		_minStepSize = minSS;
+		_maxStepSize = maxSS;
+	}
+
+	/**
+	 * Swim tracks to fixed z values using RK adaptive stepsize, in the lab
+	 * system, as {@link SwimZ#adaptiveRK}. The field must not be a rotated
+	 * composite field.
+	 *
+	 * @param n
+	 *            the number of tracks
+	 * @param Q
+	 *            the integer charges of the particles (-1 for electron)
+	 * @param p
+	 *            the momenta in GeV/c
+	 * @param start
+	 *            the starting state vectors
+	 * @param zf
+	 *            the final z values (cm)
+	 * @param stepSize
+	 *            the initial step size
+	 * @param stoppers
+	 *            optional stoppers, one per track, to end the swim of a track
+	 *            early. The array and its entries can be <code>null</code>.
+	 * @param stop
+	 *            will hold the final state vectors. Null entries are created.
+	 * @param nStep
+	 *            will hold the number of steps of each track, 2 for a straight
+	 *            line, or 0 if the integration failed.
+	 * @param pathLength
+	 *            if not <code>null</code>, will hold the path lengths in cm,
+	 *            as {@link SwimZResult#getPathLength()}
+	 * @param bdl
+	 *            if not <code>null</code>, will hold the integrals |B x dL| in
+	 *            kG*cm, as {@link SwimZResult#getBDL(FieldProbe)}
+	 */
+	public void adaptiveRK(int n, int Q[], double p[], SwimZStateVector start[], double zf[], double stepSize,
+			IStopper stoppers[], SwimZStateVector stop[], int nStep[], double pathLength[], double bdl[]) {
+		sectorAdaptiveRK(n, null, Q, p, start, zf, stepSize, stoppers, stop, nStep, pathLength, bdl);
+	}
+
+	/**
+	 * Swim tracks to fixed z values using RK adaptive stepsize, in the tilted
+	 * sector systems of a rotated composite field, as
+	 * {@link SwimZ#sectorAdaptiveRK}, or in the lab system.
+	 *
+	 * @param n
+	 *            the number of tracks
+	 * @param sector
+	 *            the sectors [1..6], or <code>null</code> for the lab system
+	 * @param Q
+	 *            the integer charges of the particles (-1 for electron)
+	 * @param p
+	 *            the momenta in GeV/c
+	 * @param start
+	 *            the starting state vectors
+	 * @param zf
+	 *            the final z values (cm)
+	 * @param stepSize
+	 *            the initial step size
+	 * @param stoppers
+	 *            optional stoppers, one per track, to end the swim of a track
+	 *            early. The array and its entries can be <code>null</code>.
+	 * @param stop
+	 *            will hold the final state vectors. Null entries are created.
+	 * @param nStep
+	 *            will hold the number of steps of each track, 2 for a straight
+	 *            line, or 0 if the integration failed.
+	 * @param pathLength
+	 *            if not <code>null</code>, will hold the path lengths in cm,
+	 *            NaN for the failed tracks
+	 * @param bdl
+	 *            if not <code>null</code>, will hold the integrals |B x dL| in
+	 *            kG*cm, as {@link SwimZResult#sectorGetBDL(int, FieldProbe)},
+	 *            NaN for the failed tracks
+	 */
+	public void sectorAdaptiveRK(int n, int sector[], int Q[], double p[], SwimZStateVector start[], double zf[],
+			double stepSize, IStopper stoppers[], SwimZStateVector stop[], int nStep[], double pathLength[],
+			double bdl[]) {
+
+		boolean zeroField = _probe.isZeroField();
+		_sector = (sector == null) ? null : _laneSector;
+
+		int nLane = 0;
+		for (int j = 0; j < n; j++) {
+			if (stop[j] == null) {
+				stop[j] = new SwimZStateVector();
+			}
+
+			// straight line?
+			if ((Q[j] == 0) || zeroField) {
+				double s = zf[j] - start[j].z;
+				stop[j].x = start[j].x + start[j].tx * s;
+				stop[j].y = start[j].y + start[j].ty * s;
+				stop[j].z = zf[j];
+				stop[j].tx = start[j].tx;
+				stop[j].ty = start[j].ty;
+				nStep[j] = 2;
+				straightLineBDL(j, sector, start[j], stop[j], pathLength, bdl);
+				continue;
+			}
+
+			int q = Q[j];
+			//ARGGH, as SwimZ
+			if (start[j].z > zf[j]) {
+				q = -q;
+			}
+
+			_track[nLane] = j;
+			_laneSector[nLane] = (sector == null) ? 0 : sector[j];
+			_qv[nLane] = (q / p[j]) * SwimZ.C;
+			_t[nLane] = start[j].z;
+			_tf[nLane] = zf[j];
+			_h[nLane] = stepSize;
+			_nStep[nLane] = 0;
+			_pathLength[nLane] = 0;
+			_bdl[nLane] = 0;
+			_normalDir[nLane] = zf[j] > start[j].z;
+			_busy[nLane] = true;
+			_lastStep[nLane] = false;
+			_yt[0][nLane] = start[j].x;
+			_yt[1][nLane] = start[j].y;
+			_yt[2][nLane] = start[j].tx;
+			_yt[3][nLane] = start[j].ty;
+			nLane++;
+
+			if (nLane == _nLanes) {
+				swimLanes(nLane, stoppers, stop, nStep, pathLength, bdl);
+				nLane = 0;
+			}
+		}
+
+		if (nLane > 0) {
+			swimLanes(nLane, stoppers, stop, nStep, pathLength, bdl);
+		}
+	}
+
+	//path length and |B x dL| of a straight line, as the two point SwimZResult
+	private void straightLineBDL(int j, int sector[], SwimZStateVector start, SwimZStateVector stop,
+			double pathLength[], double bdl[]) {
+		start.dR(stop, _dr);
+		if (pathLength != null) {
+			pathLength[j] = vecmag(_dr);
+		}
+		if (bdl != null) {
+			float xmid = (float) ((start.x + stop.x) / 2);
+			float ymid = (float) ((start.y + stop.y) / 2);
+			float zmid = (float) ((start.z + stop.z) / 2);
+			if (sector == null) {
+				_probe.field(xmid, ymid, zmid, _B);
+			}
+			else {
+				_probe.field(sector[j], xmid, ymid, zmid, _B);
+			}
+			cross(_B[0], _B[1], _B[2], _dr, _bxdl);
+			bdl[j] = vecmag(_bxdl);
+		}
+	}
+
+	//swim the filled lanes and copy out their results
+	private void swimLanes(int nLane, IStopper stoppers[], SwimZStateVector stop[], int nStep[],
+			double pathLength[], double bdl[]) {
+		driverToTf(nLane, stoppers, (pathLength != null) || (bdl != null), bdl != null);
+		for (int i = 0; i < nLane; i++) {
+			int k = _track[i];
+			stop[k].x = _yt[0][i];
+			stop[k].y = _yt[1][i];
+			stop[k].z = _t[i];
+			stop[k].tx = _yt[2][i];
+			stop[k].ty = _yt[3][i];
+			nStep[k] = _nStep[i];
+			if (pathLength != null) {
+				pathLength[k] = (_nStep[i] == 0) ? Double.NaN : _pathLength[i];
+			}
+			if (bdl != null) {
+				bdl[k] = (_nStep[i] == 0) ? Double.NaN : _bdl[i];
+			}
+		}
+	}
+
+	/**
+	 * The lockstep version of the RungeKuttaZ half step adaptive driver. A
+	 * lane that needs a step below the minimum step size has its steps set to
+	 * zero and keeps its last accepted state.
+	 */
+	private void driverToTf(int nLane, IStopper stoppers[], boolean doPathLength, boolean doBDL) {
+
+		int nBusy = nLane;
+		while (nBusy > 0) {
+
+			// use derivs at previous t
+			derivatives(nLane, _t, _yt, _k1);
+
+			for (int i = 0; i < nLane; i++) {
+				if (!_busy[i]) {
+					continue;
+				}
+				//we might be going backwards
+				double newt = (_normalDir[i] ? _t[i] + _h[i] : _t[i] - _h[i]);
+
+				int oldSign = ((_tf[i] - _t[i]) < 0) ? -1 : 1;
+				int newSign = ((_tf[i] - newt) < 0) ? -1 : 1;
+
+				if (oldSign != newSign) { // crossed tf
+					_h[i] = Math.abs(_tf[i] - _t[i]);
+					_lastStep[i] = true;
+				}
+				_hs[i] = _normalDir[i] ? _h[i] : -_h[i];
+			}
+
+			halfStepAdvance(nLane);
+
+			boolean anyAccepted = false;
+			for (int i = 0; i < nLane; i++) {
+				_accepted[i] = false;
+				if (!_busy[i]) {
+					continue;
+				}
+
+				boolean decreaseStep = false;
+				if (!_lastStep[i]) {
+					for (int c = 0; c < 4; c++) {
+						decreaseStep = Math.abs(_yfull[c][i] - _yhalf[c][i]) > _absoluteTolerance[c];
+						if (decreaseStep) {
+							break;
+						}
+					}
+				}
+
+				if (decreaseStep) {
+					_h[i] = _h[i] / 2;
+					if (_h[i] < _minStepSize) {
+						_nStep[i] = 0;
+						_busy[i] = false;
+						nBusy--;
+					}
+				}
+				else { // accepted this step
+					_accepted[i] = true;
+					anyAccepted = true;
+					_xprev[i] = _yt[0][i];
+					_yprev[i] = _yt[1][i];
+					_zprev[i] = _t[i];
+
+					for (int c = 0; c < 4; c++) {
+						_yt[c][i] = _yhalf[c][i];
+					}
+					_t[i] += _hs[i];
+					_nStep[i]++;
+
+					IStopper stopper = (stoppers == null) ? null : stoppers[_track[i]];
+					if (stopper != null) {
+						stopper.setFinalT(_t[i]);
+						if (stopper.stopIntegration(_t[i], stateVector(i))) {
+							_lastStep[i] = true;
+						}
+					}
+
+					if (_lastStep[i]) {
+						_busy[i] = false;
+						nBusy--;
+					}
+					else {
+						_h[i] = Math.min(_h[i] * HGROWTH, _maxStepSize);
+					}
+				}
+			}
+
+			if (anyAccepted && doPathLength) {
+				accumulate(nLane, doBDL);
+			}
+		}
+	}
+
+	/**
+	 * Add the accepted steps to the path lengths and to the integrals
+	 * |B x dL|, with the field at the midpoints of the steps, as SwimZResult
+	 * does over the trajectory.
+	 */
+	private void accumulate(int nLane, boolean doBDL) {
+		for (int i = 0; i < nLane; i++) {
+			if (!_accepted[i]) {
+				continue;
+			}
+			_xf[i] = (float) ((_xprev[i] + _yt[0][i]) / 2);
+			_yf[i] = (float) ((_yprev[i] + _yt[1][i]) / 2);
+			_zf[i] = (float) ((_zprev[i] + _t[i]) / 2);
+		}
+
+		if (doBDL) {
+			fieldLookup(nLane, _accepted);
+		}
+
+		for (int i = 0; i < nLane; i++) {
+			if (!_accepted[i]) {
+				continue;
+			}
+			_dr[0] = _yt[0][i] - _xprev[i];
+			_dr[1] = _yt[1][i] - _yprev[i];
+			_dr[2] = _t[i] - _zprev[i];
+			_pathLength[i] += vecmag(_dr);
+
+			if (doBDL) {
+				cross(_bx[i], _by[i], _bz[i], _dr, _bxdl);
+				_bdl[i] += vecmag(_bxdl);
+			}
+		}
+	}
+
+	//the field at the points in _xf, _yf, _zf for the masked lanes
+	private void fieldLookup(int nLane, boolean mask[]) {
+		if (_sector == null) {
+			_probe.field(nLane, mask, _xf, _yf, _zf, _bx, _by, _bz);
+		}
+		else {
+			_probe.field(nLane, mask, _sector, _xf, _yf, _zf, _bx, _by, _bz);
+		}
+	}
+
+	// usual cross product c = b x a, as SwimZResult
+	private static void cross(float bx, float by, float bz, double a[], double c[]) {
+		c[0] = by * a[2] - bz * a[1];
+		c[1] = bz * a[0] - bx * a[2];
+		c[2] = bx * a[1] - by * a[0];
+	}
+
+	// usual vec mag
+	private static double vecmag(double a[]) {
+		double asq = a[0] * a[0] + a[1] * a[1] + a[2] * a[2];
+		return Math.sqrt(asq);
+	}
+
+	//the state vector of a lane, for a stopper
+	private double[] stateVector(int i) {
+		for (int c = 0; c < 4; c++) {
+			_ys[c] = _yt[c][i];
+		}
+		return _ys;
+	}
+
+	/**
+	 * One full step and two half steps for all busy lanes, as
+	 * RungeKuttaZ's HalfStepAdvance: the full step ends in _yfull and the two
+	 * half steps in _yhalf.
+	 */
+	private void halfStepAdvance(int nLane) {
+		uniformAdvance(nLane, _t, _yt, _k1, _hs, _yfull);
+
+		for (int i = 0; i < nLane; i++) {
+			_h2[i] = _hs[i] / 2;
+			_tmid[i] = _t[i] + _h2[i];
+		}
+
+		uniformAdvance(nLane, _t, _yt, _k1, _h2, _yhalf);
+		derivatives(nLane, _tmid, _yhalf, _kmid);
+		uniformAdvance(nLane, _tmid, _yhalf, _kmid, _h2, _yhalf);
+	}
+
+	/**
+	 * A uniform RK4 step for all busy lanes, as RungeKuttaZ's UniformAdvance.
+	 * yout can be y.
+	 */
+	private void uniformAdvance(int nLane, double t[], double y[][], double k1[][], double h[], double yout[][]) {
+
+		for (int i = 0; i < nLane; i++) {
+			_uhh[i] = h[i] * 0.5;
+			_umid[i] = t[i] + _uhh[i];
+			_uend[i] = t[i] + h[i];
+		}
+
+		// first step: initial derivs to midpoint
+		for (int c = 0; c < 4; c++) {
+			double yc[] = y[c];
+			double kc[] = k1[c];
+			double tc[] = _ytemp[c];
+			for (int i = 0; i < nLane; i++) {
+				tc[i] = yc[i] + _uhh[i] * kc[i];
+			}
+		}
+		derivatives(nLane, _umid, _ytemp, _k2);
+
+		// second step, with the midpoint derivatives just computed
+		for (int c = 0; c < 4; c++) {
+			double yc[] = y[c];
+			double kc[] = _k2[c];
+			double tc[] = _ytemp[c];
+			for (int i = 0; i < nLane; i++) {
+				tc[i] = yc[i] + _uhh[i] * kc[i];
+			}
+		}
+		derivatives(nLane, _umid, _ytemp, _k3);
+
+		// third (full) step
+		for (int c = 0; c < 4; c++) {
+			double yc[] = y[c];
+			double kc[] = _k3[c];
+			double tc[] = _ytemp[c];
+			for (int i = 0; i < nLane; i++) {
+				tc[i] = yc[i] + h[i] * kc[i];
+			}
+		}
+		derivatives(nLane, _uend, _ytemp, _k4);
+
+		for (int c = 0; c < 4; c++) {
+			double yc[] = y[c];
+			double a[] = k1[c];
+			double b[] = _k2[c];
+			double d[] = _k3[c];
+			double e[] = _k4[c];
+			double oc[] = yout[c];
+			for (int i = 0; i < nLane; i++) {
+				oc[i] = yc[i] + (h[i] / 6.0) * (a[i] + 2.0 * b[i] + 2 * d[i] + e[i]);
+			}
+		}
+	}
+
+	/**
+	 * The SwimZ derivatives for all busy lanes, as SwimZDerivative and
+	 * SectorSwimZDerivative, with one batched field lookup for all of them.
+	 */
+	private void derivatives(int nLane, double z[], double y[][], double dydz[][]) {
+
+		double x0[] = y[0];
+		double x1[] = y[1];
+		for (int i = 0; i < nLane; i++) {
+			_xf[i] = (float) x0[i];
+			_yf[i] = (float) x1[i];
+			_zf[i] = (float) z[i];
+		}
+		fieldLookup(nLane, _busy);
+
+		double x2[] = y[2];
+		double x3[] = y[3];
+		double d0[] = dydz[0];
+		double d1[] = dydz[1];
+		double d2[] = dydz[2];
+		double d3[] = dydz[3];
+		for (int i = 0; i < nLane; i++) {
+			double tx = x2[i];
+			double ty = x3[i];
+			double txsq = tx * tx;
+			double tysq = ty * ty;
+			double fact = FastMath.sqrt(1 + txsq + tysq);
+			double Ax = fact * (ty * (tx * _bx[i] + _bz[i]) - (1 + txsq) * _by[i]);
+			double Ay = fact * (-tx * (ty * _by[i] + _bz[i]) + (1 + tysq) * _bx[i]);
+
+			d0[i] = tx;
+			d1[i] = ty;
+			d2[i] = _qv[i] * Ax;
+			d3[i] = _qv[i] * Ay;
+		}
+	}
+
+}
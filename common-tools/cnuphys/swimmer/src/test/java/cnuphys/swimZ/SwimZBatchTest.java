@@ -0,0 +1,201 @@
+package cnuphys.swimZ;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import cnuphys.magfield.CompositeField;
+import cnuphys.magfield.MagneticField;
+import cnuphys.magfield.MagneticFields;
+import cnuphys.magfield.RotatedCompositeField;
+import cnuphys.magfield.StandardSolenoid;
+import cnuphys.magfield.Torus;
+
+/**
+ * Compare the tracks swum by {@link SwimZBatch} with the same tracks swum one
+ * at a time by {@link SwimZ}, on synthetic torus and solenoid maps. The final
+ * states, path lengths and integrals |B x dL| must be the same to the bit.
+ */
+public class SwimZBatchTest {
+
+	private static final int NTRACK = 23;
+
+	private static final int NLANES = 8;
+
+	private static final double STEPSIZE = 5e-3 * 100; // cm
+
+	private Torus torus;
+	private StandardSolenoid solenoid;
+
+	// a smooth field, not zero anywhere in the grids
+	private static double component(int i, double q1, double q2, double q3) {
+		switch (i) {
+		case 0:
+			return 2 + Math.sin(0.05 * q1 + 0.01 * q2) + 0.001 * q3;
+		case 1:
+			return 3 * Math.cos(0.02 * q2 - 0.01 * q3) + 0.001 * q1;
+		default:
+			return 1 + Math.sin(0.001 * q1 + 0.02 * q3);
+		}
+	}
+
+	// write a cylindrical map in the binary format read by MagneticField
+	private static File writeMap(double q1Min, double q1Max, int n1, double q2Min, double q2Max, int n2,
+			double q3Min, double q3Max, int n3) throws IOException {
+		File file = File.createTempFile("fieldmap", ".dat");
+		file.deleteOnExit();
+		try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file))) {
+			out.writeInt(MagneticField.MAGICNUMBER);
+			out.writeInt(0); // cylindrical grid
+			out.writeInt(0); // cylindrical field
+			out.writeInt(0); // cm
+			out.writeInt(0); // degrees
+			out.writeInt(0); // kG
+			out.writeFloat((float) q1Min);
+			out.writeFloat((float) q1Max);
+			out.writeInt(n1);
+			out.writeFloat((float) q2Min);
+			out.writeFloat((float) q2Max);
+			out.writeInt(n2);
+			out.writeFloat((float) q3Min);
+			out.writeFloat((float) q3Max);
+			out.writeInt(n3);
+			for (int i = 0; i < 5; i++) {
+				out.writeInt(0);
+			}
+			for (int i1 = 0; i1 < n1; i1++) {
+				double q1 = q1Min + i1 * (q1Max - q1Min) / Math.max(1, n1 - 1);
+				for (int i2 = 0; i2 < n2; i2++) {
+					double q2 = q2Min + i2 * (q2Max - q2Min) / (n2 - 1);
+					for (int i3 = 0; i3 < n3; i3++) {
+						double q3 = q3Min + i3 * (q3Max - q3Min) / (n3 - 1);
+						for (int i = 0; i < 3; i++) {
+							out.writeFloat((float) component(i, q1, q2, q3));
+						}
+					}
+				}
+			}
+		}
+		return file;
+	}
+
+	@Before
+	public void setUp() throws IOException {
+		torus = Torus.fromBinaryFile(writeMap(0, 30, 31, 0, 400, 81, 100, 500, 81));
+		solenoid = StandardSolenoid.fromBinaryFile(writeMap(0, 0, 1, 0, 300, 61, -200, 300, 101));
+		MagneticFields.getInstance().setTorus(torus);
+		MagneticFields.getInstance().setSolenoid(solenoid);
+	}
+
+	private static <T extends CompositeField> T composite(T field) {
+		// the torus and solenoid are the ones just set
+		field.add(MagneticFields.getInstance().getTorus());
+		field.add(MagneticFields.getInstance().getSolenoid());
+		MagneticFields.getInstance().setActiveField(field);
+		return field;
+	}
+
+	// swim random tracks both ways, one at a time and in lockstep
+	private static void compare(CompositeField field, boolean sectors) {
+		Random rand = new Random(5);
+
+		int sector[] = new int[NTRACK];
+		int Q[] = new int[NTRACK];
+		double p[] = new double[NTRACK];
+		double zf[] = new double[NTRACK];
+		SwimZStateVector start[] = new SwimZStateVector[NTRACK];
+		for (int j = 0; j < NTRACK; j++) {
+			sector[j] = 1 + rand.nextInt(6);
+			Q[j] = (j == 3) ? 0 : (rand.nextBoolean() ? 1 : -1);
+			p[j] = 0.5 + 4 * rand.nextDouble();
+			double tx = 0.6 * rand.nextDouble() - 0.3;
+			double ty = 0.4 * rand.nextDouble() - 0.2;
+			if ((j % 4) == 1) {
+				// backwards, from the last planes towards the target
+				start[j] = new SwimZStateVector(30 * tx, 30 * ty, 450, tx, ty);
+				zf[j] = 10 * rand.nextDouble();
+			}
+			else {
+				start[j] = new SwimZStateVector(rand.nextGaussian(), rand.nextGaussian(), 0, tx, ty);
+				zf[j] = 150 + 400 * rand.nextDouble();
+			}
+		}
+
+		SwimZ swimZ = new SwimZ(field);
+		SwimZBatch batch = new SwimZBatch(field, NLANES);
+		SwimZStateVector stop[] = new SwimZStateVector[NTRACK];
+		int nStep[] = new int[NTRACK];
+		double pathLength[] = new double[NTRACK];
+		double bdl[] = new double[NTRACK];
+
+		if (sectors) {
+			batch.sectorAdaptiveRK(NTRACK, sector, Q, p, start, zf, STEPSIZE, null, stop, nStep, pathLength, bdl);
+		}
+		else {
+			batch.adaptiveRK(NTRACK, Q, p, start, zf, STEPSIZE, null, stop, nStep, pathLength, bdl);
+		}
+
+		int swum = 0;
+		for (int j = 0; j < NTRACK; j++) {
+			SwimZResult result = null;
+			try {
+				result = sectors
+						? swimZ.sectorAdaptiveRK(sector[j], Q[j], p[j], start[j], zf[j], STEPSIZE, null)
+						: swimZ.adaptiveRK(Q[j], p[j], start[j], zf[j], STEPSIZE, null);
+			}
+			catch (SwimZException e) {
+				result = null;
+			}
+
+			if (result == null) {
+				assertEquals(0, nStep[j]);
+				assertTrue(Double.isNaN(pathLength[j]));
+				continue;
+			}
+
+			double expectedBDL = sectors ? result.sectorGetBDL(sector[j], swimZ.getProbe())
+					: result.getBDL(swimZ.getProbe());
+			SwimZStateVector last = result.last();
+			assertEquals(result.size() - 2, (Q[j] == 0) ? 0 : nStep[j]);
+			assertEquals(last.x, stop[j].x, 0);
+			assertEquals(last.y, stop[j].y, 0);
+			assertEquals(last.z, stop[j].z, 0);
+			assertEquals(last.tx, stop[j].tx, 0);
+			assertEquals(last.ty, stop[j].ty, 0);
+			assertEquals(result.getPathLength(), pathLength[j], 0);
+			assertEquals(expectedBDL, bdl[j], 0);
+			if (Q[j] != 0) {
+				swum++;
+				assertTrue(bdl[j] > 0);
+			}
+		}
+		assertTrue(swum > NTRACK / 2);
+
+		// without the optional outputs
+		SwimZStateVector again[] = new SwimZStateVector[NTRACK];
+		int nStepAgain[] = new int[NTRACK];
+		batch.sectorAdaptiveRK(NTRACK, sectors ? sector : null, Q, p, start, zf, STEPSIZE, null, again,
+				nStepAgain, null, null);
+		for (int j = 0; j < NTRACK; j++) {
+			assertEquals(nStep[j], nStepAgain[j]);
+			assertEquals(stop[j].x, again[j].x, 0);
+			assertEquals(stop[j].ty, again[j].ty, 0);
+		}
+	}
+
+	@Test
+	public void testSectorSwim() {
+		compare(composite(new RotatedCompositeField()), true);
+	}
+
+	@Test
+	public void testLabSwim() {
+		compare(composite(new CompositeField()), false);
+	}
+}
@@ -9,6 +9,7 @@ import cnuphys.magfield.CompositeProbe;
 import cnuphys.magfield.MagneticFields;
 import cnuphys.magfield.RotatedCompositeProbe;
 import cnuphys.swimZ.SwimZ;
+import cnuphys.swimZ.SwimZBatch;
 
 /**
  *
@@ -18,6 +19,7 @@ public class ProbeCollection {
     
     public final cnuphys.swimZ.SwimZ RCF_z;  //  rotated composite field - for swimming to fixed z 
     public final cnuphys.swimZ.SwimZ CF_z;   //  composite field - for swimming to fixed z 
+    public final cnuphys.swimZ.SwimZBatch RCF_zb; //  rotated composite field - for swimming to several fixed z at once
     public final cnuphys.swim.Swimmer RCF;   //  rotated composite field 
     public final cnuphys.swim.Swimmer CF;    //  composite field 
     public final cnuphys.adaptiveSwim.AdaptiveSwimmer AS; // adaptive swimmer
@@ -33,6 +35,7 @@ public class ProbeCollection {
         
         RCF_z   =   new SwimZ(MagneticFields.getInstance().getRotatedCompositeField());
         CF_z    =   new SwimZ(MagneticFields.getInstance().getCompositeField());
+        RCF_zb  =   new SwimZBatch(MagneticFields.getInstance().getRotatedCompositeField(), SwimZBatch.DEFAULTLANES);
         RCF     =   new cnuphys.swim.Swimmer(MagneticFields.getInstance().getRotatedCompositeField());
         CF      =   new cnuphys.swim.Swimmer(MagneticFields.getInstance().getCompositeField());
         AS      =   new cnuphys.adaptiveSwim.AdaptiveSwimmer(MagneticFields.getInstance().getCompositeField());
@@ -46,17 +46,13 @@ public class Swim {
     double accuracy = 20e-6; // 20 microns
     double stepSize = 5.00 * 1.e-4; // 500 microns
 
-    private ProbeCollection PC;
-    
     /**
      * Class for swimming to various surfaces.  The input and output units are cm and GeV/c
+     *
+     * Swimmers and field probes are borrowed from {@link Swimmer}'s pool for
+     * the duration of each call, so instances are cheap to create.
      */
     public Swim() {
-        PC = Swimmer.getProbeCollection(Thread.currentThread());
-        if (PC == null) {
-            PC = new ProbeCollection();
-            Swimmer.put(Thread.currentThread(), PC);
-        }
     }
 
     /**
@@ -200,6 +196,15 @@ public class Swim {
     }
 
     public double[] SwimToPlaneTiltSecSys(int sector, double z_cm) {
+        ProbeCollection PC = Swimmer.borrow();
+        try {
+            return SwimToPlaneTiltSecSys(PC, sector, z_cm);
+        } finally {
+            Swimmer.release(PC);
+        }
+    }
+
+    private double[] SwimToPlaneTiltSecSys(ProbeCollection PC, int sector, double z_cm) {
         double z = z_cm / 100; // the magfield method uses meters
         double[] value = new double[8];
 
@@ -280,7 +285,93 @@ public class Swim {
 
     }
     
+    /**
+     * Swims the track from its starting point to several planes of constant z
+     * in the tilted sector system. Above the SwimZ momentum threshold the swims
+     * to all planes are done in lockstep by the batch z swimmer, otherwise, or
+     * if the batch swim to a plane fails, they are done one at a time.
+     * @param sector the sector [1..6]
+     * @param z_cm the z values of the planes in cm
+     * @return the result of {@link #SwimToPlaneTiltSecSys(int, double)} for each plane
+     */
+    public double[][] SwimToPlanesTiltSecSys(int sector, double[] z_cm) {
+        ProbeCollection PC = Swimmer.borrow();
+        try {
+            return SwimToPlanesTiltSecSys(PC, sector, z_cm);
+        } finally {
+            Swimmer.release(PC);
+        }
+    }
+
+    private double[][] SwimToPlanesTiltSecSys(ProbeCollection PC, int sector, double[] z_cm) {
+        int n = z_cm.length;
+        double[][] values = new double[n][];
+
+        if (_pTot < MINTRKMOM || this.SwimUnPhys==true) // fiducial cut
+        {
+            return values;
+        }
+
+        if (_pTot > SWIMZMINMOM) {
+            // the same start, in cm, to every plane
+            SwimZStateVector start = new SwimZStateVector(_x0 * 100, _y0 * 100, _z0 * 100, _pTot, _theta, _phi);
+            int[] sectors = new int[n];
+            int[] Q = new int[n];
+            double[] p = new double[n];
+            SwimZStateVector[] starts = new SwimZStateVector[n];
+            for (int i = 0; i < n; i++) {
+                sectors[i] = sector;
+                Q[i] = _charge;
+                p[i] = _pTot;
+                starts[i] = start;
+            }
+
+            SwimZStateVector[] stop = new SwimZStateVector[n];
+            int[] nStep = new int[n];
+            double[] pathLength = new double[n];
+            double[] bdl = new double[n];
+            PC.RCF_zb.sectorAdaptiveRK(n, sectors, Q, p, starts, z_cm, stepSize * 100, null, stop, nStep,
+                    pathLength, bdl);
+
+            for (int i = 0; i < n; i++) {
+                if (nStep[i] == 0) {
+                    continue;
+                }
+                // the three momentum, as SwimZResult.getThreeMomentum
+                int pzSign = (z_cm[i] < start.z) ? -1 : 1;
+                double pz = pzSign * _pTot / Math.sqrt(stop[i].tx * stop[i].tx + stop[i].ty * stop[i].ty + 1);
+
+                values[i] = new double[8];
+                values[i][0] = stop[i].x; // xf in cm
+                values[i][1] = stop[i].y; // yz in cm
+                values[i][2] = stop[i].z; // zf in cm
+                values[i][3] = pz * stop[i].tx;
+                values[i][4] = pz * stop[i].ty;
+                values[i][5] = pz;
+                values[i][6] = pathLength[i];
+                values[i][7] = bdl[i] / 10; // convert from kg*cm to T*cm
+            }
+        }
+
+        // low momentum, or SwimZ failed
+        for (int i = 0; i < n; i++) {
+            if (values[i] == null) {
+                values[i] = SwimToPlaneTiltSecSys(PC, sector, z_cm[i]);
+            }
+        }
+        return values;
+    }
+
         public double[] SwimToPlaneTiltSecSysBdlXZPlane(int sector, double z_cm) {
+        ProbeCollection PC = Swimmer.borrow();
+        try {
+            return SwimToPlaneTiltSecSysBdlXZPlane(PC, sector, z_cm);
+        } finally {
+            Swimmer.release(PC);
+        }
+    }
+
+        private double[] SwimToPlaneTiltSecSysBdlXZPlane(ProbeCollection PC, int sector, double z_cm) {
         double z = z_cm / 100; // the magfield method uses meters
         double[] value = new double[8];
 
@@ -367,6 +458,15 @@ public class Swim {
      * @return state  x,y,z,px,py,pz, pathlength, iBdl at the plane surface
      */
     public double[] SwimToPlaneLab(double z_cm) {
+        ProbeCollection PC = Swimmer.borrow();
+        try {
+            return SwimToPlaneLab(PC, z_cm);
+        } finally {
+            Swimmer.release(PC);
+        }
+    }
+
+    private double[] SwimToPlaneLab(ProbeCollection PC, double z_cm) {
         double z = z_cm / 100; // the magfield method uses meters
         double[] value = new double[8];
 
@@ -530,6 +630,15 @@ public class Swim {
      * @return state  x,y,z,px,py,pz, pathlength, iBdl at the surface 
      */
     public double[] SwimToCylinder(double Rad) {
+        ProbeCollection PC = Swimmer.borrow();
+        try {
+            return SwimToCylinder(PC, Rad);
+        } finally {
+            Swimmer.release(PC);
+        }
+    }
+
+    private double[] SwimToCylinder(ProbeCollection PC, double Rad) {
         
         double[] value = new double[8];
         if(this.SwimUnPhys)
@@ -575,6 +684,15 @@ public class Swim {
      * @return state  x,y,z,px,py,pz, pathlength, iBdl at the surface 
      */
     public double[] SwimRho(double radius, double accuracy)  {
+        ProbeCollection PC = Swimmer.borrow();
+        try {
+            return SwimRho(PC, radius, accuracy);
+        } finally {
+            Swimmer.release(PC);
+        }
+    }
+
+    private double[] SwimRho(ProbeCollection PC, double radius, double accuracy)  {
 
         double[] value = null;
 
@@ -628,6 +746,15 @@ public class Swim {
      * @return swam trajectory to the cylinder
      */
     public double[] SwimGenCylinder(Point3D axisPoint1, Point3D axisPoint2, double radius, double accuracy)  {
+        ProbeCollection PC = Swimmer.borrow();
+        try {
+            return SwimGenCylinder(PC, axisPoint1, axisPoint2, radius, accuracy);
+        } finally {
+            Swimmer.release(PC);
+        }
+    }
+
+    private double[] SwimGenCylinder(ProbeCollection PC, Point3D axisPoint1, Point3D axisPoint2, double radius, double accuracy) {
 
         double[] value = null;
         double[] p1 = new double[3];
@@ -672,6 +799,15 @@ public class Swim {
     }
 
     public double[] SwimPlane(Vector3D n, Point3D p, double accuracy)  {
+        ProbeCollection PC = Swimmer.borrow();
+        try {
+            return SwimPlane(PC, n, p, accuracy);
+        } finally {
+            Swimmer.release(PC);
+        }
+    }
+
+    private double[] SwimPlane(ProbeCollection PC, Vector3D n, Point3D p, double accuracy) {
 
         double[] value = null;
         
@@ -764,6 +900,15 @@ public class Swim {
      * @return state  x,y,z,px,py,pz, pathlength, iBdl at the surface 
      */
     public double[] SwimToSphere(double Rad) {
+        ProbeCollection PC = Swimmer.borrow();
+        try {
+            return SwimToSphere(PC, Rad);
+        } finally {
+            Swimmer.release(PC);
+        }
+    }
+
+    private double[] SwimToSphere(ProbeCollection PC, double Rad) {
 
         double[] value = new double[8];
         // using adaptive stepsize
@@ -856,6 +1001,15 @@ public class Swim {
      * @return return state  x,y,z,px,py,pz, pathlength, iBdl at the plane surface in the lab frame
      */
     public double[] SwimToPlaneBoundary(double d_cm, Vector3D n, int dir) {
+        ProbeCollection PC = Swimmer.borrow();
+        try {
+            return SwimToPlaneBoundary(PC, d_cm, n, dir);
+        } finally {
+            Swimmer.release(PC);
+        }
+    }
+
+    private double[] SwimToPlaneBoundary(ProbeCollection PC, double d_cm, Vector3D n, int dir) {
 
         double[] value = new double[8];
         if(this.SwimUnPhys)
@@ -952,6 +1106,15 @@ public class Swim {
     }
     
     public double[] SwimToBeamLine(double xB, double yB) {
+        ProbeCollection PC = Swimmer.borrow();
+        try {
+            return SwimToBeamLine(PC, xB, yB);
+        } finally {
+            Swimmer.release(PC);
+        }
+    }
+
+    private double[] SwimToBeamLine(ProbeCollection PC, double xB, double yB) {
 
         double[] value = new double[8];
         
@@ -1000,6 +1163,15 @@ public class Swim {
      * @param result B field components in T in the tilted sector system
      */
     public void Bfield(int sector, double x_cm, double y_cm, double z_cm, float[] result) {
+        ProbeCollection PC = Swimmer.borrow();
+        try {
+            Bfield(PC, sector, x_cm, y_cm, z_cm, result);
+        } finally {
+            Swimmer.release(PC);
+        }
+    }
+
+    private void Bfield(ProbeCollection PC, int sector, double x_cm, double y_cm, double z_cm, float[] result) {
 
         PC.RCP.field(sector, (float) x_cm, (float) y_cm, (float) z_cm, result);
         // rcompositeField.field((float) x_cm, (float) y_cm, (float) z_cm,
@@ -1017,6 +1189,15 @@ public class Swim {
      * @param result B field components in T in the lab frame
      */
     public void BfieldLab(double x_cm, double y_cm, double z_cm, float[] result) {
+        ProbeCollection PC = Swimmer.borrow();
+        try {
+            BfieldLab(PC, x_cm, y_cm, z_cm, result);
+        } finally {
+            Swimmer.release(PC);
+        }
+    }
+
+    private void BfieldLab(ProbeCollection PC, double x_cm, double y_cm, double z_cm, float[] result) {
 
         PC.CP.field((float) x_cm, (float) y_cm, (float) z_cm, result);
         result[0] = result[0] / 10;
@@ -1028,6 +1209,15 @@ public class Swim {
     
     
     public double[] AdaptiveSwimPlane(double px, double py, double pz, double nx, double ny, double nz, double accuracy)  {
+        ProbeCollection PC = Swimmer.borrow();
+        try {
+            return AdaptiveSwimPlane(PC, px, py, pz, nx, ny, nz, accuracy);
+        } finally {
+            Swimmer.release(PC);
+        }
+    }
+
+    private double[] AdaptiveSwimPlane(ProbeCollection PC, double px, double py, double pz, double nx, double ny, double nz, double accuracy) {
 //        System.out.println("Don't use yet");
 
         double[] value = new double[8];
@@ -1072,6 +1262,15 @@ public class Swim {
     
     
     public double[] AdaptiveSwimCylinder(double a1x, double a1y, double a1z, double a2x, double a2y, double a2z, double radius, double accuracy)  {
+        ProbeCollection PC = Swimmer.borrow();
+        try {
+            return AdaptiveSwimCylinder(PC, a1x, a1y, a1z, a2x, a2y, a2z, radius, accuracy);
+        } finally {
+            Swimmer.release(PC);
+        }
+    }
+
+    private double[] AdaptiveSwimCylinder(ProbeCollection PC, double a1x, double a1y, double a1z, double a2x, double a2y, double a2z, double radius, double accuracy) {
     //    System.out.println("Don't use yet");
         double[] value = new double[8];
         
@@ -1116,6 +1315,15 @@ public class Swim {
     }
 
     public double[] AdaptiveSwimRho(double radius, double accuracy)  {
+        ProbeCollection PC = Swimmer.borrow();
+        try {
+            return AdaptiveSwimRho(PC, radius, accuracy);
+        } finally {
+            Swimmer.release(PC);
+        }
+    }
+
+    private double[] AdaptiveSwimRho(ProbeCollection PC, double radius, double accuracy) {
         System.out.println("Don't use yet");
 
         double[] value = new double[8];
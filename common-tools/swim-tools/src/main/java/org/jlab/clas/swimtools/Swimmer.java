@@ -1,7 +1,10 @@
 package org.jlab.clas.swimtools;
 import cnuphys.magfield.MagneticFields;
 
-import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -15,14 +18,72 @@ public class Swimmer {
 
     public static Logger LOGGER = Logger.getLogger(Swimmer.class.getName());
     
-    private static HashMap<Thread, ProbeCollection> swimmers = new HashMap<>();
-    
+    /**
+     * maximum number of idle ProbeCollections kept for reuse
+     */
+    public static final int MAXPOOLSIZE = Integer.getInteger("clas12.swimmer.pool",
+            2*Runtime.getRuntime().availableProcessors());
+
+    private static final ConcurrentLinkedDeque<ProbeCollection> pool = new ConcurrentLinkedDeque<>();
+    private static final AtomicInteger poolSize = new AtomicInteger();
+
+    /**
+     * Borrow a ProbeCollection for exclusive use by the caller, reusing an
+     * idle one if available, else creating a new one.  Must be given back
+     * with {@link #release(ProbeCollection)} when done.
+     * @return the ProbeCollection
+     */
+    public static ProbeCollection borrow() {
+        ProbeCollection PC = pool.pollFirst();
+        if (PC == null) {
+            return new ProbeCollection();
+        }
+        poolSize.decrementAndGet();
+        return PC;
+    }
+
+    /**
+     * Give back a ProbeCollection obtained from {@link #borrow()}.  It is kept
+     * for reuse, most recently used first so its probe caches are still warm,
+     * unless the pool already holds {@link #MAXPOOLSIZE}.
+     * @param PC the ProbeCollection
+     */
+    public static void release(ProbeCollection PC) {
+        if (PC == null) {
+            return;
+        }
+        if (poolSize.incrementAndGet() <= MAXPOOLSIZE) {
+            pool.offerFirst(PC);
+        }
+        else {
+            poolSize.decrementAndGet();
+        }
+    }
+
+    private static final Map<Thread, ProbeCollection> swimmers = new ConcurrentHashMap<>();
+
+    /**
+     * @param thr thread
+     * @return the ProbeCollection stored for the thread with {@link #put}, or null
+     * @deprecated ProbeCollections are not thread-bound anymore, use
+     * {@link #borrow()} and {@link #release(ProbeCollection)} instead
+     */
+    @Deprecated
     public static ProbeCollection getProbeCollection(Thread thr){
         return swimmers.get(thr);
     }
+
+    /**
+     * @param thr thread
+     * @param PC ProbeCollection to be used by the thread
+     * @deprecated ProbeCollections are not thread-bound anymore, use
+     * {@link #borrow()} and {@link #release(ProbeCollection)} instead
+     */
+    @Deprecated
     public static void put(Thread thr, ProbeCollection PC) {
         swimmers.put(thr, PC);
     }
+
     private static float szShift = 0;
     public static synchronized void set_zShift(float shift){ //solenoid z shift
         szShift = shift;
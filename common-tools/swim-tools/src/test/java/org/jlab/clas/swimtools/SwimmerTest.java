@@ -0,0 +1,99 @@
+package org.jlab.clas.swimtools;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import cnuphys.magfield.MagneticFields;
+import org.jlab.utils.CLASResources;
+
+public class SwimmerTest {
+
+    private static void initializeMagneticFields() throws Exception {
+        System.setProperty("CLAS12DIR", "../../");
+        String mapDir = CLASResources.getResourcePath("etc")+"/data/magfield";
+        MagneticFields.getInstance().initializeMagneticFields(mapDir,
+                "Symm_torus_r2501_phi16_z251_24Apr2018.dat","Symm_solenoid_r601_phi1_z1201_13June2018.dat");
+    }
+
+    @Test
+    public void testPool() throws Exception {
+        initializeMagneticFields();
+
+        // borrowed collections are exclusive, released ones are reused most recent first:
+        ProbeCollection pc1 = Swimmer.borrow();
+        ProbeCollection pc2 = Swimmer.borrow();
+        assertNotSame(pc1, pc2);
+        Swimmer.release(pc1);
+        Swimmer.release(pc2);
+        assertSame(pc2, Swimmer.borrow());
+        assertSame(pc1, Swimmer.borrow());
+        Swimmer.release(pc1);
+        Swimmer.release(pc2);
+
+        // no collection is ever lent to two threads at the same time:
+        final Set<ProbeCollection> inUse = Collections.newSetFromMap(new IdentityHashMap<>());
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < 64; i++) {
+            results.add(pool.submit(() -> {
+                boolean exclusive = true;
+                for (int j = 0; j < 100; j++) {
+                    ProbeCollection pc = Swimmer.borrow();
+                    synchronized (inUse) {
+                        exclusive &= inUse.add(pc);
+                    }
+                    synchronized (inUse) {
+                        inUse.remove(pc);
+                    }
+                    Swimmer.release(pc);
+                }
+                return exclusive;
+            }));
+        }
+        for (Future<Boolean> r : results) assertTrue(r.get());
+        pool.shutdown();
+
+        // idle collections beyond the limit are dropped:
+        List<ProbeCollection> borrowed = new ArrayList<>();
+        for (int i = 0; i < Swimmer.MAXPOOLSIZE + 5; i++) borrowed.add(Swimmer.borrow());
+        for (ProbeCollection pc : borrowed) Swimmer.release(pc);
+        Set<ProbeCollection> idle = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (int i = 0; i < Swimmer.MAXPOOLSIZE + 5; i++) idle.add(Swimmer.borrow());
+        int reused = 0;
+        for (ProbeCollection pc : borrowed) if (idle.contains(pc)) reused++;
+        assertEquals(Swimmer.MAXPOOLSIZE, reused);
+        for (ProbeCollection pc : idle) Swimmer.release(pc);
+    }
+
+    @Test
+    public void testSwimToPlanes() throws Exception {
+        initializeMagneticFields();
+
+        // the planes, not in order, one behind the start
+        double[] z = {230.0, 668.1, 350.5, 800.0, 240.2, 500.0, 100.0};
+        Swim swim = new Swim();
+        for (int charge = -1; charge <= 1; charge += 2) {
+            for (double p : new double[]{0.5, 1.2, 4.0}) {
+                for (int sector = 1; sector <= 6; sector++) {
+                    // tilted sector coordinates, from the DC region 1 entrance
+                    swim.SetSwimParameters(-5, 2, 200, 0.1*p, -0.02*p, 0.99*p, charge);
+                    double[][] batch = swim.SwimToPlanesTiltSecSys(sector, z);
+                    assertEquals(z.length, batch.length);
+                    for (int i = 0; i < z.length; i++) {
+                        double[] single = swim.SwimToPlaneTiltSecSys(sector, z[i]);
+                        assertArrayEquals(single, batch[i], 0);
+                    }
+                }
+            }
+        }
+    }
+}
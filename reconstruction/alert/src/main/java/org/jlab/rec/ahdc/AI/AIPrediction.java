@@ -1,37 +1,60 @@
 package org.jlab.rec.ahdc.AI;
 
 import java.util.ArrayList;
+import java.util.List;
 
-import ai.djl.MalformedModelException;
 import ai.djl.inference.Predictor;
-import ai.djl.repository.zoo.ModelNotFoundException;
 import ai.djl.repository.zoo.ZooModel;
 import ai.djl.translate.TranslateException;
 
-import java.io.IOException;
-
 public class AIPrediction {
 
+    /** maximum number of track candidates scored in one batch */
+    public static final int MAX_BATCH_SIZE = 1024;
 
-    public AIPrediction() throws ModelNotFoundException, MalformedModelException, IOException {
+    public AIPrediction() {
     }
 
     public ArrayList<TrackPrediction> prediction(ArrayList<ArrayList<PreclusterSuperlayer>> tracks, ZooModel<float[], Float> model) throws TranslateException {
-        ArrayList<TrackPrediction> result = new ArrayList<>();
-        for (ArrayList<PreclusterSuperlayer> track : tracks) {
-            float[] a = new float[]{(float) track.get(0).getX(), (float) track.get(0).getY(),
-                    (float) track.get(1).getX(), (float) track.get(1).getY(),
-                    (float) track.get(2).getX(), (float) track.get(2).getY(),
-                    (float) track.get(3).getX(), (float) track.get(3).getY(),
-                    (float) track.get(4).getX(), (float) track.get(4).getY(),
-            };
-
-            Predictor<float[], Float> my_predictor = model.newPredictor();
-            result.add(new TrackPrediction(my_predictor.predict(a), track));
+        try (Predictor<float[], Float> my_predictor = model.newPredictor()) {
+            return prediction(tracks, my_predictor);
         }
+    }
 
+    /**
+     * Score all track candidates, in batches of up to MAX_BATCH_SIZE
+     * candidates that are stacked into one input array and run through the
+     * model at once.
+     *
+     * @param tracks the track candidates
+     * @param predictor a predictor of the model, only used by this thread
+     * @return the predictions, in the order of the candidates
+     * @throws TranslateException
+     */
+    public ArrayList<TrackPrediction> prediction(ArrayList<ArrayList<PreclusterSuperlayer>> tracks, Predictor<float[], Float> predictor) throws TranslateException {
+        ArrayList<TrackPrediction> result = new ArrayList<>(tracks.size());
+        List<float[]> batch = new ArrayList<>(Math.min(tracks.size(), MAX_BATCH_SIZE));
+        for (int first = 0; first < tracks.size(); first += MAX_BATCH_SIZE) {
+            int last = Math.min(tracks.size(), first + MAX_BATCH_SIZE);
+            batch.clear();
+            for (int i = first; i < last; i++) batch.add(features(tracks.get(i)));
+            List<Float> scores = predictor.batchPredict(batch);
+            for (int i = first; i < last; i++) result.add(new TrackPrediction(scores.get(i - first), tracks.get(i)));
+        }
         return result;
     }
 
+    /**
+     * @param track a track candidate of 5 superlayer preclusters
+     * @return the model input, the x and y positions of the preclusters
+     */
+    public static float[] features(ArrayList<PreclusterSuperlayer> track) {
+        float[] a = new float[2*track.size()];
+        for (int i = 0; i < track.size(); i++) {
+            a[2*i]   = (float) track.get(i).getX();
+            a[2*i+1] = (float) track.get(i).getY();
+        }
+        return a;
+    }
 
 }
@@ -1,6 +1,7 @@
 package org.jlab.rec.ahdc.AI;
 
 import ai.djl.MalformedModelException;
+import ai.djl.inference.Predictor;
 import ai.djl.ndarray.NDArray;
 import ai.djl.ndarray.NDList;
 import ai.djl.ndarray.NDManager;
@@ -15,10 +16,18 @@ import org.jlab.utils.CLASResources;
 
 import java.io.IOException;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
-public class Model {
+public class Model implements AutoCloseable {
     private ZooModel<float[], Float> model;
 
+    // predictors are not thread-safe, so each event borrows one from the pool,
+    // which holds at most one per thread processing events at the same time
+    private final ConcurrentLinkedQueue<Predictor<float[], Float>> idle = new ConcurrentLinkedQueue<>();
+    private final List<Predictor<float[], Float>> predictors = new ArrayList<>();
+
     public Model() {
         Translator<float[], Float> my_translator = new Translator<float[], Float>() {
             @Override
@@ -28,7 +37,8 @@ public class Model {
 
             @Override
             public NDList processInput(TranslatorContext translatorContext, float[] floats) throws Exception {
-                NDManager manager = NDManager.newBaseManager();
+                // the context's manager frees the array after the prediction
+                NDManager manager = translatorContext.getNDManager();
                 NDArray samples = manager.zeros(new Shape(floats.length));
                 samples.set(floats);
                 return new NDList(samples);
@@ -37,7 +47,7 @@ public class Model {
 
         String path = CLASResources.getResourcePath("etc/nnet/ALERT/model_AHDC/");
         Criteria<float[], Float> my_model = Criteria.builder().setTypes(float[].class, Float.class)
-                .optModelPath(Paths.get("etc/nnet/ALERT/model_AHDC/"))
+                .optModelPath(Paths.get(path != null ? path : "etc/nnet/ALERT/model_AHDC/"))
                 .optEngine("PyTorch")
                 .optTranslator(my_translator)
                 .optProgress(new ProgressBar())
@@ -55,4 +65,40 @@ public class Model {
     public ZooModel<float[], Float> getModel() {
         return model;
     }
+
+    /**
+     * @return a predictor for the calling thread only, to be given back
+     * with {@link #releasePredictor} once done
+     */
+    public Predictor<float[], Float> acquirePredictor() {
+        Predictor<float[], Float> predictor = idle.poll();
+        if (predictor == null) {
+            predictor = model.newPredictor();
+            synchronized (predictors) {
+                predictors.add(predictor);
+            }
+        }
+        return predictor;
+    }
+
+    /**
+     * @param predictor a predictor from {@link #acquirePredictor}, not to be
+     * used afterwards
+     */
+    public void releasePredictor(Predictor<float[], Float> predictor) {
+        idle.offer(predictor);
+    }
+
+    /**
+     * Close all predictors and the model, once no predictor is in use.
+     */
+    @Override
+    public void close() {
+        synchronized (predictors) {
+            for (Predictor<float[], Float> predictor : predictors) predictor.close();
+            predictors.clear();
+        }
+        idle.clear();
+        model.close();
+    }
 }
@@ -1,5 +1,6 @@
 package org.jlab.rec.service;
 
+import ai.djl.inference.Predictor;
 import org.jlab.clas.reco.ReconstructionEngine;
 import org.jlab.clas.tracking.kalmanfilter.Material;
 import org.jlab.io.base.DataBank;
@@ -32,6 +33,7 @@ public class AHDCEngine extends ReconstructionEngine {
 	private String                    findingMethod;
 	private HashMap<String, Material> materialMap;
 	private Model model;
+	private AIPrediction aiPrediction;
 
 	public AHDCEngine() {
 		super("ALERT", "ouillon", "1.0.1");
@@ -48,6 +50,7 @@ public class AHDCEngine extends ReconstructionEngine {
 		}
 
 		model = new Model();
+		aiPrediction = new AIPrediction();
 
 		return true;
 	}
@@ -131,11 +134,13 @@ public class AHDCEngine extends ReconstructionEngine {
 				ArrayList<ArrayList<PreclusterSuperlayer>> tracks = trackConstruction.get_all_possible_track(preclusterSuperlayers);
 
 
+				Predictor<float[], Float> predictor = model.acquirePredictor();
 				try {
-					AIPrediction aiPrediction = new AIPrediction();
-					predictions = aiPrediction.prediction(tracks, model.getModel());
+					predictions = aiPrediction.prediction(tracks, predictor);
 				} catch (Exception e) {
 					throw new RuntimeException(e);
+				} finally {
+					model.releasePredictor(predictor);
 				}
 
 				for (TrackPrediction t : predictions) {
@@ -197,6 +202,14 @@ public class AHDCEngine extends ReconstructionEngine {
 		return true;
 	}
 
+	@Override
+	public void destroy() {
+		if (model != null) {
+			model.close();
+			model = null;
+		}
+	}
+
 	public static void main(String[] args) {
 
 		double starttime = System.nanoTime();
@@ -235,6 +248,7 @@ public class AHDCEngine extends ReconstructionEngine {
 
 		}
 		writer.close();
+		en.destroy();
 
 		System.out.println("finished " + (System.nanoTime() - starttime) * Math.pow(10, -9));
 	}
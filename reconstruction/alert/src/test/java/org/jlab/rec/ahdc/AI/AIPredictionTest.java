@@ -0,0 +1,88 @@
+package org.jlab.rec.ahdc.AI;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import ai.djl.inference.Predictor;
+import ai.djl.translate.TranslateException;
+import org.jlab.rec.ahdc.Hit.Hit;
+import org.jlab.rec.ahdc.PreCluster.PreCluster;
+import org.junit.AfterClass;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Compare the scores of track candidates predicted in batches with those
+ * predicted one candidate at a time.  The model needs the PyTorch native
+ * engine, which is downloaded when first used, so the tests are skipped when
+ * it cannot be loaded, e.g. offline or on platforms without a PyTorch build.
+ */
+public class AIPredictionTest {
+
+    private static Model model;
+
+    @BeforeClass
+    public static void load() {
+        System.setProperty("CLAS12DIR", "../../");
+        try {
+            model = new Model();
+        } catch (RuntimeException | LinkageError e) {
+            Assume.assumeNoException("PyTorch engine not available", e);
+        }
+    }
+
+    @AfterClass
+    public static void close() {
+        if (model != null) model.close();
+    }
+
+    // one precluster of 1 or 2 neighbouring wires in each superlayer
+    private static ArrayList<PreclusterSuperlayer> createTrack(Random rand) {
+        ArrayList<PreclusterSuperlayer> track = new ArrayList<>();
+        for (int superlayer = 1; superlayer <= 5; superlayer++) {
+            int wire = 1 + rand.nextInt(40);
+            ArrayList<Hit> hits = new ArrayList<>();
+            hits.add(new Hit(0, superlayer, 1, wire, 0));
+            if (rand.nextBoolean()) hits.add(new Hit(1, superlayer, 1, wire + 1, 0));
+            ArrayList<PreCluster> preclusters = new ArrayList<>();
+            preclusters.add(new PreCluster(hits));
+            track.add(new PreclusterSuperlayer(preclusters));
+        }
+        return track;
+    }
+
+    @Test
+    public void testBatches() throws TranslateException {
+        Random rand = new Random(1);
+        // more than one batch, the last one incomplete:
+        ArrayList<ArrayList<PreclusterSuperlayer>> tracks = new ArrayList<>();
+        for (int i = 0; i < AIPrediction.MAX_BATCH_SIZE + 100; i++) tracks.add(createTrack(rand));
+
+        Predictor<float[], Float> predictor = model.acquirePredictor();
+        try {
+            ArrayList<TrackPrediction> predictions = new AIPrediction().prediction(tracks, predictor);
+            assertEquals(tracks.size(), predictions.size());
+            for (int i = 0; i < tracks.size(); i++) {
+                assertSame(tracks.get(i), predictions.get(i).getSuperpreclusters());
+                float single = predictor.predict(AIPrediction.features(tracks.get(i)));
+                assertEquals(single, predictions.get(i).getPrediction(), 1e-5);
+            }
+        }
+        finally {
+            model.releasePredictor(predictor);
+        }
+    }
+
+    @Test
+    public void testPool() {
+        Predictor<float[], Float> first = model.acquirePredictor();
+        Predictor<float[], Float> second = model.acquirePredictor();
+        assertNotSame(first, second);
+        model.releasePredictor(first);
+        assertSame(first, model.acquirePredictor());
+        model.releasePredictor(first);
+        model.releasePredictor(second);
+    }
+}
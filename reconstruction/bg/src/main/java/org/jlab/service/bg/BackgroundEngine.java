@@ -5,6 +5,7 @@ import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import org.jlab.analysis.eventmerger.BackgroundEventSupplier;
 import org.jlab.analysis.eventmerger.EventMerger;
 import org.jlab.clas.reco.ReconstructionEngine;
 import org.jlab.io.base.DataEvent;
@@ -23,6 +24,9 @@ public class BackgroundEngine extends ReconstructionEngine {
     public static final String CONF_PRESERVE_ORDER = "preserveOrder";
     public static final String CONF_REUSE_EVENTS = "reuseEvents";
     public static final String CONF_BG_SCALE = "bgScale";
+    public static final String CONF_SAMPLING = "sampling";
+    public static final String CONF_READERS = "readers";
+    public static final String CONF_SEED = "seed";
 
     static final Logger logger = Logger.getLogger(BackgroundEngine.class.getName());
 
@@ -47,8 +51,13 @@ public class BackgroundEngine extends ReconstructionEngine {
         boolean preserveOrder = Boolean.valueOf(getEngineConfigString(CONF_PRESERVE_ORDER,"true"));
         boolean reuseEvents = Boolean.valueOf(getEngineConfigString(CONF_REUSE_EVENTS,"false"));
         int     bgScale = Integer.valueOf(getEngineConfigString(CONF_BG_SCALE,"1"));
+        String  sampling = getEngineConfigString(CONF_SAMPLING,"sequential");
+        int     readers = Integer.valueOf(getEngineConfigString(CONF_READERS,"1"));
+        long    seed = Long.valueOf(getEngineConfigString(CONF_SEED,"0"));
+        if (bgmerger != null) bgmerger.close();
         bgmerger = new EventMerger(detectors.split(","), orders.split(","), suppressDoubles, preserveOrder);
-        return bgmerger.setBgFiles(Arrays.asList(filenames), bgScale, reuseEvents);
+        return bgmerger.setBgFiles(Arrays.asList(filenames), bgScale, reuseEvents,
+                BackgroundEventSupplier.getMode(sampling), readers, seed);
     }
 
     @Override
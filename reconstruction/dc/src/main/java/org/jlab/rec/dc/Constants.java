@@ -1,5 +1,6 @@
 package org.jlab.rec.dc;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -87,6 +88,7 @@ public class Constants {
 
     // CONFIGURABLE PARAMETERS
     private String  GEOVARIATION = "default";    
+    private String  GEOTIMESTAMP = "";
     public  DCGeant4Factory.MinistaggerStatus  MINISTAGGERSTATUS = null;
     public  DCGeant4Factory.FeedthroughsStatus FEEDTHROUGHSSTATUS = null;
     private boolean ENDPLATESBOWING = false;
@@ -119,11 +121,12 @@ public class Constants {
     
     // GEOMETRY PARAMETERS
     // geometry constants not yet read from CCDB of from geometry services
+    public static final int   GEORUN = 11;  // run the geometry tables are read for
     public DCGeant4Factory    dcDetector   = null;
-    public FTOFGeant4Factory  ftofDetector = null;
-    public Detector           ecalDetector = null;
-    public Detector           fmtDetector  = null;
-    public RICHGeoFactory     richDetector = null;
+    private FTOFGeant4Factory ftofDetector = null;
+    private Detector          ecalDetector = null;
+    private Detector          fmtDetector  = null;
+    private RICHGeoFactory    richDetector = null;
     public TrajectorySurfaces trajSurfaces = null;
     
     public static final double HTCCRADIUS = 175;
@@ -320,6 +323,14 @@ public class Constants {
         GEOVARIATION = geovariation;
     }
 
+    public String getGEOTIMESTAMP() {
+        return GEOTIMESTAMP;
+    }
+
+    public void setGEOTIMESTAMP(String geotimestamp) {
+        GEOTIMESTAMP = geotimestamp == null ? "" : geotimestamp;
+    }
+
     public boolean ENDPLATESBOWING() {
         return ENDPLATESBOWING;
     }
@@ -370,6 +381,7 @@ public class Constants {
 
     public synchronized void initialize(String engine,
                                         String variation, 
+                                        String timestamp,
                                         String ministaggerStatus,
                                         String feedthroughsStatus,
                                         boolean wireDistortion,
@@ -387,6 +399,7 @@ public class Constants {
         }
         else {
             GEOVARIATION        = variation;
+            GEOTIMESTAMP        = timestamp == null ? "" : timestamp;
             MINISTAGGERSTATUS   = DCGeant4Factory.MinistaggerStatus.getStatus(ministaggerStatus);
             FEEDTHROUGHSSTATUS  = DCGeant4Factory.FeedthroughsStatus.getStatus(feedthroughsStatus);
             ENDPLATESBOWING     = wireDistortion;
@@ -424,6 +437,7 @@ public class Constants {
     
     public void printConfig(String engine) {
         LOGGER.log(Level.INFO, "["+engine+"] run with variation = " + GEOVARIATION);
+        LOGGER.log(Level.INFO, "["+engine+"] run with geometry timestamp = " + GEOTIMESTAMP);
         LOGGER.log(Level.INFO, "["+engine+"] run with sector selection = " + SECTORSELECT);
         LOGGER.log(Level.INFO, "["+engine+"] run with start time option = " + USETSTART);
         LOGGER.log(Level.INFO, "["+engine+"] run with wire ministagger = "  + MINISTAGGERSTATUS.getName());
@@ -531,27 +545,81 @@ public class Constants {
         reverseTTs.put(run, reverse);
     }
     
+    /**
+     * Load the DC and trajectory geometry, from the cache if enabled (see
+     * {@link DCGeometryCache}): in that case the DC factory has no volumes and
+     * the FTOF, ECAL, FMT and RICH detectors are only loaded when requested.
+     */
     private synchronized void LoadGeometry(String geoVariation, double[][] shifts) {
+        String key = DCGeometryCache.getKey(geoVariation, GEORUN, GEOTIMESTAMP, MINISTAGGERSTATUS, FEEDTHROUGHSSTATUS, ENDPLATESBOWING, shifts);
+        File cacheFile = DCGeometryCache.getFile(key, GEOTIMESTAMP);
+        DCGeometryCache cache = DCGeometryCache.read(cacheFile, key);
+        if(cache!=null) {
+            dcDetector = cache.getDCDetector();
+            System.arraycopy(cache.getWpdist(), 0, wpdist, 0, wpdist.length);
+            trajSurfaces = cache.getTrajectorySurfaces();
+            trajSurfaces.setBoundaries(cache.getTargetPosition(), dcDetector);
+            return;
+        }
         // Load the geometry
-        ConstantProvider provider = GeometryFactory.getConstants(DetectorType.DC, 11, geoVariation);
+        ConstantProvider provider = GeometryFactory.getConstants(DetectorType.DC, GEORUN, geoVariation, GEOTIMESTAMP);
         dcDetector = new DCGeant4Factory(provider, MINISTAGGERSTATUS, FEEDTHROUGHSSTATUS, ENDPLATESBOWING, shifts);
         for(int l=0; l<6; l++) {
             wpdist[l] = provider.getDouble("/geometry/dc/superlayer/wpdist", l);
         }
         // Load target
-        ConstantProvider providerTG = GeometryFactory.getConstants(DetectorType.TARGET, 11, geoVariation);
+        ConstantProvider providerTG = GeometryFactory.getConstants(DetectorType.TARGET, GEORUN, geoVariation, GEOTIMESTAMP);
         double targetPosition = providerTG.getDouble("/geometry/shifts/target/z",0);
         double targetLength   = providerTG.getDouble("/geometry/materials/target/length",0);
-        // Load other geometries
-        ConstantProvider providerFTOF = GeometryFactory.getConstants(DetectorType.FTOF, 11, geoVariation);
-        ftofDetector = new FTOFGeant4Factory(providerFTOF);        
-        ecalDetector =  GeometryFactory.getDetector(DetectorType.ECAL, 11, geoVariation);
-        fmtDetector =  GeometryFactory.getDetector(DetectorType.FMT, 11, geoVariation);
-        ConstantsManager managerRICH = new ConstantsManager(geoVariation);;
-        richDetector = new RICHGeoFactory(0, managerRICH, 11, false);
         // create the surfaces
         trajSurfaces = new TrajectorySurfaces();
-        trajSurfaces.loadSurface(targetPosition, targetLength, dcDetector, ftofDetector, ecalDetector, fmtDetector, richDetector);        
+        trajSurfaces.loadSurface(targetPosition, targetLength, dcDetector, getFTOFDetector(), getECALDetector(), getFMTDetector(), getRICHDetector());        
+        DCGeometryCache.write(cacheFile, key, dcDetector, wpdist, targetPosition, trajSurfaces);
+    }
+
+    /**
+     * The FTOF, ECAL, FMT and RICH geometries are only needed to build the
+     * trajectory surfaces, so are not loaded when these come from the cache,
+     * and are loaded on the first request instead.
+     * @return the FTOF geometry
+     */
+    public synchronized FTOFGeant4Factory getFTOFDetector() {
+        if(ftofDetector==null) {
+            ftofDetector = new FTOFGeant4Factory(GeometryFactory.getConstants(DetectorType.FTOF, GEORUN, GEOVARIATION, GEOTIMESTAMP));
+        }
+        return ftofDetector;
+    }
+
+    /**
+     * @return the ECAL geometry, see {@link #getFTOFDetector}
+     */
+    public synchronized Detector getECALDetector() {
+        if(ecalDetector==null) {
+            ecalDetector = GeometryFactory.getDetector(DetectorType.ECAL, GEORUN, GEOVARIATION, GEOTIMESTAMP);
+        }
+        return ecalDetector;
+    }
+
+    /**
+     * @return the FMT geometry, see {@link #getFTOFDetector}
+     */
+    public synchronized Detector getFMTDetector() {
+        if(fmtDetector==null) {
+            fmtDetector = GeometryFactory.getDetector(DetectorType.FMT, GEORUN, GEOVARIATION, GEOTIMESTAMP);
+        }
+        return fmtDetector;
+    }
+
+    /**
+     * @return the RICH geometry, see {@link #getFTOFDetector}
+     */
+    public synchronized RICHGeoFactory getRICHDetector() {
+        if(richDetector==null) {
+            ConstantsManager managerRICH = new ConstantsManager(GEOVARIATION);
+            if(!GEOTIMESTAMP.isEmpty()) managerRICH.setTimeStamp(GEOTIMESTAMP);
+            richDetector = new RICHGeoFactory(0, managerRICH, GEORUN, false);
+        }
+        return richDetector;
     }
    
 
@@ -0,0 +1,284 @@
+package org.jlab.rec.dc;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.jlab.detector.base.DetectorType;
+import org.jlab.detector.geant4.v2.DCGeant4Factory;
+import org.jlab.geom.prim.Arc3D;
+import org.jlab.geom.prim.Face3D;
+import org.jlab.geom.prim.Plane3D;
+import org.jlab.geom.prim.Point3D;
+import org.jlab.geom.prim.Sector3D;
+import org.jlab.geom.prim.Trap3D;
+import org.jlab.geom.prim.Triangle3D;
+import org.jlab.geom.prim.Vector3D;
+import org.jlab.rec.dc.trajectory.Surface;
+import org.jlab.rec.dc.trajectory.TrajectorySurfaces;
+
+/**
+ * File cache of the geometry built by {@link Constants}, i.e. the DC wires,
+ * the wire-plane distances, the target position and the trajectory surfaces,
+ * so that engines can start without building the DC volumes and without
+ * reading the FTOF, ECAL, FMT and RICH geometries from the database.
+ *
+ * The cache is enabled by setting the system property clas12.geometry.cache
+ * to a directory; files are keyed by the geometry variation, run and CCDB
+ * timestamp, the wire ministagger, feedthroughs and endplates-bowing options
+ * and the alignment shifts. Without a timestamp the geometry is read from the
+ * latest tables, which can change at any time, so it is not cached.
+ */
+public class DCGeometryCache {
+
+    public static final String PROPERTY = "clas12.geometry.cache";
+
+    private static final Logger LOGGER = Logger.getLogger(DCGeometryCache.class.getName());
+
+    private static final int MAGIC   = 0x44434743;
+    private static final int VERSION = 2;
+
+    private static final byte PLANE    = 0;
+    private static final byte TRIANGLE = 1;
+    private static final byte TRAP     = 2;
+    private static final byte SECTOR   = 3;
+
+    private final DCGeant4Factory    dcDetector;
+    private final double[]           wpdist;
+    private final double             targetPosition;
+    private final TrajectorySurfaces trajSurfaces;
+
+    private DCGeometryCache(DCGeant4Factory dcDetector, double[] wpdist, double targetPosition, TrajectorySurfaces trajSurfaces) {
+        this.dcDetector     = dcDetector;
+        this.wpdist         = wpdist;
+        this.targetPosition = targetPosition;
+        this.trajSurfaces   = trajSurfaces;
+    }
+
+    public DCGeant4Factory getDCDetector() {
+        return dcDetector;
+    }
+
+    public double[] getWpdist() {
+        return wpdist;
+    }
+
+    public double getTargetPosition() {
+        return targetPosition;
+    }
+
+    public TrajectorySurfaces getTrajectorySurfaces() {
+        return trajSurfaces;
+    }
+
+    /**
+     * @param variation geometry variation
+     * @param run run number the geometry tables are read for
+     * @param timestamp CCDB timestamp, or empty for the latest tables
+     * @param ministagger
+     * @param feedthroughs
+     * @param endplatesBowing
+     * @param shifts DC alignment shifts, or null
+     * @return the key identifying the geometry built with these options
+     */
+    public static String getKey(String variation, int run, String timestamp, DCGeant4Factory.MinistaggerStatus ministagger,
+            DCGeant4Factory.FeedthroughsStatus feedthroughs, boolean endplatesBowing, double[][] shifts) {
+        StringBuilder key = new StringBuilder();
+        key.append(variation).append('/').append(run).append('/').append(timestamp);
+        key.append('/').append(ministagger).append('/').append(feedthroughs);
+        key.append('/').append(endplatesBowing);
+        if(shifts!=null) {
+            for(double[] row : shifts) {
+                key.append('/');
+                for(double shift : row) key.append(Long.toHexString(Double.doubleToLongBits(shift))).append(',');
+            }
+        }
+        return key.toString();
+    }
+
+    /**
+     * @param key see {@link #getKey}
+     * @param timestamp CCDB timestamp of the key
+     * @return the cache file for the key, or null if the cache is disabled or
+     * the timestamp is empty
+     */
+    public static File getFile(String key, String timestamp) {
+        String directory = System.getProperty(PROPERTY);
+        if(directory==null || directory.isEmpty()) return null;
+        if(timestamp==null || timestamp.isEmpty()) {
+            LOGGER.log(Level.INFO, "[DCGeometryCache] ---> no CCDB timestamp, the geometry is not cached");
+            return null;
+        }
+        return new File(directory, String.format("dc-geometry-v%d-%08x.bin", VERSION, key.hashCode()));
+    }
+
+    /**
+     * @param file
+     * @param key see {@link #getKey}
+     * @return the cached geometry, or null if the file does not exist or was
+     * written for a different key or version
+     */
+    public static DCGeometryCache read(File file, String key) {
+        if(file==null || !file.isFile()) return null;
+        try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if(in.readInt()!=MAGIC || in.readInt()!=VERSION || !key.equals(in.readUTF())) return null;
+            DCGeant4Factory dcDetector = DCGeant4Factory.read(in);
+            double[] wpdist = new double[in.readInt()];
+            for(int i=0; i<wpdist.length; i++) wpdist[i] = in.readDouble();
+            double targetPosition = in.readDouble();
+            List<ArrayList<Surface>> planes = new ArrayList<>();
+            int nsectors = in.readInt();
+            for(int isector=0; isector<nsectors; isector++) {
+                planes.add(new ArrayList<>());
+                int nsurfaces = in.readInt();
+                for(int i=0; i<nsurfaces; i++) planes.get(isector).add(readSurface(in));
+            }
+            TrajectorySurfaces trajSurfaces = new TrajectorySurfaces();
+            trajSurfaces.setDetectorPlanes(planes);
+            LOGGER.log(Level.INFO, "[DCGeometryCache] ---> read geometry from " + file);
+            return new DCGeometryCache(dcDetector, wpdist, targetPosition, trajSurfaces);
+        }
+        catch(IOException | IllegalArgumentException e) {
+            LOGGER.log(Level.WARNING, "[DCGeometryCache] ---> error reading " + file + ", rebuilding the geometry", e);
+            return null;
+        }
+    }
+
+    /**
+     * Write the geometry to a temporary file and move it in place, so that
+     * concurrent readers see either no file or a complete one.
+     * @param file
+     * @param key see {@link #getKey}
+     * @param dcDetector
+     * @param wpdist
+     * @param targetPosition
+     * @param trajSurfaces
+     */
+    public static void write(File file, String key, DCGeant4Factory dcDetector, double[] wpdist,
+            double targetPosition, TrajectorySurfaces trajSurfaces) {
+        if(file==null) return;
+        for(List<Surface> surfaces : trajSurfaces.getDetectorPlanes()) {
+            for(Surface surface : surfaces) {
+                if(surface.getContour()!=null && surface.getFace()==null) {
+                    LOGGER.log(Level.WARNING, "[DCGeometryCache] ---> surface with custom contour, not caching " + surface);
+                    return;
+                }
+            }
+        }
+        File tmp = null;
+        try {
+            File directory = file.getAbsoluteFile().getParentFile();
+            directory.mkdirs();
+            tmp = File.createTempFile(file.getName(), ".tmp", directory);
+            try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeUTF(key);
+                dcDetector.write(out);
+                out.writeInt(wpdist.length);
+                for(double d : wpdist) out.writeDouble(d);
+                out.writeDouble(targetPosition);
+                out.writeInt(trajSurfaces.getDetectorPlanes().size());
+                for(List<Surface> surfaces : trajSurfaces.getDetectorPlanes()) {
+                    out.writeInt(surfaces.size());
+                    for(Surface surface : surfaces) writeSurface(out, surface);
+                }
+            }
+            try {
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            }
+            catch(IOException e) {
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            LOGGER.log(Level.INFO, "[DCGeometryCache] ---> wrote geometry to " + file);
+        }
+        catch(IOException e) {
+            LOGGER.log(Level.WARNING, "[DCGeometryCache] ---> error writing " + file, e);
+            if(tmp!=null) tmp.delete();
+        }
+    }
+
+    private static Surface readSurface(DataInputStream in) throws IOException {
+        DetectorType type = DetectorType.valueOf(in.readUTF());
+        int sector = in.readInt();
+        int layer = in.readInt();
+        double thickness = in.readDouble();
+        byte kind = in.readByte();
+        switch(kind) {
+            case PLANE:
+                Surface surface = new Surface(type, sector, layer, new Plane3D(readPoint(in), readVector(in)));
+                surface.setThickness(thickness);
+                return surface;
+            case TRIANGLE:
+                return new Surface(type, sector, layer, new Triangle3D(readPoint(in), readPoint(in), readPoint(in)), thickness);
+            case TRAP:
+                return new Surface(type, sector, layer, new Trap3D(readPoint(in), readPoint(in), readPoint(in), readPoint(in)), thickness);
+            case SECTOR:
+                Arc3D arc = new Arc3D(readPoint(in), readPoint(in), readVector(in), in.readDouble());
+                return new Surface(type, sector, layer, new Sector3D(arc, in.readDouble()), thickness);
+            default:
+                throw new IOException("unknown surface type " + kind);
+        }
+    }
+
+    private static void writeSurface(DataOutputStream out, Surface surface) throws IOException {
+        out.writeUTF(surface.getDetectorType().name());
+        out.writeInt(surface.getDetectorSector());
+        out.writeInt(surface.getDetectorLayer());
+        out.writeDouble(surface.getThickness());
+        Face3D face = surface.getFace();
+        if(face instanceof Triangle3D) {
+            out.writeByte(TRIANGLE);
+            for(int i=0; i<3; i++) writePoint(out, face.point(i));
+        }
+        else if(face instanceof Trap3D) {
+            out.writeByte(TRAP);
+            for(int i=0; i<4; i++) writePoint(out, face.point(i));
+        }
+        else if(face instanceof Sector3D) {
+            out.writeByte(SECTOR);
+            Arc3D arc = ((Sector3D) face).outerArc();
+            writePoint(out, arc.origin());
+            writePoint(out, arc.center());
+            writeVector(out, arc.normal());
+            out.writeDouble(arc.theta());
+            out.writeDouble(((Sector3D) face).radialThickness());
+        }
+        else {
+            out.writeByte(PLANE);
+            writePoint(out, surface.getPlane().point());
+            writeVector(out, surface.getPlane().normal());
+        }
+    }
+
+    private static Point3D readPoint(DataInputStream in) throws IOException {
+        return new Point3D(in.readDouble(), in.readDouble(), in.readDouble());
+    }
+
+    private static void writePoint(DataOutputStream out, Point3D p) throws IOException {
+        out.writeDouble(p.x());
+        out.writeDouble(p.y());
+        out.writeDouble(p.z());
+    }
+
+    private static Vector3D readVector(DataInputStream in) throws IOException {
+        return new Vector3D(in.readDouble(), in.readDouble(), in.readDouble());
+    }
+
+    private static void writeVector(DataOutputStream out, Vector3D v) throws IOException {
+        out.writeDouble(v.x());
+        out.writeDouble(v.y());
+        out.writeDouble(v.z());
+    }
+}
@@ -284,14 +284,14 @@ public class Segment extends ArrayList<FittedHit> implements Comparable<Segment>
     public void set_SegmentEndPointsSecCoordSys(DCGeant4Factory DcDetector) {
 
         //double Z_1 = GeometryLoader.dcDetector.getSector(0).getSuperlayer(this.get_Superlayer()-1).getLayer(0).getComponent(0).getMidpoint().z();
-        double Z_1 = DcDetector.getWireMidpoint(this.get_Sector() - 1, this.get_Superlayer() - 1, 0, 0).z;
+        double Z_1 = DcDetector.getWireMidpointZ(this.get_Sector() - 1, this.get_Superlayer() - 1, 0, 0);
         double X_1 = this.get_fittedCluster().get_clusterLineFitSlope() * Z_1 + this.get_fittedCluster().get_clusterLineFitIntercept();
 
         double x1 = Constants.COS25 * X_1 + Constants.SIN25 * Z_1;
         double z1 = -Constants.SIN25 * X_1 + Constants.COS25 * Z_1;
 
         //double Z_2 = GeometryLoader.dcDetector.getSector(0).getSuperlayer(this.get_Superlayer()-1).getLayer(5).getComponent(0).getMidpoint().z();
-        double Z_2 = DcDetector.getWireMidpoint(this.get_Sector() - 1, this.get_Superlayer() - 1, 5, 0).z;
+        double Z_2 = DcDetector.getWireMidpointZ(this.get_Sector() - 1, this.get_Superlayer() - 1, 5, 0);
         double X_2 = this.get_fittedCluster().get_clusterLineFitSlope() * Z_2 + this.get_fittedCluster().get_clusterLineFitIntercept();
 
         double x2 = Constants.COS25 * X_2 + Constants.SIN25 * Z_2;
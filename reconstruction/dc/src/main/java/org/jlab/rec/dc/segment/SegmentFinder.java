@@ -74,7 +74,7 @@ public class SegmentFinder {
 
                 for (int l = 0; l < 6; l++) {
                     //double z = GeometryLoader.dcDetector.getSector(0).getSuperlayer(seg.get_Superlayer()-1).getLayer(l).getComponent(0).getMidpoint().z();
-                    double z = DcDetector.getWireMidpoint(seg.get_Sector() - 1, seg.get_Superlayer() - 1, l, 0).z;
+                    double z = DcDetector.getWireMidpointZ(seg.get_Sector() - 1, seg.get_Superlayer() - 1, l, 0);
                     double trkXMP = seg.get_fittedCluster().get_clusterLineFitSlopeMP() * z + seg.get_fittedCluster().get_clusterLineFitInterceptMP();
                     double trkX = seg.get_fittedCluster().get_clusterLineFitSlope() * z + seg.get_fittedCluster().get_clusterLineFitIntercept();
 
@@ -83,7 +83,7 @@ public class SegmentFinder {
                     }
                     int trjWire = trj.getWireOnTrajectory(seg.get_Sector(), seg.get_Superlayer(), l + 1, trkXMP, DcDetector);
                     //double x = GeometryLoader.dcDetector.getSector(0).getSuperlayer(seg.get_Superlayer()-1).getLayer(l).getComponent(trjWire-1).getMidpoint().x();
-                    double x = DcDetector.getWireMidpoint(seg.get_Sector() - 1, seg.get_Superlayer() - 1, l, trjWire - 1).x;
+                    double x = DcDetector.getWireMidpointX(seg.get_Sector() - 1, seg.get_Superlayer() - 1, l, trjWire - 1);
                     double cosTkAng = Constants.COS6 * Math.sqrt(1. + seg.get_fittedCluster().get_clusterLineFitSlope() * seg.get_fittedCluster().get_clusterLineFitSlope());
                     double calc_doca = (x - trkX) * cosTkAng;
                     trkDocas[l] = calc_doca;
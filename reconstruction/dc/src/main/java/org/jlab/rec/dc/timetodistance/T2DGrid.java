@@ -0,0 +1,233 @@
+package org.jlab.rec.dc.timetodistance;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+import org.jlab.rec.dc.Constants;
+import org.jlab.utils.groups.IndexedTable;
+
+/**
+ * Immutable time-to-distance grid for one set of T2D constants, i.e. one
+ * run and variation.  Distances are stored as floats in one flat array
+ * indexed by [sector][superlayer][bfield bin][alpha bin][time bin], and the
+ * (sector, superlayer) slices are filled in parallel.
+ *
+ * Instances are built and cached by {@link TableLoader} and can be shared by
+ * any number of {@link TimeToDistanceEstimator}s and threads.
+ */
+public class T2DGrid {
+
+    public static final int NSECTORS = 6;
+    public static final int NSUPERLAYERS = 6;
+    public static final int NBINSB = TableLoader.BfieldValues.length;
+    public static final int NBINSALPHA = TableLoader.maxBinIdxAlpha+1;
+    public static final int NBINST = TableLoader.NBINST;
+
+    private static final double STEPSIZE = 0.0010;
+
+    private final int t2dFunction;
+    private final double[] dmax = new double[NSUPERLAYERS];
+
+    private final double[][] delta_T0 = new double[NSECTORS][NSUPERLAYERS];
+    private final double[][] delta_bfield_coefficient = new double[NSECTORS][NSUPERLAYERS];
+    private final double[][] deltanm = new double[NSECTORS][NSUPERLAYERS];
+    private final double[][] vmid = new double[NSECTORS][NSUPERLAYERS];
+    private final double[][] v0 = new double[NSECTORS][NSUPERLAYERS];
+    private final double[][] b1 = new double[NSECTORS][NSUPERLAYERS];
+    private final double[][] b2 = new double[NSECTORS][NSUPERLAYERS];
+    private final double[][] b3 = new double[NSECTORS][NSUPERLAYERS];
+    private final double[][] b4 = new double[NSECTORS][NSUPERLAYERS];
+    private final double[][] Tmax = new double[NSECTORS][NSUPERLAYERS];
+    private final double[][] FracDmaxAtMinVel = new double[NSECTORS][NSUPERLAYERS];
+
+    private final float[] distFromTime = new float[NSECTORS*NSUPERLAYERS*NBINSB*NBINSALPHA*NBINST];
+    private int maxTBin = -1;
+
+    private T2DGrid(int t2dFunction) {
+        this.t2dFunction = t2dFunction;
+        for(int r = 0; r<NSUPERLAYERS; r++) {
+            this.dmax[r] = 2.*Constants.getInstance().wpdist[r];
+        }
+    }
+
+    /**
+     * Build the grid from the exponential/polynomial T2D table.
+     * @param tab /calibration/dc/time_to_distance/time2dist
+     * @return the new grid
+     */
+    public static T2DGrid create(IndexedTable tab) {
+        T2DGrid grid = new T2DGrid(Constants.getInstance().getT2D());
+        for(int s = 0; s<NSECTORS; s++ ){ // loop over sectors
+            for(int r = 0; r<NSUPERLAYERS; r++ ){ //loop over slys
+                grid.delta_T0[s][r] = tab.getDoubleValue("delta_T0", s+1,r+1,0);
+                grid.FracDmaxAtMinVel[s][r] = tab.getDoubleValue("c1", s+1,r+1,0);//use same table. names strings
+                grid.deltanm[s][r] = tab.getDoubleValue("deltanm", s+1,r+1,0);
+                grid.v0[s][r] = tab.getDoubleValue("v0", s+1,r+1,0);
+                grid.vmid[s][r] = tab.getDoubleValue("c2", s+1,r+1,0);
+                grid.delta_bfield_coefficient[s][r] = tab.getDoubleValue("delta_bfield_coefficient", s+1,r+1,0);
+                grid.b1[s][r] = tab.getDoubleValue("b1", s+1,r+1,0);
+                grid.b2[s][r] = tab.getDoubleValue("b2", s+1,r+1,0);
+                grid.b3[s][r] = tab.getDoubleValue("b3", s+1,r+1,0);
+                grid.b4[s][r] = tab.getDoubleValue("b4", s+1,r+1,0);
+                grid.Tmax[s][r] = tab.getDoubleValue("tmax", s+1,r+1,0);
+            }
+        }
+        grid.fill();
+        return grid;
+    }
+
+    /**
+     * Build the grid from the pressure-dependent T2D tables.
+     * @param t2dPressure /calibration/dc/time_to_distance/t2d_pressure
+     * @param t2dPressRef /calibration/dc/time_to_distance/ref_pressure
+     * @param pressure /hall/weather/pressure
+     * @return the new grid
+     */
+    public static T2DGrid create(IndexedTable t2dPressure, IndexedTable t2dPressRef, IndexedTable pressure) {
+        T2DGrid grid = new T2DGrid(Constants.getInstance().getT2D());
+        double p_ref = t2dPressRef.getDoubleValue("pressure", 0,0,0);
+        double p = pressure.getDoubleValue("value", 0,0,3);
+        double dp = p - p_ref;
+        for(int s = 0; s<NSECTORS; s++ ){ // loop over sectors
+            for(int r = 0; r<NSUPERLAYERS; r++ ){ //loop over slys
+                grid.FracDmaxAtMinVel[s][r] = t2dPressure.getDoubleValue("c1_a0", s+1,r+1,0)
+                        +t2dPressure.getDoubleValue("c1_a1", s+1,r+1,0)*dp;
+                grid.v0[s][r] = quadratic(t2dPressure, "v0", s, r, dp);
+                grid.vmid[s][r] = quadratic(t2dPressure, "vmid", s, r, dp);
+                grid.delta_bfield_coefficient[s][r] = quadratic(t2dPressure, "delta_bfield", s, r, dp);
+                grid.b1[s][r] = quadratic(t2dPressure, "b1", s, r, dp);
+                grid.b2[s][r] = quadratic(t2dPressure, "b2", s, r, dp);
+                grid.b3[s][r] = quadratic(t2dPressure, "b3", s, r, dp);
+                grid.b4[s][r] = quadratic(t2dPressure, "b4", s, r, dp);
+                grid.Tmax[s][r] = quadratic(t2dPressure, "tmax", s, r, dp);
+            }
+        }
+        grid.fill();
+        return grid;
+    }
+
+    private static double quadratic(IndexedTable t2dPressure, String name, int s, int r, double dp) {
+        return t2dPressure.getDoubleValue(name+"_a0", s+1,r+1,0)
+              +t2dPressure.getDoubleValue(name+"_a1", s+1,r+1,0)*dp
+              +t2dPressure.getDoubleValue(name+"_a2", s+1,r+1,0)*dp*dp;
+    }
+
+    private static int index(int s, int r, int ibfield, int icosalpha, int tbin) {
+        return (((s*NSUPERLAYERS + r)*NBINSB + ibfield)*NBINSALPHA + icosalpha)*NBINST + tbin;
+    }
+
+    /**
+     * Fill all (sector, superlayer) slices in parallel, each independent of
+     * the others, then fill empty bins.
+     */
+    private void fill() {
+        int[] maxBins = new int[NSECTORS*NSUPERLAYERS];
+        IntStream.range(0, NSECTORS*NSUPERLAYERS).parallel().forEach(
+            (int sr) -> maxBins[sr] = this.fill(sr/NSUPERLAYERS, sr%NSUPERLAYERS));
+        for(int max : maxBins) {
+            if(max>this.maxTBin) this.maxTBin = max;
+        }
+        IntStream.range(0, NSECTORS*NSUPERLAYERS).parallel().forEach(
+            (int sr) -> this.fillMissingBins(sr/NSUPERLAYERS, sr%NSUPERLAYERS));
+    }
+
+    /**
+     * Fill one (sector, superlayer) slice by stepping in distance.
+     * @return the largest time bin filled
+     */
+    private int fill(int s, int r) {
+        int maxBin = -1;
+        double[] bins = new double[NBINST];
+        for(int ibfield =0; ibfield<NBINSB; ibfield++) {
+            double bfield = TableLoader.BfieldValues[ibfield];
+            for(int icosalpha =0; icosalpha<NBINSALPHA; icosalpha++) {
+                double cos30minusalpha = Math.cos(Math.toRadians(30.)) + (double) (icosalpha)*(1. - Math.cos(Math.toRadians(30.)))/5.;
+                double alpha = -(Math.toDegrees(Math.acos(cos30minusalpha)) - 30);
+                int nxmax = (int) (this.dmax[r]*cos30minusalpha/STEPSIZE);
+                Arrays.fill(bins, 0);
+                for(int idist =0; idist<nxmax; idist++) {
+                    double x = (double)(idist+1)*STEPSIZE;
+                    double timebfield = this.calcTime(x, alpha, bfield, s+1, r+1);
+                    int tbin = (int) Math.floor(timebfield/2);
+                    if(tbin<0 || tbin>NBINST-1) {
+                        continue;
+                    }
+                    if(tbin>maxBin)
+                        maxBin = tbin;
+                    if(bins[tbin]==0) {
+                        bins[tbin]=x;
+                    } else {
+                        bins[tbin]+=STEPSIZE;
+                    }
+                }
+                int offset = index(s, r, ibfield, icosalpha, 0);
+                for(int tbin = 0; tbin<NBINST; tbin++) {
+                    this.distFromTime[offset+tbin] = (float) bins[tbin];
+                }
+            }
+        }
+        return maxBin;
+    }
+
+    private void fillMissingBins(int s, int r) {
+        for(int ibfield =0; ibfield<NBINSB; ibfield++) {
+            for(int icosalpha =0; icosalpha<NBINSALPHA; icosalpha++) {
+                int offset = index(s, r, ibfield, icosalpha, 0);
+                for(int tbin = 0; tbin<this.maxTBin && tbin<NBINST-1; tbin++) {
+                    if(this.distFromTime[offset+tbin]!=0 && this.distFromTime[offset+tbin+1]==0) {
+                        this.distFromTime[offset+tbin+1] = this.distFromTime[offset+tbin];
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @param s sector index (0...5)
+     * @param r superlayer index (0...5)
+     * @param ibfield bfield bin
+     * @param icosalpha cosalpha bin
+     * @param tbin time bin
+     * @return distance in cm
+     */
+    public double getDistance(int s, int r, int ibfield, int icosalpha, int tbin) {
+        return this.distFromTime[index(s, r, ibfield, icosalpha, tbin)];
+    }
+
+    /**
+     * @return the largest filled time bin
+     */
+    public int getMaxTBin() {
+        return this.maxTBin;
+    }
+
+    /**
+     *
+     * @param x distance to wire in cm
+     * @param alpha local angle in deg
+     * @param bfield B field value a x in T
+     * @param sector sector
+     * @param superlayer superlayer
+     * @return returns time (ns) when given inputs of distance x (cm), local angle alpha (degrees) and magnitude of bfield (Tesla).
+     */
+    public double calcTime(double x, double alpha, double bfield, int sector, int superlayer) {
+        int s = sector - 1;
+        int r = superlayer - 1;
+        double dmax = this.dmax[r];
+        double tmax = Tmax[s][r];
+        double delBf = delta_bfield_coefficient[s][r];
+        double Bb1 = b1[s][r];
+        double Bb2 = b2[s][r];
+        double Bb3 = b3[s][r];
+        double Bb4 = b4[s][r];
+        if(x>dmax)
+            x=dmax;
+
+        if(this.t2dFunction==0) {
+            return T2DFunctions.ExpoFcn(x, alpha, bfield, v0[s][r], deltanm[s][r], 0.615,
+                tmax, dmax, delBf, Bb1, Bb2, Bb3, Bb4, superlayer) + delta_T0[s][r];
+        } else {
+            return T2DFunctions.polyFcnMac(x, alpha, bfield, v0[s][r], vmid[s][r], FracDmaxAtMinVel[s][r],
+                tmax, dmax, delBf, Bb1, Bb2, Bb3, Bb4, superlayer) ;
+        }
+    }
+}
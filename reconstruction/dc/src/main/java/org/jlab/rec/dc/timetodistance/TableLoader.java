@@ -1,302 +1,151 @@
 package org.jlab.rec.dc.timetodistance;
 
-import java.math.RoundingMode;
-import java.text.DecimalFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.jlab.rec.dc.Constants;
 import org.jlab.utils.groups.IndexedTable;
 
-
+/**
+ * Builds and caches time-to-distance grids, one per (run, variation), so
+ * jobs spanning several runs or variations use the right constants for each.
+ * The number of grids kept is bounded, least recently used first out.
+ */
 public class TableLoader {
 
     public TableLoader() {
     }
-    
+
     public static final Logger LOGGER = Logger.getLogger(TableLoader.class.getName());
 
-    private static boolean T2DLOADED = false;
-    
-    private static final int NBINST=2000;
-    
+    public static final int NBINST=2000;
+
     public static final double[] BfieldValues = new double[]{0.0000, 1.0000, 1.4142, 1.7321, 2.0000, 2.2361, 2.4495, 2.6458};
     public static int minBinIdxB = 0;
     public static int maxBinIdxB = BfieldValues.length-1;
     public static int minBinIdxAlpha = 0;
     public static int maxBinIdxAlpha = 5;
-    private static final double[] AlphaMid = new double[6];
-    private static final double[][] AlphaBounds = new double[6][2];
     public static int minBinIdxT  = 0;
-    public static final int[][][][] maxBinIdxT  = new int[6][6][8][6];
-    public static double[][][][][] DISTFROMTIME = new double[6][6][maxBinIdxB+1][maxBinIdxAlpha+1][NBINST]; // sector slyr alpha Bfield time bins [s][r][ibfield][icosalpha][tbin]    
-    public static int maxTBin = -1;
-        //public static double[] distbetaValues = new double[]{0.16, 0.16, 0.08, 0.08, 0.08, 0.08};
-    
-    /*
-     * 
+
+    /**
+     * maximum number of grids to keep, about 14 MB each
      */
-    public static void test(){
-            TimeToDistanceEstimator tde = new TimeToDistanceEstimator();
-            for(int s = 0; s<1; s++ ){ // loop over sectors
-                    for(int r = 4; r<5; r++ ){ //loop over slys
-                            for(int ibfield =0; ibfield<1; ibfield++) {
-                                for (int tb = 250; tb< 300; tb++) {
-                                    LOGGER.log(Level.FINE, " NEW TIME BIN ");
-                                    for(int icosalpha =0; icosalpha<maxBinIdxAlpha+1; icosalpha++) {
-                                            //for (int tb = 0; tb< maxBinIdxT[s][r][ibfield][icosalpha]; tb++) {
-                                            double Xalpha = -(Math.toDegrees(Math.acos(Math.cos(Math.toRadians(30.)) + (icosalpha)*(1. - Math.cos(Math.toRadians(30.)))/5.)) - 30.);
-                                            double Xtime=(2*tb+1);
+    public static final int MAXGRIDS = Integer.getInteger("clas12.dc.t2d.cache", 4);
 
-                                            //for (int k=0; k<10; k++){
-                                            double Bf = (ibfield)*0.5;
-                                            int bbin = tde.getBIdx(Bf);
-                                            double Xdoca=tde.interpolateOnGrid((double) Bf, Xalpha, Xtime, s, r);
-                                                LOGGER.log(Level.FINE, "Bbin "+ibfield+" B "+ (float)Bf+" sl "+(r+1)+" time "+Xtime+" tb "+tb+" timeBin "+tde.getTimeIdx(Xtime, s, r, ibfield, icosalpha)
-                                                        +" icosalpha "+icosalpha+" Xalpha "+(float) Xalpha + " dis "+ (float)DISTFROMTIME[s][r][bbin][icosalpha][tde.getTimeIdx(Xtime, s, r, ibfield, icosalpha)] +" time' "+
-                                                      (float)  calc_Time( Xdoca,  Xalpha, Bf, s+1, r+1) +" tdix "+tde.getTimeIdx(calc_Time( Xdoca,  Xalpha, Bf, s+1, r+1), s, r, ibfield, icosalpha));
-                                            //}
-                                            }
+    private static final Map<GridKey,FutureTask<T2DGrid>> GRIDS = new LinkedHashMap<GridKey,FutureTask<T2DGrid>>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<GridKey,FutureTask<T2DGrid>> eldest) {
+            return size() > MAXGRIDS;
+        }
+    };
 
-                                    }
-                            }
-                    }
-            }
+    /**
+     * Get the grid for the exponential/polynomial T2D table, building it if
+     * not already cached.
+     * @param run run number
+     * @param variation CCDB variation
+     * @param tab /calibration/dc/time_to_distance/time2dist
+     * @return the grid
+     */
+    public static T2DGrid getGrid(int run, String variation, IndexedTable tab) {
+        return getGrid(new GridKey(run, variation, Constants.getInstance().getT2D(), tab), tab, null, null);
     }
-    
-    private static int getAlphaBin(double Alpha) {
-        int bin = 0;
-        for(int b =0; b<6; b++) {
-            if(Alpha>=AlphaBounds[b][0] && Alpha<=AlphaBounds[b][1] )
-                bin = b;
-        }
-        return bin;
+
+    /**
+     * Get the grid for the pressure-dependent T2D tables, building it if not
+     * already cached.
+     * @param run run number
+     * @param variation CCDB variation
+     * @param t2dPressure /calibration/dc/time_to_distance/t2d_pressure
+     * @param t2dPressRef /calibration/dc/time_to_distance/ref_pressure
+     * @param pressure /hall/weather/pressure
+     * @return the grid
+     */
+    public static T2DGrid getGrid(int run, String variation, IndexedTable t2dPressure,
+            IndexedTable t2dPressRef, IndexedTable pressure) {
+        return getGrid(new GridKey(run, variation, Constants.getInstance().getT2D(), t2dPressure),
+                t2dPressure, t2dPressRef, pressure);
     }
-    
-    private static synchronized void FillAlpha() {
-        for(int icosalpha =0; icosalpha<maxBinIdxAlpha+1; icosalpha++) {
 
-            double cos30minusalphaM = Math.cos(Math.toRadians(30.)) + (double) 
-                    (icosalpha)*(1. - Math.cos(Math.toRadians(30.)))/5.;
-            double alphaM = -(Math.toDegrees(Math.acos(cos30minusalphaM)) - 30);
-            AlphaMid[icosalpha]= alphaM;
-            double cos30minusalphaU = Math.cos(Math.toRadians(30.)) + (double) 
-                    (icosalpha+0.5)*(1. - Math.cos(Math.toRadians(30.)))/5.;
-            double alphaU = -(Math.toDegrees(Math.acos(cos30minusalphaU)) - 30);
-            AlphaBounds[icosalpha][1] = alphaU;
-            double cos30minusalphaL = Math.cos(Math.toRadians(30.)) + (double) 
-                    (icosalpha-0.5)*(1. - Math.cos(Math.toRadians(30.)))/5.;
-            double alphaL = -(Math.toDegrees(Math.acos(cos30minusalphaL)) - 30);
-            AlphaBounds[icosalpha][0] = alphaL;
+    /**
+     * The lock is only held to find or insert the grid's task, the grid is
+     * built outside it, so threads needing other grids are not blocked and
+     * threads needing the same grid wait for the one building it.
+     */
+    private static T2DGrid getGrid(GridKey key, IndexedTable t0, IndexedTable t1, IndexedTable t2) {
+        FutureTask<T2DGrid> task;
+        boolean build = false;
+        synchronized (GRIDS) {
+            task = GRIDS.get(key);
+            if (task == null) {
+                task = new FutureTask<>(() -> {
+                    long start = System.currentTimeMillis();
+                    T2DGrid grid = t1 == null ? T2DGrid.create(t0) : T2DGrid.create(t0, t1, t2);
+                    LOGGER.log(Level.INFO, String.format("[TableLoader] T2D grid for run %d, variation %s built in %d ms",
+                            key.run, key.variation, System.currentTimeMillis()-start));
+                    return grid;
+                });
+                GRIDS.put(key, task);
+                build = true;
+            }
         }
-        AlphaMid[0] = 0;
-        AlphaMid[5] = 30;
-        AlphaBounds[0][0] = 0;
-        AlphaBounds[5][1] = 30;
-    }
-    public static synchronized void Fill(IndexedTable t2dPressure, IndexedTable t2dPressRef, IndexedTable pressure) {
-        if (T2DLOADED) return;
-        
-        
-        double p_ref = t2dPressRef.getDoubleValue("pressure", 0,0,0);
-        double p = pressure.getDoubleValue("value", 0,0,3);
-        double dp = p - p_ref;
-        
-        for(int s = 0; s<6; s++ ){ // loop over sectors
-            for(int r = 0; r<6; r++ ){ //loop over slys
-                // Fill constants
-                FracDmaxAtMinVel[s][r] = t2dPressure.getDoubleValue("c1_a0", s+1,r+1,0)
-                        +t2dPressure.getDoubleValue("c1_a1", s+1,r+1,0)*dp;
-                v0[s][r] = t2dPressure.getDoubleValue("v0_a0", s+1,r+1,0)
-                        +t2dPressure.getDoubleValue("v0_a1", s+1,r+1,0)*dp
-                        +t2dPressure.getDoubleValue("v0_a2", s+1,r+1,0)*dp*dp;
-                vmid[s][r] = t2dPressure.getDoubleValue("vmid_a0", s+1,r+1,0)
-                        +t2dPressure.getDoubleValue("vmid_a1", s+1,r+1,0)*dp
-                        +t2dPressure.getDoubleValue("vmid_a2", s+1,r+1,0)*dp*dp;
-                delta_bfield_coefficient[s][r] = t2dPressure.getDoubleValue("delta_bfield_a0", s+1,r+1,0)
-                        +t2dPressure.getDoubleValue("delta_bfield_a1", s+1,r+1,0)*dp
-                        +t2dPressure.getDoubleValue("delta_bfield_a2", s+1,r+1,0)*dp*dp;
-                b1[s][r] = t2dPressure.getDoubleValue("b1_a0", s+1,r+1,0)
-                        +t2dPressure.getDoubleValue("b1_a1", s+1,r+1,0)*dp
-                        +t2dPressure.getDoubleValue("b1_a2", s+1,r+1,0)*dp*dp;
-                b2[s][r] = t2dPressure.getDoubleValue("b2_a0", s+1,r+1,0)
-                        +t2dPressure.getDoubleValue("b2_a1", s+1,r+1,0)*dp
-                        +t2dPressure.getDoubleValue("b2_a2", s+1,r+1,0)*dp*dp;
-                b3[s][r] = t2dPressure.getDoubleValue("b3_a0", s+1,r+1,0)
-                        +t2dPressure.getDoubleValue("b3_a1", s+1,r+1,0)*dp
-                        +t2dPressure.getDoubleValue("b3_a2", s+1,r+1,0)*dp*dp;
-                b4[s][r] = t2dPressure.getDoubleValue("b4_a0", s+1,r+1,0)
-                        +t2dPressure.getDoubleValue("b4_a1", s+1,r+1,0)*dp
-                        +t2dPressure.getDoubleValue("b4_a2", s+1,r+1,0)*dp*dp;
-                Tmax[s][r] = t2dPressure.getDoubleValue("tmax_a0", s+1,r+1,0)
-                        +t2dPressure.getDoubleValue("tmax_a1", s+1,r+1,0)*dp
-                        +t2dPressure.getDoubleValue("tmax_a2", s+1,r+1,0)*dp*dp;
-                
+        if (build) task.run();
+        try {
+            return task.get();
+        }
+        catch (ExecutionException e) {
+            synchronized (GRIDS) {
+                GRIDS.remove(key, task);
             }
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IllegalStateException(cause);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while waiting for the T2D grid", e);
         }
-        Fill();
     }
-    public static synchronized void Fill(IndexedTable tab) {
-        //CCDBTables 0 =  "/calibration/dc/signal_generation/doca_resolution";
-        //CCDBTables 1 =  "/calibration/dc/time_to_distance/t2d";
-        //CCDBTables 2 =  "/calibration/dc/time_corrections/T0_correction";	
-        if (T2DLOADED) return;
-        
-        for(int s = 0; s<6; s++ ){ // loop over sectors
 
-            for(int r = 0; r<6; r++ ){ //loop over slys
-                // Fill constants
-                delta_T0[s][r] = tab.getDoubleValue("delta_T0", s+1,r+1,0);
-                FracDmaxAtMinVel[s][r] = tab.getDoubleValue("c1", s+1,r+1,0);//use same table. names strings 
-                deltanm[s][r] = tab.getDoubleValue("deltanm", s+1,r+1,0);
-                v0[s][r] = tab.getDoubleValue("v0", s+1,r+1,0);
-                vmid[s][r] = tab.getDoubleValue("c2", s+1,r+1,0);
-                delta_bfield_coefficient[s][r] = tab.getDoubleValue("delta_bfield_coefficient", s+1,r+1,0); 
-                b1[s][r] = tab.getDoubleValue("b1", s+1,r+1,0);
-                b2[s][r] = tab.getDoubleValue("b2", s+1,r+1,0);
-                b3[s][r] = tab.getDoubleValue("b3", s+1,r+1,0);
-                b4[s][r] = tab.getDoubleValue("b4", s+1,r+1,0);
-                Tmax[s][r] = tab.getDoubleValue("tmax", s+1,r+1,0);
-                // end fill constants
-            }
+    public static void clear() {
+        synchronized (GRIDS) {
+            GRIDS.clear();
         }
-        Fill();
-        
-     }
-    public static synchronized void Fill() {
-        //CCDBTables 0 =  "/calibration/dc/signal_generation/doca_resolution";
-        //CCDBTables 1 =  "/calibration/dc/time_to_distance/t2d";
-        //CCDBTables 2 =  "/calibration/dc/time_corrections/T0_correction";	
-        
-        double stepSize = 0.0010;
-        
-        FillAlpha();
-        
-        for(int s = 0; s<6; s++ ){ // loop over sectors
-
-                for(int r = 0; r<6; r++ ){ //loop over slys
-                    
-                    //   constants filled
-                    //LOGGER.log(Level.FINE, v0[s][r]+" "+vmid[s][r]+" "+FracDmaxAtMinVel[s][r]);
-                    double dmax = 2.*Constants.getInstance().wpdist[r]; 
-                    //double tmax = CCDBConstants.getTMAXSUPERLAYER()[s][r];
-                    for(int ibfield =0; ibfield<maxBinIdxB+1; ibfield++) {
-                        double bfield = BfieldValues[ibfield];
+    }
 
-                        for(int icosalpha =0; icosalpha<maxBinIdxAlpha+1; icosalpha++) {
-                                maxBinIdxT[s][r][ibfield][icosalpha] = NBINST; 
-                                double cos30minusalpha = Math.cos(Math.toRadians(30.)) + (double) (icosalpha)*(1. - Math.cos(Math.toRadians(30.)))/5.;
-                                double alpha = -(Math.toDegrees(Math.acos(cos30minusalpha)) - 30);
-                                int nxmax = (int) (dmax*cos30minusalpha/stepSize); 
-                                
-                                for(int idist =0; idist<nxmax; idist++) {
+    /**
+     * Cache key, including the identity of the first constants table so a
+     * grid is never reused for different constants.
+     */
+    private static class GridKey {
 
-                                    double x = (double)(idist+1)*stepSize;
-                                    double timebfield = calc_Time( x,  alpha, bfield, s+1, r+1) ;
+        final int run;
+        final String variation;
+        final int t2d;
+        final IndexedTable table;
 
-                                    int tbin = (int) Math.floor(timebfield/2);
-                                    
-                                    if(tbin<0 || tbin>NBINST-1) {
-                                        //System.err.println("Problem with tbin");
-                                        continue;
-                                    }
-                                    if(tbin>maxTBin)
-                                        maxTBin = tbin;
-                                    //if(tbin>maxBinIdxT[s][r][ibfield][icosalpha]) {
-                                    //maxBinIdxT[s][r][ibfield][icosalpha] = NBINST; 
-                                    //} //LOGGER.log(Level.FINE, "tbin "+tbin+" tmax "+tmax+ "s "+s+" sl "+r );
-                                    if(DISTFROMTIME[s][r][ibfield][icosalpha][tbin]==0) {
-                                        // firstbin = bi
-                                        // bincount = 0;				    	 
-                                        DISTFROMTIME[s][r][ibfield][icosalpha][tbin]=x;
-                                    } else {
-                                        // test for getting center of the bin (to be validated):
-                                        //double prevTime = calc_Time(x-stepSize,  alpha, bfield, s+1, r+1);
-                                        //if(x>DISTFROMTIME[s][r][ibfield][icosalpha][tbin]
-                                        //        && Math.abs((double)(2.*tbin+1)-timebfield)<=Math.abs((double)(2.*tbin+1)-prevTime)) {
-                                        //    DISTFROMTIME[s][r][ibfield][icosalpha][tbin]=x;
-                                        //}
-                                        // bincount++;
-                                        DISTFROMTIME[s][r][ibfield][icosalpha][tbin]+=stepSize;
-                                    }
-                                    
-                                    /* if(timebfield>timebfield_max) {
-                                        DISTFROMTIME[s][r][ibfield][icosalpha][tbin]=x-stepSize*0.5;
-                                        if(DISTFROMTIME[s][r][ibfield][icosalpha][tbin]>dmax)
-                                            DISTFROMTIME[s][r][ibfield][icosalpha][tbin] = dmax;                                               
-                                    } */
-                                }
-                            }
-                        }
-                }
-        }	
-        TableLoader.fillMissingTableBins();
-        //TableLoader.test();
-        T2DLOADED = true;
-    }
-    
-    private static synchronized void fillMissingTableBins() {
-        
-        for(int s = 0; s<6; s++ ){ // loop over sectors
+        GridKey(int run, String variation, int t2d, IndexedTable table) {
+            this.run = run;
+            this.variation = variation;
+            this.t2d = t2d;
+            this.table = table;
+        }
 
-            for(int r = 0; r<6; r++ ){ //loop over slys
-                
-                for(int ibfield =0; ibfield<maxBinIdxB+1; ibfield++) {
-                    
-                    for(int icosalpha =0; icosalpha<maxBinIdxAlpha+1; icosalpha++) {
-                        
-                        for(int tbin = 0; tbin<maxTBin; tbin++) {
-                            if(DISTFROMTIME[s][r][ibfield][icosalpha][tbin]!=0 && DISTFROMTIME[s][r][ibfield][icosalpha][tbin+1]==0) {
-                                DISTFROMTIME[s][r][ibfield][icosalpha][tbin+1] = DISTFROMTIME[s][r][ibfield][icosalpha][tbin];
-                            }
-                        }
-                        
-                    }
-                }
-            }
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof GridKey)) return false;
+            GridKey k = (GridKey) o;
+            return run == k.run && t2d == k.t2d && table == k.table && Objects.equals(variation, k.variation);
         }
-    }
-    /**
-     * 
-     * @param x distance to wire in cm
-     * @param alpha local angle in deg
-     * @param bfield B field value a x in T
-     * @param sector sector  
-     * @param superlayer superlayer 
-     * @return returns time (ns) when given inputs of distance x (cm), local angle alpha (degrees) and magnitude of bfield (Tesla).  
-     */
-    public static synchronized double calc_Time(double x, double alpha, double bfield, int sector, int superlayer) {
-        int s = sector - 1;
-        int r = superlayer - 1;
-        double dmax = 2.*Constants.getInstance().wpdist[r]; 
-        double tmax = Tmax[s][r];
-        double delBf = delta_bfield_coefficient[s][r]; 
-        double Bb1 = b1[s][r];
-        double Bb2 = b2[s][r];
-        double Bb3 = b3[s][r];
-        double Bb4 = b4[s][r];
-        if(x>dmax)
-            x=dmax;
-        
-        if(Constants.getInstance().getT2D()==0) {
-            
-            return T2DFunctions.ExpoFcn(x, alpha, bfield, v0[s][r], deltanm[s][r], 0.615, 
-                tmax, dmax, delBf, Bb1, Bb2, Bb3, Bb4, superlayer) + delta_T0[s][r];
-        } else {
-            return T2DFunctions.polyFcnMac(x, alpha, bfield, v0[s][r], vmid[s][r], FracDmaxAtMinVel[s][r], 
-                tmax, dmax, delBf, Bb1, Bb2, Bb3, Bb4, superlayer) ;
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(run, variation, t2d, System.identityHashCode(table));
         }
     }
-    
-    public static double[][] delta_T0 = new double[6][6];
-    public static double[][] delta_bfield_coefficient = new double[6][6];
-    public static double[][] deltanm = new double[6][6];
-    public static double[][] vmid = new double[6][6];
-    public static double[][] v0 = new double[6][6];
-    public static double[][] b1 = new double[6][6];
-    public static double[][] b2 = new double[6][6];
-    public static double[][] b3 = new double[6][6];
-    public static double[][] b4 = new double[6][6];
-    public static double[][] Tmax = new double[6][6];
-    public static double[][] FracDmaxAtMinVel = new double[6][6];		// fraction of dmax corresponding to the point in the cell where the velocity is minimal
-
 }
@@ -8,7 +8,17 @@ import java.util.logging.Logger;
 
 public class TimeToDistanceEstimator {
 
-    public TimeToDistanceEstimator() {
+    private final T2DGrid grid;
+
+    /**
+     * @param grid time-to-distance grid for the current run
+     */
+    public TimeToDistanceEstimator(T2DGrid grid) {
+        this.grid = grid;
+    }
+
+    public T2DGrid getGrid() {
+        return this.grid;
     }
     
     private static final Logger LOGGER = Logger.getLogger(TimeToDistanceEstimator.class.getName());
@@ -47,6 +57,7 @@ public class TimeToDistanceEstimator {
     */
     public double interpolateOnGrid(double Bf, double alpha, double t,  int SecIdx, int SlyrIdx) {
         
+        T2DGrid grid = this.getGrid();
         double B = Math.abs(Bf);
         
         int binlowB  = this.getBIdx(B);
@@ -75,27 +86,27 @@ public class TimeToDistanceEstimator {
         
         // interpolate in B:
         double f_B_alpha1_t1 = interpolateLinear(B*B, B1*B1, B2*B2, 
-                    TableLoader.DISTFROMTIME[SecIdx][SlyrIdx][binlowB][binlowAlpha][this.getTimeIdx(t, SecIdx, SlyrIdx, binlowB, binlowAlpha)],
-                    TableLoader.DISTFROMTIME[SecIdx][SlyrIdx][binhighB][binlowAlpha][this.getTimeIdx(t, SecIdx, SlyrIdx, binhighB, binlowAlpha)]);
+                    grid.getDistance(SecIdx, SlyrIdx, binlowB, binlowAlpha, this.getTimeIdx(t, SecIdx, SlyrIdx, binlowB, binlowAlpha)),
+                    grid.getDistance(SecIdx, SlyrIdx, binhighB, binlowAlpha, this.getTimeIdx(t, SecIdx, SlyrIdx, binhighB, binlowAlpha)));
         double f_B_alpha2_t1 = interpolateLinear(B*B, B1*B1, B2*B2, 
-                    TableLoader.DISTFROMTIME[SecIdx][SlyrIdx][binlowB][binhighAlpha][this.getTimeIdx(t, SecIdx, SlyrIdx, binlowB, binhighAlpha)],
-                    TableLoader.DISTFROMTIME[SecIdx][SlyrIdx][binhighB][binhighAlpha][this.getTimeIdx(t, SecIdx, SlyrIdx, binhighB, binhighAlpha)]);
+                    grid.getDistance(SecIdx, SlyrIdx, binlowB, binhighAlpha, this.getTimeIdx(t, SecIdx, SlyrIdx, binlowB, binhighAlpha)),
+                    grid.getDistance(SecIdx, SlyrIdx, binhighB, binhighAlpha, this.getTimeIdx(t, SecIdx, SlyrIdx, binhighB, binhighAlpha)));
         double f_B_alpha1_t2 = interpolateLinear(B*B, B1*B1, B2*B2, 
-                    TableLoader.DISTFROMTIME[SecIdx][SlyrIdx][binlowB][binlowAlpha][this.getTimeNextIdx(t, SecIdx, SlyrIdx, binlowB, binlowAlpha)],
-                    TableLoader.DISTFROMTIME[SecIdx][SlyrIdx][binhighB][binlowAlpha][this.getTimeNextIdx(t, SecIdx, SlyrIdx, binhighB, binlowAlpha)]);
+                    grid.getDistance(SecIdx, SlyrIdx, binlowB, binlowAlpha, this.getTimeNextIdx(t, SecIdx, SlyrIdx, binlowB, binlowAlpha)),
+                    grid.getDistance(SecIdx, SlyrIdx, binhighB, binlowAlpha, this.getTimeNextIdx(t, SecIdx, SlyrIdx, binhighB, binlowAlpha)));
         double f_B_alpha2_t2 = interpolateLinear(B*B, B1*B1, B2*B2, 
-                    TableLoader.DISTFROMTIME[SecIdx][SlyrIdx][binlowB][binhighAlpha][this.getTimeNextIdx(t, SecIdx, SlyrIdx, binlowB, binhighAlpha)],
-                    TableLoader.DISTFROMTIME[SecIdx][SlyrIdx][binhighB][binhighAlpha][this.getTimeNextIdx(t, SecIdx, SlyrIdx, binhighB, binhighAlpha)]);
+                    grid.getDistance(SecIdx, SlyrIdx, binlowB, binhighAlpha, this.getTimeNextIdx(t, SecIdx, SlyrIdx, binlowB, binhighAlpha)),
+                    grid.getDistance(SecIdx, SlyrIdx, binhighB, binhighAlpha, this.getTimeNextIdx(t, SecIdx, SlyrIdx, binhighB, binhighAlpha)));
          // interpolate in d for 2 values of alpha:		 
         double f_B_alpha1_t = interpolateLinear(t, this.getTimeIdx(t, SecIdx, SlyrIdx, binlowB, binlowAlpha)*2., this.getTimeNextIdx(t, SecIdx, SlyrIdx, binhighB, binlowAlpha)*2., f_B_alpha1_t1, f_B_alpha1_t2);
         double f_B_alpha2_t = interpolateLinear(t, this.getTimeIdx(t, SecIdx, SlyrIdx, binlowB, binhighAlpha)*2., this.getTimeNextIdx(t, SecIdx, SlyrIdx, binhighB, binhighAlpha)*2., f_B_alpha2_t1, f_B_alpha2_t2);
-        //LOGGER.log(Level.FINE,  TableLoader.DISTFROMTIME[SecIdx][SlyrIdx][binlowB][binlowAlpha][this.getTimeIdx(t, SecIdx, SlyrIdx, binlowB, binlowAlpha)]);
+        //LOGGER.log(Level.FINE,  grid.getDistance(SecIdx, SlyrIdx, binlowB, binlowAlpha, this.getTimeIdx(t, SecIdx, SlyrIdx, binlowB, binlowAlpha)));
         //LOGGER.log(Level.FINE, SlyrIdx+" binlowB "+binlowB+" binlowAlpha "+binlowAlpha+" t "+this.getTimeIdx(t, SecIdx, SlyrIdx, binlowB, binlowAlpha)+" time "+t);
-        //LOGGER.log(Level.FINE, TableLoader.DISTFROMTIME[SecIdx][SlyrIdx][binlowB][binhighAlpha][this.getTimeIdx(t, SecIdx, SlyrIdx, binlowB, binhighAlpha)]);
+        //LOGGER.log(Level.FINE, grid.getDistance(SecIdx, SlyrIdx, binlowB, binhighAlpha, this.getTimeIdx(t, SecIdx, SlyrIdx, binlowB, binhighAlpha)));
         //LOGGER.log(Level.FINE, SlyrIdx+" binlowB "+binlowB+" binhighAlpha "+binhighAlpha+" t "+this.getTimeIdx(t, SecIdx, SlyrIdx, binlowB, binhighAlpha)+" time "+t);
-        //LOGGER.log(Level.FINE, TableLoader.DISTFROMTIME[SecIdx][SlyrIdx][binhighB][binlowAlpha][this.getTimeIdx(t, SecIdx, SlyrIdx, binhighB, binlowAlpha)]);
+        //LOGGER.log(Level.FINE, grid.getDistance(SecIdx, SlyrIdx, binhighB, binlowAlpha, this.getTimeIdx(t, SecIdx, SlyrIdx, binhighB, binlowAlpha)));
         //LOGGER.log(Level.FINE, SlyrIdx+" binhighB "+binhighB+" binlowAlpha "+binlowAlpha+" t "+this.getTimeIdx(t, SecIdx, SlyrIdx, binhighB, binlowAlpha)+" time "+t);
-        //LOGGER.log(Level.FINE, TableLoader.DISTFROMTIME[SecIdx][SlyrIdx][binhighB][binhighAlpha][this.getTimeIdx(t, SecIdx, SlyrIdx, binhighB, binhighAlpha)]);
+        //LOGGER.log(Level.FINE, grid.getDistance(SecIdx, SlyrIdx, binhighB, binhighAlpha, this.getTimeIdx(t, SecIdx, SlyrIdx, binhighB, binhighAlpha)));
         //LOGGER.log(Level.FINE, SlyrIdx+" binhighB "+binhighB+" binhighAlpha "+binhighAlpha+" t "+this.getTimeIdx(t, SecIdx, SlyrIdx, binhighB, binhighAlpha)+" time "+t);
         //LOGGER.log(Level.FINE, " f_B_alpha1_t1 "+f_B_alpha1_t1+" f_B_alpha2_t1 "+f_B_alpha2_t1
         //            +" f_B_alpha1_t2 "+f_B_alpha1_t2+" f_B_alpha2_t2 "+f_B_alpha2_t2
@@ -111,11 +122,11 @@ public class TimeToDistanceEstimator {
     /*
         // interpolate in B:
         double f_B_alpha1_t = interpolateLinear(B*B, B1*B1, B2*B2, 
-                    TableLoader.DISTFROMTIME[SecIdx][SlyrIdx][binlowB][binlowAlpha][this.getTimeIdx(t, SecIdx, SlyrIdx, binlowB, binlowAlpha)],
-                    TableLoader.DISTFROMTIME[SecIdx][SlyrIdx][binhighB][binlowAlpha][this.getTimeIdx(t, SecIdx, SlyrIdx, binhighB, binlowAlpha)]);
+                    grid.getDistance(SecIdx, SlyrIdx, binlowB, binlowAlpha, this.getTimeIdx(t, SecIdx, SlyrIdx, binlowB, binlowAlpha)),
+                    grid.getDistance(SecIdx, SlyrIdx, binhighB, binlowAlpha, this.getTimeIdx(t, SecIdx, SlyrIdx, binhighB, binlowAlpha)));
         double f_B_alpha2_t = interpolateLinear(B*B, B1*B1, B2*B2, 
-                    TableLoader.DISTFROMTIME[SecIdx][SlyrIdx][binlowB][binhighAlpha][this.getTimeIdx(t, SecIdx, SlyrIdx, binlowB, binhighAlpha)],
-                    TableLoader.DISTFROMTIME[SecIdx][SlyrIdx][binhighB][binhighAlpha][this.getTimeIdx(t, SecIdx, SlyrIdx, binhighB, binhighAlpha)]);
+                    grid.getDistance(SecIdx, SlyrIdx, binlowB, binhighAlpha, this.getTimeIdx(t, SecIdx, SlyrIdx, binlowB, binhighAlpha)),
+                    grid.getDistance(SecIdx, SlyrIdx, binhighB, binhighAlpha, this.getTimeIdx(t, SecIdx, SlyrIdx, binhighB, binhighAlpha)));
         
         // interpolate in alpha: (cos30-cosA)
         double f_B_alpha_t = interpolateLinear(Math.cos(Math.toRadians(30.))-Math.cos(Math.toRadians(alpha)), 
@@ -166,8 +177,9 @@ public class TimeToDistanceEstimator {
         if(binIdx<0) {
             binIdx = TableLoader.minBinIdxT;
         }
-        if(binIdx>TableLoader.maxTBin) {
-            binIdx = TableLoader.maxTBin ;
+        int maxTBin = this.getGrid().getMaxTBin();
+        if(binIdx>maxTBin) {
+            binIdx = maxTBin ;
         }
 
         return binIdx;
@@ -225,8 +237,8 @@ public class TimeToDistanceEstimator {
         int binlowT = this.getTimeIdx(t, SecIdx, SlyrIdx, binlowB, binlowAlpha);  
         int binhighT = binlowT + 1; 
 
-        if(binhighT>TableLoader.maxBinIdxT[SecIdx][SlyrIdx][binlowB][binlowAlpha]) {
-            binhighT=TableLoader.maxBinIdxT[SecIdx][SlyrIdx][binlowB][binlowAlpha];
+        if(binhighT>T2DGrid.NBINST-1) {
+            binhighT=T2DGrid.NBINST-1;
         }
         return binhighT;
     }
@@ -128,7 +128,7 @@ public class RoadFinder  {
             FittedCluster fpseudoCluster = new FittedCluster(pseudoCluster);
             for(int l = 0; l<6; l++) {
                 int layer = l+1;
-                double z = DcDetector.getWireMidpoint(segList.get(0).get_Sector() - 1, slyr-1,layer-1,0).z;
+                double z = DcDetector.getWireMidpointZ(segList.get(0).get_Sector() - 1, slyr-1,layer-1,0);
                 double trkX = a[0]*z*z+a[1]*z+a[2]; 
                 int calcWire = segTrj.getWireOnTrajectory(segList.get(0).get_Sector(), slyr, layer, trkX, DcDetector) ;
                 FittedHit pseudoHit = new FittedHit(segList.get(0).get_Sector(),slyr, layer, calcWire,
@@ -167,7 +167,7 @@ public class RoadFinder  {
 
             for(int l = 0; l<6; l++) {
             int layer = l+1;
-            double z = DcDetector.getWireMidpoint(pseudoSeg.get_Sector()-1, pseudoSeg.get_Superlayer()-1,layer-1,0).z;
+            double z = DcDetector.getWireMidpointZ(pseudoSeg.get_Sector()-1, pseudoSeg.get_Superlayer()-1,layer-1,0);
             double trkX = qf.a[0]*z*z+qf.a[1]*z+qf.a[2]; 
             double delta = (trkX-pseudoSeg.get(l).get_X())/pseudoSeg.get(l).get_CellSize()/Constants.COS6 ;
             int calcWire = segTrj.getWireOnTrajectory(pseudoSeg.get_Sector(), pseudoSeg.get_Superlayer(), layer, trkX, DcDetector);
@@ -2,6 +2,7 @@ package org.jlab.rec.dc.trajectory;
 
 import org.jlab.detector.base.DetectorType;
 import org.jlab.geom.prim.Arc3D;
+import org.jlab.geom.prim.Face3D;
 import org.jlab.geom.prim.Line3D;
 import org.jlab.geom.prim.Plane3D;
 import org.jlab.geom.prim.Point3D;
@@ -22,6 +23,7 @@ public class Surface {
 
     private Plane3D plane;    
     private Contour contour;
+    private Face3D  face;
     private double  thickness;
     
     public Surface(DetectorType type, int sector, int layer) {
@@ -46,18 +48,21 @@ public class Surface {
     public Surface(DetectorType type, int sector, int layer, Triangle3D triangle, double thickness) {
         this(type, sector, layer, triangle.plane());
         this.contour   = new TriangleContour(triangle);
+        this.face      = triangle;
         this.thickness = thickness;
     }
         
     public Surface(DetectorType type, int sector, int layer, Trap3D trapezoid, double thickness) {
         this(type, sector, layer, trapezoid.plane());
         this.contour   = new TrapContour(trapezoid);
+        this.face      = trapezoid;
         this.thickness = thickness;
     }
         
     public Surface(DetectorType type, int sector, int layer, Sector3D arc, double thickness) {
         this(type, sector, layer, arc.plane());
         this.contour   = new ArcContour(arc);
+        this.face      = arc;
         this.thickness = thickness;
     }
     
@@ -76,12 +81,21 @@ public class Surface {
         this.plane = plane;
     }
 
+    /**
+     * @return the triangle, trapezoid or sector the contour was created from,
+     * or null if the surface has no contour or it was set explicitly
+     */
+    public Face3D getFace() {
+        return face;
+    }
+
     public Contour getContour() {
         return contour;
     }
 
     public void setContour(Contour contour) {
         this.contour = contour;
+        this.face    = null;
     }
 
     public double getThickness() {
@@ -47,21 +47,7 @@ public class TrajectorySurfaces {
 
     public void loadSurface(double targetPosition, double targetLength, DCGeant4Factory dcDetector,
             FTOFGeant4Factory ftofDetector, Detector ecalDetector, Detector fmtDetector, RICHGeoFactory richDetector) {
-        // creating Boundaries for MS
-        Constants.getInstance().Z[0]= targetPosition;
-        Constants.getInstance().Z[1]= dcDetector.getWireMidpoint(0, 0, 0, 0).z;
-        Constants.getInstance().Z[2]= dcDetector.getWireMidpoint(0, 0, 5, 0).z;
-        Constants.getInstance().Z[3]= dcDetector.getWireMidpoint(0, 1, 0, 0).z;
-        Constants.getInstance().Z[4]= dcDetector.getWireMidpoint(0, 1, 5, 0).z;
-        Constants.getInstance().Z[5]= dcDetector.getWireMidpoint(0, 2, 0, 0).z;
-        Constants.getInstance().Z[6]= dcDetector.getWireMidpoint(0, 2, 5, 0).z;
-        Constants.getInstance().Z[7]= dcDetector.getWireMidpoint(0, 3, 0, 0).z;
-        Constants.getInstance().Z[8]= dcDetector.getWireMidpoint(0, 3, 5, 0).z;
-        Constants.getInstance().Z[9]= dcDetector.getWireMidpoint(0, 4, 0, 0).z;
-        Constants.getInstance().Z[10]= dcDetector.getWireMidpoint(0, 4, 5, 0).z;
-        Constants.getInstance().Z[11]= dcDetector.getWireMidpoint(0, 5, 0, 0).z;
-        Constants.getInstance().Z[12]= dcDetector.getWireMidpoint(0, 5, 5, 0).z;
-        //DcDetector.getWireMidpoint(this.get_Sector()-1, this.get_Superlayer()-1, this.get_Layer()-1, this.get_Wire()-1).z;
+        this.setBoundaries(targetPosition, dcDetector);
         
         double d = 0;
         Vector3D n,P;
@@ -124,6 +110,20 @@ public class TrajectorySurfaces {
         }
     }
     
+    /**
+     * Set the boundaries for multiple scattering, i.e. the target position and
+     * the z of the first and last layer of each superlayer
+     * @param targetPosition
+     * @param dcDetector
+     */
+    public void setBoundaries(double targetPosition, DCGeant4Factory dcDetector) {
+        Constants.getInstance().Z[0]= targetPosition;
+        for(int isuperlayer=0; isuperlayer<6; isuperlayer++) {
+            Constants.getInstance().Z[2*isuperlayer+1]= dcDetector.getWireMidpointZ(0, isuperlayer, 0, 0);
+            Constants.getInstance().Z[2*isuperlayer+2]= dcDetector.getWireMidpointZ(0, isuperlayer, 5, 0);
+        }
+    }
+    
     public Surface getSurface(int sector, DetectorType type, int layer) {
         for(Surface surface : this.detectorPlanes.get(sector-1)) {
             if(surface.getDetectorType()==type && surface.getDetectorLayer()==layer) {
@@ -153,11 +153,11 @@ public class TrajectorySurfaces {
         for(int isup =0; isup<6; isup++) {
             for(int il =5; il<6; il++) {
                 for(int ic =0; ic<112; ic++) { // include only layer 6
-                    double z = dcDetector.getWireMidpoint(is, isup, il, ic).z;
-                    double xL = dcDetector.getWireLeftend(is, isup, il, ic).x;
-                    double xR = dcDetector.getWireRightend(is, isup, il, ic).x;
-                    double yL = dcDetector.getWireLeftend(is, isup, il, ic).y;
-                    double yR = dcDetector.getWireRightend(is, isup, il, ic).y;
+                    double z = dcDetector.getWireMidpointZ(is, isup, il, ic);
+                    double xL = dcDetector.getWireLeftendX(is, isup, il, ic);
+                    double xR = dcDetector.getWireRightendX(is, isup, il, ic);
+                    double yL = dcDetector.getWireLeftendY(is, isup, il, ic);
+                    double yR = dcDetector.getWireRightendY(is, isup, il, ic);
                     pw.printf("%d\t %d\t %d\t %.1f\t %.1f\t %.1f\t %.1f\t %.1f\t\n", (isup+1),(il+1),(ic+1),xL,yL,xR,yR,z
                             );
                 }
@@ -10,6 +10,8 @@ import org.jlab.io.base.DataBank;
 import org.jlab.io.base.DataEvent;
 import org.jlab.rec.dc.Constants;
 import org.jlab.rec.dc.banks.Banks;
+import org.jlab.rec.dc.timetodistance.T2DGrid;
+import org.jlab.rec.dc.timetodistance.TableLoader;
 import org.jlab.clas.tracking.kalmanfilter.zReference.KFitter;
 import org.jlab.clas.tracking.kalmanfilter.zReference.DAFilter;
 
@@ -31,6 +33,7 @@ public class DCEngine extends ReconstructionEngine {
     private int        t2d            = 1;
     private int        nSuperLayer    = 5;
     private String     geoVariation   = "default";
+    private String     geoTimestamp   = "";
     private String     bankType       = "HitBasedTrkg";
     private String     inBankPrefix   = null;
     private String     outBankPrefix  = null;
@@ -54,6 +57,10 @@ public class DCEngine extends ReconstructionEngine {
         else if(this.getEngineConfigString("variation")!=null) 
             geoVariation = this.getEngineConfigString("variation");
         
+        // the geometry is read with the same CCDB timestamp as the constants
+        if(this.getEngineConfigString("timestamp")!=null) 
+            geoTimestamp = this.getEngineConfigString("timestamp");
+        
         //AI settings for selecting specific sector
         if(this.getEngineConfigString("sectorSelect")!=null) 
             selectedSector=Integer.parseInt(this.getEngineConfigString("sectorSelect"));
@@ -179,6 +186,7 @@ public class DCEngine extends ReconstructionEngine {
         this.setOptions();
         Constants.getInstance().initialize(this.getName(),
                                            geoVariation, 
+                                           geoTimestamp,
                                            ministaggerStatus, 
                                            feedthroughsStatus,
                                            wireDistortion, 
@@ -217,6 +225,23 @@ public class DCEngine extends ReconstructionEngine {
         return this.rawBankOrders;
     }
     
+    /**
+     * @param run run number
+     * @return the time-to-distance grid for the run
+     */
+    public T2DGrid getT2DGrid(int run) {
+        String variation = this.getConstantsManager().getVariation();
+        if(Constants.getInstance().getT2D()==0) {
+            return TableLoader.getGrid(run, variation, 
+                    this.getConstantsManager().getConstants(run, Constants.TIME2DIST));
+        } else {
+            return TableLoader.getGrid(run, variation,
+                    this.getConstantsManager().getConstants(run, Constants.T2DPRESSURE),
+                    this.getConstantsManager().getConstants(run, Constants.T2DPRESSUREREF),
+                    this.getConstantsManager().getConstants(run, Constants.PRESSURE));
+        }
+    }
+
     public int getRun(DataEvent event) {
         if (!event.hasBank("RUN::config")) {
             return 0;
@@ -28,7 +28,6 @@ import org.jlab.rec.dc.cross.CrossMaker;
 import org.jlab.rec.dc.hit.FittedHit;
 import org.jlab.rec.dc.segment.Segment;
 import org.jlab.rec.dc.segment.SegmentFinder;
-import org.jlab.rec.dc.timetodistance.TableLoader;
 import org.jlab.rec.dc.timetodistance.TimeToDistanceEstimator;
 import org.jlab.rec.dc.track.Track;
 import org.jlab.rec.dc.track.TrackCandListFinder;
@@ -46,16 +45,12 @@ import org.jlab.clas.tracking.utilities.RungeKuttaDoca;
 
 public class DCTBEngine extends DCEngine {
     
-    private TimeToDistanceEstimator tde = null;
-
     public DCTBEngine(String trking) {
         super(trking);
-        tde = new TimeToDistanceEstimator();
     }
     public DCTBEngine() {
         super("DCTB");
         this.getBanks().init("TimeBasedTrkg", "HB", "TB");
-        tde = new TimeToDistanceEstimator();
     }
     
     @Override
@@ -89,14 +84,8 @@ public class DCTBEngine extends DCEngine {
         // get Field
         Swim dcSwim = new Swim();        
        
-        // fill T2D table
-        if(Constants.getInstance().getT2D()==0) {
-            TableLoader.Fill(this.getConstantsManager().getConstants(run, Constants.TIME2DIST));
-        } else {
-        TableLoader.Fill(this.getConstantsManager().getConstants(run, Constants.T2DPRESSURE),
-                this.getConstantsManager().getConstants(run, Constants.T2DPRESSUREREF),
-                this.getConstantsManager().getConstants(run, Constants.PRESSURE));
-        }
+        // get the T2D table for this run
+        TimeToDistanceEstimator tde = new TimeToDistanceEstimator(this.getT2DGrid(run));
         ClusterFitter cf = new ClusterFitter();
         ClusterCleanerUtilities ct = new ClusterCleanerUtilities();
 
@@ -43,7 +43,6 @@ public class LayerEfficiencyAnalyzer extends DCEngine implements IDataEventListe
 
     public LayerEfficiencyAnalyzer(){
         super("LE");
-        tde = new TimeToDistanceEstimator();
         //plotting stuff
         mainPanel = new JPanel();	
         mainPanel.setLayout(new BorderLayout());
@@ -58,7 +57,6 @@ public class LayerEfficiencyAnalyzer extends DCEngine implements IDataEventListe
 
         //this.processorPane.addEventListener(this);
     }
-    private TimeToDistanceEstimator tde;
     //plotting stuff
     JPanel                  mainPanel 	= null;
     DataSourceProcessorPane processorPane 	= null;
@@ -218,6 +216,7 @@ public class LayerEfficiencyAnalyzer extends DCEngine implements IDataEventListe
         
         int run = this.getRun(event);
         if(run==0) return true;
+        TimeToDistanceEstimator tde = new TimeToDistanceEstimator(this.getT2DGrid(run));
         
         //LOGGER.log(Level.FINE, " RUNNING TIME BASED....................................");
         ClusterFitter cf = new ClusterFitter();
@@ -0,0 +1,53 @@
+package org.jlab.rec.dc;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.jlab.detector.geant4.v2.DCGeant4Factory.FeedthroughsStatus;
+import org.jlab.detector.geant4.v2.DCGeant4Factory.MinistaggerStatus;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class DCGeometryCacheTest {
+
+    @Test
+    public void testKey() {
+        double[][] shifts = new double[3][6];
+        double[][] shifted = new double[3][6];
+        shifted[2][5] = 1e-6;
+        String timestamp = "10/10/2020-00:00:00";
+        Set<String> keys = new HashSet<>();
+        keys.add(DCGeometryCache.getKey("default", 11, timestamp, MinistaggerStatus.ON, FeedthroughsStatus.SHIFT, true, shifts));
+        keys.add(DCGeometryCache.getKey("rga_fall2018", 11, timestamp, MinistaggerStatus.ON, FeedthroughsStatus.SHIFT, true, shifts));
+        keys.add(DCGeometryCache.getKey("default", 12, timestamp, MinistaggerStatus.ON, FeedthroughsStatus.SHIFT, true, shifts));
+        keys.add(DCGeometryCache.getKey("default", 11, "10/11/2020-00:00:00", MinistaggerStatus.ON, FeedthroughsStatus.SHIFT, true, shifts));
+        keys.add(DCGeometryCache.getKey("default", 11, timestamp, MinistaggerStatus.OFF, FeedthroughsStatus.SHIFT, true, shifts));
+        keys.add(DCGeometryCache.getKey("default", 11, timestamp, MinistaggerStatus.ON, FeedthroughsStatus.OFF, true, shifts));
+        keys.add(DCGeometryCache.getKey("default", 11, timestamp, MinistaggerStatus.ON, FeedthroughsStatus.SHIFT, false, shifts));
+        keys.add(DCGeometryCache.getKey("default", 11, timestamp, MinistaggerStatus.ON, FeedthroughsStatus.SHIFT, true, shifted));
+        keys.add(DCGeometryCache.getKey("default", 11, timestamp, MinistaggerStatus.ON, FeedthroughsStatus.SHIFT, true, null));
+        assertEquals(9, keys.size());
+        assertEquals(DCGeometryCache.getKey("default", 11, timestamp, MinistaggerStatus.ON, FeedthroughsStatus.SHIFT, true, new double[3][6]),
+                     DCGeometryCache.getKey("default", 11, timestamp, MinistaggerStatus.ON, FeedthroughsStatus.SHIFT, true, shifts));
+    }
+
+    @Test
+    public void testFile() {
+        String key = DCGeometryCache.getKey("default", 11, "", MinistaggerStatus.ON, FeedthroughsStatus.SHIFT, true, null);
+        String previous = System.getProperty(DCGeometryCache.PROPERTY);
+        try {
+            System.clearProperty(DCGeometryCache.PROPERTY);
+            assertNull(DCGeometryCache.getFile(key, "10/10/2020-00:00:00"));
+            System.setProperty(DCGeometryCache.PROPERTY, System.getProperty("java.io.tmpdir"));
+            // the latest tables can change, so are not cached:
+            assertNull(DCGeometryCache.getFile(key, ""));
+            assertNull(DCGeometryCache.getFile(key, null));
+            assertNotNull(DCGeometryCache.getFile(key, "10/10/2020-00:00:00"));
+            assertNull(DCGeometryCache.read(null, key));
+        }
+        finally {
+            if (previous == null) System.clearProperty(DCGeometryCache.PROPERTY);
+            else System.setProperty(DCGeometryCache.PROPERTY, previous);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package org.jlab.rec.dc.timetodistance;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import org.jlab.rec.dc.Constants;
+import org.jlab.utils.groups.IndexedTable;
+
+public class TableLoaderTest {
+
+    private static final double[] WPDIST = {0.386160, 0.404220, 0.621906, 0.658597, 0.935140, 0.977982};
+    private static final double[] TMAX   = {155, 165, 480, 510, 830, 900};
+
+    private static IndexedTable createTable(double v0) {
+        IndexedTable table = new IndexedTable(3, "delta_T0/D:c1/D:deltanm/D:v0/D:c2/D:delta_bfield_coefficient/D:"
+                                               + "b1/D:b2/D:b3/D:b4/D:tmax/D");
+        for(int s=1; s<=6; s++) {
+            for(int r=1; r<=6; r++) {
+                table.addEntryFromString(new String[]{ String.valueOf(s), String.valueOf(r), "0",
+                    "0", "0.62", "1.5", String.valueOf(v0), "0.0035", "0.16",
+                    "0.4", "-2.0", "10.0", "-6.5", String.valueOf(TMAX[r-1]) });
+            }
+        }
+        return table;
+    }
+
+    @Test
+    public void testGridCache() throws Exception {
+        System.arraycopy(WPDIST, 0, Constants.getInstance().wpdist, 0, WPDIST.length);
+        TableLoader.clear();
+
+        final IndexedTable table = createTable(0.0051);
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        List<Future<T2DGrid>> grids = new ArrayList<>();
+        for(int i=0; i<8; i++) {
+            grids.add(pool.submit((Callable<T2DGrid>) () -> TableLoader.getGrid(11, "default", table)));
+        }
+        T2DGrid grid = grids.get(0).get();
+        for(Future<T2DGrid> g : grids) assertSame(grid, g.get());
+        pool.shutdown();
+
+        // other constants, other grid:
+        T2DGrid other = TableLoader.getGrid(12, "default", createTable(0.0049));
+        assertNotSame(grid, other);
+        assertSame(grid, TableLoader.getGrid(11, "default", table));
+
+        // the cached grid is the one built directly from the table:
+        T2DGrid direct = T2DGrid.create(table);
+        assertEquals(direct.getMaxTBin(), grid.getMaxTBin());
+        assertTrue(grid.getMaxTBin()>0);
+        for(int s=0; s<T2DGrid.NSECTORS; s++) {
+            for(int r=0; r<T2DGrid.NSUPERLAYERS; r++) {
+                for(int b=0; b<T2DGrid.NBINSB; b++) {
+                    for(int a=0; a<T2DGrid.NBINSALPHA; a++) {
+                        for(int t=0; t<T2DGrid.NBINST; t+=7) {
+                            assertEquals(direct.getDistance(s, r, b, a, t), grid.getDistance(s, r, b, a, t), 0);
+                        }
+                    }
+                }
+            }
+        }
+
+        TimeToDistanceEstimator estimator = new TimeToDistanceEstimator(grid);
+        double x = estimator.interpolateOnGrid(0.5, 10, 100, 0, 2);
+        assertTrue(x>0 && x<=2*WPDIST[2]);
+        TableLoader.clear();
+    }
+}
@@ -20,6 +20,7 @@ import org.jlab.clas.detector.DetectorTrack;
 import org.jlab.clas.detector.TaggerResponse;
 import org.jlab.clas.detector.CherenkovResponse;
 import org.jlab.clas.detector.DetectorResponseFactory;
+import org.jlab.clas.detector.DetectorResponseIndex;
 import org.jlab.clas.detector.matching.IMatch;
 import org.jlab.clas.detector.matching.MatchCND;
 import org.jlab.clas.physics.Vector3;
@@ -111,7 +112,11 @@ public class EventBuilder {
      * processes all particles and associating detector responses with given cuts to each particle.
      */
     public void processHitMatching(){
-        
+
+        // index the responses by type/layer/sector/phi, so each particle
+        // only looks at nearby candidates:
+        DetectorResponseIndex responseIndex = new DetectorResponseIndex(this.detectorResponses);
+
         int np = detectorEvent.getParticles().size();
         for(int n = 0; n < np; n++){
             DetectorParticle  p = this.detectorEvent.getParticle(n);
@@ -124,17 +129,17 @@ public class EventBuilder {
             if (p.getTrackDetectorID()==DetectorType.DC.getDetectorId()) {
 
                 // FTOF:
-                findMatchingHit(n,p,detectorResponses,DetectorType.FTOF, 1, ccdb.getDouble(EBCCDBEnum.FTOF_MATCHING_1A));
-                findMatchingHit(n,p,detectorResponses,DetectorType.FTOF, 2, ccdb.getDouble(EBCCDBEnum.FTOF_MATCHING_1B));
-                findMatchingHit(n,p,detectorResponses,DetectorType.FTOF, 3, ccdb.getDouble(EBCCDBEnum.FTOF_MATCHING_2));
+                findMatchingHit(n,p,responseIndex,DetectorType.FTOF, 1, ccdb.getDouble(EBCCDBEnum.FTOF_MATCHING_1A));
+                findMatchingHit(n,p,responseIndex,DetectorType.FTOF, 2, ccdb.getDouble(EBCCDBEnum.FTOF_MATCHING_1B));
+                findMatchingHit(n,p,responseIndex,DetectorType.FTOF, 3, ccdb.getDouble(EBCCDBEnum.FTOF_MATCHING_2));
                 
                 // ECAL:
-                findMatchingHit(n,p,detectorResponses,DetectorType.ECAL, 1, ccdb.getDouble(EBCCDBEnum.PCAL_MATCHING));
-                findMatchingHit(n,p,detectorResponses,DetectorType.ECAL, 4, ccdb.getDouble(EBCCDBEnum.ECIN_MATCHING));
-                findMatchingHit(n,p,detectorResponses,DetectorType.ECAL, 7, ccdb.getDouble(EBCCDBEnum.ECOUT_MATCHING));
+                findMatchingHit(n,p,responseIndex,DetectorType.ECAL, 1, ccdb.getDouble(EBCCDBEnum.PCAL_MATCHING));
+                findMatchingHit(n,p,responseIndex,DetectorType.ECAL, 4, ccdb.getDouble(EBCCDBEnum.ECIN_MATCHING));
+                findMatchingHit(n,p,responseIndex,DetectorType.ECAL, 7, ccdb.getDouble(EBCCDBEnum.ECOUT_MATCHING));
 
                 // LTCC:
-                int index = p.getCherenkovSignal(this.detectorResponses,DetectorType.LTCC);
+                int index = p.getCherenkovSignal(responseIndex,DetectorType.LTCC);
                 if(index>=0){
                     p.addResponse(detectorResponses.get(index));
                     detectorResponses.get(index).setAssociation(n);
@@ -143,10 +148,10 @@ public class EventBuilder {
 
             // only match with CTOF/CND if it's a central track:
             else if (p.getTrackDetectorID()==DetectorType.CVT.getDetectorId()) {
-                findMatchingHit(n,p,detectorResponses,DetectorType.CTOF,1, ccdb.getDouble(EBCCDBEnum.CTOF_DZ));
-                findMatchingHit(n,p,detectorResponses,DetectorType.CND,1, this.cndMatcher );
-                findMatchingHit(n,p,detectorResponses,DetectorType.CND,2, this.cndMatcher );
-                findMatchingHit(n,p,detectorResponses,DetectorType.CND,3, this.cndMatcher );
+                findMatchingHit(n,p,responseIndex,DetectorType.CTOF,1, ccdb.getDouble(EBCCDBEnum.CTOF_DZ));
+                findMatchingHit(n,p,responseIndex,DetectorType.CND,1, this.cndMatcher );
+                findMatchingHit(n,p,responseIndex,DetectorType.CND,2, this.cndMatcher );
+                findMatchingHit(n,p,responseIndex,DetectorType.CND,3, this.cndMatcher );
             }
 
             // set dedx by combining trajectory information with hit energy:
@@ -155,12 +160,12 @@ public class EventBuilder {
 
         // Special treatment for HTCC, with coarse resolution.
         // Try all combos of HTCC clusters and particle to find best matches.
+        final int[] htcc = responseIndex.get(DetectorType.HTCC, -1);
         while (true) {
             int bestPart=-1;
             int bestRes=-1;
             CherenkovResponse.TrackResidual bestTR=null;
-            for (int ires=0; ires<this.detectorResponses.size(); ires++) {
-                if (this.detectorResponses.get(ires).getDescriptor().getType() != DetectorType.HTCC) continue;
+            for (int ires : htcc) {
                 if (this.detectorResponses.get(ires).getAssociation()>=0) continue;
                 CherenkovResponse che=(CherenkovResponse)this.detectorResponses.get(ires);
                 int ipart = che.findClosestTrack(this.detectorEvent.getParticles());
@@ -237,6 +242,49 @@ public class EventBuilder {
     }
 
 
+    /**
+     * Same as {@link #findMatchingHit(int,DetectorParticle,List,DetectorType,int,double)},
+     * looking only at the index's candidates.
+     */
+    public boolean findMatchingHit(
+            final int pindex, DetectorParticle particle, DetectorResponseIndex responseIndex,
+            DetectorType type, final int layer, final double distance) {
+        return associate(pindex, particle, responseIndex.getResponses(),
+                particle.getDetectorHit(responseIndex,type,layer,distance));
+    }
+
+    /**
+     * Same as {@link #findMatchingHit(int,DetectorParticle,List,DetectorType,int,IMatch)},
+     * looking only at the index's candidates.
+     */
+    public boolean findMatchingHit(
+            final int pindex, DetectorParticle particle, DetectorResponseIndex responseIndex,
+            DetectorType type, final int layer, IMatch matcher) {
+        return associate(pindex, particle, responseIndex.getResponses(),
+                matcher.bestMatch(particle, responseIndex, type, layer));
+    }
+
+    /**
+     * Associate a matched response with the particle, duplicating it if it's
+     * already associated with another particle.
+     */
+    private static boolean associate(final int pindex, DetectorParticle particle,
+            List<DetectorResponse> responses, int index) {
+        if (index>=0) {
+            // if sharing hits between tracks, duplicate it:
+            if (responses.get(index).getAssociation() >= 0) {
+                DetectorResponse copy = DetectorResponseFactory.create(responses.get(index));
+                copy.clearAssociations();
+                responses.add(copy);
+                index = responses.size()-1;
+            }
+            particle.addResponse(responses.get(index),true);
+            responses.get(index).addAssociation(pindex);
+            return true;
+        }
+        return false;
+    }
+
     public void forwardTaggerIDMatching() {
         int np = this.detectorEvent.getParticles().size();
         if(this.ftIndices.size()>0 && this.detectorEvent.getParticles().size()>0) {
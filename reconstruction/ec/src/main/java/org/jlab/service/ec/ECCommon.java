@@ -1,7 +1,6 @@
 package org.jlab.service.ec;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 import org.jlab.detector.banks.RawDataBank;
 
@@ -27,10 +26,6 @@ public class ECCommon {
 	
     public static Detector        ecDetector = null; 
         
-    public static List<ECStrip>     myStrips = new ArrayList<ECStrip>();
-    public static List<ECPeak>       myPeaks = new ArrayList<ECPeak>();
-    public static List<ECCluster> myClusters = new ArrayList<ECCluster>();
-    
     public static int[]      stripThreshold = new int[3];
     public static int[]       peakThreshold = new int[3]; 
     public static int[]    clusterThreshold = new int[3];
@@ -45,7 +40,6 @@ public class ECCommon {
     public static Boolean              isMC = false;
     public static Boolean             debug = false;
     public static Boolean        debugSplit = false;
-    public static Boolean  isSingleThreaded = false;
     public static Boolean       singleEvent = false;
     public static Boolean     useNewTimeCal = true;
     public static Boolean useUnsharedEnergy = true;
@@ -72,16 +66,10 @@ public class ECCommon {
     private static double[] AtoE  = {15,10,10};   // SCALED ADC to Energy in MeV
     private static double[] AtoE5 = {15,5,5};     // For Sector 5 ECAL
     
-    public static DetectorCollection<H1F> H1_ecEng = new DetectorCollection<H1F>();
-    public static DetectorCollection<H2F> H2_ecEng = new DetectorCollection<H2F>();
-    
     static int ind[]  = {0,0,0,1,1,1,2,2,2}; 
     static float               tps = 0.02345f;
     public static float       veff = 18.1f;
-    static int nclus, slast;
-    static float maxerr;
-    
-    public  static void initHistos() {
+    public  static void initHistos(DetectorCollection<H1F> H1_ecEng, DetectorCollection<H2F> H2_ecEng) {
     	int[] bins = {480,240,120};       
         for (int is=1; is<7; is++){
             for (int il=1; il<4; il++) {             
@@ -101,7 +89,7 @@ public class ECCommon {
         }
     }
     
-    public static void resetHistos() {       
+    public static void resetHistos(DetectorCollection<H1F> H1_ecEng, DetectorCollection<H2F> H2_ecEng) {       
         for (int is=1; is<7; is++){
             for (int il=1; il<4; il++) {             
                 H1_ecEng.get(is,il,0).reset();
@@ -116,32 +104,10 @@ public class ECCommon {
     	debug = val;
     }
     
-    public static void setisSingleThreaded(boolean val) {
-        isSingleThreaded = val;
-    }
-    
     public static void setSingleEvent(boolean val) {
     	singleEvent = val;
     }
     
-    public static void clearMyStructures() {
-    	getMyStrips().clear();
-    	getMyPeaks().clear();
-    	getMyClusters().clear();
-    }
-    
-    public static List<ECStrip> getMyStrips() {
-    	return myStrips;
-    }
-    
-    public static List<ECPeak> getMyPeaks() {
-    	return myPeaks;
-    }
-    
-    public static List<ECCluster> getMyClusters() {
-    	return myClusters;
-    }
-    
     public static int  getRunNumber(DataEvent de) {
     	return (de.hasBank("RUN::config") ? (int) de.getBank("RUN::config").getInt("run", 0) : 10);
     }
@@ -171,15 +137,13 @@ public class ECCommon {
         IndexedTable      tgo = manager.getConstants(run, "/calibration/ec/tdc_global_offset");		
         IndexedTable   r2gain = manager.getConstants(2,   "/calibration/ec/gain");
     
-        if(singleEvent) resetHistos();        
-        
         List<ECStrip>  ecStrips = null;
         
         ecStrips = ECCommon.readStripsHipo(event, run, manager);  
         
         if(ecStrips==null) return new ArrayList<ECStrip>();
         
-        stripSortMethod=0; Collections.sort(ecStrips); //sort by sector, layer, component
+        ecStrips.sort(ECStrip.BY_COMPONENT); //sort by sector, layer, component
         
         for(ECStrip strip : ecStrips){
             int sector    = strip.getDescriptor().getSector();
@@ -404,12 +368,33 @@ public class ECCommon {
         
         if(!(stripList.size()>1)) return peakList;  //Require minimum of 2 strips/event to reject uncorrelated hot channels 
         
-        peakList.add(new ECPeak(stripList.get(0))); //Seed the first peak with the first strip
+        createPeaks(stripList, 0, stripList.size(), peakList);
+ 
+        return peakList;
+    } 
+    
+    /**
+     * Create the peaks from a range of strips, e.g. those of one sector.
+     * Strips in different sectors are never in the same peak, so creating
+     * the peaks sector by sector gives the same peaks as all at once.
+     * @param stripList strips sorted by sector, layer, component
+     * @param first index of the first strip
+     * @param last index after the last strip
+     * @param peakList list to add the peaks to, with ids starting at 1
+     */
+    public static void  createPeaks(List<ECStrip> stripList, int first, int last, List<ECPeak> peakList){
+        
+        if(first>=last) return;
+        
+        final int firstPeak = peakList.size();
+        
+        peakList.add(new ECPeak(stripList.get(first))); //Seed the first peak with the first strip
         
         int n=1;
-        for(int loop = 1; loop < stripList.size(); loop++){ //Loop over remaining strips 
+        for(int loop = first+1; loop < last; loop++){ //Loop over remaining strips 
         	ECStrip s = stripList.get(loop); boolean stripAdded = false;                
-            for(ECPeak peak : peakList)  {
+            for(int ip = firstPeak; ip < peakList.size(); ip++)  {
+            	ECPeak peak = peakList.get(ip);
             	if(peak.addStrip(s)) { //Add adjacent strip to newly seeded peak
             		stripAdded = true; s.setStripID(n); peak.setimap(n++, s.getADC()); //Set indices to assist peak splitting
             	} 
@@ -417,9 +402,7 @@ public class ECCommon {
             if(!stripAdded) {peakList.add(new ECPeak(s)); n=1;} //Non-adjacent strip seeds new peak
         }
 
-        for(int loop = 0; loop < peakList.size(); loop++) peakList.get(loop).setPeakId(loop+1);
- 
-        return peakList;
+        for(int loop = firstPeak; loop < peakList.size(); loop++) peakList.get(loop).setPeakId(loop-firstPeak+1);
     } 
        
     public static List<ECPeak>  processPeaks(List<ECPeak> peaks){
@@ -466,20 +449,39 @@ public class ECCommon {
         for(int p = 0; p < peaks.size(); p++) peaks.get(p).setOrder(p+1);
         
         for(int sector = 1; sector <= 6; sector++){ 
-        	if(!goodPeaks(sector,layer,peaks)) continue;
-            nclus=0; maxerr=0;
-            for (ECPeak pu : getPeaks(sector,layer,peaks)) {
-                for (ECPeak pv : getPeaks(sector,layer+1,peaks)) {
-                    for (ECPeak pw : getPeaks(sector,layer+2,peaks)) {
-                    	ECCluster c = new ECCluster(pu,pv,pw);
-                        clusters.add(c); if(isSingleThreaded) processSingleThreaded(c);
-                    }
-                }
-            }
-            if(isSingleThreaded) H2_ecEng.get(sector,ind[layer-1]+1,1).fill(nclus,maxerr);
+        	getClusters(getPeaks(sector,layer,peaks), getPeaks(sector,layer+1,peaks), getPeaks(sector,layer+2,peaks), clusters, null, null);
         }        
         return clusters;        
     }
+    
+    /**
+     * Create the clusters from all combinations of one sector's U, V and W peaks.
+     * @param pU U peaks
+     * @param pV V peaks
+     * @param pW W peaks
+     * @param clusters list to add the clusters to
+     * @param H1_ecEng histograms to fill, or null
+     * @param H2_ecEng histograms to fill, or null
+     */
+    public static void getClusters(List<ECPeak> pU, List<ECPeak> pV, List<ECPeak> pW, List<ECCluster> clusters,
+            DetectorCollection<H1F> H1_ecEng, DetectorCollection<H2F> H2_ecEng) {
+        
+        if(pU.isEmpty() || pV.isEmpty() || pW.isEmpty()) return;
+        float[] stats = {0,0}; //number of good clusters, maximum size
+        for (ECPeak pu : pU) {
+            for (ECPeak pv : pV) {
+                for (ECPeak pw : pW) {
+                	ECCluster c = new ECCluster(pu,pv,pw);
+                    clusters.add(c); if(H1_ecEng!=null) processSingleThreaded(c, H1_ecEng, stats);
+                }
+            }
+        }
+        if(H2_ecEng!=null) {
+            int sector = pU.get(0).getDescriptor().getSector();
+            int layer  = pU.get(0).getDescriptor().getLayer();
+            H2_ecEng.get(sector,ind[layer-1]+1,1).fill(stats[0],stats[1]);
+        }
+    }
             
     public static List<ECCluster>  processClusters(List<ECCluster> clusters) { 
     	
@@ -501,7 +503,7 @@ public class ECCommon {
         return filtClusters;   
     }
     
-    public static void processSingleThreaded(ECCluster c) {  //not used in clara  
+    public static void processSingleThreaded(ECCluster c, DetectorCollection<H1F> H1_ecEng, float[] stats) {  //not used in clara  
     	int s = c.getDescriptor().getSector(); 
     	int l = c.getDescriptor().getLayer();
     	List<ECPeak> p = c.getPeaks();
@@ -511,7 +513,7 @@ public class ECCommon {
     	if(l==1 && zone<2) H1_ecEng.get(s,1,10+zone).fill(err);
     	if(l==1 && zone>1) H1_ecEng.get(s,1,12).fill(err); 
     	                          H1_ecEng.get(s,ind[l-1]+1,0).fill(err); 
-    	if(gc&&isGoodCluster(c)) {H1_ecEng.get(s,ind[l-1]+1,1).fill(err); nclus++; if(err>maxerr) maxerr=err;} 
+    	if(gc&&isGoodCluster(c)) {H1_ecEng.get(s,ind[l-1]+1,1).fill(err); stats[0]++; if(err>stats[1]) stats[1]=err;} 
     }    
 
     public static void shareClustersEnergy(List<ECCluster> clusters){
@@ -580,8 +582,6 @@ public class ECCommon {
                     " W " + pW.size()
             );*/
             
-           nclus=0; maxerr=0;
-           
            if(pU.size()>0&&pV.size()>0&&pW.size()>0){  //U,V,W peaks required for cluster
                 for(int bU = 0; bU < pU.size();bU++){
                     pU.get(bU).redoPeakLine();
@@ -591,25 +591,13 @@ public class ECCommon {
                             if(bU==0 && bV==0) pW.get(bW).redoPeakLine();
                             ECCluster cluster = new ECCluster(pU.get(bU),pV.get(bV),pW.get(bW));
                             float err = (float) cluster.getClusterSize();
-                            if(isSingleThreaded) {                           
-//                            	if (pU.get(bU).getSplitRatio()>0) H1_ecEng.get(sector,startLayer,  14).fill((pU.get(bU).getSplitRatio()));
-//                            	if (pV.get(bV).getSplitRatio()>0) H1_ecEng.get(sector,startLayer+1,14).fill((pV.get(bV).getSplitRatio()));
-//                            	if (pW.get(bW).getSplitRatio()>0) H1_ecEng.get(sector,startLayer+2,14).fill((pW.get(bW).getSplitRatio()));
-                                int zone = getZone(ind[startLayer-1],pU.get(bU).getMaxStrip(),pV.get(bV).getMaxStrip(),pW.get(bW).getMaxStrip());
-                            	H1_ecEng.get(sector,ind[startLayer-1]+1,0).fill(err); 
-                            	if(startLayer==1 && zone<2) H1_ecEng.get(sector,1,10+zone).fill(err);
-                            	if(startLayer==1 && zone>1) H1_ecEng.get(sector,1,12).fill(err);
-                            }
                             if(err<clusterSize[ind[startLayer-1]]) {
-                            	if(err>maxerr) maxerr=err;
-                                if(isSingleThreaded)H1_ecEng.get(sector,ind[startLayer-1]+1,1).fill(err);                               
-								if(isGoodCluster(cluster)) {clusters.add(cluster);nclus++;}
+								if(isGoodCluster(cluster)) clusters.add(cluster);
                             }
                         }
                     }
                 }
             }           
-            if(isSingleThreaded) H2_ecEng.get(sector,ind[startLayer-1]+1,1).fill(nclus,maxerr);             
         }
 
         for (ECCluster c : clusters) c.setEnergy();
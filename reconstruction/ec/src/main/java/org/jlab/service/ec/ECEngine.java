@@ -29,39 +29,37 @@ public class ECEngine extends ReconstructionEngine {
         super("EC","gavalian","1.0");
     }
     
+    // results of the last event, kept only if single-threaded:
+    private final List<ECStrip>     myStrips = new ArrayList<ECStrip>();
+    private final List<ECPeak>       myPeaks = new ArrayList<ECPeak>();
+    private final List<ECCluster> myClusters = new ArrayList<ECCluster>();
+    
+    private final DetectorCollection<H1F> H1_ecEng = new DetectorCollection<H1F>();
+    private final DetectorCollection<H2F> H2_ecEng = new DetectorCollection<H2F>();
+    
+    private boolean isSingleThreaded = false;
+    private boolean  parallelSectors = false;
+    
+    // working state, one per thread:
+    private final ThreadLocal<ECEventContext> contexts = ThreadLocal.withInitial(ECEventContext::new);
+    
     @Override
     public boolean processDataEvent(DataEvent de) {
-                           
-        List<ECStrip>     ecStrips = ECCommon.initEC(de, this.getConstantsManager()); // thresholds, ADC/TDC match        
-        List<ECPeak>       ecPeaks = ECCommon.processPeaks(ECCommon.createPeaks(ecStrips)); // thresholds, split peaks -> update peak-lines          
-        List<ECCluster> ecClusters = new ArrayList<ECCluster>();  
-        
-        List<ECCluster> tmpPCAL  = ECCommon.createClusters(ecPeaks,1);
-        List<ECCluster> tmpECIN  = ECCommon.createClusters(ecPeaks,4);
-        List<ECCluster> tmpECOUT = ECCommon.createClusters(ecPeaks,7);
-        
-        // - Thsi is the part that identifies clusters with 2 views shared,
-        // - and picks the one with best cluster size.
         
+        ECEventContext context = contexts.get();
+        context.setParallel(parallelSectors);
+        context.setHistograms(isSingleThreaded ? H1_ecEng : null, isSingleThreaded ? H2_ecEng : null);
         
-        //ECPeakAnalysis.doPeakCleanup(ecPeaks);
-        
-        ECPeakAnalysis.doClusterCleanup(tmpPCAL);
-        ECPeakAnalysis.doClusterCleanup(tmpECIN);
-        ECPeakAnalysis.doClusterCleanup(tmpECOUT);
-        
-        
-        // - commented by Gagik - now created clusters for each of sub-modules
-        // - will be analyzed to eliminate clusters that share two views with 
-        // - another cluster. The best matrching cluster will be left 
-        // - after this procedure.
-        //ecClusters.addAll(ECCommon.createClusters(ecPeaks,1)); //PCAL
-        //ecClusters.addAll(ECCommon.createClusters(ecPeaks,4)); //ECinner 
-        //ecClusters.addAll(ECCommon.createClusters(ecPeaks,7)); //ECouter
+        if (isSingleThreaded && ECCommon.singleEvent) ECCommon.resetHistos(H1_ecEng, H2_ecEng);
+                           
+        List<ECStrip>     ecStrips = ECCommon.initEC(de, this.getConstantsManager()); // thresholds, ADC/TDC match        
+        context.reset(ecStrips);
+        List<ECPeak>       ecPeaks = context.createPeaks(); // thresholds, split peaks -> update peak-lines          
         
-        ecClusters.addAll(tmpPCAL); //PCAL
-        ecClusters.addAll(tmpECIN); //ECinner 
-        ecClusters.addAll(tmpECOUT); //ECouter
+        // - Clusters are created for each of sub-modules, then analyzed 
+        // - to eliminate clusters that share two views with another cluster.
+        // - The best matching cluster will be left after this procedure.
+        List<ECCluster> ecClusters = context.createClusters(); // PCAL, ECinner, ECouter
         
         ECCommon.shareClustersEnergy(ecClusters);  // Repair 2 clusters which share the same peaks
         
@@ -85,8 +83,10 @@ public class ECEngine extends ReconstructionEngine {
         
         if (ECCommon.debug) printDebug(ecStrips,ecPeaks,ecClusters);  
         
-        if (ECCommon.isSingleThreaded) {
-        	ECCommon.clearMyStructures();
+        if (isSingleThreaded) {
+        	getStrips().clear();
+        	getPeaks().clear();
+        	getClusters().clear();
         	getStrips().addAll(ecStrips);
         	getPeaks().addAll(ecPeaks);
         	getClusters().addAll(ecClusters);
@@ -113,15 +113,15 @@ public class ECEngine extends ReconstructionEngine {
     }
         
     public List<ECStrip> getStrips() {
-	    return ECCommon.getMyStrips();    		
+	    return myStrips;    		
     }
     
     public List<ECPeak> getPeaks() {
-	    return ECCommon.getMyPeaks();    
+	    return myPeaks;    
     }
     
     public List<ECCluster> getClusters() {
-	    return ECCommon.getMyClusters();    
+	    return myClusters;    
     }    
         
     private void writeHipoBanks(DataEvent de, 
@@ -236,7 +236,18 @@ public class ECEngine extends ReconstructionEngine {
     }
     
     public void setIsSingleThreaded(boolean val) {
-    	ECCommon.isSingleThreaded = val;
+    	isSingleThreaded = val;
+    }
+    
+    /**
+     * @param val whether to reconstruct the sectors of each event in parallel
+     * on the common fork-join pool, off by default since events are usually
+     * already processed in parallel, and ignored if single-threaded since the
+     * histograms are not thread-safe
+     */
+    public void setParallelSectors(boolean val) {
+    	LOGGER.log(Level.INFO,"ECEngine: parallelSectors = "+val);
+    	parallelSectors = val;
     }
     
     public void setSingleEvent(boolean val) {
@@ -388,11 +399,11 @@ public class ECEngine extends ReconstructionEngine {
     }
     
     public DetectorCollection<H1F>  getHist() {
-        return ECCommon.H1_ecEng;
+        return H1_ecEng;
     }
     
     public DetectorCollection<H2F>  getHist2() {
-        return ECCommon.H2_ecEng;
+        return H2_ecEng;
     }
     
     @Override
@@ -432,6 +443,9 @@ public class ECEngine extends ReconstructionEngine {
 
         setConfig("test");
         
+        if(this.getEngineConfigString("parallelSectors")!=null)
+            setParallelSectors(Boolean.valueOf(this.getEngineConfigString("parallelSectors")));
+        
         if(ECCommon.usePass2Recon) {  //for testing pass2 recon peak splitting methods
         setStripThresholds(10,9,8);   //pass1 10,9,8
         setPeakThresholds(18,20,15);  //pass1 18,20,15
@@ -462,7 +476,7 @@ public class ECEngine extends ReconstructionEngine {
         this.registerOutputBank("ECAL::calib");
         this.registerOutputBank("ECAL::moments"); 
 
-        if (ECCommon.isSingleThreaded) ECCommon.initHistos();
+        if (isSingleThreaded) ECCommon.initHistos(H1_ecEng, H2_ecEng);
         
         return true;
     }
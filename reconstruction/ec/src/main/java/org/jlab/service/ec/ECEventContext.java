@@ -0,0 +1,189 @@
+package org.jlab.service.ec;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.jlab.detector.base.DetectorCollection;
+import org.jlab.groot.data.H1F;
+import org.jlab.groot.data.H2F;
+
+/**
+ * Working state of the EC reconstruction of one event, so any number of
+ * engines can reconstruct events concurrently, and the six sectors of one
+ * event can be reconstructed in parallel.
+ *
+ * Peaks and clusters are created sector by sector and merged in sector
+ * order, with peak ids and orders numbered across sectors, which gives the
+ * same result as creating them for all sectors at once.  The cluster
+ * cleanup and energy sharing compare clusters of different sectors, and
+ * are still done for the whole event.
+ *
+ * A context is meant to be reused for the events of one thread, so its
+ * per-sector working lists and index arrays are cleared for each event
+ * rather than allocated again.  The peak list of the event is returned to
+ * the caller, so a new one is created for each event.
+ */
+public class ECEventContext {
+
+    public static final int NSECTORS = 6;
+
+    private final Sector[] sectors = new Sector[NSECTORS];
+
+    private boolean parallel = false;
+    private DetectorCollection<H1F> H1_ecEng = null;
+    private DetectorCollection<H2F> H2_ecEng = null;
+
+    private List<ECStrip> strips = new ArrayList<>();
+    private List<ECPeak> peaks = new ArrayList<>();
+
+    public ECEventContext() {
+        for (int i = 0; i < NSECTORS; i++) this.sectors[i] = new Sector(i+1);
+    }
+
+    /**
+     * @param parallel whether to reconstruct the sectors in parallel
+     */
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
+
+    /**
+     * Set the histograms to fill while creating clusters.  Histograms are
+     * not thread-safe, so the sectors are then reconstructed sequentially.
+     * @param h1 1-d histograms, or null for none
+     * @param h2 2-d histograms, or null for none
+     */
+    public void setHistograms(DetectorCollection<H1F> h1, DetectorCollection<H2F> h2) {
+        this.H1_ecEng = h1;
+        this.H2_ecEng = h2;
+    }
+
+    public List<ECStrip> getStrips() {
+        return this.strips;
+    }
+
+    public List<ECPeak> getPeaks() {
+        return this.peaks;
+    }
+
+    /**
+     * Start a new event.
+     * @param strips the event's strips, sorted by sector, layer and component
+     */
+    public void reset(List<ECStrip> strips) {
+        this.strips = strips;
+        this.peaks = new ArrayList<>();
+        int i = 0;
+        for (Sector s : this.sectors) {
+            s.clear();
+            while (i < strips.size() && strips.get(i).getDescriptor().getSector() < s.sector) i++;
+            s.firstStrip = i;
+            while (i < strips.size() && strips.get(i).getDescriptor().getSector() == s.sector) i++;
+            s.lastStrip = i;
+        }
+    }
+
+    /**
+     * Create, filter and split the peaks.
+     * @return the peaks, ordered by sector and layer
+     */
+    public List<ECPeak> createPeaks() {
+        //Require minimum of 2 strips/event to reject uncorrelated hot channels
+        if (this.strips.size() > 1) this.forEachSector(Sector::createPeaks);
+        int npeaks = 0;
+        for (Sector s : this.sectors) {
+            for (int i = 0; i < s.rawPeaks.size(); i++) s.rawPeaks.get(i).setPeakId(npeaks+i+1);
+            npeaks += s.rawPeaks.size();
+            this.peaks.addAll(s.peaks);
+        }
+        for (int p = 0; p < this.peaks.size(); p++) this.peaks.get(p).setOrder(p+1);
+        return this.peaks;
+    }
+
+    /**
+     * Create the clusters from the peaks, for PCAL, ECIN and ECOUT.
+     * @return the clusters, ordered by detector and sector
+     */
+    public List<ECCluster> createClusters() {
+        this.forEachSector(Sector::createClusters);
+        List<ECCluster> clusters = new ArrayList<>();
+        for (int sl = 0; sl < 3; sl++) {
+            List<ECCluster> detClusters = new ArrayList<>();
+            for (Sector s : this.sectors) detClusters.addAll(s.clusters.get(sl));
+            // - identify clusters with 2 views shared,
+            // - and pick the one with best cluster size.
+            ECPeakAnalysis.doClusterCleanup(detClusters);
+            clusters.addAll(detClusters);
+        }
+        return clusters;
+    }
+
+    private void forEachSector(Consumer<Sector> task) {
+        if (this.parallel && this.H1_ecEng == null && this.H2_ecEng == null) {
+            Arrays.stream(this.sectors).parallel().forEach(task);
+        }
+        else {
+            for (Sector s : this.sectors) task.accept(s);
+        }
+    }
+
+    /**
+     * Working state of one sector.
+     */
+    private class Sector {
+
+        final int sector;
+
+        int firstStrip, lastStrip;
+        final List<ECPeak> rawPeaks = new ArrayList<>();
+        List<ECPeak> peaks = new ArrayList<>();
+
+        // range of the peaks of each layer in peaks, by layer-1:
+        final int[] firstPeak = new int[9];
+        final int[] lastPeak = new int[9];
+
+        // clusters of PCAL, ECIN, ECOUT:
+        final List<ECCluster> combos = new ArrayList<>();
+        final List<List<ECCluster>> clusters = new ArrayList<>();
+
+        Sector(int sector) {
+            this.sector = sector;
+            for (int sl = 0; sl < 3; sl++) this.clusters.add(new ArrayList<>());
+        }
+
+        void clear() {
+            // none of these lists escape the context, their elements are copied:
+            this.rawPeaks.clear();
+            this.peaks.clear();
+            Arrays.fill(this.firstPeak, 0);
+            Arrays.fill(this.lastPeak, 0);
+            for (List<ECCluster> c : this.clusters) c.clear();
+        }
+
+        void createPeaks() {
+            ECCommon.createPeaks(strips, this.firstStrip, this.lastStrip, this.rawPeaks);
+            this.peaks = ECCommon.processPeaks(this.rawPeaks);
+            // peaks are ordered by layer, since the strips are:
+            for (int p = 0; p < this.peaks.size(); p++) {
+                int l = this.peaks.get(p).getDescriptor().getLayer() - 1;
+                if (this.lastPeak[l] == 0) this.firstPeak[l] = p;
+                this.lastPeak[l] = p + 1;
+            }
+        }
+
+        List<ECPeak> getPeaks(int layer) {
+            return this.peaks.subList(this.firstPeak[layer-1], this.lastPeak[layer-1]);
+        }
+
+        void createClusters() {
+            for (int sl = 0; sl < 3; sl++) {
+                this.combos.clear();
+                ECCommon.getClusters(this.getPeaks(3*sl+1), this.getPeaks(3*sl+2), this.getPeaks(3*sl+3),
+                        this.combos, H1_ecEng, H2_ecEng);
+                this.clusters.set(sl, ECCommon.filterClusters(ECCommon.processClusters(this.combos)));
+            }
+        }
+    }
+}
@@ -1,7 +1,6 @@
 package org.jlab.service.ec;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -351,8 +350,7 @@ public class ECPeak implements Comparable {
     int new_getSplitIndex() { //split2: lcsmith method sorts striplist by energy + dipfinder.  Peaklist split only once.
     	int split = -1;   	
         if(!peakSplit && peakStrips.size()>ECCommon.splitThresh[ind[getDescriptor().getLayer()-1]]){
-        	ECCommon.stripSortMethod=ECCommon.splitMethod; 
-         	List<ECStrip> sortStrips = new ArrayList<ECStrip>(); sortStrips.addAll(peakStrips); Collections.sort(sortStrips);          	
+         	List<ECStrip> sortStrips = new ArrayList<ECStrip>(); sortStrips.addAll(peakStrips); sortStrips.sort(ECStrip.getComparator(ECCommon.splitMethod));          	
         	return setSplitStrip(getDipIndex(sortpair(sortStrips,0,1)));
         }    	
     	return split;
@@ -423,7 +421,7 @@ public class ECPeak implements Comparable {
         	for (int i = 0; i < sl.size(); i++) if (isMax(sl, sl.size(), sl.get(i).getEnergy(), i-1, i+1)) mxs.add(sl.get(i)); 
         	for (int i = 0; i < sl.size(); i++) if (isMin(sl, sl.size(), sl.get(i).getEnergy(), i-1, i+1)) mns.add(i); 
         	      
-        	ECCommon.stripSortMethod=ECCommon.splitMethod; Collections.sort(mxs); 
+        	mxs.sort(ECStrip.getComparator(ECCommon.splitMethod)); 
         	
         	if(ECCommon.debugSplit) {        	
         		System.out.println(" ");
@@ -1,5 +1,7 @@
 package org.jlab.service.ec;
 
+import java.util.Comparator;
+
 import org.jlab.detector.base.DetectorDescriptor;
 import org.jlab.detector.base.DetectorType;
 import org.jlab.geom.prim.Line3D;
@@ -479,19 +481,39 @@ public class ECStrip implements Comparable {
     } 
     
     public int compareTo(Object o) {
-        ECStrip ob = (ECStrip) o;
-        if (ECCommon.stripSortMethod==0) {
-            if(ob.getDescriptor().getSector()     < desc.getSector())    return  1;
-            if(ob.getDescriptor().getSector()     > desc.getSector())    return -1;
-            if(ob.getDescriptor().getLayer()      < desc.getLayer())     return  1;
-            if(ob.getDescriptor().getLayer()      > desc.getLayer())     return -1;
-            if(ob.getDescriptor().getComponent() <  desc.getComponent()) return  1;
-            if(ob.getDescriptor().getComponent() == desc.getComponent()) return  0;
-        } else {
-        	if(ob.getEnergy()                       > getEnergy())            return  1;
-        	if(ob.getEnergy()                       < getEnergy())            return -1;
-        }
+        return getComparator(ECCommon.stripSortMethod).compare(this, (ECStrip) o);
+    }
+    
+    /**
+     * Order by sector, layer and component.
+     */
+    public static final Comparator<ECStrip> BY_COMPONENT = (a, ob) -> {
+        if(ob.getDescriptor().getSector()     < a.desc.getSector())    return  1;
+        if(ob.getDescriptor().getSector()     > a.desc.getSector())    return -1;
+        if(ob.getDescriptor().getLayer()      < a.desc.getLayer())     return  1;
+        if(ob.getDescriptor().getLayer()      > a.desc.getLayer())     return -1;
+        if(ob.getDescriptor().getComponent() <  a.desc.getComponent()) return  1;
+        if(ob.getDescriptor().getComponent() == a.desc.getComponent()) return  0;
+        return -1;
+    };
+    
+    /**
+     * Order by decreasing energy.
+     */
+    public static final Comparator<ECStrip> BY_ENERGY = (a, ob) -> {
+        if(ob.getEnergy()                       > a.getEnergy())            return  1;
+        if(ob.getEnergy()                       < a.getEnergy())            return -1;
         return -1;
+    };
+    
+    /**
+     * Use this instead of setting ECCommon.stripSortMethod, which is shared
+     * by all threads.
+     * @param method 0 to sort by sector/layer/component, else by energy
+     * @return the comparator
+     */
+    public static Comparator<ECStrip> getComparator(int method) {
+        return method==0 ? BY_COMPONENT : BY_ENERGY;
     }
     
     @Override
@@ -1,8 +1,11 @@
 package org.jlab.service.ec;
 
+import java.util.Random;
+
 import org.junit.Test;
 import static org.junit.Assert.*;
 
+import org.jlab.io.base.DataBank;
 import org.jlab.io.base.DataEvent;
 
 import org.jlab.analysis.physics.TestEvent;
@@ -42,4 +45,99 @@ public class ECReconstructionTest {
     assertEquals(testEvent.getBank("ECAL::clusters").rows(), 3);    
   }
 
+  /**
+   * Copy the test event hits to a random set of sectors, with random
+   * energies and random missing strips.
+   */
+  private static DataEvent getRandomEvent(long seed) {
+    Random rand = new Random(seed);
+    DataEvent event = TestEvent.get(DetectorType.ECAL);
+    DataBank adc = event.getBank("ECAL::adc");
+    DataBank tdc = event.getBank("ECAL::tdc");
+    boolean[] sectors = new boolean[6];
+    int nsectors = 0;
+    while(nsectors==0) {
+      for(int i=0; i<6; i++) sectors[i] = rand.nextBoolean();
+      for(int i=0; i<6; i++) if(sectors[i]) nsectors++;
+    }
+    DataBank newAdc = event.createBank("ECAL::adc", nsectors*adc.rows());
+    DataBank newTdc = event.createBank("ECAL::tdc", nsectors*tdc.rows());
+    int row = 0;
+    for(int sector=1; sector<=6; sector++) {
+      if(!sectors[sector-1]) continue;
+      for(int i=0; i<adc.rows(); i++, row++) {
+        double scale = rand.nextInt(10)==0 ? 0 : 0.5+rand.nextDouble();
+        newAdc.setByte("sector", row, (byte) sector);
+        newAdc.setByte("layer", row, adc.getByte("layer", i));
+        newAdc.setShort("component", row, adc.getShort("component", i));
+        newAdc.setByte("order", row, adc.getByte("order", i));
+        newAdc.setInt("ADC", row, (int) (scale*adc.getInt("ADC", i)));
+        newAdc.setFloat("time", row, adc.getFloat("time", i));
+        newAdc.setShort("ped", row, adc.getShort("ped", i));
+      }
+    }
+    row = 0;
+    for(int sector=1; sector<=6; sector++) {
+      if(!sectors[sector-1]) continue;
+      for(int i=0; i<tdc.rows(); i++, row++) {
+        newTdc.setByte("sector", row, (byte) sector);
+        newTdc.setByte("layer", row, tdc.getByte("layer", i));
+        newTdc.setShort("component", row, tdc.getShort("component", i));
+        newTdc.setByte("order", row, tdc.getByte("order", i));
+        newTdc.setInt("TDC", row, tdc.getInt("TDC", i));
+      }
+    }
+    event.removeBanks("ECAL::adc", "ECAL::tdc");
+    event.appendBanks(newAdc, newTdc);
+    return event;
+  }
+
+  private static void assertSameBank(DataEvent expected, DataEvent actual, String name,
+          String[] shorts, String[] bytes, String[] ints, String[] floats) {
+    assertEquals(expected.hasBank(name), actual.hasBank(name));
+    if(!expected.hasBank(name)) return;
+    DataBank e = expected.getBank(name);
+    DataBank a = actual.getBank(name);
+    assertEquals(name, e.rows(), a.rows());
+    for(int row=0; row<e.rows(); row++) {
+      for(String c : shorts) assertEquals(name+" "+c, e.getShort(c, row), a.getShort(c, row));
+      for(String c : bytes)  assertEquals(name+" "+c, e.getByte(c, row), a.getByte(c, row));
+      for(String c : ints)   assertEquals(name+" "+c, e.getInt(c, row), a.getInt(c, row));
+      for(String c : floats) assertEquals(name+" "+c, e.getFloat(c, row), a.getFloat(c, row), 0);
+    }
+  }
+
+  @Test
+  public void testParallelSectors() {
+    DefaultLogger.debug();
+
+    System.setProperty("CLAS12DIR", "../../");
+
+    ECEngine sequential = new ECEngine();
+    sequential.init();
+    sequential.setParallelSectors(false);
+    ECEngine parallel = new ECEngine();
+    parallel.init();
+    parallel.setParallelSectors(true);
+
+    int nclusters = 0;
+    for(int i=0; i<50; i++) {
+      DataEvent expected = getRandomEvent(i);
+      DataEvent actual   = getRandomEvent(i);
+      sequential.processDataEvent(expected);
+      parallel.processDataEvent(actual);
+      assertSameBank(expected, actual, "ECAL::hits",
+              new String[]{"id","clusterId","status"}, new String[]{"sector","layer","strip","peakid"},
+              new String[]{}, new String[]{"energy","time"});
+      assertSameBank(expected, actual, "ECAL::peaks",
+              new String[]{"id","status"}, new String[]{"sector","layer"},
+              new String[]{}, new String[]{"energy","time","xo","yo","zo","xe","ye","ze","width"});
+      assertSameBank(expected, actual, "ECAL::clusters",
+              new String[]{"id","status"}, new String[]{"sector","layer","idU","idV","idW"},
+              new String[]{"coordU","coordV","coordW"}, new String[]{"x","y","z","energy","time","widthU","widthV","widthW"});
+      if(expected.hasBank("ECAL::clusters")) nclusters += expected.getBank("ECAL::clusters").rows();
+    }
+    assertTrue(nclusters>0);
+  }
+
 }
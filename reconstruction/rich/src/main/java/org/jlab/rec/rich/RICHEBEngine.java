@@ -27,6 +27,7 @@ public class RICHEBEngine extends ReconstructionEngine {
     private long EBRICH_start_time;
     
     private RICHGeoFactory       richgeo;
+    private RICHRayTable         raytable = null;
     private RICHTime             richtime = new RICHTime();
     private boolean engineDebug = false;
 
@@ -89,6 +90,21 @@ public class RICHEBEngine extends ReconstructionEngine {
         richgeo   = new RICHGeoFactory(1, this.getConstantsManager(), run, engineDebug);
         richtime.init_ProcessTime();
 
+        // Optional lookup table of the photon paths, used instead of ray-tracing the thrown photons,
+        // read from rayTableFile if given and matching the geometry, otherwise built (and written there)
+        if(this.getEngineConfigString("rayTable")!=null && Boolean.parseBoolean(this.getEngineConfigString("rayTable"))){
+            RICHParameters tablepar = new RICHParameters();
+            tablepar.init_ParameterCCDB( this.getConstantsManager().getConstants(run, "/calibration/rich/reco_parameter") );
+            int npos = RICHRayTable.DEFAULT_NPOS;
+            int ndir = RICHRayTable.DEFAULT_NDIR;
+            double maxslope = RICHRayTable.DEFAULT_MAXSLOPE;
+            if(this.getEngineConfigString("rayTableNPos")!=null) npos = Integer.parseInt(this.getEngineConfigString("rayTableNPos"));
+            if(this.getEngineConfigString("rayTableNDir")!=null) ndir = Integer.parseInt(this.getEngineConfigString("rayTableNDir"));
+            if(this.getEngineConfigString("rayTableMaxSlope")!=null) maxslope = Double.parseDouble(this.getEngineConfigString("rayTableMaxSlope"));
+            String timestamp = Optional.ofNullable(this.getEngineConfigString("timestamp")).orElse("");
+            raytable = RICHRayTable.load_OrBuild(this.getEngineConfigString("rayTableFile"), richgeo, tablepar, engineVariation, timestamp, npos, ndir, maxslope);
+        }
+
         return true;
 
     }
@@ -110,6 +126,7 @@ public class RICHEBEngine extends ReconstructionEngine {
         RICHPMTReconstruction  rpmt      = new RICHPMTReconstruction(richevent, richgeo, richio);
         RICHEventBuilder       reb       = new RICHEventBuilder(event, richevent, richgeo, richio);
         RICHRayTrace           richtrace = new RICHRayTrace(richgeo, richpar); 
+        richtrace.set_RayTable(raytable);
         
         richtime.save_ProcessTime(0, richevent);
 
@@ -1294,7 +1294,7 @@ public class RICHEvent {
                 photon.traced.set_scale(fac);
                 photon.traced.set_hypo(hypo_pid);
 
-                ArrayList<RICHRay> rays = richtrace.RayTrace(photon, vpho);
+                ArrayList<RICHRay> rays = richtrace.RayTrace_fast(photon, vpho);
                 if(rays!=null) {
                     if(debugMode>=2) System.out.format(" Photon traced till PMT detection \n");
                     
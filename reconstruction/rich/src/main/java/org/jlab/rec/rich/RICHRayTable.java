@@ -0,0 +1,664 @@
+package org.jlab.rec.rich;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.jlab.detector.geom.RICH.RICHComponent;
+import org.jlab.detector.geom.RICH.RICHGeoConstants;
+import org.jlab.detector.geom.RICH.RICHGeoFactory;
+import org.jlab.detector.geom.RICH.RICHGeoParameters;
+import org.jlab.detector.geom.RICH.RICHLayer;
+import org.jlab.detector.geom.RICH.RICHRay;
+
+import org.jlab.geom.prim.Face3D;
+import org.jlab.geom.prim.Point3D;
+import org.jlab.geom.prim.Shape3D;
+import org.jlab.geom.prim.Sphere3D;
+import org.jlab.geom.prim.Vector3D;
+
+import eu.mihosoft.vrl.v3d.Polygon;
+import eu.mihosoft.vrl.v3d.Vertex;
+
+/**
+ * Lookup table of the photon paths from the aerogel to the MAPMT plane.
+ *
+ * For every RICH sector and aerogel layer, the photons leaving the aerogel
+ * are parameterized by the crossing point on the layer mid-plane and by the
+ * slopes of their direction with respect to the layer normal.  On a regular
+ * grid of these four variables the photons are ray-traced once, and the
+ * rays of those reaching the MAPMTs are stored.  A photon is then looked up
+ * by interpolating the rays of the 16 surrounding grid nodes, provided they
+ * all reach the MAPMTs through the same sequence of optical elements;
+ * otherwise, e.g. close to the mirror edges, it has to be ray-traced.
+ *
+ * The refraction at the aerogel exit is always calculated exactly, as it
+ * depends on the refractive index of the given hypothesis.
+ *
+ * Tables depend on the geometry and on the maximum number of reflections on
+ * the front mirrors.  Besides the CCDB variation and timestamp, their header
+ * stores a hash of all the surfaces used in the ray tracing (mirrors,
+ * aerogel, MAPMT plane, after the alignment shifts), so that a table read
+ * from disk is only used if it was built for the same geometry.  Tables are
+ * not modified once built, so one table can be shared by all threads.
+ */
+public class RICHRayTable {
+
+    private static final int MAGIC   = 0x52494348;   // "RICH"
+    private static final int VERSION = 2;
+
+    public static final int NSECTOR = 6;
+    public static final int NAERO   = 4;
+
+    public static final int    DEFAULT_NPOS     = 16;
+    public static final int    DEFAULT_NDIR     = 24;
+    public static final double DEFAULT_MAXSLOPE = 1.0;
+
+    private final String variation;
+    private final String timestamp;
+    private final long   geohash;
+    private final int    nfront;
+    private final int    npos;
+    private final int    ndir;
+    private final double maxslope;
+
+    private final Grid[][] grids = new Grid[NSECTOR][NAERO];
+
+
+    //------------------------------
+    private RICHRayTable(String variation, String timestamp, long geohash, int nfront, int npos, int ndir, double maxslope) {
+    //------------------------------
+
+        this.variation = variation;
+        this.timestamp = timestamp;
+        this.geohash   = geohash;
+        this.nfront    = nfront;
+        this.npos      = Math.max(2, npos);
+        this.ndir      = Math.max(2, ndir);
+        this.maxslope  = maxslope;
+
+    }
+
+
+    //------------------------------
+    public String get_Variation() { return variation; }
+    //------------------------------
+
+    //------------------------------
+    public String get_TimeStamp() { return timestamp; }
+    //------------------------------
+
+    //------------------------------
+    public long get_GeoHash() { return geohash; }
+    //------------------------------
+
+    //------------------------------
+    public int get_NFrontRefle() { return nfront; }
+    //------------------------------
+
+    //------------------------------
+    public int get_NPos() { return npos; }
+    //------------------------------
+
+    //------------------------------
+    public int get_NDir() { return ndir; }
+    //------------------------------
+
+    //------------------------------
+    public double get_MaxSlope() { return maxslope; }
+    //------------------------------
+
+
+    //------------------------------
+    public static RICHRayTable build(RICHGeoFactory richgeo, RICHParameters richpar, String variation, String timestamp, int npos, int ndir, double maxslope) {
+    //------------------------------
+    // ray-trace the grid nodes of all the aerogel layers of all the installed RICH sectors
+
+        RICHRayTable table = new RICHRayTable(variation, timestamp, geo_Hash(richgeo), richpar.RAY_NFRONT_REFLE, npos, ndir, maxslope);
+        RICHRayTrace richtrace = new RICHRayTrace(richgeo, richpar);
+
+        long start = System.currentTimeMillis();
+        for (int irich=1; irich<=richgeo.nRICHes(); irich++){
+            int isec = richgeo.find_RICHSector(irich);
+            if(isec<1 || isec>NSECTOR) continue;
+            for (int ilay=0; ilay<NAERO; ilay++){
+                Grid grid = table.new_Grid(richgeo, isec, ilay);
+                if(grid==null) continue;
+                grid.fill(richtrace, isec);
+                table.grids[isec-1][ilay] = grid;
+            }
+        }
+        System.out.format("RICH: ray table for variation %s built in %d s \n", variation, (System.currentTimeMillis()-start)/1000);
+        return table;
+
+    }
+
+
+    //------------------------------
+    public static RICHRayTable load_OrBuild(String filename, RICHGeoFactory richgeo, RICHParameters richpar, String variation, String timestamp, int npos, int ndir, double maxslope) {
+    //------------------------------
+    // read the table from file if it matches the geometry and the parameters, otherwise build it and write it to file
+
+        if(filename!=null && new File(filename).exists()){
+            try{
+                RICHRayTable table = read(filename);
+                if(table.matches(richgeo, richpar, variation, timestamp, npos, ndir, maxslope)){
+                    System.out.format("RICH: ray table read from %s \n", filename);
+                    return table;
+                }
+                System.out.format("RICH: ray table in %s does not match the geometry, rebuild it \n", filename);
+            } catch (IOException e) {
+                System.out.format("RICH: cannot read ray table from %s (%s), rebuild it \n", filename, e.getMessage());
+            }
+        }
+
+        RICHRayTable table = build(richgeo, richpar, variation, timestamp, npos, ndir, maxslope);
+        if(filename!=null){
+            try{
+                table.write(filename);
+                System.out.format("RICH: ray table written to %s \n", filename);
+            } catch (IOException e) {
+                System.out.format("RICH: cannot write ray table to %s (%s) \n", filename, e.getMessage());
+            }
+        }
+        return table;
+
+    }
+
+
+    //------------------------------
+    public boolean matches(RICHGeoFactory richgeo, RICHParameters richpar, String variation, String timestamp, int npos, int ndir, double maxslope) {
+    //------------------------------
+    // check whether the table was built for the given geometry and parameters
+
+        if(!this.variation.equals(variation)) return false;
+        if(!this.timestamp.equals(timestamp)) return false;
+        if(this.geohash!=geo_Hash(richgeo)) return false;
+        if(this.nfront!=richpar.RAY_NFRONT_REFLE) return false;
+        if(this.npos!=Math.max(2, npos) || this.ndir!=Math.max(2, ndir) || this.maxslope!=maxslope) return false;
+
+        for (int isec=1; isec<=NSECTOR; isec++){
+            boolean installed = false;
+            for (int irich=1; irich<=richgeo.nRICHes(); irich++) if(richgeo.find_RICHSector(irich)==isec) installed = true;
+            for (int ilay=0; ilay<NAERO; ilay++){
+                Grid grid = installed ? new_Grid(richgeo, isec, ilay) : null;
+                Grid mine = grids[isec-1][ilay];
+                if(grid==null && mine==null) continue;
+                if(grid==null || mine==null || !mine.sameFrame(grid)) return false;
+            }
+        }
+        return true;
+
+    }
+
+
+    //------------------------------
+    public ArrayList<RICHRay> find_Rays(int isec, int ilay, RICHRay airray) {
+    //------------------------------
+    // return the rays of a photon leaving aerogel layer ilay along airray, from the aerogel
+    // to the MAPMT plane, or null if the photon is not in the table and must be ray-traced
+
+        if(isec<1 || isec>NSECTOR || ilay<0 || ilay>=NAERO) return null;
+        Grid grid = grids[isec-1][ilay];
+        if(grid==null) return null;
+        return grid.interpolate(airray);
+
+    }
+
+
+    //------------------------------
+    public static long geo_Hash(RICHGeoFactory richgeo) {
+    //------------------------------
+    // hash of the surfaces and parameters used in the ray tracing of all the installed RICH sectors,
+    // taken after the alignment: the first 8 bytes of the SHA-256 digest of their coordinates
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            RICHGeoParameters geopar = richgeo.get_GeoParameters();
+            out.writeDouble(geopar.MIN_RAY_STEP);
+            out.writeDouble(geopar.MAX_SPHE_DIST);
+            for (int irich=1; irich<=richgeo.nRICHes(); irich++){
+                int isec = richgeo.find_RICHSector(irich);
+                out.writeInt(isec);
+                if(isec<1 || isec>NSECTOR) continue;
+                for (int ilay=0; ilay<RICHGeoConstants.NLAY; ilay++){
+                    RICHLayer layer = richgeo.get_Layer(isec, ilay);
+                    out.writeInt(layer==null ? -1 : layer.size());
+                    if(layer==null) continue;
+                    out.writeInt(layer.id());
+                    hash_Vector(out, layer.get_Vinside());
+                    hash_Shape(out, layer.get_GlobalSurf());
+                    hash_Shape(out, layer.get_TrackingSurf());
+                    hash_Sphere(out, layer.get_TrackingSphere());
+                    for (int ico=0; ico<layer.size(); ico++){
+                        hash_Shape(out, layer.get_TrackingSurf(ico));
+                        hash_Sphere(out, layer.get_TrackingSphere(ico));
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(bytes.toByteArray());
+            return ByteBuffer.wrap(digest).getLong();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+    }
+
+
+    //------------------------------
+    private static void hash_Shape(DataOutputStream out, Shape3D shape) throws IOException {
+    //------------------------------
+
+        out.writeInt(shape==null ? -1 : shape.size());
+        if(shape==null) return;
+        for (int ifa=0; ifa<shape.size(); ifa++){
+            Face3D face = shape.face(ifa);
+            for (int ipo=0; ipo<3; ipo++) hash_Point(out, face.point(ipo));
+        }
+
+    }
+
+
+    //------------------------------
+    private static void hash_Sphere(DataOutputStream out, Sphere3D sphere) throws IOException {
+    //------------------------------
+
+        out.writeBoolean(sphere!=null);
+        if(sphere==null) return;
+        hash_Point(out, sphere.getCenter());
+        out.writeDouble(sphere.getRadius());
+
+    }
+
+
+    //------------------------------
+    private static void hash_Point(DataOutputStream out, Point3D p) throws IOException {
+    //------------------------------
+        out.writeDouble(p.x());
+        out.writeDouble(p.y());
+        out.writeDouble(p.z());
+    }
+
+
+    //------------------------------
+    private static void hash_Vector(DataOutputStream out, Vector3D v) throws IOException {
+    //------------------------------
+        out.writeBoolean(v!=null);
+        if(v==null) return;
+        out.writeDouble(v.x());
+        out.writeDouble(v.y());
+        out.writeDouble(v.z());
+    }
+
+
+    //------------------------------
+    private Grid new_Grid(RICHGeoFactory richgeo, int isec, int ilay) {
+    //------------------------------
+    // define the grid frame from the vertexes of the layer tiles
+
+        RICHLayer layer = richgeo.get_Layer(isec, ilay);
+        if(layer==null || layer.size()==0) return null;
+
+        Vector3D normal = layer.get_LayerNormal();
+        if(normal.mag()==0) return null;
+        normal = normal.asUnit();
+        if(normal.z()<0) normal = normal.multiply(-1);
+
+        ArrayList<Point3D> verts = new ArrayList<Point3D>();
+        for (RICHComponent compo: layer){
+            if(compo.get_CSGVol()==null) continue;
+            for (Polygon pol: compo.get_CSGVol().getPolygons()){
+                for (Vertex ver: pol.vertices) verts.add(layer.toPoint3D(ver));
+            }
+        }
+        if(verts.isEmpty()) return null;
+
+        Vector3D center = new Vector3D(0, 0, 0);
+        for (Point3D p: verts) center.add(p.toVector3D());
+        center = center.multiply(1./verts.size());
+
+        // in-plane axes, with u along the sector x axis as far as possible
+        Vector3D uaxis = new Vector3D(1, 0, 0);
+        if(Math.abs(normal.dot(uaxis))>0.9) uaxis = new Vector3D(0, 1, 0);
+        uaxis = uaxis.sub(normal.multiply(normal.dot(uaxis))).asUnit();
+        Vector3D vaxis = normal.cross(uaxis).asUnit();
+
+        Grid grid = new Grid();
+        grid.center = new double[]{center.x(), center.y(), center.z()};
+        grid.normal = new double[]{normal.x(), normal.y(), normal.z()};
+        grid.uaxis  = new double[]{uaxis.x(), uaxis.y(), uaxis.z()};
+        grid.vaxis  = new double[]{vaxis.x(), vaxis.y(), vaxis.z()};
+        grid.umin = grid.vmin =  Double.MAX_VALUE;
+        grid.umax = grid.vmax = -Double.MAX_VALUE;
+        for (Point3D p: verts){
+            Vector3D d = p.toVector3D().sub(center);
+            grid.umin = Math.min(grid.umin, d.dot(uaxis));
+            grid.umax = Math.max(grid.umax, d.dot(uaxis));
+            grid.vmin = Math.min(grid.vmin, d.dot(vaxis));
+            grid.vmax = Math.max(grid.vmax, d.dot(vaxis));
+        }
+        return grid;
+
+    }
+
+
+    //------------------------------
+    public void write(String filename) throws IOException {
+    //------------------------------
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(filename))))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(variation);
+            out.writeUTF(timestamp);
+            out.writeLong(geohash);
+            out.writeInt(nfront);
+            out.writeInt(npos);
+            out.writeInt(ndir);
+            out.writeDouble(maxslope);
+            for (int isec=0; isec<NSECTOR; isec++){
+                for (int ilay=0; ilay<NAERO; ilay++){
+                    Grid grid = grids[isec][ilay];
+                    out.writeBoolean(grid!=null);
+                    if(grid!=null) grid.write(out);
+                }
+            }
+        }
+
+    }
+
+
+    //------------------------------
+    public static RICHRayTable read(String filename) throws IOException {
+    //------------------------------
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(filename))))) {
+            if(in.readInt()!=MAGIC) throw new IOException("not a RICH ray table");
+            if(in.readInt()!=VERSION) throw new IOException("unsupported RICH ray table version");
+            String variation = in.readUTF();
+            String timestamp = in.readUTF();
+            long geohash = in.readLong();
+            int nfront = in.readInt();
+            int npos = in.readInt();
+            int ndir = in.readInt();
+            double maxslope = in.readDouble();
+            RICHRayTable table = new RICHRayTable(variation, timestamp, geohash, nfront, npos, ndir, maxslope);
+            for (int isec=0; isec<NSECTOR; isec++){
+                for (int ilay=0; ilay<NAERO; ilay++){
+                    if(in.readBoolean()) table.grids[isec][ilay] = table.read_Grid(in);
+                }
+            }
+            return table;
+        }
+
+    }
+
+
+    //------------------------------
+    private Grid read_Grid(DataInputStream in) throws IOException {
+    //------------------------------
+
+        Grid grid = new Grid();
+        grid.center = readVector(in);
+        grid.normal = readVector(in);
+        grid.uaxis  = readVector(in);
+        grid.vaxis  = readVector(in);
+        grid.umin = in.readDouble();
+        grid.umax = in.readDouble();
+        grid.vmin = in.readDouble();
+        grid.vmax = in.readDouble();
+        int nnodes = in.readInt();
+        if(nnodes!=npos*npos*ndir*ndir) throw new IOException("inconsistent RICH ray table size");
+        grid.offset = new int[nnodes+1];
+        for (int i=0; i<=nnodes; i++) grid.offset[i] = in.readInt();
+        int nrays = grid.offset[nnodes];
+        grid.x = new float[nrays];
+        grid.y = new float[nrays];
+        grid.z = new float[nrays];
+        grid.refind = new float[nrays];
+        grid.type = new int[nrays];
+        for (int i=0; i<nrays; i++){
+            grid.x[i] = in.readFloat();
+            grid.y[i] = in.readFloat();
+            grid.z[i] = in.readFloat();
+            grid.refind[i] = in.readFloat();
+            grid.type[i] = in.readInt();
+        }
+        return grid;
+
+    }
+
+
+    //------------------------------
+    private static double[] readVector(DataInputStream in) throws IOException {
+    //------------------------------
+        return new double[]{in.readDouble(), in.readDouble(), in.readDouble()};
+    }
+
+
+    /**
+     * Grid of one aerogel layer: the frame of the layer mid-plane, and the
+     * rays of every node, stored contiguously in flat arrays.  Nodes whose
+     * photon does not reach the MAPMTs have no rays.
+     */
+    private class Grid {
+
+        double[] center, normal, uaxis, vaxis;
+        double umin, umax, vmin, vmax;
+
+        // rays of node k are offset[k] to offset[k+1]-1
+        int[]   offset;
+        float[] x, y, z;             // ray end points
+        float[] refind;
+        int[]   type;
+
+        //------------------------------
+        int node(int iu, int iv, int isu, int isv) { return ((iu*npos + iv)*ndir + isu)*ndir + isv; }
+        //------------------------------
+
+        //------------------------------
+        double pos(int i, double min, double max) { return min + (max-min)*i/(npos-1); }
+        //------------------------------
+
+        //------------------------------
+        double slope(int i) { return -maxslope + 2*maxslope*i/(ndir-1); }
+        //------------------------------
+
+        //------------------------------
+        boolean sameFrame(Grid other) {
+        //------------------------------
+            final double tol = 1.e-4;
+            for (int i=0; i<3; i++){
+                if(Math.abs(center[i]-other.center[i])>tol) return false;
+                if(Math.abs(normal[i]-other.normal[i])>tol) return false;
+                if(Math.abs(uaxis[i]-other.uaxis[i])>tol) return false;
+            }
+            return Math.abs(umin-other.umin)<tol && Math.abs(umax-other.umax)<tol
+                && Math.abs(vmin-other.vmin)<tol && Math.abs(vmax-other.vmax)<tol;
+        }
+
+        //------------------------------
+        void fill(RICHRayTrace richtrace, int isec) {
+        //------------------------------
+        // ray-trace all nodes in parallel (each one sets its own element of traced),
+        // then store the detected ones in node order
+
+            final int nnodes = npos*npos*ndir*ndir;
+            final ArrayList<ArrayList<RICHRay>> traced = new ArrayList<ArrayList<RICHRay>>(nnodes);
+            for (int k=0; k<nnodes; k++) traced.add(null);
+
+            IntStream.range(0, npos*npos).parallel().forEach(iuv -> {
+                int iu = iuv / npos;
+                int iv = iuv % npos;
+                double pu = pos(iu, umin, umax);
+                double pv = pos(iv, vmin, vmax);
+                Point3D origin = new Point3D(center[0] + pu*uaxis[0] + pv*vaxis[0],
+                                             center[1] + pu*uaxis[1] + pv*vaxis[1],
+                                             center[2] + pu*uaxis[2] + pv*vaxis[2]);
+                for (int isu=0; isu<ndir; isu++){
+                    for (int isv=0; isv<ndir; isv++){
+                        double su = slope(isu);
+                        double sv = slope(isv);
+                        Vector3D dir = new Vector3D(normal[0] + su*uaxis[0] + sv*vaxis[0],
+                                                    normal[1] + su*uaxis[1] + sv*vaxis[1],
+                                                    normal[2] + su*uaxis[2] + sv*vaxis[2]).asUnit();
+                        RICHRay airray = new RICHRay(origin, dir.multiply(200));
+                        airray.set_refind(RICHGeoConstants.RICH_AIR_INDEX);
+
+                        // the first ray stands for the aerogel one, to have the same limit on the number of rays
+                        ArrayList<RICHRay> rays = new ArrayList<RICHRay>();
+                        rays.add(new RICHRay(origin, origin));
+                        richtrace.trace_Air(isec, airray, true, rays);
+                        rays.remove(0);
+                        if(!rays.isEmpty() && rays.get(rays.size()-1).is_detected()){
+                            traced.set(node(iu, iv, isu, isv), rays);
+                        }
+                    }
+                }
+            });
+
+            offset = new int[nnodes+1];
+            int nrays = 0;
+            for (int k=0; k<nnodes; k++){
+                offset[k] = nrays;
+                if(traced.get(k)!=null) nrays += traced.get(k).size();
+            }
+            offset[nnodes] = nrays;
+            x = new float[nrays];
+            y = new float[nrays];
+            z = new float[nrays];
+            refind = new float[nrays];
+            type = new int[nrays];
+            for (int k=0; k<nnodes; k++){
+                if(traced.get(k)==null) continue;
+                int i = offset[k];
+                for (RICHRay ray: traced.get(k)){
+                    x[i] = (float) ray.end().x();
+                    y[i] = (float) ray.end().y();
+                    z[i] = (float) ray.end().z();
+                    refind[i] = (float) ray.get_refind();
+                    type[i] = ray.get_type();
+                    i++;
+                }
+            }
+
+        }
+
+        //------------------------------
+        ArrayList<RICHRay> interpolate(RICHRay airray) {
+        //------------------------------
+
+            Point3D  ori = airray.origin();
+            Vector3D dir = airray.direction().asUnit();
+
+            double dn = dir.x()*normal[0] + dir.y()*normal[1] + dir.z()*normal[2];
+            if(dn<=0) return null;
+            double su = (dir.x()*uaxis[0] + dir.y()*uaxis[1] + dir.z()*uaxis[2]) / dn;
+            double sv = (dir.x()*vaxis[0] + dir.y()*vaxis[1] + dir.z()*vaxis[2]) / dn;
+
+            // crossing point on the mid-plane
+            double ox = ori.x()-center[0], oy = ori.y()-center[1], oz = ori.z()-center[2];
+            double t = -(ox*normal[0] + oy*normal[1] + oz*normal[2]) / dn;
+            double px = ox + t*dir.x(), py = oy + t*dir.y(), pz = oz + t*dir.z();
+            double pu = px*uaxis[0] + py*uaxis[1] + pz*uaxis[2];
+            double pv = px*vaxis[0] + py*vaxis[1] + pz*vaxis[2];
+
+            double[] f = new double[]{ (pu-umin)/(umax-umin)*(npos-1), (pv-vmin)/(vmax-vmin)*(npos-1),
+                                       (su+maxslope)/(2*maxslope)*(ndir-1), (sv+maxslope)/(2*maxslope)*(ndir-1) };
+            int[] n = new int[]{npos, npos, ndir, ndir};
+            int[] i0 = new int[4];
+            double[] w = new double[4];
+            for (int a=0; a<4; a++){
+                if(!(f[a]>=0 && f[a]<=n[a]-1)) return null;
+                i0[a] = Math.min((int) f[a], n[a]-2);
+                w[a] = f[a]-i0[a];
+            }
+
+            // all corners must reach the MAPMTs through the same optical elements
+            int[] corner = new int[16];
+            double[] weight = new double[16];
+            for (int c=0; c<16; c++){
+                double wc = 1;
+                int[] ic = new int[4];
+                for (int a=0; a<4; a++){
+                    int bit = (c>>a) & 1;
+                    ic[a] = i0[a] + bit;
+                    wc *= bit==1 ? w[a] : 1-w[a];
+                }
+                corner[c] = node(ic[0], ic[1], ic[2], ic[3]);
+                weight[c] = wc;
+            }
+            int first = offset[corner[0]];
+            int nrays = offset[corner[0]+1] - first;
+            if(nrays==0) return null;
+            for (int c=1; c<16; c++){
+                int fc = offset[corner[c]];
+                if(offset[corner[c]+1]-fc != nrays) return null;
+                for (int j=1; j<nrays; j++) if(type[fc+j]!=type[first+j]) return null;
+            }
+
+            ArrayList<RICHRay> rays = new ArrayList<RICHRay>();
+            Point3D last = ori;
+            for (int j=0; j<nrays; j++){
+                double ex = 0, ey = 0, ez = 0;
+                for (int c=0; c<16; c++){
+                    int k = offset[corner[c]] + j;
+                    ex += weight[c]*x[k];
+                    ey += weight[c]*y[k];
+                    ez += weight[c]*z[k];
+                }
+                Point3D end = new Point3D(ex, ey, ez);
+                RICHRay ray = new RICHRay(last, end);
+                ray.set_refind(refind[first+j]);
+                ray.set_type(j==0 ? airray.get_type() : type[first+j]);
+                if(j==nrays-1) ray.set_detected();
+                rays.add(ray);
+                last = end;
+            }
+            return rays;
+
+        }
+
+        //------------------------------
+        void write(DataOutputStream out) throws IOException {
+        //------------------------------
+
+            for (double[] v: new double[][]{center, normal, uaxis, vaxis}){
+                for (int i=0; i<3; i++) out.writeDouble(v[i]);
+            }
+            out.writeDouble(umin);
+            out.writeDouble(umax);
+            out.writeDouble(vmin);
+            out.writeDouble(vmax);
+            out.writeInt(offset.length-1);
+            for (int i=0; i<offset.length; i++) out.writeInt(offset[i]);
+            for (int i=0; i<x.length; i++){
+                out.writeFloat(x[i]);
+                out.writeFloat(y[i]);
+                out.writeFloat(z[i]);
+                out.writeFloat(refind[i]);
+                out.writeInt(type[i]);
+            }
+
+        }
+    }
+
+}
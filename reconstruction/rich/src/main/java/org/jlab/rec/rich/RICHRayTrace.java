@@ -38,6 +38,7 @@ public class RICHRayTrace{
 
     private RICHGeoFactory richgeo;
     private RICHParameters  richpar;
+    private RICHRayTable    raytable = null;
 
     private static final double  RAD = RICHConstants.RAD;
     private static final double MRAD = RICHConstants.MRAD;
@@ -59,6 +60,26 @@ public class RICHRayTrace{
     }
 
 
+    //------------------------------
+    public void set_RayTable(RICHRayTable raytable){ this.raytable = raytable; }
+    //------------------------------
+
+
+    //------------------------------
+    public RICHRayTable get_RayTable(){ return raytable; }
+    //------------------------------
+
+
+    //------------------------------
+    public boolean use_RayTable(){
+    //------------------------------
+    // the table is valid only for the maximum number of front reflections it was built with
+
+        return raytable!=null && raytable.get_NFrontRefle()==richpar.RAY_NFRONT_REFLE;
+
+    }
+
+
     //------------------------------
     public RICHLayer get_Layer(int isec, String slay){
     //------------------------------
@@ -215,6 +236,36 @@ public class RICHRayTrace{
     // ---------------- 
     // return the hit position on the PMT plane of a photon emitted at emission with direction vlab
 
+        return RayTrace(photon, vlab, naero, null);
+
+    }
+
+
+    // ----------------
+    public ArrayList<RICHRay> RayTrace_fast(RICHParticle photon, Vector3D vlab) {
+    // ---------------- 
+
+        RICHLayer layer = get_Layer(photon.get_sector(), photon.ilay_emission);
+        return RayTrace_fast(photon, vlab, layer.get(photon.ico_emission).get_index());
+
+    }
+
+
+    // ----------------
+    public ArrayList<RICHRay> RayTrace_fast(RICHParticle photon, Vector3D vlab, double naero) {
+    // ---------------- 
+    // as RayTrace, but taking the path in air from the ray table when available
+
+        if(use_RayTable()) return RayTrace(photon, vlab, naero, raytable);
+        return RayTrace(photon, vlab, naero, null);
+
+    }
+
+
+    // ----------------
+    private ArrayList<RICHRay> RayTrace(RICHParticle photon, Vector3D vlab, double naero, RICHRayTable table) {
+    // ---------------- 
+
         int debugMode = 0;
         ArrayList<RICHRay> raytracks = new ArrayList<RICHRay>();
 
@@ -262,7 +313,6 @@ public class RICHRayTrace{
         RICHRay rayin = new RICHRay(new_pos, oriray.direction().multiply(200));
         lastray = OpticalRotation(rayin, first_intersection);
         lastray.set_refind(geocost.RICH_AIR_INDEX);
-        RICHIntersection last_intersection = first_intersection;
 
         if(debugMode>=1){
             System.out.format(" add first ray : ");
@@ -271,6 +321,32 @@ public class RICHRayTrace{
             lastray.showRay();
         }
 
+        if(table!=null){
+            ArrayList<RICHRay> airtracks = table.find_Rays(isec, first_intersection.get_layer(), lastray);
+            if(airtracks!=null){
+                if(debugMode>=1)System.out.format(" take %d rays from the ray table \n",airtracks.size());
+                raytracks.addAll(airtracks);
+                return raytracks;
+            }
+        }
+
+        trace_Air(isec, lastray, first_intersection.get_layer()<4, raytracks);
+
+        if(debugMode>=1) System.out.format(" --------------------------- \n");
+        //if(detected==true)return raytracks;
+        return raytracks;
+        //return null;
+   }
+
+
+    // ----------------
+    public void trace_Air(int isec, RICHRay lastray, boolean fromAerogel, ArrayList<RICHRay> raytracks) {
+    // ---------------- 
+    // follow the photon from the aerogel exit along lastray, adding the rays up to the PMT plane to raytracks
+
+        int debugMode = 0;
+        RICHRay rayin = null;
+
         int jj = 1;
         int front_nrefl = 0;
         boolean detected = false;
@@ -282,7 +358,7 @@ public class RICHRayTrace{
             RICHIntersection new_intersection = null;
             if(debugMode>=1)System.out.format(" ray-tracking step %d \n",jj);
 
-            if(last_intersection.get_layer()<4){
+            if(fromAerogel){
   
                 // planar mirrors
                 RICHIntersection test_intersection = get_Layer(isec, "MIRROR_BOTTOM").find_Entrance(lastray.asLine3D(), -1);
@@ -418,10 +494,6 @@ public class RICHRayTrace{
 
         }
 
-        if(debugMode>=1) System.out.format(" --------------------------- \n");
-        //if(detected==true)return raytracks;
-        return raytracks;
-        //return null;
    }
 
 
@@ -542,6 +614,18 @@ public class RICHRayTrace{
         ArrayList<RICHRay> rays_min = new ArrayList(); 
         rays_min = photon.trial_pho.traced.get_raytracks();
 
+        if(use_RayTable()){
+            // the trial photon may come from the ray table: start from its exact path
+            Vector3D vpho_min = new Vector3D( Math.sin(the_min)*Math.cos(phi_min), Math.sin(the_min)*Math.sin(phi_min), Math.cos(the_min));
+            double naero = 1/(hadron.get_beta(hypo_pid)*(Math.sin(Theta_P)* Math.sin(the_min)*Math.cos(phi_min-Phi_P)+Math.cos(Theta_P)*Math.cos(the_min)));
+            ArrayList<RICHRay> rays_exact = RayTrace(photon, vpho_min, naero);
+            if(rays_exact!=null && rays_exact.get(rays_exact.size()-1).is_detected()){
+                rays_min = rays_exact;
+                pmt_min = rays_min.get(rays_min.size()-1).end();
+                nrefle_min = get_Nrefle(rays_min);
+            }
+        }
+
         Vector3D vec_dist = photon.get_HitPos().vectorFrom(pmt_min);
         // ATT: this takes the projection on the z plane. Equivalent but unnecessary.
         double dist = Math.sqrt(vec_dist.x()*vec_dist.x()+vec_dist.y()*vec_dist.y());
@@ -715,7 +799,7 @@ public class RICHRayTrace{
         for (int nthe=1; nthe<=4; nthe++){
             double theta_dthe = photon.traced.get_theta() + photon.nominal_sChAngle()/nthe;
             Vector3D vpho_dthe = new Vector3D( Math.sin(theta_dthe)*Math.cos(pho_phi), Math.sin(theta_dthe)*Math.sin(pho_phi), Math.cos(theta_dthe));
-            ArrayList<RICHRay> rays_dthe = RayTrace(photon, vpho_dthe);
+            ArrayList<RICHRay> rays_dthe = RayTrace_fast(photon, vpho_dthe);
             if(rays_dthe!=null){
                 int nrefle_dthe = get_Nrefle(rays_dthe);
                 if(debugMode>=1) System.out.format(" --> test %2d the %7.1f  nrfl %2d vs %2d ",nthe, 
@@ -754,7 +838,7 @@ public class RICHRayTrace{
         for (int nphi=1; nphi<=4; nphi++){
             double phi_dphi = photon.traced.get_phi() + photon.nominal_sChAngle()/nphi;
             Vector3D vpho_dphi = new Vector3D( Math.sin(pho_the)*Math.cos(phi_dphi), Math.sin(pho_the)*Math.sin(phi_dphi), Math.cos(pho_the));
-            ArrayList<RICHRay> rays_dphi = RayTrace(photon, vpho_dphi);
+            ArrayList<RICHRay> rays_dphi = RayTrace_fast(photon, vpho_dphi);
             if(rays_dphi!=null){
                 int nrefle_dphi = get_Nrefle(rays_dphi);
                 if(debugMode>=1) System.out.format(" --> test %2d phi %7.1f  nrfl %2d vs %2d ",nphi,
@@ -0,0 +1,243 @@
+package org.jlab.rec.rich;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.jlab.detector.calib.utils.ConstantsManager;
+import org.jlab.detector.geom.RICH.RICHComponent;
+import org.jlab.detector.geom.RICH.RICHGeoConstants;
+import org.jlab.detector.geom.RICH.RICHGeoFactory;
+import org.jlab.detector.geom.RICH.RICHLayer;
+import org.jlab.detector.geom.RICH.RICHRay;
+import org.jlab.geom.prim.Point3D;
+import org.jlab.geom.prim.Shape3D;
+import org.jlab.geom.prim.Vector3D;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+import eu.mihosoft.vrl.v3d.Polygon;
+import eu.mihosoft.vrl.v3d.Vertex;
+
+/**
+ * Compare the photon paths interpolated from {@link RICHRayTable} with the
+ * exact ray tracing, check that tables read back from file are identical,
+ * and that they are not used for another geometry.
+ */
+public class RICHRayTableTest {
+
+    private static final int RUN = 11;
+    private static final String VARIATION = "default";
+    private static final String TIMESTAMP = "";
+    private static final int NPOS = 10;
+    private static final int NDIR = 12;
+    private static final double MAXSLOPE = 0.6;
+
+    private static final String[] TABLES = new String[]{
+                    "/geometry/rich/setup",
+                    "/geometry/rich/geo_parameter",
+                    "/geometry/rich/module1/aerogel",
+                    "/geometry/rich/module2/aerogel",
+                    "/geometry/rich/module1/alignment",
+                    "/geometry/rich/module2/alignment",
+                    "/calibration/rich/reco_flag",
+                    "/calibration/rich/reco_parameter",
+                    "/calibration/rich/module1/time_walk",
+                    "/calibration/rich/module1/time_offset",
+                    "/calibration/rich/module1/cherenkov_angle",
+                    "/calibration/rich/module1/mapmt_pixel",
+                    "/calibration/rich/module1/status_mirror",
+                    "/calibration/rich/module1/status_aerogel",
+                    "/calibration/rich/module1/status_mapmt",
+                    "/calibration/rich/module2/time_walk",
+                    "/calibration/rich/module2/time_offset",
+                    "/calibration/rich/module2/cherenkov_angle",
+                    "/calibration/rich/module2/mapmt_pixel",
+                    "/calibration/rich/module2/status_mirror",
+                    "/calibration/rich/module2/status_aerogel",
+                    "/calibration/rich/module2/status_mapmt"
+                 };
+
+    private static RICHGeoFactory richgeo;
+    private static RICHParameters richpar;
+    private static RICHRayTable   table;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @BeforeClass
+    public static void build() {
+        System.setProperty("CLAS12DIR", "../../");
+        ConstantsManager manager = new ConstantsManager(VARIATION);
+        manager.init(Arrays.asList(TABLES));
+        richgeo = new RICHGeoFactory(1, manager, RUN, false);
+        richpar = new RICHParameters();
+        richpar.init_ParameterCCDB(manager.getConstants(RUN, "/calibration/rich/reco_parameter"));
+        table = RICHRayTable.build(richgeo, richpar, VARIATION, TIMESTAMP, NPOS, NDIR, MAXSLOPE);
+    }
+
+    // a photon leaving from the center of a random tile of the layer, within the table slopes
+    private static RICHRay randomRay(Random rand, RICHLayer layer) {
+        RICHComponent compo = layer.get(rand.nextInt(layer.size()));
+        if(compo.get_CSGVol()==null) return null;
+        double x = 0, y = 0, z = 0;
+        int n = 0;
+        for (Polygon pol: compo.get_CSGVol().getPolygons()){
+            for (Vertex ver: pol.vertices){
+                Point3D p = layer.toPoint3D(ver);
+                x += p.x();
+                y += p.y();
+                z += p.z();
+                n++;
+            }
+        }
+        Point3D origin = new Point3D(x/n, y/n, z/n);
+
+        Vector3D normal = layer.get_LayerNormal().asUnit();
+        if(normal.z()<0) normal = normal.multiply(-1);
+        Vector3D uaxis = new Vector3D(1, 0, 0);
+        if(Math.abs(normal.dot(uaxis))>0.9) uaxis = new Vector3D(0, 1, 0);
+        uaxis = uaxis.sub(normal.multiply(normal.dot(uaxis))).asUnit();
+        Vector3D vaxis = normal.cross(uaxis).asUnit();
+        double su = 0.8*MAXSLOPE*(2*rand.nextDouble()-1);
+        double sv = 0.8*MAXSLOPE*(2*rand.nextDouble()-1);
+        Vector3D dir = new Vector3D(normal.x() + su*uaxis.x() + sv*vaxis.x(),
+                                    normal.y() + su*uaxis.y() + sv*vaxis.y(),
+                                    normal.z() + su*uaxis.z() + sv*vaxis.z()).asUnit();
+
+        RICHRay airray = new RICHRay(origin, dir.multiply(200));
+        airray.set_refind(RICHGeoConstants.RICH_AIR_INDEX);
+        return airray;
+    }
+
+    // the exact rays, traced as when the table is filled
+    private static ArrayList<RICHRay> trace(RICHRayTrace richtrace, int isec, RICHRay airray) {
+        ArrayList<RICHRay> rays = new ArrayList<RICHRay>();
+        rays.add(new RICHRay(airray.origin(), airray.origin()));
+        richtrace.trace_Air(isec, airray, true, rays);
+        rays.remove(0);
+        return rays;
+    }
+
+    private static List<int[]> layers() {
+        List<int[]> layers = new ArrayList<>();
+        for (int irich=1; irich<=richgeo.nRICHes(); irich++){
+            int isec = richgeo.find_RICHSector(irich);
+            for (int ilay=0; ilay<RICHRayTable.NAERO; ilay++){
+                RICHLayer layer = richgeo.get_Layer(isec, ilay);
+                if(layer!=null && layer.size()>0) layers.add(new int[]{isec, ilay});
+            }
+        }
+        return layers;
+    }
+
+    @Test
+    public void testInterpolation() {
+        RICHRayTrace richtrace = new RICHRayTrace(richgeo, richpar);
+        Random rand = new Random(1);
+        int found = 0, samepath = 0;
+        double sumdist = 0;
+        List<int[]> layers = layers();
+        assertFalse(layers.isEmpty());
+        for (int i=0; i<4000; i++){
+            int[] sl = layers.get(rand.nextInt(layers.size()));
+            RICHRay airray = randomRay(rand, richgeo.get_Layer(sl[0], sl[1]));
+            if(airray==null) continue;
+            ArrayList<RICHRay> rays = table.find_Rays(sl[0], sl[1], airray);
+            if(rays==null) continue;
+            found++;
+
+            // interpolated photons are detected, and start from the aerogel
+            assertTrue(rays.get(rays.size()-1).is_detected());
+            assertEquals(0, rays.get(0).origin().distance(airray.origin()), 1e-9);
+            for (int j=1; j<rays.size(); j++) assertSame(rays.get(j-1).end(), rays.get(j).origin());
+
+            // close to the edges of the optical elements the exact path can differ
+            ArrayList<RICHRay> exact = trace(richtrace, sl[0], airray);
+            if(exact.size()!=rays.size() || !exact.get(exact.size()-1).is_detected()) continue;
+            boolean same = true;
+            for (int j=1; j<rays.size(); j++) if(exact.get(j).get_type()!=rays.get(j).get_type()) same = false;
+            if(!same) continue;
+            samepath++;
+            double dist = exact.get(exact.size()-1).end().distance(rays.get(rays.size()-1).end());
+            assertTrue(dist < 5);
+            sumdist += dist;
+        }
+        assertTrue(found > 500);
+        assertTrue(samepath > 0.9*found);
+        assertTrue(sumdist/samepath < 1);
+    }
+
+    @Test
+    public void testWriteRead() throws IOException {
+        File file = new File(folder.getRoot(), "raytable.gz");
+        table.write(file.getPath());
+        RICHRayTable read = RICHRayTable.read(file.getPath());
+        assertEquals(VARIATION, read.get_Variation());
+        assertEquals(TIMESTAMP, read.get_TimeStamp());
+        assertEquals(table.get_GeoHash(), read.get_GeoHash());
+        assertEquals(table.get_NFrontRefle(), read.get_NFrontRefle());
+        assertEquals(NPOS, read.get_NPos());
+        assertEquals(NDIR, read.get_NDir());
+        assertEquals(MAXSLOPE, read.get_MaxSlope(), 0);
+        assertTrue(table.matches(richgeo, richpar, VARIATION, TIMESTAMP, NPOS, NDIR, MAXSLOPE));
+        assertTrue(read.matches(richgeo, richpar, VARIATION, TIMESTAMP, NPOS, NDIR, MAXSLOPE));
+        assertFalse(read.matches(richgeo, richpar, "rga_fall2018", TIMESTAMP, NPOS, NDIR, MAXSLOPE));
+        assertFalse(read.matches(richgeo, richpar, VARIATION, "01/01/2020-00:00:00", NPOS, NDIR, MAXSLOPE));
+        assertFalse(read.matches(richgeo, richpar, VARIATION, TIMESTAMP, NPOS+1, NDIR, MAXSLOPE));
+
+        Random rand = new Random(2);
+        List<int[]> layers = layers();
+        for (int i=0; i<1000; i++){
+            int[] sl = layers.get(rand.nextInt(layers.size()));
+            RICHRay airray = randomRay(rand, richgeo.get_Layer(sl[0], sl[1]));
+            if(airray==null) continue;
+            ArrayList<RICHRay> expected = table.find_Rays(sl[0], sl[1], airray);
+            ArrayList<RICHRay> actual = read.find_Rays(sl[0], sl[1], airray);
+            if(expected==null){
+                assertNull(actual);
+                continue;
+            }
+            assertEquals(expected.size(), actual.size());
+            for (int j=0; j<expected.size(); j++){
+                assertEquals(0, expected.get(j).end().distance(actual.get(j).end()), 0);
+                assertEquals(expected.get(j).get_type(), actual.get(j).get_type());
+                assertEquals(expected.get(j).get_refind(), actual.get(j).get_refind(), 0);
+            }
+        }
+
+        // tables for other parameters are not read from the file, but built again and written there:
+        RICHRayTable rebuilt = RICHRayTable.load_OrBuild(file.getPath(), richgeo, richpar, VARIATION, TIMESTAMP, NPOS-2, NDIR-2, MAXSLOPE);
+        assertEquals(NPOS-2, rebuilt.get_NPos());
+        assertEquals(NPOS-2, RICHRayTable.read(file.getPath()).get_NPos());
+    }
+
+    @Test
+    public void testGeometryChange() {
+        assertEquals(table.get_GeoHash(), RICHRayTable.geo_Hash(richgeo));
+
+        // a surface beyond the aerogel (mirror or MAPMT plane), which is not part of the table frames
+        int isec = richgeo.find_RICHSector(1);
+        RICHLayer layer = null;
+        for (int ilay=RICHRayTable.NAERO; ilay<RICHGeoConstants.NLAY; ilay++){
+            RICHLayer l = richgeo.get_Layer(isec, ilay);
+            if(l!=null && l.get_TrackingSurf()!=null && l.get_TrackingSurf().size()>0) layer = l;
+        }
+        assertNotNull(layer);
+        Shape3D surf = layer.get_TrackingSurf();
+        try {
+            layer.set_TrackingSurf(new Shape3D());
+            assertNotEquals(table.get_GeoHash(), RICHRayTable.geo_Hash(richgeo));
+            assertFalse(table.matches(richgeo, richpar, VARIATION, TIMESTAMP, NPOS, NDIR, MAXSLOPE));
+        } finally {
+            layer.set_TrackingSurf(surf);
+        }
+        assertTrue(table.matches(richgeo, richpar, VARIATION, TIMESTAMP, NPOS, NDIR, MAXSLOPE));
+    }
+}